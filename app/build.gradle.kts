@@ -33,6 +33,10 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        // Los tests unitarios pasan por código que escribe en Log (android.jar sin implementar)
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -0,0 +1,207 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Preprocesado de imágenes sobre un corpus de fotos generadas (cámara de 12 MP con EXIF,
+ * retrato, captura de pantalla, sticker con transparencia y una foto pequeña): cuántos bytes
+ * se ahorran y cuánto se tarda por imagen y por tipo de destino.
+ *
+ * Las fotos se generan en el propio test (degradado + ruido, que comprime parecido a una foto
+ * real) para no meter binarios en el repositorio.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImagePreprocessorCorpusTest {
+
+    private static final String TAG = "ImagePreprocessorCorpus";
+
+    private Context context;
+    private ContentResolver resolver;
+    private File fixtures;
+    private ImagePreprocessor preprocessor;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        resolver = context.getContentResolver();
+        fixtures = new File(context.getCacheDir(), "preprocess-fixtures");
+        fixtures.mkdirs();
+        preprocessor = new ImagePreprocessor(new File(context.getCacheDir(), "preprocess-out"));
+    }
+
+    @After
+    public void tearDown() {
+        deleteAll(fixtures);
+        deleteAll(new File(context.getCacheDir(), "preprocess-out"));
+    }
+
+    @Test
+    public void corpus_reportsBytesSavedAndEncodeTime() throws IOException {
+        File[] corpus = {
+                photo("camara-12mp.jpg", 4032, 3024, 95, false),
+                photo("retrato.jpg", 3024, 4032, 92, false),
+                png("captura.png", 1080, 2400, false),
+                png("sticker.png", 1024, 1024, true),
+                photo("pequena.jpg", 480, 360, 90, false),
+        };
+
+        for (ImagePreprocessor.Target target : ImagePreprocessor.Target.values()) {
+            long totalIn = 0;
+            long totalOut = 0;
+            for (File fixture : corpus) {
+                long start = System.nanoTime();
+                ImagePreprocessor.Prepared prepared = preprocessor.prepare(resolver, Uri.fromFile(fixture), target);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+
+                assertNotNull(prepared);
+                assertTrue(Math.max(prepared.width, prepared.height) <= target.maxEdge);
+                assertEquals(prepared.width, bounds(prepared.file).outWidth);
+
+                totalIn += fixture.length();
+                totalOut += prepared.file.length();
+                report(target + " " + fixture.getName() + ": " + fixture.length() / 1024 + " KB -> "
+                        + prepared.file.length() / 1024 + " KB (" + prepared.width + "x" + prepared.height
+                        + ", " + prepared.mimeType + ") en " + millis + " ms");
+                prepared.file.delete();
+            }
+            report(target + " total: " + totalIn / 1024 + " KB -> " + totalOut / 1024 + " KB, "
+                    + (100 - totalOut * 100 / totalIn) + "% menos");
+            assertTrue(totalOut < totalIn);
+        }
+    }
+
+    @Test
+    public void exif_isStrippedAndOrientationApplied() throws IOException {
+        // Foto apaisada guardada "de lado" (orientación 90°) y con ubicación
+        File fixture = photo("con-exif.jpg", 4032, 3024, 95, true);
+
+        ImagePreprocessor.Prepared prepared =
+                preprocessor.prepare(resolver, Uri.fromFile(fixture), ImagePreprocessor.Target.MESSAGE);
+
+        assertNotNull(prepared);
+        assertEquals(1200, prepared.width);
+        assertEquals(1600, prepared.height);
+        ExifInterface exif = new ExifInterface(prepared.file.getAbsolutePath());
+        assertNull(exif.getAttribute(ExifInterface.TAG_GPS_LATITUDE));
+        assertNull(exif.getAttribute(ExifInterface.TAG_MAKE));
+    }
+
+    @Test
+    public void transparentImage_keepsAlphaAsWebp() throws IOException {
+        File fixture = png("transparente.png", 800, 800, true);
+
+        ImagePreprocessor.Prepared prepared =
+                preprocessor.prepare(resolver, Uri.fromFile(fixture), ImagePreprocessor.Target.AVATAR);
+
+        assertNotNull(prepared);
+        assertEquals("image/webp", prepared.mimeType);
+        assertEquals(640, prepared.width);
+    }
+
+    /** Degradado con ruido: comprime como una foto, no como un color plano */
+    private static Bitmap generate(int width, int height, boolean alpha) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        if (alpha) bitmap.eraseColor(Color.TRANSPARENT);
+
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, width, height, Color.rgb(30, 90, 160),
+                Color.rgb(230, 180, 80), Shader.TileMode.CLAMP));
+        if (alpha) {
+            canvas.drawCircle(width / 2f, height / 2f, Math.min(width, height) / 2.5f, paint);
+        } else {
+            canvas.drawRect(0, 0, width, height, paint);
+        }
+
+        Random random = new Random(width * 31L + height);
+        Paint noise = new Paint();
+        int block = 4;
+        for (int y = 0; y < height; y += block) {
+            for (int x = 0; x < width; x += block) {
+                if (alpha && Color.alpha(bitmap.getPixel(x, y)) == 0) continue;
+                noise.setColor(Color.argb(60, random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+                canvas.drawRect(x, y, x + block, y + block, noise);
+            }
+        }
+        bitmap.setHasAlpha(alpha);
+        return bitmap;
+    }
+
+    private File photo(String name, int width, int height, int quality, boolean withExif) throws IOException {
+        File file = new File(fixtures, name);
+        Bitmap bitmap = generate(width, height, false);
+        try (OutputStream out = new FileOutputStream(file)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
+        }
+        bitmap.recycle();
+
+        if (withExif) {
+            ExifInterface exif = new ExifInterface(file.getAbsolutePath());
+            exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_ROTATE_90));
+            exif.setAttribute(ExifInterface.TAG_MAKE, "TestCam");
+            exif.setLatLong(40.4168, -3.7038);
+            exif.saveAttributes();
+        }
+        return file;
+    }
+
+    private File png(String name, int width, int height, boolean alpha) throws IOException {
+        File file = new File(fixtures, name);
+        Bitmap bitmap = generate(width, height, alpha);
+        try (OutputStream out = new FileOutputStream(file)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        }
+        bitmap.recycle();
+        return file;
+    }
+
+    private static BitmapFactory.Options bounds(File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        return options;
+    }
+
+    /** Al logcat (adb logcat -s ImagePreprocessorCorpus) */
+    private static void report(String line) {
+        Log.i(TAG, line);
+    }
+
+    private static void deleteAll(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.sendme.data.model.Message;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envío contra el emulador de Realtime Database: el mensaje y la bandeja del otro
+ * se escriben en el mismo update y se mide cuánto tarda en verse en su resumen.
+ *
+ * Necesita el emulador arrancado en el ordenador: {@code firebase emulators:start --only database}
+ * (desde el emulador de Android el host es 10.0.2.2).
+ */
+@RunWith(AndroidJUnit4.class)
+public class SendLatencyEmulatorTest {
+
+    private static final String EMULATOR_HOST = "10.0.2.2";
+    private static final int EMULATOR_PORT = 9000;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static FirebaseDatabase database;
+
+    @BeforeClass
+    public static void useEmulator() {
+        database = FirebaseDatabase.getInstance();
+        database.useEmulator(EMULATOR_HOST, EMULATOR_PORT);
+    }
+
+    @Test
+    public void send_updatesRecipientInboxInSameWrite() throws Exception {
+        String chatId = "test-" + System.currentTimeMillis();
+        String sender = "alice";
+        String recipient = "bob";
+        DatabaseReference root = database.getReference();
+
+        Message message = new Message(sender, "hola", null, System.currentTimeMillis());
+        message.setId(root.child(FirebaseManager.CHAT_MESSAGES).child(chatId).push().getKey());
+
+        // La bandeja del destinatario, como la escucha su lista de chats
+        CountDownLatch seen = new CountDownLatch(1);
+        long[] seenAt = {0};
+        DatabaseReference inboxRef = root.child(ChatSummaries.path(recipient, chatId)).child("lastMessage");
+        ValueEventListener listener = inboxRef.addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if ("hola".equals(snapshot.getValue(String.class)) && seenAt[0] == 0) {
+                    seenAt[0] = System.nanoTime();
+                    seen.countDown();
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {}
+        });
+
+        Map<String, Object> updates = ChatSummaries.sendUpdates(chatId, List.of(sender, recipient), message);
+        long start = System.nanoTime();
+        Tasks.await(root.updateChildren(updates), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long committedAt = System.nanoTime();
+
+        assertTrue("La bandeja no se actualizó", seen.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        inboxRef.removeEventListener(listener);
+
+        // Todo lo del envío está en el servidor tras una sola escritura
+        DataSnapshot stored = Tasks.await(root.child(FirebaseManager.CHAT_MESSAGES).child(chatId)
+                .child(message.getId()).get(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        DataSnapshot unread = Tasks.await(root.child(ChatSummaries.path(recipient, chatId)).child("unreadCount")
+                .get(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals("hola", stored.child("content").getValue(String.class));
+        assertEquals(Long.valueOf(1), unread.getValue(Long.class));
+
+        Log.i("SendLatency", "Envío → bandeja: " + (seenAt[0] - start) / 1_000_000
+                + " ms (confirmado por el servidor en " + (committedAt - start) / 1_000_000 + " ms)");
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.sendme.ui;
+
+import static org.junit.Assert.assertTrue;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.sendme.AuthActivity;
+import com.example.sendme.data.model.Message;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempo de frame haciendo scroll por un chat de grupo de 5k mensajes (texto e imágenes,
+ * enviados y recibidos), con los tiempos que da el propio sistema (FrameMetrics).
+ *
+ * La lista se monta sobre la pantalla de login para no depender de sesión ni de Firebase.
+ * Las imágenes apuntan a una URL que no existe: Glide pinta el error y no hay red de por medio.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MessageScrollFrameTimeTest {
+
+    private static final int MESSAGES = 5_000;
+    private static final int SCROLL_FRAMES = 600;   // ~10 s a 60 Hz
+    private static final int SCROLL_STEP_PX = 80;
+    private static final long FRAME_BUDGET_NANOS = 16_666_667L;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static List<Message> groupChat() {
+        String[] senders = {"yo", "ana", "bea", "carlos"};
+        List<Message> messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            String sender = senders[i % senders.length];
+            boolean image = i % 10 == 0;
+            Message m = new Message(sender, image ? null : "Mensaje número " + i + " del chat de prueba",
+                    image ? "https://invalid.example/" + i + ".jpg" : null, 1_700_000_000_000L + i * 60_000L);
+            m.setId(String.format("-T%08d", i));
+            messages.add(m);
+        }
+        return messages;
+    }
+
+    @Test
+    public void scroll5kMessages_reportsFrameTimes() throws Exception {
+        List<Long> frames = new ArrayList<>();
+        HandlerThread metricsThread = new HandlerThread("frame-metrics");
+        metricsThread.start();
+
+        try (ActivityScenario<AuthActivity> scenario = ActivityScenario.launch(AuthActivity.class)) {
+            CountDownLatch loaded = new CountDownLatch(1);
+            RecyclerView[] list = new RecyclerView[1];
+            Window.OnFrameMetricsAvailableListener listener = (window, metrics, dropped) -> {
+                synchronized (frames) {
+                    frames.add(metrics.getMetric(FrameMetrics.TOTAL_DURATION));
+                }
+            };
+
+            scenario.onActivity(activity -> {
+                SenderNames names = new SenderNames();
+                RecyclerView recyclerView = new RecyclerView(activity);
+                LinearLayoutManager layoutManager = new LinearLayoutManager(activity);
+                layoutManager.setStackFromEnd(true);
+                recyclerView.setLayoutManager(layoutManager);
+                MessageAdapter adapter = new MessageAdapter("yo", null, names);
+                recyclerView.setAdapter(adapter);
+                activity.setContentView(recyclerView);
+                list[0] = recyclerView;
+
+                adapter.setMessages(groupChat(), () -> {
+                    recyclerView.scrollToPosition(MESSAGES - 1);
+                    loaded.countDown();
+                });
+            });
+            assertTrue("La lista no se cargó", loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            // Desde el final hacia arriba, un paso por frame, midiendo solo durante el scroll
+            CountDownLatch scrolled = new CountDownLatch(1);
+            scenario.onActivity(activity -> {
+                activity.getWindow().addOnFrameMetricsAvailableListener(listener, new Handler(metricsThread.getLooper()));
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    int remaining = SCROLL_FRAMES;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        list[0].scrollBy(0, -SCROLL_STEP_PX);
+                        if (--remaining > 0) {
+                            Choreographer.getInstance().postFrameCallback(this);
+                        } else {
+                            scrolled.countDown();
+                        }
+                    }
+                });
+            });
+            assertTrue("El scroll no terminó", scrolled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            scenario.onActivity(activity -> activity.getWindow().removeOnFrameMetricsAvailableListener(listener));
+        } finally {
+            metricsThread.quitSafely();
+        }
+
+        long[] durations;
+        synchronized (frames) {
+            durations = new long[frames.size()];
+            for (int i = 0; i < durations.length; i++) durations[i] = frames.get(i);
+        }
+        assertTrue("No se midió ningún frame", durations.length > 0);
+        Arrays.sort(durations);
+
+        int janky = 0;
+        for (long duration : durations) {
+            if (duration > FRAME_BUDGET_NANOS) janky++;
+        }
+        Log.i("MessageScroll", durations.length + " frames: p50 " + percentileMs(durations, 50)
+                + " ms, p90 " + percentileMs(durations, 90) + " ms, p99 " + percentileMs(durations, 99)
+                + " ms, " + janky + " por encima de 16,7 ms");
+    }
+
+    private static String percentileMs(long[] sorted, int percentile) {
+        int index = Math.min(sorted.length - 1, sorted.length * percentile / 100);
+        return String.format("%.1f", sorted[index] / 1_000_000.0);
+    }
+}
@@ -4,8 +4,6 @@ import android.app.AlertDialog;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.widget.Toast;
 
 import androidx.activity.OnBackPressedCallback;
@@ -18,7 +16,8 @@ import androidx.lifecycle.ViewModelProvider;
 import com.bumptech.glide.Glide;
 import com.example.sendme.databinding.ActivityProfileSetupBinding;
 import com.example.sendme.repository.FirebaseManager;
-import com.example.sendme.repository.ImgurApiClient;
+import com.example.sendme.repository.ImagePreprocessor;
+import com.example.sendme.repository.UploadQueue;
 import com.example.sendme.ui.ProfileSetupViewModel;
 
 /**
@@ -34,6 +33,33 @@ public class ProfileSetupActivity extends AppCompatActivity {
     private String imageURL = "";
     // Clave para guardar y restaurar la URL de la imagen en el estado de la actividad.
     private static final String KEY_IMAGE_URI = "image_uri";
+    // Owner de la foto de perfil en la cola de subidas (null hasta saber quién es el usuario).
+    private String avatarOwner;
+
+    // Resultado de la subida de la foto, en el hilo principal y solo mientras la actividad existe.
+    private final UploadQueue.Listener uploadListener = new UploadQueue.Listener() {
+        @Override
+        public void onProgress(@NonNull String uploadId, long sent, long total) {
+            // Sin barra de progreso en esta pantalla
+        }
+
+        @Override
+        public void onUploaded(@NonNull String uploadId, @NonNull String imageUrl) {
+            imageURL = imageUrl; // Almacena la URL de la imagen subida.
+            Glide.with(ProfileSetupActivity.this)
+                    .load(imageURL)
+                    .error(R.drawable.default_profile)
+                    .into(binding.profileImage);
+            Toast.makeText(ProfileSetupActivity.this, "Imagen subida con éxito", Toast.LENGTH_SHORT).show();
+        }
+
+        @Override
+        public void onFailed(@NonNull String uploadId, @NonNull String error) {
+            imageURL = ""; // Limpia la URL si la subida falla.
+            binding.profileImage.setImageResource(R.drawable.default_profile); // Vuelve a la imagen por defecto.
+            Toast.makeText(ProfileSetupActivity.this, "Error al subir la imagen: " + error, Toast.LENGTH_LONG).show();
+        }
+    };
 
     // Lanzador para abrir la galería y seleccionar una imagen.
     private final ActivityResultLauncher<String> imagePicker = registerForActivityResult(
@@ -81,6 +107,10 @@ public class ProfileSetupActivity extends AppCompatActivity {
             binding.profileImage.setImageResource(R.drawable.default_profile);
         }
 
+        // Resultados de la subida de la foto (también si terminó antes de recrearse la actividad).
+        avatarOwner = UploadQueue.avatarOwner(FirebaseManager.getInstance().getAuth().getCurrentUser().getUid());
+        UploadQueue.getInstance().observe(avatarOwner, uploadListener);
+
         // Configura el clic en la imagen de perfil para abrir la galería.
         binding.profileImage.setOnClickListener(v -> imagePicker.launch("image/*"));
 
@@ -173,30 +203,15 @@ public class ProfileSetupActivity extends AppCompatActivity {
      * @param imageUri La URI local de la imagen a subir.
      */
     private void uploadImageToImgur(Uri imageUri) {
-        ImgurApiClient.getInstance().uploadImage(imageUri, getContentResolver(), new ImgurApiClient.UploadCallback() {
-            @Override
-            public void onSuccess(String imageUrl) {
-                // Asegura que la actualización de la UI se realiza en el hilo principal.
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    imageURL = imageUrl; // Almacena la URL de la imagen subida.
-                    Glide.with(ProfileSetupActivity.this)
-                            .load(imageURL)
-                            .error(R.drawable.default_profile)
-                            .into(binding.profileImage);
-                    Toast.makeText(ProfileSetupActivity.this, "Imagen subida con éxito", Toast.LENGTH_SHORT).show();
-                });
-            }
+        // La subida va por la cola de la app: si se gira la pantalla el resultado le llega a la
+        // actividad nueva (uploadListener)
+        UploadQueue.getInstance().enqueue(getContentResolver(), imageUri, ImagePreprocessor.Target.AVATAR, avatarOwner);
+    }
 
-            @Override
-            public void onFailure(String error) {
-                // Asegura que la actualización de la UI se realiza en el hilo principal.
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    imageURL = ""; // Limpia la URL si la subida falla.
-                    binding.profileImage.setImageResource(R.drawable.default_profile); // Vuelve a la imagen por defecto.
-                    Toast.makeText(ProfileSetupActivity.this, "Error al subir la imagen: " + error, Toast.LENGTH_LONG).show();
-                });
-            }
-        });
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (avatarOwner != null) UploadQueue.getInstance().removeObserver(avatarOwner, uploadListener);
     }
 
     @Override
@@ -2,6 +2,10 @@ package com.example.sendme;
 
 import android.app.Application;
 
+import com.example.sendme.repository.ImagePreprocessor;
+import com.example.sendme.repository.LocalMessageStore;
+import com.example.sendme.repository.UploadCache;
+import com.example.sendme.repository.UploadQueue;
 import com.google.firebase.database.FirebaseDatabase;
 
 /**
@@ -17,5 +21,15 @@ public class SendMeApplication extends Application {
         // cuando la conexión se restablezca. Se debe llamar una única vez antes de cualquier otra
         // operación de Realtime Database.
         FirebaseDatabase.getInstance().setPersistenceEnabled(true);
+
+        // Copia local de los mensajes (SQLite): los chats se pintan desde aquí al abrir
+        LocalMessageStore.init(this);
+
+        // Las imágenes se reducen y recomprimen antes de subirlas, y se suben desde una cola
+        // que sobrevive a las pantallas y a reinicios de la app. Lo que ya se subió (mismos bytes)
+        // no se vuelve a subir.
+        ImagePreprocessor.init(this);
+        UploadCache.init(this);
+        UploadQueue.init(this);
     }
 }
\ No newline at end of file
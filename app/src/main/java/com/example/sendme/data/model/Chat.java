@@ -1,5 +1,7 @@
 package com.example.sendme.data.model;
 
+import com.google.firebase.database.Exclude;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -7,12 +9,14 @@ import java.util.Map;
  * Modelo que representa un chat en la app SendMe.
  *
  * Sirve tanto para chats individuales (1:1) como para grupos.
- * Se usa para guardar y leer datos de Realtime Database (colección "chats").
+ * Se usa para guardar y leer datos de Realtime Database (nodo "chat-meta/{chatId}").
+ * Los mensajes ya no cuelgan de aquí, van en "chat-messages/{chatId}".
  *
  * Los campos clave son:
  * - participants: quiénes están en el chat (UID → true).
  * - lastMessage y lastMessageTimestamp: para mostrar el último mensaje en la lista de chats.
- * - unreadCount: cuántos mensajes no leídos tiene cada usuario.
+ * - unreadCount: no leídos iniciales de cada usuario. El contador vivo está en el resumen
+ *   de cada uno ("user-chats/{uid}/{chatId}", ver ChatSummary).
  * - groupName, groupIcon, adminUid: solo para grupos.
  *
  * Firebase necesita el constructor vacío, por eso está.
@@ -28,6 +32,11 @@ public class Chat {
     private Map<String, Integer> unreadCount = new HashMap<>();
     private String groupIcon = "";
     private String adminUid = "";
+    private int schemaVersion = 2;  // 2 = metadatos y mensajes separados (ver ChatSchemaMigration)
+
+    // Solo en memoria (no se guardan en Firebase): datos precalculados para la lista de chats
+    private String otherUid;        // El otro participante en un 1:1
+    private String timestampText;   // Hora ya formateada (la rellena el adapter la primera vez)
 
     /** Constructor vacío requerido por Firebase para deserializar */
     public Chat() {}
@@ -98,6 +107,35 @@ public class Chat {
         this.adminUid = adminUid != null ? adminUid : "";
     }
 
+    public int getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    public void setSchemaVersion(int schemaVersion) {
+        this.schemaVersion = schemaVersion;
+    }
+
+    /** UID del otro participante en un 1:1, calculado al crear el Chat desde su resumen */
+    @Exclude
+    public String getOtherUid() {
+        return otherUid;
+    }
+
+    @Exclude
+    public void setOtherUid(String otherUid) {
+        this.otherUid = otherUid;
+    }
+
+    @Exclude
+    public String getTimestampText() {
+        return timestampText;
+    }
+
+    @Exclude
+    public void setTimestampText(String timestampText) {
+        this.timestampText = timestampText;
+    }
+
     /** Indica si este chat es un grupo o individual */
     public boolean isGroup() {
         return isGroup;
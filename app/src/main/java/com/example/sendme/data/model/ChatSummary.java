@@ -0,0 +1,183 @@
+package com.example.sendme.data.model;
+
+import com.google.firebase.database.Exclude;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resumen de un chat visto por un usuario concreto, en "user-chats/{uid}/{chatId}".
+ *
+ * Es lo único que necesita la lista de chats: último mensaje, hora, los no leídos de ESE usuario
+ * y lo justo para pintar la fila (nombre/icono del grupo o el UID del otro en un 1:1).
+ * Está desnormalizado a propósito: lo mantiene al día el envío de mensajes, así la lista
+ * funciona con un solo ChildEventListener en vez de tres listeners por chat.
+ *
+ * Firebase necesita el constructor vacío, por eso está.
+ */
+public class ChatSummary {
+
+    private String lastMessage = "";
+    private long lastMessageTimestamp = 0;
+    private String lastMessageKey = "";   // Push key del último mensaje (para compararlo con el cursor)
+    private int unreadCount = 0;
+    private boolean isGroup = false;
+    private String groupName = "";
+    private String groupIcon = "";
+    private String otherUid = "";   // Solo en chats 1:1
+    private long lastReadTimestamp = 0;   // Cursor de lectura (ver ReadCursor)
+    private String lastReadKey = "";
+
+    /** Constructor vacío requerido por Firebase para deserializar */
+    public ChatSummary() {}
+
+    /**
+     * Resumen a partir de los metadatos completos del chat (al crearlo o al completar
+     * entradas antiguas de user-chats que solo tenían "true").
+     */
+    public static ChatSummary fromChat(Chat chat, String uid) {
+        ChatSummary summary = new ChatSummary();
+        summary.setLastMessage(chat.getLastMessage());
+        summary.setLastMessageTimestamp(chat.getLastMessageTimestamp());
+        summary.setUnreadCount(chat.getUnreadCountForUser(uid));
+        summary.setGroup(chat.isGroup());
+        summary.setGroupName(chat.getGroupName());
+        summary.setGroupIcon(chat.getGroupIcon());
+
+        if (!chat.isGroup() && chat.getParticipants() != null) {
+            for (String participant : chat.getParticipants().keySet()) {
+                if (!participant.equals(uid)) {
+                    summary.setOtherUid(participant);
+                    break;
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Convierte el resumen en un {@link Chat} para el adapter de la lista.
+     * Solo se rellenan los participantes que hacen falta para pintar la fila (yo y el otro).
+     */
+    public Chat toChat(String chatId, String uid) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        chat.setLastMessage(lastMessage);
+        chat.setLastMessageTimestamp(lastMessageTimestamp);
+        chat.setGroup(isGroup);
+        chat.setGroupName(groupName);
+        chat.setGroupIcon(groupIcon);
+
+        Map<String, Boolean> participants = new HashMap<>();
+        participants.put(uid, true);
+        if (!isGroup && !otherUid.isEmpty()) {
+            participants.put(otherUid, true);
+            chat.setOtherUid(otherUid);
+        }
+        chat.setParticipants(participants);
+
+        Map<String, Integer> unread = new HashMap<>();
+        unread.put(uid, getEffectiveUnreadCount());
+        chat.setUnreadCount(unread);
+        return chat;
+    }
+
+    /**
+     * No leídos según el cursor: si ya he leído hasta el último mensaje son 0 aunque el
+     * contador aún no se haya puesto a 0, y si hay mensajes después del cursor es al menos 1
+     * (el contador lo pueden haber reseteado justo antes de llegar el mensaje).
+     *
+     * Se comparan push keys y no las horas: la hora la pone el reloj del que envía, y con un
+     * reloj atrasado su mensaje nuevo saldría "anterior" a mi cursor. Las entradas sin cursor
+     * o sin clave del último mensaje (anteriores a ellos) usan el contador tal cual.
+     */
+    @Exclude
+    public int getEffectiveUnreadCount() {
+        if (lastReadKey.isEmpty() || lastMessageKey.isEmpty()) return unreadCount;
+        if (lastReadKey.compareTo(lastMessageKey) >= 0) return 0;
+        return Math.max(unreadCount, 1);
+    }
+
+    // Getters y setters
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage != null ? lastMessage : "";
+    }
+
+    public long getLastMessageTimestamp() {
+        return lastMessageTimestamp;
+    }
+
+    public void setLastMessageTimestamp(long lastMessageTimestamp) {
+        this.lastMessageTimestamp = lastMessageTimestamp;
+    }
+
+    public String getLastMessageKey() {
+        return lastMessageKey;
+    }
+
+    public void setLastMessageKey(String lastMessageKey) {
+        this.lastMessageKey = lastMessageKey != null ? lastMessageKey : "";
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    /** Igual que en {@link Chat}: en Firebase se guarda como "group" */
+    public boolean isGroup() {
+        return isGroup;
+    }
+
+    public void setGroup(boolean group) {
+        isGroup = group;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public void setGroupName(String groupName) {
+        this.groupName = groupName != null ? groupName : "";
+    }
+
+    public String getGroupIcon() {
+        return groupIcon;
+    }
+
+    public void setGroupIcon(String groupIcon) {
+        this.groupIcon = groupIcon != null ? groupIcon : "";
+    }
+
+    public String getOtherUid() {
+        return otherUid;
+    }
+
+    public void setOtherUid(String otherUid) {
+        this.otherUid = otherUid != null ? otherUid : "";
+    }
+
+    public long getLastReadTimestamp() {
+        return lastReadTimestamp;
+    }
+
+    public void setLastReadTimestamp(long lastReadTimestamp) {
+        this.lastReadTimestamp = lastReadTimestamp;
+    }
+
+    public String getLastReadKey() {
+        return lastReadKey;
+    }
+
+    public void setLastReadKey(String lastReadKey) {
+        this.lastReadKey = lastReadKey != null ? lastReadKey : "";
+    }
+}
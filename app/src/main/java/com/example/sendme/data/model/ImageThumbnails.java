@@ -0,0 +1,62 @@
+package com.example.sendme.data.model;
+
+import androidx.annotation.Nullable;
+
+/**
+ * URLs de las miniaturas que Imgur ya tiene generadas de cada imagen: la misma URL con una
+ * letra antes de la extensión ({@code https://i.imgur.com/abc1234.jpg} →
+ * {@code https://i.imgur.com/abc1234b.jpg}). No hay que subir nada más ni guardar otra URL,
+ * y vale también para las imágenes que ya estaban subidas.
+ *
+ * Las listas cargan la miniatura; la imagen original solo se descarga en
+ * {@link com.example.sendme.view.ImageViewFragment}. Si la URL no es de Imgur (o no tiene la
+ * forma esperada) se devuelve tal cual.
+ */
+public final class ImageThumbnails {
+
+    /** 160x160 recortada al centro: avatares e iconos de grupo (círculos de 40-56 dp) */
+    static final char BIG_SQUARE = 'b';
+
+    /** Lado más largo de 640 px: imagen dentro del bubble (200 dp) */
+    static final char LARGE = 'l';
+
+    private static final String[] HOSTS = {"https://i.imgur.com/", "http://i.imgur.com/"};
+
+    private ImageThumbnails() {}
+
+    /** Miniatura para un avatar o icono de grupo */
+    @Nullable
+    public static String avatar(@Nullable String url) {
+        return variant(url, BIG_SQUARE);
+    }
+
+    /** Miniatura para el bubble de un mensaje. Los GIF se dejan enteros: la miniatura no se mueve. */
+    @Nullable
+    public static String bubble(@Nullable String url) {
+        if (url != null && url.endsWith(".gif")) return url;
+        return variant(url, LARGE);
+    }
+
+    /** {@code url} con el sufijo de tamaño {@code size}, o {@code url} si no es una imagen de Imgur */
+    @Nullable
+    static String variant(@Nullable String url, char size) {
+        if (url == null) return null;
+
+        String host = null;
+        for (String candidate : HOSTS) {
+            if (url.startsWith(candidate)) host = candidate;
+        }
+        if (host == null) return url;
+
+        // Solo "<id>.<ext>": nada de álbumes, parámetros ni URLs que ya llevan sufijo
+        int dot = url.lastIndexOf('.');
+        if (dot <= host.length() || url.indexOf('/', host.length()) >= 0 || url.indexOf('?') >= 0) return url;
+        int idLength = dot - host.length();
+        if (idLength != 5 && idLength != 7) return url;
+        for (int i = host.length(); i < dot; i++) {
+            if (!Character.isLetterOrDigit(url.charAt(i))) return url;
+        }
+
+        return url.substring(0, dot) + size + url.substring(dot);
+    }
+}
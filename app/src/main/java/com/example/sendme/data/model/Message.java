@@ -3,6 +3,8 @@ package com.example.sendme.data.model;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.google.firebase.database.Exclude;
+
 /**
  * Modelo que representa un mensaje individual en un chat.
  *
@@ -23,6 +25,8 @@ public class Message implements Parcelable {
     private String imageUrl;        // URL de la imagen en Imgur (puede ser null si es texto)
     private long timestamp;         // Cuando se envió el mensaje (System.currentTimeMillis())
     private String fcmToken = "";   // Token FCM del dispositivo (no usado actualmente)
+    private String timestampText;   // Hora ya formateada para la lista (solo en memoria, ver MessageRowText)
+    private String thumbnailUrl;    // Miniatura de imageUrl (solo en memoria, ver ImageThumbnails)
 
     /** Constructor vacío obligatorio para que Firebase pueda deserializar */
     public Message() {}
@@ -114,6 +118,17 @@ public class Message implements Parcelable {
 
     public void setImageUrl(String imageUrl) {
         this.imageUrl = imageUrl;
+        this.thumbnailUrl = null;
+    }
+
+    /**
+     * Versión reducida de la imagen para el bubble (la original solo se abre a pantalla
+     * completa). Se calcula una vez y se guarda, como la hora.
+     */
+    @Exclude
+    public String getThumbnailUrl() {
+        if (thumbnailUrl == null && imageUrl != null) thumbnailUrl = ImageThumbnails.bubble(imageUrl);
+        return thumbnailUrl;
     }
 
     public long getTimestamp() {
@@ -122,6 +137,17 @@ public class Message implements Parcelable {
 
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
+        this.timestampText = null;
+    }
+
+    @Exclude
+    public String getTimestampText() {
+        return timestampText;
+    }
+
+    @Exclude
+    public void setTimestampText(String timestampText) {
+        this.timestampText = timestampText;
     }
 
     public String getFcmToken() {
@@ -3,6 +3,8 @@ package com.example.sendme.data.model;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.google.firebase.firestore.Exclude;
+
 import java.util.Objects;
 
 /**
@@ -24,6 +26,7 @@ public class User implements Parcelable {
     private String status;      // Estado o mensaje personal
     private String imageUrl;    // URL de la foto de perfil (Imgur)
     private String email;       // Email usado para login
+    private String thumbnailUrl; // Miniatura de imageUrl (solo en memoria, ver ImageThumbnails)
 
     /** Constructor vacío necesario para Firebase (deserialización) */
     public User() {}
@@ -120,6 +123,17 @@ public class User implements Parcelable {
 
     public void setImageUrl(String imageUrl) {
         this.imageUrl = imageUrl;
+        this.thumbnailUrl = null;
+    }
+
+    /**
+     * Foto de perfil en pequeño, para las listas y cabeceras. Null o vacía si no tiene foto,
+     * igual que {@link #getImageUrl()}.
+     */
+    @Exclude
+    public String getThumbnailUrl() {
+        if (thumbnailUrl == null && imageUrl != null) thumbnailUrl = ImageThumbnails.avatar(imageUrl);
+        return thumbnailUrl;
     }
 
     public String getEmail() {
@@ -0,0 +1,68 @@
+package com.example.sendme.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Envía el mensaje de una imagen de chat en cuanto termina su subida, esté abierta o no la
+ * pantalla del chat. Antes lo enviaba la pantalla al enterarse, así que si el usuario salía
+ * del chat la foto no se mandaba hasta volver a entrar (y tras {@link UploadQueue#RESULT_TTL_MS}
+ * se perdía).
+ *
+ * Los participantes se leen de chat-meta al enviar (en un grupo pueden haber cambiado desde que
+ * se eligió la imagen). El envío es el mismo updateChildren de {@link ChatSummaries#sendUpdates}
+ * que usan las pantallas, y sin red Firebase lo guarda y lo manda al reconectar.
+ */
+class ChatImageSender implements UploadQueue.Completion {
+
+    private static final String TAG = "ChatImageSender";
+
+    @Override
+    public void onUploaded(@NonNull String owner, @Nullable String sender, @NonNull String imageUrl) {
+        if (sender == null || !owner.startsWith(UploadQueue.CHAT_PREFIX)) return;
+        String chatId = owner.substring(UploadQueue.CHAT_PREFIX.length());
+
+        FirebaseManager firebase = FirebaseManager.getInstance();
+        firebase.getChatMetaRef(chatId).child("participants")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        List<String> participants = new ArrayList<>();
+                        for (DataSnapshot child : snapshot.getChildren()) participants.add(child.getKey());
+                        if (!participants.contains(sender)) participants.add(sender);
+                        send(chatId, participants, sender, imageUrl);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error leyendo participantes: " + error.getMessage());
+                    }
+                });
+    }
+
+    private static void send(@NonNull String chatId, @NonNull List<String> participants,
+                             @NonNull String sender, @NonNull String imageUrl) {
+        DatabaseReference messagesRef = FirebaseManager.getInstance().getChatMessagesRef(chatId);
+        Message message = new Message(sender, null, imageUrl, System.currentTimeMillis());
+        String messageId = messagesRef.push().getKey();
+        if (messageId == null) return;
+        message.setId(messageId);
+
+        Map<String, Object> updates = ChatSummaries.sendUpdates(chatId, participants, message);
+        FirebaseManager.getInstance().getDatabase().getReference().updateChildren(updates)
+                .addOnSuccessListener(aVoid -> Log.d(TAG, "Imagen enviada a " + chatId))
+                .addOnFailureListener(e -> Log.e(TAG, "Error enviando imagen: " + e.getMessage()));
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.sendme.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Chat;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Migración del formato antiguo de chats al nuevo.
+ *
+ * Antes todo vivía en "chats/{id}" con "messages" como hijo, así que cualquier lectura de
+ * metadatos (participantes, nombre del grupo, admin...) se bajaba también el historial entero.
+ * Ahora los metadatos van en "chat-meta/{id}" y los mensajes en "chat-messages/{id}".
+ *
+ * La migración se hace bajo demanda, chat a chat: la primera vez que alguien lo abre (o lo ve
+ * en la lista de chats) se lee el nodo antiguo una única vez y se reparte con un update
+ * multi-path atómico, hoja a hoja, que además borra "chats/{id}". A partir de ahí todo lee el
+ * formato nuevo. Un chat está migrado cuando chat-meta/{id} tiene "schemaVersion".
+ */
+public final class ChatSchemaMigration {
+
+    private static final String TAG = "ChatSchemaMigration";
+
+    /** Nodo del formato antiguo */
+    public static final String LEGACY_CHATS = "chats";
+
+    /** Versión que marca un chat ya migrado (se guarda en chat-meta/{id}/schemaVersion) */
+    public static final int SCHEMA_VERSION = 2;
+
+    private ChatSchemaMigration() {}
+
+    /** Resultado de la lectura compatible de metadatos */
+    public interface ChatCallback {
+        /** chat es null si no existe en ninguno de los dos formatos */
+        void onChat(@Nullable Chat chat);
+        void onError(@NonNull String error);
+    }
+
+    /**
+     * Se asegura de que el chat está en el formato nuevo antes de usarlo.
+     * Solo lee "schemaVersion" (un número), así que no cuesta nada si ya está migrado.
+     */
+    public static void ensureMigrated(@NonNull String chatId, @NonNull Runnable onReady) {
+        FirebaseManager.getInstance().getChatMetaRef(chatId).child("schemaVersion")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (snapshot.exists()) {
+                            onReady.run();
+                        } else {
+                            migrate(chatId, onReady);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error comprobando versión del chat " + chatId + ": " + error.getMessage());
+                        onReady.run();
+                    }
+                });
+    }
+
+    /**
+     * Lectura compatible de metadatos: "chat-meta/{id}" si ya está migrado y, si no, el nodo
+     * antiguo (que se migra en ese mismo momento para no tener que volver a leerlo).
+     *
+     * Que exista chat-meta no basta: un envío o un participante añadido antes de migrar
+     * escriben hojas sueltas (lastMessage, participants/{uid}) y dejan un chat-meta a medias.
+     * Solo cuenta como migrado si tiene "schemaVersion", igual que en {@link #ensureMigrated}.
+     */
+    public static void loadChat(@NonNull String chatId, @NonNull ChatCallback callback) {
+        DatabaseReference metaRef = FirebaseManager.getInstance().getChatMetaRef(chatId);
+        metaRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (snapshot.hasChild("schemaVersion")) {
+                    callback.onChat(toChat(chatId, snapshot));
+                } else {
+                    // Se vuelve a leer después: la escritura local de la migración ya se ve
+                    migrate(chatId, () -> metaRef.addListenerForSingleValueEvent(new ValueEventListener() {
+                        @Override
+                        public void onDataChange(@NonNull DataSnapshot migrated) {
+                            callback.onChat(toChat(chatId, migrated));
+                        }
+
+                        @Override
+                        public void onCancelled(@NonNull DatabaseError error) {
+                            callback.onError(error.getMessage());
+                        }
+                    }));
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onError(error.getMessage());
+            }
+        });
+    }
+
+    @Nullable
+    private static Chat toChat(@NonNull String chatId, @NonNull DataSnapshot snapshot) {
+        if (!snapshot.exists()) return null;
+        Chat chat = snapshot.getValue(Chat.class);
+        if (chat != null) chat.setId(chatId);
+        return chat;
+    }
+
+    /**
+     * Migra un chat concreto: lee "chats/{id}" una vez y lo reparte en chat-meta y chat-messages.
+     * Si el nodo antiguo no existe (chat nuevo o borrado) solo se marca la versión si ya hay
+     * chat-meta, para no volver a intentarlo.
+     *
+     * Se escribe hoja a hoja ("chat-messages/{id}/{key}", "chat-meta/{id}/participants/{uid}"...)
+     * y nunca un nodo entero, así que lo que se haya escrito en el formato nuevo mientras tanto
+     * (un mensaje, un miembro nuevo) se conserva. Lo que ya esté en chat-meta tampoco se pisa:
+     * es más nuevo que lo del nodo antiguo.
+     */
+    private static void migrate(@NonNull String chatId, @NonNull Runnable onDone) {
+        DatabaseReference root = FirebaseManager.getInstance().getDatabase().getReference();
+
+        FirebaseManager.getInstance().getChatMetaRef(chatId).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot current) {
+                root.child(LEGACY_CHATS).child(chatId).addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot legacy) {
+                        if (!legacy.exists() && !current.exists()) {
+                            onDone.run();
+                            return;
+                        }
+
+                        Map<String, Object> updates = new HashMap<>();
+                        String metaPath = FirebaseManager.CHAT_META + "/" + chatId;
+                        String messagesPath = FirebaseManager.CHAT_MESSAGES + "/" + chatId;
+
+                        for (DataSnapshot field : legacy.getChildren()) {
+                            String key = field.getKey();
+                            if ("messages".equals(key)) {
+                                for (DataSnapshot message : field.getChildren()) {
+                                    updates.put(messagesPath + "/" + message.getKey(), message.getValue());
+                                }
+                            } else if (field.hasChildren()) {
+                                // participants, admins...: hijo a hijo, respetando los añadidos
+                                DataSnapshot currentField = current.child(key);
+                                for (DataSnapshot child : field.getChildren()) {
+                                    if (!currentField.hasChild(child.getKey())) {
+                                        updates.put(metaPath + "/" + key + "/" + child.getKey(), child.getValue());
+                                    }
+                                }
+                            } else if (!current.hasChild(key)) {
+                                updates.put(metaPath + "/" + key, field.getValue());
+                            }
+                        }
+                        updates.put(metaPath + "/schemaVersion", SCHEMA_VERSION);
+                        if (legacy.exists()) updates.put(LEGACY_CHATS + "/" + chatId, null);
+
+                        // Todo en un solo update: o se migra entero o no se toca nada
+                        root.updateChildren(updates)
+                                .addOnSuccessListener(aVoid -> Log.d(TAG, "Chat " + chatId + " migrado"))
+                                .addOnFailureListener(e -> Log.e(TAG, "Error migrando chat " + chatId + ": " + e.getMessage()));
+                        onDone.run();
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error leyendo chat antiguo " + chatId + ": " + error.getMessage());
+                        onDone.run();
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Error leyendo chat-meta de " + chatId + ": " + error.getMessage());
+                onDone.run();
+            }
+        });
+    }
+}
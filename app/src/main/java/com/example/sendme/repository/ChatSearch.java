@@ -0,0 +1,72 @@
+package com.example.sendme.repository;
+
+import androidx.annotation.NonNull;
+
+import com.example.sendme.data.model.Message;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Búsqueda dentro de un chat, fuera del hilo principal.
+ *
+ * Usa el mismo índice por chat que {@link GlobalSearch} (su "shard"), así que no hay una
+ * segunda copia y lo indexado sobrevive a cerrar y volver a abrir el chat. Al abrir no se
+ * hace nada: el índice se pone al día con la copia local en la primera consulta, y solo con
+ * lo guardado desde la anterior. Así la primera página del chat no espera detrás de una
+ * lectura de todo el historial en el hilo de disco.
+ *
+ * Cada tecla lanza una consulta; si llega otra antes de terminar, la anterior se descarta.
+ */
+public class ChatSearch {
+
+    /** Cuántos resultados se devuelven como mucho (los más recientes) */
+    public static final int MAX_RESULTS = 500;
+
+    public interface Callback {
+        /** En el hilo principal. Del más reciente al más antiguo. */
+        void onResults(@NonNull String query, @NonNull List<Message> newestFirst);
+    }
+
+    private final String chatId;
+    private final GlobalSearch shards;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private volatile boolean closed = false;
+
+    public ChatSearch(@NonNull String chatId) {
+        this(chatId, GlobalSearch.getInstance());
+    }
+
+    ChatSearch(@NonNull String chatId, @NonNull GlobalSearch shards) {
+        this.chatId = chatId;
+        this.shards = shards;
+    }
+
+    public void search(@NonNull String query, @NonNull Callback callback) {
+        int id = generation.incrementAndGet();
+        shards.searchChat(chatId, query, MAX_RESULTS, new GlobalSearch.ChatQuery() {
+            @Override
+            public boolean isCurrent() {
+                // Ya se ha escrito otra cosa, o se ha salido del chat
+                return !closed && id == generation.get();
+            }
+
+            @Override
+            public void onResults(@NonNull List<Message> newestFirst) {
+                callback.onResults(query, newestFirst);
+            }
+        });
+    }
+
+    /** Descarta las consultas pendientes (al cerrar el buscador) */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /** Al salir de la pantalla. Lo que esté en marcha se descarta. */
+    public void close() {
+        closed = true;
+        cancel();
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.sendme.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Chat;
+import com.example.sendme.data.model.ChatSummary;
+import com.example.sendme.data.model.Message;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Escrituras sobre los resúmenes de "user-chats/{uid}/{chatId}" (ver {@link ChatSummary}).
+ *
+ * Todo lo que toca un resumen pasa por aquí para que las rutas estén en un solo sitio.
+ * Los métodos put* solo rellenan un mapa de update multi-path (rutas desde la raíz),
+ * así el que envía el mensaje puede juntarlo todo en un único updateChildren.
+ *
+ * Ojo con las entradas antiguas: antes user-chats solo guardaba "true" por chat. Esas entradas
+ * (o las que se quedaron a medias) las completa {@link #complete} la primera vez que la lista
+ * de chats las ve. Añadir gente a un grupo existente también escribe "true" a propósito,
+ * porque desde ahí no tenemos el nombre ni el icono del grupo a mano.
+ */
+public final class ChatSummaries {
+
+    private static final String TAG = "ChatSummaries";
+
+    private ChatSummaries() {}
+
+    /** Ruta del resumen de un chat para un usuario, desde la raíz */
+    public static String path(@NonNull String uid, @NonNull String chatId) {
+        return FirebaseManager.USER_CHATS + "/" + uid + "/" + chatId;
+    }
+
+    /**
+     * Un resumen está completo si tiene el campo "group" (se escribe siempre, aunque sea false).
+     * Las entradas "true" del formato antiguo o las creadas a medias por un update no lo tienen.
+     */
+    public static boolean isComplete(@NonNull DataSnapshot snapshot) {
+        return snapshot.hasChild("group");
+    }
+
+    /** Resumen completo de un chat recién creado para uno de sus participantes */
+    public static void putNewChat(@NonNull Map<String, Object> updates, @NonNull Chat chat, @NonNull String uid) {
+        updates.put(path(uid, chat.getId()), ChatSummary.fromChat(chat, uid));
+    }
+
+    /** Último mensaje, hora y clave en el resumen de un participante */
+    public static void putLastMessage(@NonNull Map<String, Object> updates, @NonNull String uid,
+                                      @NonNull String chatId, @NonNull String lastMessage, long timestamp,
+                                      @NonNull String messageKey) {
+        String base = path(uid, chatId);
+        updates.put(base + "/lastMessage", lastMessage);
+        updates.put(base + "/lastMessageTimestamp", timestamp);
+        updates.put(base + "/lastMessageKey", messageKey);
+    }
+
+    /** +1 no leído para un participante (incremento en servidor, sin leer antes) */
+    public static void putUnreadIncrement(@NonNull Map<String, Object> updates, @NonNull String uid, @NonNull String chatId) {
+        updates.put(path(uid, chatId) + "/unreadCount", ServerValue.increment(1));
+    }
+
+    /**
+     * Cursor de lectura de un participante (ver {@link ReadCursor}). Deja también a 0 el
+     * contador, que a partir de aquí solo cuenta lo recibido después del cursor.
+     */
+    public static void putReadCursor(@NonNull Map<String, Object> updates, @NonNull String uid,
+                                     @NonNull String chatId, long lastReadTimestamp, @NonNull String lastReadKey) {
+        String base = path(uid, chatId);
+        updates.put(base + "/lastReadTimestamp", lastReadTimestamp);
+        updates.put(base + "/lastReadKey", lastReadKey);
+        updates.put(base + "/unreadCount", 0);
+    }
+
+    /** Deja a 0 los no leídos de un participante */
+    public static void putUnreadReset(@NonNull Map<String, Object> updates, @NonNull String uid, @NonNull String chatId) {
+        updates.put(path(uid, chatId) + "/unreadCount", 0);
+    }
+
+    /**
+     * Todo lo que cambia al enviar un mensaje, para un único updateChildren desde la raíz:
+     * último mensaje en chat-meta y en el resumen de cada participante (con su clave, para
+     * compararla con el cursor de lectura), +1 no leído
+     * (incremento en servidor) para los demás y 0 para el que envía.
+     *
+     * En un grupo de N personas son 2 + 4N rutas en una sola escritura atómica, en vez de
+     * leer los participantes y lanzar una transacción por miembro.
+     */
+    public static Map<String, Object> messageUpdates(@NonNull String chatId, @NonNull Iterable<String> participantUids,
+                                                     @NonNull String senderUid, @NonNull String lastMessage, long timestamp,
+                                                     @NonNull String messageKey) {
+        Map<String, Object> updates = new HashMap<>();
+        String metaPath = FirebaseManager.CHAT_META + "/" + chatId;
+        updates.put(metaPath + "/lastMessage", lastMessage);
+        updates.put(metaPath + "/lastMessageTimestamp", timestamp);
+
+        putLastMessage(updates, senderUid, chatId, lastMessage, timestamp, messageKey);
+        putUnreadReset(updates, senderUid, chatId);
+
+        for (String uid : participantUids) {
+            if (uid.equals(senderUid)) continue;
+            putLastMessage(updates, uid, chatId, lastMessage, timestamp, messageKey);
+            putUnreadIncrement(updates, uid, chatId);
+        }
+        return updates;
+    }
+
+    /**
+     * Envío completo en una sola escritura: el mensaje en "chat-messages/{chatId}/{id}" más
+     * todo lo de {@link #messageUpdates}. O se aplica todo o nada, así la bandeja nunca se
+     * queda atrás del mensaje (antes eran dos escrituras seguidas).
+     */
+    public static Map<String, Object> sendUpdates(@NonNull String chatId, @NonNull Iterable<String> participantUids,
+                                                  @NonNull Message message) {
+        Map<String, Object> updates = messageUpdates(chatId, participantUids, message.getSender(),
+                previewOf(message), message.getTimestamp(), message.getId());
+        updates.put(FirebaseManager.CHAT_MESSAGES + "/" + chatId + "/" + message.getId(), message);
+        // Lo que envío lo he leído: mi cursor avanza en la misma escritura
+        putReadCursor(updates, message.getSender(), chatId, message.getTimestamp(), message.getId());
+        return updates;
+    }
+
+    /** Texto que se ve en la bandeja para un mensaje */
+    @NonNull
+    public static String previewOf(@NonNull Message message) {
+        return message.getContent() != null ? message.getContent() : "Imagen";
+    }
+
+    /**
+     * Cambio de nombre o icono de un grupo: se escribe en chat-meta y en el resumen
+     * de cada participante, todo en el mismo update.
+     */
+    public static Map<String, Object> groupInfoUpdates(@NonNull String groupId, @NonNull Iterable<String> participantUids,
+                                                       @NonNull String field, @NonNull String value) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(FirebaseManager.CHAT_META + "/" + groupId + "/" + field, value);
+        for (String uid : participantUids) {
+            updates.put(path(uid, groupId) + "/" + field, value);
+        }
+        return updates;
+    }
+
+    /**
+     * Completa una entrada antigua o incompleta a partir de chat-meta (una lectura por chat,
+     * y solo una vez: cuando se escribe, el listener de la lista recibe el resumen ya completo).
+     *
+     * Lo que ya tenga la entrada (último mensaje, no leídos) se respeta, porque es más nuevo
+     * que lo que pueda haber en los metadatos. Si el chat ya no existe o el usuario no está
+     * entre los participantes, la entrada sobra y se borra.
+     */
+    public static void complete(@NonNull String uid, @NonNull String chatId, @Nullable DataSnapshot existing) {
+        ChatSchemaMigration.loadChat(chatId, new ChatSchemaMigration.ChatCallback() {
+            @Override
+            public void onChat(@Nullable Chat chat) {
+                DatabaseReference entryRef = FirebaseManager.getInstance().getUserChatsRef(uid).child(chatId);
+
+                if (chat == null || (chat.getParticipants() != null && !chat.getParticipants().containsKey(uid))) {
+                    entryRef.removeValue();
+                    return;
+                }
+                // Sin lista de participantes no se puede saber si sigue dentro: no se toca
+                if (chat.getParticipants() == null) return;
+
+                ChatSummary summary = ChatSummary.fromChat(chat, uid);
+                Map<String, Object> fields = new HashMap<>();
+                fields.put("group", summary.isGroup());
+                fields.put("groupName", summary.getGroupName());
+                fields.put("groupIcon", summary.getGroupIcon());
+                fields.put("otherUid", summary.getOtherUid());
+                if (existing == null || !existing.hasChild("lastMessage")) {
+                    fields.put("lastMessage", summary.getLastMessage());
+                    fields.put("lastMessageTimestamp", summary.getLastMessageTimestamp());
+                }
+                if (existing == null || !existing.hasChild("unreadCount")) {
+                    fields.put("unreadCount", summary.getUnreadCount());
+                }
+
+                entryRef.updateChildren(fields)
+                        .addOnFailureListener(e -> Log.e(TAG, "Error completando resumen de " + chatId + ": " + e.getMessage()));
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                Log.e(TAG, "Error leyendo chat " + chatId + " para su resumen: " + error);
+            }
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.sendme.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Cuerpo de una petición que se lee de un archivo mientras se envía (la imagen ya preparada
+ * por {@link ImagePreprocessor}).
+ *
+ * No se guarda la imagen en memoria: OkHttp llama a {@link #writeTo} desde su hilo y Okio va
+ * pasando el stream al socket por segmentos (8 KB reutilizados), así que la memoria es la
+ * misma para una foto de 100 KB que para una de 12 MP. El tamaño se pregunta la primera vez
+ * que hace falta (también desde el hilo de OkHttp); si no se sabe se devuelve -1 y la subida
+ * va con chunked encoding.
+ *
+ * Se puede escribir más de una vez (se vuelve a abrir el stream), así que OkHttp puede
+ * reintentar la petición. Con {@link #setProgress} se avisa de lo enviado en cada segmento.
+ */
+class FileRequestBody extends RequestBody {
+
+    /** Abre el contenido desde el principio. Se llama en el hilo de OkHttp. */
+    interface Opener {
+        @NonNull
+        InputStream open() throws IOException;
+
+        /** Tamaño en bytes, o -1 si no se sabe */
+        long length();
+    }
+
+    /** Bytes enviados hasta ahora y total (-1 si no se sabe). Se llama en el hilo de OkHttp. */
+    interface Progress {
+        void onProgress(long sent, long total);
+    }
+
+    private static final long SEGMENT = 8192;
+
+    @Nullable
+    private final MediaType contentType;
+    private final Opener opener;
+    private long length = -2; // -2: todavía no se ha preguntado
+    @Nullable
+    private Progress progress;
+
+    FileRequestBody(@Nullable MediaType contentType, @NonNull Opener opener) {
+        this.contentType = contentType;
+        this.opener = opener;
+    }
+
+    /** Cuerpo que lee {@code file} */
+    static FileRequestBody from(@NonNull File file, @Nullable MediaType contentType) {
+        return new FileRequestBody(contentType, new Opener() {
+            @NonNull
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+
+            @Override
+            public long length() {
+                return file.length();
+            }
+        });
+    }
+
+    FileRequestBody setProgress(@Nullable Progress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public synchronized long contentLength() {
+        if (length == -2) length = opener.length();
+        return length;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        try (Source source = Okio.source(opener.open())) {
+            if (progress == null) {
+                sink.writeAll(source);
+                return;
+            }
+
+            // Lo mismo que writeAll, pero contando lo que va saliendo hacia el socket
+            long total = contentLength();
+            long sent = 0;
+            long read;
+            while ((read = source.read(sink.getBuffer(), SEGMENT)) != -1) {
+                sink.emitCompleteSegments();
+                sent += read;
+                progress.onProgress(sent, total);
+            }
+        }
+    }
+}
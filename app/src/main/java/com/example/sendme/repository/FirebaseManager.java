@@ -1,6 +1,7 @@
 package com.example.sendme.repository;
 
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.firestore.FirebaseFirestore;
 
@@ -20,6 +21,17 @@ public class FirebaseManager {
 
     private static FirebaseManager instance;
 
+    /**
+     * Nodos de Realtime Database para chats. Los metadatos (participantes, lastMessage,
+     * unreadCount, nombre del grupo...) van separados de los mensajes para que leer un chat
+     * no implique bajarse todo su historial. El antiguo "chats/{id}" lo migra ChatSchemaMigration.
+     */
+    public static final String CHAT_META = "chat-meta";
+    public static final String CHAT_MESSAGES = "chat-messages";
+
+    /** Resumen de cada chat por usuario para la lista de chats (ver ChatSummaries) */
+    public static final String USER_CHATS = "user-chats";
+
     private final FirebaseAuth auth;
     private final FirebaseFirestore firestore;
     private final FirebaseDatabase database;
@@ -64,4 +76,19 @@ public class FirebaseManager {
     public FirebaseDatabase getDatabase() {
         return database;
     }
+
+    /** Metadatos del chat: "chat-meta/{chatId}" (tamaño constante, sin mensajes) */
+    public DatabaseReference getChatMetaRef(String chatId) {
+        return database.getReference(CHAT_META).child(chatId);
+    }
+
+    /** Mensajes del chat: "chat-messages/{chatId}" */
+    public DatabaseReference getChatMessagesRef(String chatId) {
+        return database.getReference(CHAT_MESSAGES).child(chatId);
+    }
+
+    /** Resúmenes de los chats de un usuario: "user-chats/{uid}" */
+    public DatabaseReference getUserChatsRef(String uid) {
+        return database.getReference(USER_CHATS).child(uid);
+    }
 }
@@ -0,0 +1,272 @@
+package com.example.sendme.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Búsqueda en todos los chats guardados en local a la vez (desde la lista de chats).
+ *
+ * Cada chat es un "shard" con su propio {@link MessageSearchIndex}, que se construye la primera
+ * vez que se busca y se queda en memoria; en las siguientes búsquedas solo se le añade lo que
+ * se haya guardado después. En memoria se quedan como mucho {@link #MAX_SHARDS}: al pasarse se
+ * olvida el chat que lleva más tiempo sin buscarse (volverá a leerse entero si hace falta).
+ *
+ * Las lecturas de SQLite van por el hilo de disco de {@link LocalMessageStore}, chat a chat y
+ * empezando por los más recientes; indexar y buscar se reparte entre unos pocos hilos. Cada chat
+ * entrega sus resultados en cuanto termina: con cientos de chats los primeros resultados salen
+ * enseguida sin esperar al resto.
+ */
+public class GlobalSearch {
+
+    /** Como mucho cuántos resultados por chat (los más recientes) */
+    public static final int HITS_PER_CHAT = 20;
+
+    /** Hilos para indexar y buscar en los shards (solo CPU: no compensa tener muchos) */
+    private static final int THREADS = 2;
+
+    /** Como mucho cuántos chats se quedan indexados en memoria */
+    static final int MAX_SHARDS = 50;
+
+    /** De dónde salen los mensajes de cada chat. Se llama desde el ejecutor de disco. */
+    public interface Source {
+        /** Chats con mensajes guardados, del más reciente al más antiguo */
+        @NonNull
+        List<String> chatIds();
+
+        @Nullable
+        String newestKey(@NonNull String chatId);
+
+        int count(@NonNull String chatId);
+
+        /** Todos los mensajes del chat, en orden cronológico */
+        @NonNull
+        List<Message> all(@NonNull String chatId);
+
+        /** Los posteriores a {@code afterKey}, en orden cronológico */
+        @NonNull
+        List<Message> after(@NonNull String chatId, @NonNull String afterKey);
+    }
+
+    /** Resultados de una búsqueda (en el hilo principal) */
+    public interface Listener {
+        /** Resultados de un chat, del más reciente al más antiguo. Solo se llama si hay alguno. */
+        void onChatResults(@NonNull String chatId, @NonNull List<Message> hits);
+
+        /** Ya han terminado todos los chats */
+        void onFinished(int chatsSearched);
+    }
+
+    /** Búsqueda dentro de un solo chat (ver {@link ChatSearch}) */
+    interface ChatQuery {
+        /** false si ya no hace falta: se deja de trabajar en ella y no se entrega */
+        boolean isCurrent();
+
+        /** En el hilo principal. Del más reciente al más antiguo. */
+        void onResults(@NonNull List<Message> newestFirst);
+    }
+
+    /** Índice de un chat y hasta dónde está al día */
+    private static class Shard {
+        final MessageSearchIndex index = new MessageSearchIndex();
+        String newestKey;
+    }
+
+    /** Lo leído de disco para poner un shard al día */
+    private static class Delta {
+        final String baseKey;       // newestKey del shard cuando se leyó
+        final String newestKey;
+        final List<Message> messages;
+
+        Delta(String baseKey, String newestKey, List<Message> messages) {
+            this.baseKey = baseKey;
+            this.newestKey = newestKey;
+            this.messages = messages;
+        }
+    }
+
+    private static GlobalSearch instance;
+
+    private final Source source;
+    private final Executor disk;
+    private final Executor workers;
+    private final Executor main;
+    private final int maxShards;
+    private final LinkedHashMap<String, Shard> shards;  // Se usa con synchronized (shards)
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public static synchronized GlobalSearch getInstance() {
+        if (instance == null) {
+            LocalMessageStore store = LocalMessageStore.getInstance();
+            instance = new GlobalSearch(store, store.getDiskExecutor(), Executors.newFixedThreadPool(THREADS),
+                    store.getMainExecutor(), MAX_SHARDS);
+        }
+        return instance;
+    }
+
+    GlobalSearch(@NonNull Source source, @NonNull Executor disk, @NonNull Executor workers,
+                 @NonNull Executor main, int maxShards) {
+        this.source = source;
+        this.disk = disk;
+        this.workers = workers;
+        this.main = main;
+        this.maxShards = maxShards;
+        // accessOrder: cada búsqueda pasa el chat al final, así el primero es el menos buscado
+        this.shards = new LinkedHashMap<String, Shard>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Shard> eldest) {
+                return size() > GlobalSearch.this.maxShards;
+            }
+        };
+    }
+
+    /** Lanza una búsqueda; la anterior, si no había acabado, se abandona */
+    public void search(@NonNull String query, @NonNull Listener listener) {
+        int id = generation.incrementAndGet();
+        disk.execute(() -> {
+            if (id != generation.get()) return;
+
+            List<String> chatIds = source.chatIds();
+            if (chatIds.isEmpty()) {
+                deliver(id, () -> listener.onFinished(0));
+                return;
+            }
+
+            // Cada chat: se lee en el hilo de disco y se indexa y busca en los de búsqueda
+            AtomicInteger pending = new AtomicInteger(chatIds.size());
+            Runnable chatDone = () -> {
+                if (pending.decrementAndGet() == 0) {
+                    deliver(id, () -> listener.onFinished(chatIds.size()));
+                }
+            };
+            for (String chatId : chatIds) {
+                disk.execute(() -> {
+                    if (id != generation.get()) {
+                        chatDone.run();
+                        return;
+                    }
+                    Shard shard = shard(chatId);
+                    Delta delta = read(chatId, shard);
+                    workers.execute(() -> {
+                        if (id == generation.get()) {
+                            List<Message> hits = searchShard(shard, delta, query, HITS_PER_CHAT);
+                            if (!hits.isEmpty()) deliver(id, () -> listener.onChatResults(chatId, hits));
+                        }
+                        chatDone.run();
+                    });
+                });
+            }
+        });
+    }
+
+    /**
+     * Busca solo en un chat, con su mismo shard: se pone al día desde disco (solo lo nuevo si
+     * ya estaba indexado) y se consulta en los hilos de búsqueda. No afecta a la búsqueda global.
+     */
+    void searchChat(@NonNull String chatId, @NonNull String query, int limit, @NonNull ChatQuery chatQuery) {
+        disk.execute(() -> {
+            if (!chatQuery.isCurrent()) return;
+            Shard shard = shard(chatId);
+            Delta delta = read(chatId, shard);
+            workers.execute(() -> {
+                if (!chatQuery.isCurrent()) return;
+                List<Message> hits = searchShard(shard, delta, query, limit);
+                main.execute(() -> {
+                    if (chatQuery.isCurrent()) chatQuery.onResults(hits);
+                });
+            });
+        });
+    }
+
+    /** Abandona la búsqueda en curso (al cerrar el buscador) */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /** Olvida los índices (al cerrar sesión) */
+    public void clear() {
+        cancel();
+        synchronized (shards) {
+            shards.clear();
+        }
+    }
+
+    private void deliver(int id, Runnable delivery) {
+        main.execute(() -> {
+            if (id == generation.get()) delivery.run();
+        });
+    }
+
+    @NonNull
+    private Shard shard(@NonNull String chatId) {
+        synchronized (shards) {
+            Shard shard = shards.get(chatId);
+            if (shard == null) {
+                shard = new Shard();
+                shards.put(chatId, shard);
+            }
+            return shard;
+        }
+    }
+
+    /**
+     * Lee (en el hilo de disco) lo que le falta al shard: solo lo nuevo si es posible, todo si
+     * ha cambiado otra cosa. Null si ya está al día.
+     */
+    @Nullable
+    private Delta read(@NonNull String chatId, @NonNull Shard shard) {
+        String baseKey;
+        int indexed;
+        synchronized (shard) {
+            baseKey = shard.newestKey;
+            indexed = shard.index.size();
+        }
+
+        String storedNewest = source.newestKey(chatId);
+        if (storedNewest == null) return null;
+        int storedCount = source.count(chatId);
+
+        if (storedNewest.equals(baseKey) && storedCount == indexed) {
+            return null; // Al día
+        }
+
+        if (baseKey != null) {
+            List<Message> newer = source.after(chatId, baseKey);
+            if (indexed + newer.size() == storedCount) {
+                return new Delta(baseKey, storedNewest, newer);
+            }
+        }
+
+        // Primera vez, o se guardaron páginas anteriores: se recorre todo el chat
+        return new Delta(baseKey, storedNewest, source.all(chatId));
+    }
+
+    @NonNull
+    private List<Message> searchShard(@NonNull Shard shard, @Nullable Delta delta, @NonNull String query, int limit) {
+        // Un shard no lo tocan dos hilos a la vez (el índice no es thread-safe)
+        synchronized (shard) {
+            // Si otra búsqueda ya lo ha adelantado, lo leído aquí es igual o más viejo
+            if (delta != null && Objects.equals(shard.newestKey, delta.baseKey)) {
+                shard.index.addAll(delta.messages);
+                shard.newestKey = delta.newestKey;
+            }
+            List<String> keys = shard.index.search(query, limit);
+            List<Message> hits = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                Message message = shard.index.get(key);
+                if (message != null) hits.add(message);
+            }
+            return hits;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.sendme.repository;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.ImageDecoder;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Prepara una imagen de la galería antes de subirla: la reduce, le quita los metadatos y la
+ * vuelve a comprimir.
+ *
+ * Se decodifica con {@link ImageDecoder} directamente al tamaño final (no se carga la foto
+ * original de 12 MP para luego escalarla), con el lado más largo limitado según para qué sea
+ * ({@link Target}). Al volver a codificar el bitmap no se copia el EXIF (ubicación, modelo de
+ * cámara...); la orientación ya viene aplicada por el decoder. Sale JPEG, o WebP si la imagen
+ * tiene transparencia.
+ *
+ * Los GIF se copian tal cual para no perder la animación.
+ *
+ * El resultado se guarda en un archivo propio de la app (no en la caché: la cola de subidas
+ * lo tiene que encontrar aunque se reinicie la app) y lo borra {@link UploadQueue} al
+ * terminar. Todo es síncrono: se llama desde un hilo de fondo.
+ */
+public class ImagePreprocessor {
+
+    /** Para qué es la imagen: lado más largo en píxeles y calidad de compresión */
+    public enum Target {
+        MESSAGE(1600, 80),
+        AVATAR(640, 85),
+        GROUP_ICON(640, 85);
+
+        final int maxEdge;
+        final int quality;
+
+        Target(int maxEdge, int quality) {
+            this.maxEdge = maxEdge;
+            this.quality = quality;
+        }
+    }
+
+    /** Imagen lista para subir (un archivo que hay que borrar al terminar) */
+    public static final class Prepared {
+        public final File file;
+        public final String mimeType;
+        public final int width;     // 0 si no se ha decodificado (GIF)
+        public final int height;
+
+        Prepared(File file, String mimeType, int width, int height) {
+            this.file = file;
+            this.mimeType = mimeType;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static final String DIR = "uploads";
+    private static final String GIF = "image/gif";
+
+    private static ImagePreprocessor instance;
+
+    private final File dir;
+
+    ImagePreprocessor(@NonNull File dir) {
+        this.dir = dir;
+    }
+
+    /** Se inicializa una vez en {@link com.example.sendme.SendMeApplication} */
+    public static synchronized void init(@NonNull Context context) {
+        if (instance == null) {
+            instance = new ImagePreprocessor(new File(context.getFilesDir(), DIR));
+        }
+    }
+
+    public static synchronized ImagePreprocessor getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("ImagePreprocessor.init() no se ha llamado");
+        }
+        return instance;
+    }
+
+    /** Carpeta de los archivos preparados */
+    @NonNull
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * Decodifica, reduce y recomprime {@code uri} (los GIF solo se copian). Si no se puede leer
+     * o decodificar lanza IOException.
+     */
+    @NonNull
+    @WorkerThread
+    public Prepared prepare(@NonNull ContentResolver resolver, @NonNull Uri uri, @NonNull Target target)
+            throws IOException {
+        if (GIF.equals(resolver.getType(uri))) return copy(resolver, uri);
+
+        Bitmap bitmap = ImageDecoder.decodeBitmap(ImageDecoder.createSource(resolver, uri),
+                (decoder, info, source) -> {
+                    // Software: un bitmap HARDWARE no se puede comprimir
+                    decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+                    Size size = info.getSize();
+                    int[] scaled = scaledSize(size.getWidth(), size.getHeight(), target.maxEdge);
+                    if (scaled[0] != size.getWidth() || scaled[1] != size.getHeight()) {
+                        decoder.setTargetSize(scaled[0], scaled[1]);
+                    }
+                });
+
+        try {
+            boolean alpha = bitmap.hasAlpha();
+            Bitmap.CompressFormat format = alpha ? webp() : Bitmap.CompressFormat.JPEG;
+            String mimeType = alpha ? "image/webp" : "image/jpeg";
+
+            File file = newFile(alpha ? ".webp" : ".jpg");
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                if (!bitmap.compress(format, target.quality, out)) {
+                    throw new IOException("No se ha podido comprimir la imagen");
+                }
+            } catch (IOException e) {
+                file.delete();
+                throw e;
+            }
+            return new Prepared(file, mimeType, bitmap.getWidth(), bitmap.getHeight());
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /** Copia el original sin tocarlo (el permiso sobre el content URI no dura para siempre) */
+    @NonNull
+    private Prepared copy(@NonNull ContentResolver resolver, @NonNull Uri uri) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new FileNotFoundException("Failed to open InputStream for URI: " + uri);
+
+        File file = newFile(".gif");
+        try (Source source = Okio.source(in); BufferedSink sink = Okio.buffer(Okio.sink(file))) {
+            sink.writeAll(source);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        return new Prepared(file, GIF, 0, 0);
+    }
+
+    @NonNull
+    private File newFile(@NonNull String extension) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("No se puede crear " + dir);
+        return File.createTempFile("img", extension, dir);
+    }
+
+    /**
+     * Tamaño con el lado más largo como mucho {@code maxEdge}, manteniendo la proporción.
+     * Las imágenes que ya caben no se tocan (nunca se amplía).
+     */
+    @NonNull
+    static int[] scaledSize(int width, int height, int maxEdge) {
+        int longest = Math.max(width, height);
+        if (longest <= maxEdge) return new int[]{width, height};
+        double scale = (double) maxEdge / longest;
+        return new int[]{
+                Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale))
+        };
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webp() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+    }
+}
@@ -1,12 +1,9 @@
 package com.example.sendme.repository;
 
-import android.content.ContentResolver;
-import android.net.Uri;
 import android.util.Log;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
@@ -19,6 +16,7 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 // Cliente para subir imágenes a Imgur usando su API pública
 public class ImgurApiClient {
@@ -48,49 +46,26 @@ public class ImgurApiClient {
         return instance;
     }
 
-    // Interfaz que define los callbacks para notificar si la subida fue exitosa o falló
+    // Interfaz que define los callbacks para notificar el progreso y si la subida fue exitosa o falló.
+    // Se llaman desde los hilos de OkHttp.
     public interface UploadCallback {
+        void onProgress(long sent, long total);
         void onSuccess(String imageUrl);
-        void onFailure(String error);
+        // retryable: fallo de red o del servidor (5xx, 429), merece la pena volver a intentarlo
+        void onFailure(String error, boolean retryable);
     }
 
-    // Método principal para subir una imagen a Imgur
-    public void uploadImage(Uri imageUri, ContentResolver contentResolver, UploadCallback callback) {
-        byte[] imageBytes;
-
-        // Leer la imagen desde el URI usando un InputStream
-        try {
-            InputStream inputStream = contentResolver.openInputStream(imageUri);
-            if (inputStream == null) {
-                Log.e(TAG, "Failed to open InputStream for URI: " + imageUri);
-                callback.onFailure("Failed to read image data");
-                return;
-            }
-
-            // Convertimos la imagen a un array de bytes
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                byteArrayOutputStream.write(buffer, 0, bytesRead);
-            }
-
-            inputStream.close();
-            imageBytes = byteArrayOutputStream.toByteArray();
-        } catch (IOException e) {
-            Log.e(TAG, "Failed to read image bytes: " + e.getMessage(), e);
-            callback.onFailure("Failed to read image: " + e.getMessage());
-            return;
-        }
+    // Método principal para subir una imagen a Imgur: un archivo ya preparado (ImagePreprocessor),
+    // que no se carga en memoria sino que se va leyendo mientras OkHttp lo envía desde su hilo.
+    // Normalmente no se llama directamente sino a través de UploadQueue.
+    public void upload(File file, String mimeType, UploadCallback callback) {
+        RequestBody imageBody = FileRequestBody.from(file, MediaType.parse(mimeType))
+                .setProgress(callback::onProgress);
 
         // Construimos la petición POST con el archivo como parte del formulario
         RequestBody requestBody = new MultipartBody.Builder()
                 .setType(MultipartBody.FORM)
-                .addFormDataPart(
-                        "image",
-                        imageUri.getLastPathSegment(),
-                        RequestBody.create(MediaType.parse("image/*"), imageBytes)
-                )
+                .addFormDataPart("image", file.getName(), imageBody)
                 .build();
 
         // Armamos la petición con cabecera de autenticación (Client-ID)
@@ -105,30 +80,48 @@ public class ImgurApiClient {
             @Override
             public void onFailure(Call call, IOException e) {
                 Log.e(TAG, "Failed to upload image to Imgur: " + e.getMessage(), e);
-                callback.onFailure("Failed to upload image: " + e.getMessage());
+                callback.onFailure("Failed to upload image: " + e.getMessage(), true);
             }
 
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                // Si la respuesta no fue exitosa, logueamos y notificamos el fallo
-                if (!response.isSuccessful()) {
-                    String errorBody = response.body() != null ? response.body().string() : "No error body";
-                    Log.e(TAG, "Imgur API error: " + response.code() + " - " + response.message() + " - " + errorBody);
-                    callback.onFailure("Imgur API error: " + response.code() + " - " + response.message());
-                    return;
+            public void onResponse(Call call, Response response) {
+                // Se decide qué contestar dentro del try y se avisa fuera: si leer el cuerpo
+                // falla, OkHttp solo lo registraría y la cola se quedaría esperando para siempre
+                String imageUrl = null;
+                String error;
+                boolean retryable = false;
+                try (Response r = response) {
+                    ResponseBody body = r.body();
+                    String responseBody = body != null ? body.string() : null;
+
+                    if (!r.isSuccessful()) {
+                        // Si la respuesta no fue exitosa, logueamos y notificamos el fallo
+                        int code = r.code();
+                        Log.e(TAG, "Imgur API error: " + code + " - " + r.message() + " - "
+                                + (responseBody != null ? responseBody : "No error body"));
+                        error = "Imgur API error: " + code + " - " + r.message();
+                        retryable = code == 408 || code == 429 || code >= 500;
+                    } else if (responseBody == null) {
+                        error = "Empty Imgur response";
+                        retryable = true;
+                    } else {
+                        Log.d(TAG, "Imgur response: " + responseBody);
+                        // Extraemos la URL de la imagen desde la respuesta
+                        imageUrl = parseImgurResponse(responseBody);
+                        error = imageUrl == null ? "Failed to parse Imgur response" : null;
+                        if (imageUrl == null) Log.e(TAG, "Failed to parse Imgur response: " + responseBody);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Conexión cortada a mitad de la respuesta: se puede reintentar
+                    Log.e(TAG, "Failed to read Imgur response: " + e.getMessage(), e);
+                    error = "Failed to read Imgur response: " + e.getMessage();
+                    retryable = true;
                 }
 
-                // Leemos el cuerpo de la respuesta (el JSON con los datos)
-                String responseBody = response.body().string();
-                Log.d(TAG, "Imgur response: " + responseBody);
-
-                // Extraemos la URL de la imagen desde la respuesta
-                String imageUrl = parseImgurResponse(responseBody);
                 if (imageUrl != null) {
                     callback.onSuccess(imageUrl);  // Éxito: devolvemos la URL al callback
                 } else {
-                    Log.e(TAG, "Failed to parse Imgur response: " + responseBody);
-                    callback.onFailure("Failed to parse Imgur response");
+                    callback.onFailure(error, retryable);
                 }
             }
         });
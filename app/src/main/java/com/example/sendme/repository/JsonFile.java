@@ -0,0 +1,72 @@
+package com.example.sendme.repository;
+
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+
+/**
+ * Un valor guardado entero como JSON en un archivo (lo usan {@link UploadQueue} y
+ * {@link UploadCache}). Con AtomicFile: si la app muere a mitad de escribir, queda lo anterior.
+ *
+ * write() convierte a JSON en el hilo que llama (así se guarda el valor de ese momento) y
+ * escribe en {@code disk}, que debería ser de un solo hilo para que las escrituras no se crucen.
+ */
+class JsonFile<T> {
+
+    private static final String TAG = "JsonFile";
+
+    private final AtomicFile file;
+    private final Type type;
+    private final Executor disk;
+    private final Gson gson = new Gson();
+
+    JsonFile(@NonNull File file, @NonNull Type type, @NonNull Executor disk) {
+        this.file = new AtomicFile(file);
+        this.type = type;
+        this.disk = disk;
+    }
+
+    /** Lo guardado, o null si no hay archivo todavía (o está roto) */
+    @Nullable
+    @WorkerThread
+    T read() {
+        try (Reader reader = new InputStreamReader(file.openRead(), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, type);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    void write(@NonNull T value) {
+        String json = gson.toJson(value, type);
+        disk.execute(() -> {
+            FileOutputStream out = null;
+            try {
+                out = file.startWrite();
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                writer.write(json);
+                writer.flush();
+                file.finishWrite(out);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to save " + file.getBaseFile().getName() + ": " + e.getMessage(), e);
+                if (out != null) file.failWrite(out);
+            }
+        });
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.sendme.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Registro central de listeners de Realtime Database.
+ *
+ * Antes cada pantalla añadía sus listeners a mano y guardaba las referencias en mapas para
+ * quitarlos luego; si algo se enganchaba dos veces (pasaba en la lista de chats) el mapa solo
+ * recordaba el último y el otro se quedaba vivo para siempre.
+ *
+ * Aquí cada ruta tiene como mucho UN listener real en Firebase, compartido por todos los que
+ * se suscriben a ella (con contador de referencias). Cuando se suelta la última suscripción
+ * se quita el listener. Los que llegan tarde reciben lo que ya había (los hijos actuales o el
+ * último valor), igual que si hubieran sido los primeros.
+ *
+ * Los contadores ({@link #getActiveListenerCount()}, {@link #getSubscriberCount()}) sirven
+ * para comprobar en tests que abrir una pantalla N veces no deja listeners colgados.
+ */
+public class ListenerRegistry {
+
+    private static ListenerRegistry instance;
+
+    /** Suscripción devuelta al que escucha. Llamar a remove() en onDestroyView (varias veces no pasa nada). */
+    public interface Registration {
+        void remove();
+    }
+
+    private final Map<String, Channel<?>> channels = new HashMap<>();
+
+    ListenerRegistry() {}
+
+    public static synchronized ListenerRegistry getInstance() {
+        if (instance == null) {
+            instance = new ListenerRegistry();
+        }
+        return instance;
+    }
+
+    /** Equivalente compartido de ref.addChildEventListener(listener) */
+    public Registration addChildEventListener(@NonNull DatabaseReference ref, @NonNull ChildEventListener listener) {
+        return subscribe("child:" + ref, () -> new ChildChannel(ref), listener);
+    }
+
+    /** Equivalente compartido de ref.addValueEventListener(listener) */
+    public Registration addValueEventListener(@NonNull DatabaseReference ref, @NonNull ValueEventListener listener) {
+        return subscribe("value:" + ref, () -> new ValueChannel(ref), listener);
+    }
+
+    /** Listeners reales enganchados ahora mismo en Firebase (uno por ruta) */
+    public synchronized int getActiveListenerCount() {
+        return channels.size();
+    }
+
+    /** Suscriptores vivos en total (varios pueden compartir el mismo listener real) */
+    public synchronized int getSubscriberCount() {
+        int total = 0;
+        for (Channel<?> channel : channels.values()) {
+            total += channel.subscriberCount();
+        }
+        return total;
+    }
+
+    /**
+     * Núcleo del registro: busca (o crea y engancha) el canal de esa clave y le añade el suscriptor.
+     * Package-private para poder probarlo con canales falsos.
+     */
+    synchronized <L> Registration subscribe(@NonNull String key, @NonNull Supplier<? extends Channel<L>> factory,
+                                            @NonNull L listener) {
+        @SuppressWarnings("unchecked")
+        Channel<L> channel = (Channel<L>) channels.get(key);
+        if (channel == null) {
+            channel = factory.get();
+            channels.put(key, channel);
+            channel.attach();
+        }
+        channel.add(listener);
+
+        final Channel<L> subscribed = channel;
+        return new Registration() {
+            private boolean removed = false;
+
+            @Override
+            public void remove() {
+                synchronized (ListenerRegistry.this) {
+                    if (removed) return;
+                    removed = true;
+                    release(key, subscribed, listener);
+                }
+            }
+        };
+    }
+
+    private <L> void release(String key, Channel<L> channel, L listener) {
+        channel.remove(listener);
+        if (channel.subscriberCount() == 0 && channels.get(key) == channel) {
+            channels.remove(key);
+            channel.detach();
+        }
+    }
+
+    /**
+     * Un listener real compartido por varios suscriptores.
+     * Las subclases enganchan/desenganchan en Firebase y reparten los eventos.
+     */
+    abstract static class Channel<L> {
+        private final List<L> subscribers = new ArrayList<>();
+
+        abstract void attach();
+
+        abstract void detach();
+
+        /** Pone al día a un suscriptor que llega cuando el canal ya estaba enganchado */
+        void replay(L listener) {}
+
+        void add(L listener) {
+            subscribers.add(listener);
+            replay(listener);
+        }
+
+        void remove(L listener) {
+            subscribers.remove(listener);
+        }
+
+        int subscriberCount() {
+            return subscribers.size();
+        }
+
+        /** Copia para poder repartir aunque alguien se desuscriba dentro del callback */
+        List<L> snapshotSubscribers() {
+            return new ArrayList<>(subscribers);
+        }
+    }
+
+    /** Canal de hijos: guarda los hijos actuales para repetírselos a los que llegan tarde */
+    private static class ChildChannel extends Channel<ChildEventListener> implements ChildEventListener {
+        private final DatabaseReference ref;
+        private final LinkedHashMap<String, DataSnapshot> children = new LinkedHashMap<>();
+
+        ChildChannel(DatabaseReference ref) {
+            this.ref = ref;
+        }
+
+        @Override
+        void attach() {
+            ref.addChildEventListener(this);
+        }
+
+        @Override
+        void detach() {
+            ref.removeEventListener(this);
+            children.clear();
+        }
+
+        @Override
+        void replay(ChildEventListener listener) {
+            String previous = null;
+            for (Map.Entry<String, DataSnapshot> entry : new ArrayList<>(children.entrySet())) {
+                listener.onChildAdded(entry.getValue(), previous);
+                previous = entry.getKey();
+            }
+        }
+
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            children.put(snapshot.getKey(), snapshot);
+            for (ChildEventListener l : snapshotSubscribers()) l.onChildAdded(snapshot, previousChildName);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            children.put(snapshot.getKey(), snapshot);
+            for (ChildEventListener l : snapshotSubscribers()) l.onChildChanged(snapshot, previousChildName);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            children.remove(snapshot.getKey());
+            for (ChildEventListener l : snapshotSubscribers()) l.onChildRemoved(snapshot);
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            for (ChildEventListener l : snapshotSubscribers()) l.onChildMoved(snapshot, previousChildName);
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            for (ChildEventListener l : snapshotSubscribers()) l.onCancelled(error);
+        }
+    }
+
+    /** Canal de valor: guarda el último snapshot para entregárselo al que llega tarde */
+    private static class ValueChannel extends Channel<ValueEventListener> implements ValueEventListener {
+        private final DatabaseReference ref;
+        private DataSnapshot last;
+
+        ValueChannel(DatabaseReference ref) {
+            this.ref = ref;
+        }
+
+        @Override
+        void attach() {
+            ref.addValueEventListener(this);
+        }
+
+        @Override
+        void detach() {
+            ref.removeEventListener(this);
+            last = null;
+        }
+
+        @Override
+        void replay(ValueEventListener listener) {
+            if (last != null) listener.onDataChange(last);
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            last = snapshot;
+            for (ValueEventListener l : snapshotSubscribers()) l.onDataChange(snapshot);
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            for (ValueEventListener l : snapshotSubscribers()) l.onCancelled(error);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.sendme.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Copia local de los mensajes en SQLite, por chat y clave del mensaje.
+ *
+ * La persistencia de Firebase (setPersistenceEnabled) guarda su caché, pero no se puede
+ * consultar y cada pantalla acababa reconstruyendo los mensajes en memoria a partir de
+ * snapshots. Con esto los chats se pintan desde disco al abrir y a Firebase solo se le
+ * pide lo nuevo (ver {@link MessageSync}).
+ *
+ * Todas las lecturas y escrituras van en {@link #getDiskExecutor()} (un solo hilo), nunca
+ * en el hilo principal.
+ */
+public class LocalMessageStore implements MessageSync.Store, GlobalSearch.Source {
+
+    private static final String DB_NAME = "sendme-messages.db";
+    private static final int DB_VERSION = 1;
+
+    private static final String TABLE = "messages";
+    private static final String COL_CHAT = "chat_id";
+    private static final String COL_KEY = "msg_key";
+    private static final String COL_SENDER = "sender";
+    private static final String COL_CONTENT = "content";
+    private static final String COL_IMAGE = "image_url";
+    private static final String COL_TIMESTAMP = "timestamp";
+
+    private static final String[] COLUMNS = {COL_KEY, COL_SENDER, COL_CONTENT, COL_IMAGE, COL_TIMESTAMP};
+
+    private static LocalMessageStore instance;
+
+    private final Helper helper;
+    private final ExecutorService disk = Executors.newSingleThreadExecutor();
+    private final Executor main;
+
+    private LocalMessageStore(Context context) {
+        helper = new Helper(context.getApplicationContext());
+        Handler handler = new Handler(Looper.getMainLooper());
+        main = handler::post;
+    }
+
+    /** Se inicializa una vez en {@link com.example.sendme.SendMeApplication} */
+    public static synchronized void init(@NonNull Context context) {
+        if (instance == null) {
+            instance = new LocalMessageStore(context);
+        }
+    }
+
+    public static synchronized LocalMessageStore getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("LocalMessageStore.init() no se ha llamado");
+        }
+        return instance;
+    }
+
+    /** Hilo único para SQLite */
+    public Executor getDiskExecutor() {
+        return disk;
+    }
+
+    /** Para volver al hilo principal con los resultados */
+    public Executor getMainExecutor() {
+        return main;
+    }
+
+    @NonNull
+    @Override
+    public List<Message> latest(@NonNull String chatId, int limit) {
+        List<Message> messages = query(COL_CHAT + " = ?", new String[]{chatId}, limit);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    @NonNull
+    @Override
+    public List<Message> before(@NonNull String chatId, @NonNull String beforeKey, int limit) {
+        List<Message> messages = query(COL_CHAT + " = ? AND " + COL_KEY + " < ?", new String[]{chatId, beforeKey}, limit);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    /** Todo lo guardado de un chat, en orden cronológico (para el índice de búsqueda) */
+    @NonNull
+    @Override
+    public List<Message> all(@NonNull String chatId) {
+        List<Message> messages = query(COL_CHAT + " = ?", new String[]{chatId}, null);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    @Nullable
+    @Override
+    public String newestKey(@NonNull String chatId) {
+        try (Cursor c = helper.getReadableDatabase().query(TABLE, new String[]{COL_KEY},
+                COL_CHAT + " = ?", new String[]{chatId}, null, null, COL_KEY + " DESC", "1")) {
+            return c.moveToFirst() ? c.getString(0) : null;
+        }
+    }
+
+    /** Lo guardado después de {@code afterKey}, en orden cronológico */
+    @NonNull
+    @Override
+    public List<Message> after(@NonNull String chatId, @NonNull String afterKey) {
+        List<Message> messages = query(COL_CHAT + " = ? AND " + COL_KEY + " > ?", new String[]{chatId, afterKey}, null);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    @Override
+    public int count(@NonNull String chatId) {
+        return (int) DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), TABLE, COL_CHAT + " = ?", new String[]{chatId});
+    }
+
+    /** Chats con algo guardado, del que tiene el mensaje más reciente al más antiguo */
+    @NonNull
+    @Override
+    public List<String> chatIds() {
+        List<String> chatIds = new ArrayList<>();
+        try (Cursor c = helper.getReadableDatabase().rawQuery("SELECT " + COL_CHAT + " FROM " + TABLE
+                + " GROUP BY " + COL_CHAT + " ORDER BY MAX(" + COL_KEY + ") DESC", null)) {
+            while (c.moveToNext()) chatIds.add(c.getString(0));
+        }
+        return chatIds;
+    }
+
+    @Override
+    public void putAll(@NonNull String chatId, @NonNull List<Message> messages) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Message message : messages) {
+                if (message.getId() == null) continue;
+                values.clear();
+                values.put(COL_CHAT, chatId);
+                values.put(COL_KEY, message.getId());
+                values.put(COL_SENDER, message.getSender());
+                values.put(COL_CONTENT, message.getContent());
+                values.put(COL_IMAGE, message.getImageUrl());
+                values.put(COL_TIMESTAMP, message.getTimestamp());
+                db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Borra todo (al cerrar sesión, para que otro usuario no vea los mensajes del anterior) */
+    public void clear() {
+        disk.execute(() -> helper.getWritableDatabase().delete(TABLE, null, null));
+    }
+
+    /** Las más nuevas primero (el índice es (chat, clave), así que es un recorrido del índice al revés) */
+    private List<Message> query(String selection, String[] args, @Nullable Integer limit) {
+        List<Message> messages = new ArrayList<>();
+        try (Cursor c = helper.getReadableDatabase().query(TABLE, COLUMNS, selection, args,
+                null, null, COL_KEY + " DESC", limit != null ? String.valueOf(limit) : null)) {
+            while (c.moveToNext()) {
+                Message message = new Message(c.getString(1), c.getString(2), c.getString(3), c.getLong(4));
+                message.setId(c.getString(0));
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private static class Helper extends SQLiteOpenHelper {
+        Helper(Context context) {
+            super(context, DB_NAME, null, DB_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE + " ("
+                    + COL_CHAT + " TEXT NOT NULL, "
+                    + COL_KEY + " TEXT NOT NULL, "
+                    + COL_SENDER + " TEXT, "
+                    + COL_CONTENT + " TEXT, "
+                    + COL_IMAGE + " TEXT, "
+                    + COL_TIMESTAMP + " INTEGER NOT NULL, "
+                    + "PRIMARY KEY (" + COL_CHAT + ", " + COL_KEY + ")) WITHOUT ROWID");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // Es solo una caché: se puede tirar y volver a sincronizar
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+            onCreate(db);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.sendme.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carga paginada de los mensajes de un chat.
+ *
+ * Antes se bajaba todo "messages" de golpe, y en los grupos grandes eso son miles de nodos
+ * antes de pintar nada. Ahora la primera carga pide solo la última página (limitToLast)
+ * y, cuando el usuario sube en la lista, se piden las anteriores con endBefore(clave más antigua).
+ *
+ * Ordeno por clave y no por timestamp: las push keys de Firebase ya son cronológicas y únicas,
+ * así que sirven de cursor sin empates (dos mensajes pueden compartir milisegundo).
+ */
+public class MessagePager {
+
+    /** Tamaño de página por defecto si no se indica otro */
+    public static final int DEFAULT_PAGE_SIZE = 30;
+
+    /**
+     * Origen de las páginas. En la app es Realtime Database, pero lo dejo como interfaz
+     * para poder probar el paginador sin Firebase.
+     */
+    public interface PageSource {
+        /**
+         * Devuelve como mucho {@code limit} mensajes, ordenados de más antiguo a más nuevo,
+         * cuya clave sea anterior a {@code endBeforeKey} (o los últimos si es null).
+         */
+        void fetchPage(@Nullable String endBeforeKey, int limit, @NonNull PageCallback callback);
+    }
+
+    /** Callback con una página ya deserializada (orden cronológico) */
+    public interface PageCallback {
+        void onPage(@NonNull List<Message> messages);
+        void onError(@NonNull String error);
+    }
+
+    private final PageSource source;
+    private final int pageSize;
+
+    private String oldestKey;   // Cursor para pedir la página anterior
+    private String newestKey;   // Último mensaje cargado
+    private boolean hasMore = true;
+    private boolean loading = false;
+
+    /** Paginador sobre la referencia de mensajes de un chat */
+    public MessagePager(@NonNull DatabaseReference messagesRef, int pageSize) {
+        this(firebaseSource(messagesRef), pageSize);
+    }
+
+    public MessagePager(@NonNull PageSource source, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize debe ser mayor que 0");
+        }
+        this.source = source;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Primera carga: solo la última página. Reinicia los cursores.
+     */
+    public void loadInitial(@NonNull PageCallback callback) {
+        oldestKey = null;
+        newestKey = null;
+        hasMore = true;
+        fetch(null, callback);
+    }
+
+    /**
+     * Pide la página anterior a la más antigua que tenemos.
+     *
+     * @return false si no se lanzó la petición (ya hay una en curso o no quedan más mensajes)
+     */
+    public boolean loadOlder(@NonNull PageCallback callback) {
+        if (loading || !hasMore || oldestKey == null) return false;
+        fetch(oldestKey, callback);
+        return true;
+    }
+
+    private void fetch(@Nullable String endBeforeKey, @NonNull PageCallback callback) {
+        loading = true;
+        source.fetchPage(endBeforeKey, pageSize, new PageCallback() {
+            @Override
+            public void onPage(@NonNull List<Message> messages) {
+                loading = false;
+                // Si llega una página incompleta es que ya no hay nada más atrás
+                hasMore = messages.size() >= pageSize;
+
+                if (!messages.isEmpty()) {
+                    oldestKey = messages.get(0).getId();
+                    if (endBeforeKey == null) {
+                        newestKey = messages.get(messages.size() - 1).getId();
+                    }
+                }
+                callback.onPage(messages);
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                loading = false;
+                callback.onError(error);
+            }
+        });
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Nullable
+    public String getOldestKey() {
+        return oldestKey;
+    }
+
+    @Nullable
+    public String getNewestKey() {
+        return newestKey;
+    }
+
+    /**
+     * Implementación de {@link PageSource} sobre Realtime Database:
+     * orderByKey() + endBefore(cursor) + limitToLast(limit).
+     */
+    public static PageSource firebaseSource(@NonNull DatabaseReference messagesRef) {
+        return (endBeforeKey, limit, callback) -> {
+            Query query = messagesRef.orderByKey();
+            if (endBeforeKey != null) {
+                query = query.endBefore(endBeforeKey);
+            }
+
+            query.limitToLast(limit).addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    List<Message> page = new ArrayList<>((int) snapshot.getChildrenCount());
+                    for (DataSnapshot snap : snapshot.getChildren()) {
+                        Message msg = snap.getValue(Message.class);
+                        if (msg != null) {
+                            if (msg.getId() == null) msg.setId(snap.getKey());
+                            page.add(msg);
+                        }
+                    }
+                    callback.onPage(page);
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    callback.onError(error.getMessage());
+                }
+            });
+        };
+    }
+}
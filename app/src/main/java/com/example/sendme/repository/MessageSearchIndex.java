@@ -0,0 +1,403 @@
+package com.example.sendme.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Índice invertido de los mensajes de un chat: término → claves de los mensajes que lo contienen.
+ *
+ * Sustituye al recorrido de toda la lista con toLowerCase().contains() en cada tecla.
+ * Los términos son palabras en minúsculas y sin tildes ("Canción" → "cancion"). En la
+ * consulta todas las palabras tienen que aparecer y la última vale como prefijo, para que
+ * vaya encontrando mientras se escribe ("hola mu" encuentra "Hola, muy buenas").
+ *
+ * Cada mensaje tiene un número interno asignado en el orden de sus claves (push keys, o sea,
+ * cronológico), y cada término guarda un array ordenado de esos números. Así las listas se
+ * recorren del más reciente al más antiguo sin ordenar nada, y comprobar si un mensaje tiene
+ * otra palabra es una búsqueda binaria de enteros. Si llega un mensaje más antiguo que el
+ * último indexado (páginas anteriores), los números se rehacen una vez antes de la siguiente
+ * consulta.
+ *
+ * No es thread-safe: cada índice lo toca un solo hilo a la vez (ver {@link GlobalSearch}).
+ */
+public class MessageSearchIndex {
+
+    /** Hasta cuántos términos de un prefijo se recorren en paralelo; con más se miran los términos del mensaje */
+    private static final int MAX_PREFIX_WALKERS = 16;
+
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private final Map<String, Integer> idByKey = new HashMap<>();
+    private ArrayList<String> keys = new ArrayList<>();          // número → clave
+    private ArrayList<Message> messages = new ArrayList<>();     // número → mensaje
+    private ArrayList<String[]> termsById = new ArrayList<>();   // número → sus términos
+    private boolean ordered = true;                              // Números en el mismo orden que las claves
+
+    /** Añade (o reemplaza, si ya estaba) un mensaje. Los de solo imagen no tienen nada que indexar. */
+    public void add(@NonNull Message message) {
+        String key = message.getId();
+        if (key == null) return;
+
+        String[] terms = tokenize(message.getContent()).toArray(new String[0]);
+        Integer existing = idByKey.get(key);
+        int id;
+        if (existing != null) {
+            id = existing;
+            for (String term : termsById.get(id)) {
+                Postings ids = postings.get(term);
+                if (ids != null && ids.remove(id) && ids.size == 0) postings.remove(term);
+            }
+            messages.set(id, message);
+            termsById.set(id, terms);
+        } else {
+            id = keys.size();
+            if (id > 0 && key.compareTo(keys.get(id - 1)) < 0) ordered = false;
+            idByKey.put(key, id);
+            keys.add(key);
+            messages.add(message);
+            termsById.add(terms);
+        }
+
+        for (String term : terms) {
+            Postings ids = postings.get(term);
+            if (ids == null) {
+                ids = new Postings();
+                postings.put(term, ids);
+            }
+            ids.insert(id);
+        }
+    }
+
+    public void addAll(@NonNull Collection<Message> batch) {
+        for (Message message : batch) add(message);
+    }
+
+    @Nullable
+    public Message get(@NonNull String key) {
+        Integer id = idByKey.get(key);
+        return id != null ? messages.get(id) : null;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Claves de los mensajes que cumplen la consulta, del más reciente al más antiguo.
+     *
+     * @param limit como mucho cuántas (se deja de buscar al llegar)
+     */
+    @NonNull
+    public List<String> search(@NonNull String query, int limit) {
+        List<String> words = new ArrayList<>(tokenize(query));
+        if (words.isEmpty() || limit <= 0) return Collections.emptyList();
+        if (!ordered) renumber();
+
+        String prefix = words.remove(words.size() - 1);
+        SortedMap<String, Postings> expansion = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (expansion.isEmpty()) return Collections.emptyList();
+
+        // Las palabras completas tienen que estar tal cual: si alguna no existe, no hay resultados
+        List<Postings> required = new ArrayList<>(words.size() + 1);
+        for (String word : words) {
+            Postings ids = postings.get(word);
+            if (ids == null) return Collections.emptyList();
+            required.add(ids);
+        }
+        // Un prefijo que solo corresponde a un término es como una palabra completa más
+        if (expansion.size() == 1) required.add(expansion.values().iterator().next());
+
+        if (required.isEmpty()) {
+            // Solo el prefijo: basta con unir sus listas, ya está todo comprobado
+            List<String> result = new ArrayList<>();
+            IdCursor candidates = newestFirst(expansion);
+            int id;
+            while (result.size() < limit && (id = candidates.next()) >= 0) result.add(keys.get(id));
+            return result;
+        }
+
+        // Se recorre la lista más corta de la más reciente hacia atrás y las demás avanzan a la
+        // vez (los candidatos van bajando, así que cada lista se recorre como mucho una vez)
+        Postings smallest = required.get(0);
+        for (Postings ids : required) if (ids.size < smallest.size) smallest = ids;
+        List<Walker> others = new ArrayList<>(required.size());
+        for (Postings ids : required) if (ids != smallest) others.add(new Walker(ids));
+
+        List<Walker> anyOf = null;      // El mensaje tiene que estar en alguna de estas (el prefijo)
+        boolean scanTerms = false;      // Prefijo demasiado corto: se miran los términos del mensaje
+        if (expansion.size() > 1) {
+            if (expansion.size() <= MAX_PREFIX_WALKERS) {
+                anyOf = new ArrayList<>(expansion.size());
+                for (Postings ids : expansion.values()) anyOf.add(new Walker(ids));
+            } else {
+                scanTerms = true;
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        IdCursor candidates = smallest.newestFirst();
+        int id;
+        while (result.size() < limit && (id = candidates.next()) >= 0) {
+            if (!allHave(others, id)) continue;
+            if (anyOf != null && !anyHas(anyOf, id)) continue;
+            if (scanTerms && !hasTermWithPrefix(termsById.get(id), prefix)) continue;
+            result.add(keys.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Lo mismo que {@link #search} pero para un único texto, sin índice
+     * (para decidir si un mensaje nuevo entra en los resultados que ya se muestran).
+     */
+    public static boolean matches(@Nullable String content, @NonNull String query) {
+        List<String> words = new ArrayList<>(tokenize(query));
+        if (words.isEmpty()) return true;
+
+        Set<String> terms = tokenize(content);
+        String prefix = words.remove(words.size() - 1);
+        return terms.containsAll(words) && hasTermWithPrefix(terms.toArray(new String[0]), prefix);
+    }
+
+    /**
+     * Palabras de una consulta tal y como se buscan (minúsculas, sin tildes, sin repetir); la
+     * última vale como prefijo. Es lo que recibe {@link #highlightRanges}.
+     */
+    @NonNull
+    public static String[] queryTerms(@Nullable String query) {
+        return tokenize(query).toArray(new String[0]);
+    }
+
+    /**
+     * Qué resaltar de {@code content} para una consulta ya pasada por {@link #queryTerms}: las
+     * palabras del texto que coinciden con alguna de la consulta, o que empiezan por la última,
+     * igual que en la búsqueda ("cancion" resalta "Canción", pero "sol" no resalta "girasol").
+     * Pares inicio/fin (fin exclusivo) sobre el texto original, en orden.
+     */
+    @NonNull
+    public static int[] highlightRanges(@Nullable String content, @NonNull String[] queryTerms) {
+        if (content == null || content.isEmpty() || queryTerms.length == 0) return new int[0];
+
+        String prefix = queryTerms[queryTerms.length - 1];
+        int[] ranges = new int[8];
+        int count = 0;
+        int i = 0;
+        while (i < content.length()) {
+            // Una palabra como las de tokenize: letras y dígitos, con sus tildes si van sueltas
+            if (!isWordChar(content.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < content.length() && isWordChar(content.charAt(i))) i++;
+
+            Set<String> folded = tokenize(content.substring(start, i));
+            if (folded.isEmpty()) continue; // Solo tildes sueltas
+            String term = folded.iterator().next();
+            if (term.startsWith(prefix) || indexOf(queryTerms, term) >= 0) {
+                if (count == ranges.length) ranges = Arrays.copyOf(ranges, count * 2);
+                ranges[count++] = start;
+                ranges[count++] = i;
+            }
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || Character.getType(c) == Character.NON_SPACING_MARK;
+    }
+
+    private static int indexOf(String[] terms, String term) {
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i].equals(term)) return i;
+        }
+        return -1;
+    }
+
+    /** Palabras en minúsculas y sin tildes, sin repetir y en orden de aparición */
+    @NonNull
+    static Set<String> tokenize(@Nullable String text) {
+        if (text == null || text.isEmpty()) return Collections.emptySet();
+
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        Set<String> terms = new LinkedHashSet<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue; // Tildes y diéresis
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (current.length() > 0) {
+                terms.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) terms.add(current.toString());
+        return terms;
+    }
+
+    private static boolean allHave(List<Walker> walkers, int id) {
+        for (Walker walker : walkers) {
+            if (!walker.has(id)) return false;
+        }
+        return true;
+    }
+
+    private static boolean anyHas(List<Walker> walkers, int id) {
+        for (Walker walker : walkers) {
+            if (walker.has(id)) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasTermWithPrefix(@Nullable String[] terms, String prefix) {
+        if (terms == null) return false;
+        for (String term : terms) {
+            if (term.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /** Vuelve a numerar los mensajes en orden de clave (tras indexar alguno más antiguo) */
+    private void renumber() {
+        int n = keys.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparing(keys::get));
+
+        int[] newId = new int[n];
+        ArrayList<String> sortedKeys = new ArrayList<>(n);
+        ArrayList<Message> sortedMessages = new ArrayList<>(n);
+        ArrayList<String[]> sortedTerms = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int old = order[i];
+            newId[old] = i;
+            sortedKeys.add(keys.get(old));
+            sortedMessages.add(messages.get(old));
+            sortedTerms.add(termsById.get(old));
+            idByKey.put(keys.get(old), i);
+        }
+        keys = sortedKeys;
+        messages = sortedMessages;
+        termsById = sortedTerms;
+
+        for (Postings ids : postings.values()) ids.remap(newId);
+        ordered = true;
+    }
+
+    /**
+     * Une las listas de todos los términos que empiezan por el prefijo, del número mayor al
+     * menor y sin repetir. Es perezoso: si solo hacen falta 50 resultados, solo se sacan 50.
+     */
+    private static IdCursor newestFirst(SortedMap<String, Postings> expansion) {
+        if (expansion.isEmpty()) return () -> -1;
+        if (expansion.size() == 1) return expansion.values().iterator().next().newestFirst();
+
+        PriorityQueue<Head> heads = new PriorityQueue<>(expansion.size());
+        for (Postings ids : expansion.values()) {
+            if (ids.size > 0) heads.add(new Head(ids));
+        }
+
+        return () -> {
+            if (heads.isEmpty()) return -1;
+            int id = heads.peek().id();
+            // Saca el mismo mensaje de todas las listas donde esté (uno con "hola" y "holi")
+            while (!heads.isEmpty() && heads.peek().id() == id) {
+                Head head = heads.poll();
+                if (--head.position >= 0) heads.add(head);
+            }
+            return id;
+        };
+    }
+
+    /** Siguiente número de mensaje, o -1 si no hay más */
+    private interface IdCursor {
+        int next();
+    }
+
+    /** Números de mensaje de un término, ordenados de menor a mayor */
+    private static class Postings {
+        int[] ids = new int[4];
+        int size = 0;
+
+        /** Casi siempre es el mayor (mensaje nuevo), así que normalmente es añadir al final */
+        void insert(int id) {
+            int at = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0 && at < size) return; // Ya estaba
+            if (at < 0) at = -at - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) return false;
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        void remap(int[] newId) {
+            for (int i = 0; i < size; i++) ids[i] = newId[ids[i]];
+            Arrays.sort(ids, 0, size);
+        }
+
+        IdCursor newestFirst() {
+            int[] position = {size};
+            return () -> --position[0] >= 0 ? ids[position[0]] : -1;
+        }
+    }
+
+    /** Recorre una lista hacia atrás para comprobar candidatos cada vez menores */
+    private static class Walker {
+        final Postings postings;
+        int position;
+
+        Walker(Postings postings) {
+            this.postings = postings;
+            this.position = postings.size - 1;
+        }
+
+        boolean has(int id) {
+            while (position >= 0 && postings.ids[position] > id) position--;
+            return position >= 0 && postings.ids[position] == id;
+        }
+    }
+
+    private static class Head implements Comparable<Head> {
+        final Postings postings;
+        int position;
+
+        Head(Postings postings) {
+            this.postings = postings;
+            this.position = postings.size - 1;
+        }
+
+        int id() {
+            return postings.ids[position];
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            return Integer.compare(other.id(), id()); // El mayor primero
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.sendme.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Suscripción única a los mensajes de un chat.
+ *
+ * Antes cada pantalla hacía una lectura completa y luego añadía un ChildEventListener
+ * que volvía a mandar todos los hijos existentes (y había que descartarlos con una lista
+ * de IDs ya mostrados). Aquí la idea es: primero lo que ya hay en la copia local
+ * ({@link LocalMessageStore}), después solo lo que falta desde Firebase ({@link MessageSync})
+ * y, cuando llega, un listener con startAfter(última clave) que solo recibe mensajes nuevos.
+ * Así cada mensaje se descarga y se deserializa una sola vez, no una por sesión.
+ */
+public class MessageStream {
+
+    /** Eventos que recibe la pantalla de chat */
+    public interface Listener {
+        /** Última página del historial (orden cronológico): la local si hay, si no la de Firebase */
+        void onInitialPage(@NonNull List<Message> messages);
+
+        /**
+         * Mensajes nuevos posteriores a la página inicial (incluidos los que envío yo), en orden.
+         * Lo que faltaba al abrir llega todo junto en una sola llamada; en tiempo real, de uno en uno.
+         */
+        void onNewMessages(@NonNull List<Message> messages);
+
+        void onError(@NonNull String error);
+    }
+
+    private final DatabaseReference messagesRef;
+    private final MessageSync sync;
+    private final int pageSize;
+
+    private Query liveQuery;
+    private ChildEventListener liveListener;
+    private boolean stopped = false;
+
+    public MessageStream(@NonNull String chatId, @NonNull DatabaseReference messagesRef, int pageSize) {
+        this.messagesRef = messagesRef;
+        this.pageSize = pageSize;
+        LocalMessageStore store = LocalMessageStore.getInstance();
+        this.sync = new MessageSync(chatId, store, firebaseSource(messagesRef),
+                store.getDiskExecutor(), store.getMainExecutor(), pageSize);
+    }
+
+    /**
+     * Pinta lo local, trae lo que falta y después engancha el listener de mensajes nuevos.
+     */
+    public void start(@NonNull Listener listener) {
+        stopped = false;
+        sync.open(new MessageSync.Listener() {
+            @Override
+            public void onLocal(@NonNull List<Message> messages) {
+                if (stopped || messages.isEmpty()) return;
+                listener.onInitialPage(messages);
+            }
+
+            @Override
+            public void onInitialRemote(@NonNull List<Message> messages) {
+                if (stopped) return;
+                listener.onInitialPage(messages);
+            }
+
+            @Override
+            public void onDelta(@NonNull List<Message> messages) {
+                if (stopped || messages.isEmpty()) return;
+                listener.onNewMessages(messages);
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                if (stopped) return;
+                listener.onError(error);
+            }
+        }, () -> {
+            if (!stopped) listenAfter(sync.getNewestKey(), listener);
+        });
+    }
+
+    /** Página anterior a lo ya cargado (scroll hacia arriba): de local y, si no hay, de Firebase */
+    public boolean loadOlder(@NonNull MessagePager.PageCallback callback) {
+        return !stopped && sync.loadOlder(callback);
+    }
+
+    private void listenAfter(@Nullable String lastKey, @NonNull Listener listener) {
+        // Sin cursor (chat vacío, o falló la primera página) se escucha solo la última página:
+        // llega como mensajes nuevos y no se descarga todo el historial
+        liveQuery = lastKey != null
+                ? messagesRef.orderByKey().startAfter(lastKey)
+                : messagesRef.orderByKey().limitToLast(pageSize);
+
+        liveListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                Message message = snapshot.getValue(Message.class);
+                if (message == null) return;
+                if (message.getId() == null) message.setId(snapshot.getKey());
+                sync.onLiveMessage(message);
+                listener.onNewMessages(Collections.singletonList(message));
+            }
+
+            @Override public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
+            @Override public void onChildRemoved(@NonNull DataSnapshot snapshot) {}
+            @Override public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                listener.onError(error.getMessage());
+            }
+        };
+
+        liveQuery.addChildEventListener(liveListener);
+    }
+
+    /** Quita el listener en tiempo real. Llamar en onDestroyView. */
+    public void stop() {
+        stopped = true;
+        if (liveQuery != null && liveListener != null) {
+            liveQuery.removeEventListener(liveListener);
+        }
+        liveQuery = null;
+        liveListener = null;
+    }
+
+    /**
+     * Firebase como {@link MessageSync.RemoteSource}: las páginas como en {@link MessagePager}
+     * y el delta con orderByKey().startAfter(última clave guardada).
+     */
+    private static MessageSync.RemoteSource firebaseSource(@NonNull DatabaseReference messagesRef) {
+        MessagePager.PageSource pages = MessagePager.firebaseSource(messagesRef);
+        return new MessageSync.RemoteSource() {
+            @Override
+            public void fetchPage(@Nullable String endBeforeKey, int limit, @NonNull MessagePager.PageCallback callback) {
+                pages.fetchPage(endBeforeKey, limit, callback);
+            }
+
+            @Override
+            public void fetchAfter(@NonNull String startAfterKey, @NonNull MessagePager.PageCallback callback) {
+                // get() va al servidor (la caché de persistencia podría estar atrasada)
+                messagesRef.orderByKey().startAfter(startAfterKey).get()
+                        .addOnSuccessListener(snapshot -> {
+                            List<Message> delta = new ArrayList<>((int) snapshot.getChildrenCount());
+                            for (DataSnapshot snap : snapshot.getChildren()) {
+                                Message msg = snap.getValue(Message.class);
+                                if (msg != null) {
+                                    if (msg.getId() == null) msg.setId(snap.getKey());
+                                    delta.add(msg);
+                                }
+                            }
+                            callback.onPage(delta);
+                        })
+                        .addOnFailureListener(e -> callback.onError(e.getMessage() != null ? e.getMessage() : "Error"));
+            }
+        };
+    }
+}
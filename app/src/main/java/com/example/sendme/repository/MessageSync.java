@@ -0,0 +1,221 @@
+package com.example.sendme.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Sincroniza los mensajes de un chat entre Realtime Database y la copia local
+ * ({@link LocalMessageStore}), que es de donde pinta la pantalla.
+ *
+ * Al abrir un chat:
+ * 1. Se lee la última página de la copia local y se pinta enseguida (sin red).
+ * 2. Si no había nada guardado, se pide la última página a Firebase y se guarda.
+ *    Si ya había, solo se piden los mensajes posteriores a la última clave guardada.
+ * 3. Desde ahí el listener en tiempo real ({@link MessageStream}) sigue añadiendo.
+ *
+ * Lo guardado es siempre un tramo continuo que acaba en el mensaje más reciente conocido
+ * (última página + deltas + páginas anteriores pedidas con endBefore), así que no hay huecos.
+ */
+public class MessageSync {
+
+    /** Copia local de los mensajes. Se llama siempre desde el hilo de disco. */
+    public interface Store {
+        /** Últimos {@code limit} mensajes del chat, en orden cronológico */
+        @NonNull
+        List<Message> latest(@NonNull String chatId, int limit);
+
+        /** Hasta {@code limit} mensajes anteriores a {@code beforeKey}, en orden cronológico */
+        @NonNull
+        List<Message> before(@NonNull String chatId, @NonNull String beforeKey, int limit);
+
+        /** Clave del mensaje más reciente guardado, o null si no hay nada */
+        @Nullable
+        String newestKey(@NonNull String chatId);
+
+        void putAll(@NonNull String chatId, @NonNull List<Message> messages);
+    }
+
+    /** Lo que hace falta pedir a Firebase */
+    public interface RemoteSource extends MessagePager.PageSource {
+        /** Todos los mensajes con clave posterior a {@code startAfterKey}, en orden cronológico */
+        void fetchAfter(@NonNull String startAfterKey, @NonNull MessagePager.PageCallback callback);
+    }
+
+    /** Eventos de la apertura de un chat (siempre en el hilo principal) */
+    public interface Listener {
+        /** Lo que ya había en local (puede venir vacío si es la primera vez) */
+        void onLocal(@NonNull List<Message> messages);
+
+        /** Primera página desde Firebase, solo si no había nada guardado */
+        void onInitialRemote(@NonNull List<Message> messages);
+
+        /** Mensajes que llegaron mientras el chat estaba cerrado */
+        void onDelta(@NonNull List<Message> messages);
+
+        void onError(@NonNull String error);
+    }
+
+    private final String chatId;
+    private final Store store;
+    private final RemoteSource remote;
+    private final Executor disk;
+    private final Executor main;
+    private final int pageSize;
+
+    private String oldestKey;     // Mensaje más antiguo entregado a la pantalla
+    private String newestKey;     // Último mensaje sincronizado (cursor del listener en tiempo real)
+    private boolean hasMoreRemote = true;
+    private boolean loadingOlder = false;
+
+    public MessageSync(@NonNull String chatId, @NonNull Store store, @NonNull RemoteSource remote,
+                       @NonNull Executor disk, @NonNull Executor main, int pageSize) {
+        this.chatId = chatId;
+        this.store = store;
+        this.remote = remote;
+        this.disk = disk;
+        this.main = main;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Pinta lo local y trae de Firebase solo lo que falta. Cuando termina, {@link #getNewestKey()}
+     * es el cursor para el listener de mensajes nuevos.
+     */
+    public void open(@NonNull Listener listener, @NonNull Runnable onSynced) {
+        disk.execute(() -> {
+            List<Message> local = store.latest(chatId, pageSize);
+            String storedNewest = store.newestKey(chatId);
+
+            main.execute(() -> {
+                if (!local.isEmpty()) {
+                    oldestKey = local.get(0).getId();
+                    newestKey = storedNewest;
+                }
+                listener.onLocal(local);
+
+                if (storedNewest == null) {
+                    fetchInitial(listener, onSynced);
+                } else {
+                    fetchDelta(storedNewest, listener, onSynced);
+                }
+            });
+        });
+    }
+
+    private void fetchInitial(@NonNull Listener listener, @NonNull Runnable onSynced) {
+        remote.fetchPage(null, pageSize, new MessagePager.PageCallback() {
+            @Override
+            public void onPage(@NonNull List<Message> page) {
+                hasMoreRemote = page.size() >= pageSize;
+                if (!page.isEmpty()) {
+                    oldestKey = page.get(0).getId();
+                    newestKey = page.get(page.size() - 1).getId();
+                    save(page);
+                }
+                listener.onInitialRemote(page);
+                onSynced.run();
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                // Sin primera página se engancha igual el tiempo real (ver MessageStream.listenAfter),
+                // si no el chat se queda congelado hasta que se vuelva a abrir
+                listener.onError(error);
+                onSynced.run();
+            }
+        });
+    }
+
+    private void fetchDelta(@NonNull String afterKey, @NonNull Listener listener, @NonNull Runnable onSynced) {
+        remote.fetchAfter(afterKey, new MessagePager.PageCallback() {
+            @Override
+            public void onPage(@NonNull List<Message> delta) {
+                if (!delta.isEmpty()) {
+                    newestKey = delta.get(delta.size() - 1).getId();
+                    save(delta);
+                    listener.onDelta(delta);
+                }
+                onSynced.run();
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                // Sin red se queda lo local; el listener en tiempo real recupera después
+                listener.onError(error);
+                onSynced.run();
+            }
+        });
+    }
+
+    /**
+     * Página anterior: primero de la copia local y, cuando se acaba, de Firebase (y se guarda).
+     *
+     * @return false si no se lanzó (ya hay una en curso o no queda nada más atrás)
+     */
+    public boolean loadOlder(@NonNull MessagePager.PageCallback callback) {
+        if (loadingOlder || oldestKey == null) return false;
+        loadingOlder = true;
+
+        String before = oldestKey;
+        disk.execute(() -> {
+            List<Message> local = store.before(chatId, before, pageSize);
+            main.execute(() -> {
+                if (!local.isEmpty()) {
+                    deliverOlder(local, callback);
+                } else if (hasMoreRemote) {
+                    fetchOlderRemote(before, callback);
+                } else {
+                    loadingOlder = false;
+                }
+            });
+        });
+        return true;
+    }
+
+    private void fetchOlderRemote(@NonNull String before, @NonNull MessagePager.PageCallback callback) {
+        remote.fetchPage(before, pageSize, new MessagePager.PageCallback() {
+            @Override
+            public void onPage(@NonNull List<Message> page) {
+                hasMoreRemote = page.size() >= pageSize;
+                save(page);
+                deliverOlder(page, callback);
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                loadingOlder = false;
+                callback.onError(error);
+            }
+        });
+    }
+
+    private void deliverOlder(@NonNull List<Message> page, @NonNull MessagePager.PageCallback callback) {
+        loadingOlder = false;
+        if (!page.isEmpty()) oldestKey = page.get(0).getId();
+        callback.onPage(page);
+    }
+
+    /** Mensaje recibido en tiempo real: se guarda y pasa a ser el nuevo cursor */
+    public void onLiveMessage(@NonNull Message message) {
+        if (message.getId() == null) return;
+        newestKey = message.getId();
+        if (oldestKey == null) oldestKey = message.getId();
+        save(Collections.singletonList(message));
+    }
+
+    private void save(@NonNull List<Message> messages) {
+        if (messages.isEmpty()) return;
+        disk.execute(() -> store.putAll(chatId, messages));
+    }
+
+    @Nullable
+    public String getNewestKey() {
+        return newestKey;
+    }
+}
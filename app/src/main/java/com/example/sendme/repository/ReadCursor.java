@@ -0,0 +1,139 @@
+package com.example.sendme.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hasta dónde ha leído un usuario en un chat: "lastReadTimestamp" y "lastReadKey" en su
+ * resumen de user-chats (ver {@link com.example.sendme.data.model.ChatSummary}).
+ *
+ * Antes cada mensaje recibido con el chat abierto hacía un setValue(0) de los no leídos,
+ * o sea, una escritura por mensaje y por cliente abierto. Ahora el chat solo avisa de lo
+ * que se ha visto ({@link #markRead}) y el cursor se escribe como mucho una vez cada
+ * {@link #DEBOUNCE_MS}, y al salir de la pantalla ({@link #flush}).
+ *
+ * Las claves son push keys (cronológicas), así que "más nuevo" = clave mayor.
+ * Se usa desde el hilo principal.
+ */
+public class ReadCursor {
+
+    private static final String TAG = "ReadCursor";
+
+    /** Como mucho una escritura del cursor cada tanto tiempo mientras llegan mensajes */
+    public static final long DEBOUNCE_MS = 5_000;
+
+    /** Dónde se escribe el cursor (update multi-path desde la raíz) */
+    interface Writer {
+        void write(@NonNull Map<String, Object> updates);
+    }
+
+    /** Temporizador del debounce (en la app, un Handler del hilo principal) */
+    interface Scheduler {
+        void schedule(@NonNull Runnable task, long delayMs);
+        void cancel(@NonNull Runnable task);
+    }
+
+    private final String uid;
+    private final String chatId;
+    private final Writer writer;
+    private final Scheduler scheduler;
+    private final long debounceMs;
+
+    private String seenKey;         // Último mensaje visto en pantalla
+    private long seenTimestamp;
+    private String writtenKey;      // Último cursor que ya está en el servidor
+    private boolean scheduled = false;
+    private long writes = 0;
+
+    private final Runnable flushTask = this::flush;
+
+    public ReadCursor(@NonNull String uid, @NonNull String chatId) {
+        this(uid, chatId, firebaseWriter(), mainThreadScheduler(), DEBOUNCE_MS);
+    }
+
+    ReadCursor(@NonNull String uid, @NonNull String chatId, @NonNull Writer writer,
+               @NonNull Scheduler scheduler, long debounceMs) {
+        this.uid = uid;
+        this.chatId = chatId;
+        this.writer = writer;
+        this.scheduler = scheduler;
+        this.debounceMs = debounceMs;
+    }
+
+    /**
+     * El usuario ha visto este mensaje. Los míos no generan escritura: el propio envío
+     * ya mueve mi cursor (ver {@link ChatSummaries#sendUpdates}).
+     */
+    public void markRead(@NonNull Message message) {
+        String key = message.getId();
+        if (key == null || !isNewer(key, seenKey)) return;
+
+        seenKey = key;
+        seenTimestamp = message.getTimestamp();
+
+        if (uid.equals(message.getSender())) {
+            // Lo escribió el envío; si no había nada pendiente, no hay que hacer nada más
+            if (!scheduled) writtenKey = key;
+            return;
+        }
+
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.schedule(flushTask, debounceMs);
+        }
+    }
+
+    /** Escribe ya el cursor si hay algo visto que aún no está en el servidor (al salir del chat) */
+    public void flush() {
+        if (scheduled) {
+            scheduler.cancel(flushTask);
+            scheduled = false;
+        }
+        if (seenKey == null || !isNewer(seenKey, writtenKey)) return;
+
+        Map<String, Object> updates = new HashMap<>();
+        ChatSummaries.putReadCursor(updates, uid, chatId, seenTimestamp, seenKey);
+        writer.write(updates);
+        writtenKey = seenKey;
+        writes++;
+    }
+
+    /** Escrituras del cursor hechas (para medir) */
+    public long getWriteCount() {
+        return writes;
+    }
+
+    private static boolean isNewer(@Nullable String key, @Nullable String than) {
+        if (key == null) return false;
+        return than == null || key.compareTo(than) > 0;
+    }
+
+    private static Writer firebaseWriter() {
+        return updates -> FirebaseManager.getInstance().getDatabase().getReference().updateChildren(updates)
+                .addOnFailureListener(e -> Log.e(TAG, "Error guardando cursor de lectura: " + e.getMessage()));
+    }
+
+    private static Scheduler mainThreadScheduler() {
+        Handler handler = new Handler(Looper.getMainLooper());
+        return new Scheduler() {
+            @Override
+            public void schedule(@NonNull Runnable task, long delayMs) {
+                handler.postDelayed(task, delayMs);
+            }
+
+            @Override
+            public void cancel(@NonNull Runnable task) {
+                handler.removeCallbacks(task);
+            }
+        };
+    }
+}
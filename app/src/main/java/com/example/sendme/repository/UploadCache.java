@@ -0,0 +1,202 @@
+package com.example.sendme.repository;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Imágenes ya subidas, por el hash de sus bytes: hash (SHA-256) → URL en Imgur.
+ *
+ * Se calcula sobre la imagen ya preparada por {@link ImagePreprocessor}, así que la misma foto
+ * enviada a otro chat (o elegida otra vez como avatar) da el mismo hash y {@link UploadQueue}
+ * la resuelve sin pasar por la red. Se guardan como mucho {@link #MAX_ENTRIES}; al llenarse se
+ * olvida la que lleva más tiempo sin usarse. Se guarda en un JSON junto con los aciertos y
+ * fallos, que se pueden consultar con {@link #getHits()} y {@link #getMisses()}. Las consultas
+ * no escriben el archivo cada vez: se guardan junto con la siguiente imagen nueva o cada
+ * {@link #LOOKUPS_PER_SAVE} (si la app muere antes, se pierden solo esas últimas).
+ *
+ * Se puede usar desde cualquier hilo; la primera consulta lee el archivo (mejor en segundo plano).
+ */
+public class UploadCache {
+
+    static final int MAX_ENTRIES = 500;
+
+    private static final String FILE = "upload_cache.json";
+
+    /** Cada cuántas consultas sin put() se guardan los contadores y el orden */
+    static final int LOOKUPS_PER_SAVE = 20;
+
+    /** Lo que se guarda en disco */
+    static class Snapshot {
+        LinkedHashMap<String, String> urls = new LinkedHashMap<>(); // De la menos a la más usada
+        long hits;
+        long misses;
+    }
+
+    /** Dónde se guarda la caché. load() puede leer de disco. */
+    interface Store {
+        @NonNull
+        Snapshot load();
+
+        void save(@NonNull Snapshot snapshot);
+    }
+
+    private static UploadCache instance;
+
+    private final Store store;
+    private final int maxEntries;
+    private final LinkedHashMap<String, String> urls;
+    private boolean loaded = false;
+    private long hits;
+    private long misses;
+    private int unsavedLookups = 0; // Consultas desde el último guardado
+
+    UploadCache(@NonNull Store store, int maxEntries) {
+        this.store = store;
+        this.maxEntries = maxEntries;
+        // accessOrder: cada get() la pasa al final, así la primera es la menos usada
+        this.urls = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > UploadCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** Se inicializa una vez en {@link com.example.sendme.SendMeApplication} */
+    public static synchronized void init(@NonNull Context context) {
+        if (instance == null) {
+            instance = new UploadCache(new FileStore(new File(context.getFilesDir(), FILE),
+                    Executors.newSingleThreadExecutor()), MAX_ENTRIES);
+        }
+    }
+
+    public static synchronized UploadCache getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("UploadCache.init() no se ha llamado");
+        }
+        return instance;
+    }
+
+    /** URL de una imagen con este hash ya subida, o null. Cuenta como acierto o fallo. */
+    @Nullable
+    public synchronized String get(@NonNull String hash) {
+        load();
+        String url = urls.get(hash);
+        if (url != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        // Una consulta solo cambia contadores y orden: no vale reescribir todo el JSON por eso.
+        // Se guarda con el siguiente put() (tras un fallo suele venir la subida) o cada tantas.
+        if (++unsavedLookups >= LOOKUPS_PER_SAVE) save();
+        return url;
+    }
+
+    /** Apunta una imagen recién subida */
+    public synchronized void put(@NonNull String hash, @NonNull String url) {
+        load();
+        urls.put(hash, url);
+        save();
+    }
+
+    /** Veces que una imagen ya estaba subida (desde que se instaló la app) */
+    public synchronized long getHits() {
+        load();
+        return hits;
+    }
+
+    /** Veces que hubo que subirla */
+    public synchronized long getMisses() {
+        load();
+        return misses;
+    }
+
+    public synchronized int size() {
+        load();
+        return urls.size();
+    }
+
+    /** Lee lo guardado si no se ha hecho ya */
+    @WorkerThread
+    synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+        Snapshot snapshot = store.load();
+        // Se insertan en el orden guardado; si ahora caben menos, se pierden las menos usadas
+        urls.putAll(snapshot.urls);
+        hits = snapshot.hits;
+        misses = snapshot.misses;
+    }
+
+    private void save() {
+        unsavedLookups = 0;
+        Snapshot snapshot = new Snapshot();
+        snapshot.urls = new LinkedHashMap<>(urls);
+        snapshot.hits = hits;
+        snapshot.misses = misses;
+        store.save(snapshot);
+    }
+
+    /** SHA-256 del archivo en hexadecimal */
+    @NonNull
+    @WorkerThread
+    static String sha256(@NonNull File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Siempre existe en Android
+        }
+
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) digest.update(buffer, 0, read);
+        }
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /** La caché en un JSON, escrito entero en cada guardado desde un hilo aparte */
+    static class FileStore implements Store {
+        private final JsonFile<Snapshot> file;
+
+        FileStore(@NonNull File file, @NonNull Executor disk) {
+            this.file = new JsonFile<>(file, Snapshot.class, disk);
+        }
+
+        @NonNull
+        @Override
+        public Snapshot load() {
+            Snapshot snapshot = file.read();
+            // No hay archivo todavía (o está roto): caché vacía
+            if (snapshot == null) return new Snapshot();
+            if (snapshot.urls == null) snapshot.urls = new LinkedHashMap<>();
+            return snapshot;
+        }
+
+        @Override
+        public void save(@NonNull Snapshot snapshot) {
+            file.write(snapshot);
+        }
+    }
+}
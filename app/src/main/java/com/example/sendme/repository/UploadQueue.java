@@ -0,0 +1,563 @@
+package com.example.sendme.repository;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Cola de subidas de imágenes de toda la app, guardada en disco.
+ *
+ * Las pantallas no suben nada directamente: piden la subida con {@link #enqueue} indicando a
+ * quién va dirigido el resultado (un "owner", p. ej. {@code chat/<chatId>}) y se apuntan con
+ * {@link #observe} mientras están vivas. Si la subida acaba sin nadie escuchando (se ha girado
+ * la pantalla, se ha salido del chat, la app se ha cerrado) el resultado se guarda y se entrega
+ * a la siguiente pantalla de ese owner que se apunte. Nunca se llama a una pantalla muerta.
+ *
+ * Como mucho {@link #setMaxParallel} subidas a la vez; los fallos de red o del servidor se
+ * reintentan con espera exponencial y los demás (o tras {@link #MAX_ATTEMPTS}) se entregan
+ * como error. La lista de subidas se guarda en un JSON al cambiar, y al arrancar se retoman
+ * las que quedaran a medias (la imagen ya preparada está en un archivo propio de la app).
+ *
+ * Antes de subir nada se mira en {@link UploadCache} si esos mismos bytes ya se subieron: si
+ * es así el resultado se entrega al momento, sin red.
+ *
+ * Lo que no puede esperar a que vuelva la pantalla (enviar el mensaje de una imagen de chat)
+ * lo hace un {@link Completion} registrado por tipo de owner, en cuanto termina la subida. El
+ * listener de la pantalla solo se entera para enseñar el progreso y el resultado.
+ *
+ * Todo el estado vive en el hilo principal.
+ */
+public class UploadQueue {
+
+    private static final String TAG = "UploadQueue";
+
+    static final int DEFAULT_MAX_PARALLEL = 2;
+    static final int MAX_ATTEMPTS = 6;
+    static final long BASE_DELAY_MS = 2_000;
+    static final long MAX_DELAY_MS = 5 * 60_000;
+
+    /** Resultados que nadie ha recogido en este tiempo se descartan al arrancar */
+    static final long RESULT_TTL_MS = 7 * 24 * 60 * 60_000L;
+
+    private static final String FILE = "upload_queue.json";
+
+    /** Lo que le llega a la pantalla dueña de una subida (en el hilo principal) */
+    public interface Listener {
+        /** total es -1 si no se sabe */
+        void onProgress(@NonNull String uploadId, long sent, long total);
+
+        void onUploaded(@NonNull String uploadId, @NonNull String imageUrl);
+
+        void onFailed(@NonNull String uploadId, @NonNull String error);
+    }
+
+    /**
+     * Qué hacer con una subida terminada, haya o no pantalla (en el hilo principal). Se llama
+     * una sola vez por subida, también si terminó justo antes de cerrarse la app.
+     */
+    public interface Completion {
+        /** {@code sender}: quien la pidió, si se indicó en {@link #enqueue} */
+        void onUploaded(@NonNull String owner, @Nullable String sender, @NonNull String imageUrl);
+    }
+
+    /** Dónde se guardan las subidas. load() se llama fuera del hilo principal. */
+    interface Store {
+        @NonNull
+        List<Job> load();
+
+        /** Copia de la lista en ese momento; se escribe donde la implementación quiera */
+        void save(@NonNull List<Job> jobs);
+    }
+
+    /** Sube un archivo; los callbacks pueden llegar desde cualquier hilo */
+    interface Uploader {
+        void upload(@NonNull File file, @NonNull String mimeType, @NonNull ImgurApiClient.UploadCallback callback);
+    }
+
+    /** Reloj y temporizador del hilo principal (para las esperas entre reintentos) */
+    interface Scheduler {
+        long now();
+
+        void schedule(@NonNull Runnable task, long delayMs);
+    }
+
+    /** Una subida. Lo que no es transient se guarda en disco. */
+    static class Job {
+        static final String PENDING = "pending";
+        static final String DONE = "done";
+        static final String FAILED = "failed";
+
+        String id;
+        String owner;
+        String path;
+        String mimeType;
+        String state = PENDING;
+        int attempts;
+        long createdAt;
+        String url;
+        String error;
+        String hash;    // SHA-256 de la imagen preparada (null si no se pudo calcular)
+        String sender;  // Quien la envía (imágenes de chat)
+        boolean completed;  // Ya ha pasado por su Completion
+
+        // Solo en memoria
+        transient boolean running;
+        transient long nextAttemptAt;
+        transient long sent;
+        transient long total = -1;
+
+        boolean finished() {
+            return DONE.equals(state) || FAILED.equals(state);
+        }
+    }
+
+    private static UploadQueue instance;
+
+    private final Store store;
+    private final Uploader uploader;
+    private final UploadCache cache;
+    private final Scheduler scheduler;
+    private final Executor main;
+    private final Executor background;
+    @Nullable
+    private final File dir;
+    private final List<Job> jobs = new ArrayList<>();
+    private final Map<String, Listener> listeners = new HashMap<>();
+    private final Map<String, Completion> completions = new HashMap<>(); // Prefijo del owner → qué hacer
+    private final Map<String, String> preparing = new HashMap<>(); // id → owner, aún en ImagePreprocessor
+    private int maxParallel = DEFAULT_MAX_PARALLEL;
+    private int running = 0;
+
+    /**
+     * Se inicializa una vez en {@link com.example.sendme.SendMeApplication} (después de
+     * ImagePreprocessor y UploadCache)
+     */
+    public static synchronized void init(@NonNull Context context) {
+        if (instance != null) return;
+
+        Handler handler = new Handler(Looper.getMainLooper());
+        Executor main = handler::post;
+        Executor background = Executors.newSingleThreadExecutor();
+        Scheduler scheduler = new Scheduler() {
+            @Override
+            public long now() {
+                return System.currentTimeMillis();
+            }
+
+            @Override
+            public void schedule(@NonNull Runnable task, long delayMs) {
+                handler.postDelayed(task, delayMs);
+            }
+        };
+        ImgurApiClient imgur = ImgurApiClient.getInstance();
+        instance = new UploadQueue(new FileStore(new File(context.getFilesDir(), FILE), background),
+                imgur::upload, UploadCache.getInstance(), scheduler, main, background,
+                ImagePreprocessor.getInstance().getDir());
+        // Antes de retomar la cola: puede haber imágenes de chat terminadas sin enviar
+        instance.setCompletion(CHAT_PREFIX, new ChatImageSender());
+        instance.restore();
+    }
+
+    /** Prefijo de los owners de imágenes de chat */
+    public static final String CHAT_PREFIX = "chat/";
+
+    /** Owner de las imágenes de un chat (1:1 o grupo) */
+    @NonNull
+    public static String chatOwner(@NonNull String chatId) {
+        return CHAT_PREFIX + chatId;
+    }
+
+    /** Owner de la foto de perfil de un usuario */
+    @NonNull
+    public static String avatarOwner(@NonNull String uid) {
+        return "avatar/" + uid;
+    }
+
+    /** Owner del icono de un grupo (o de un grupo que se está creando, con un id provisional) */
+    @NonNull
+    public static String groupIconOwner(@NonNull String groupId) {
+        return "group-icon/" + groupId;
+    }
+
+    public static synchronized UploadQueue getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("UploadQueue.init() no se ha llamado");
+        }
+        return instance;
+    }
+
+    /** {@code dir}: carpeta de las imágenes preparadas, para borrar las que no son de ninguna subida */
+    UploadQueue(@NonNull Store store, @NonNull Uploader uploader, @NonNull UploadCache cache,
+                @NonNull Scheduler scheduler, @NonNull Executor main, @NonNull Executor background,
+                @Nullable File dir) {
+        this.store = store;
+        this.uploader = uploader;
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.main = main;
+        this.background = background;
+        this.dir = dir;
+    }
+
+    /** Cuántas subidas a la vez (por defecto {@value #DEFAULT_MAX_PARALLEL}) */
+    @MainThread
+    public void setMaxParallel(int maxParallel) {
+        this.maxParallel = Math.max(1, maxParallel);
+        pump();
+    }
+
+    /**
+     * Lo que hay que hacer al terminar las subidas de los owners que empiezan por
+     * {@code ownerPrefix}. Se registra en el arranque, antes de que se retome la cola.
+     */
+    @MainThread
+    public void setCompletion(@NonNull String ownerPrefix, @NonNull Completion completion) {
+        completions.put(ownerPrefix, completion);
+    }
+
+    /**
+     * Prepara la imagen ({@link ImagePreprocessor}, en segundo plano) y la pone en la cola.
+     * Devuelve el id de la subida, el mismo que llegará al {@link Listener} de {@code owner}.
+     */
+    @MainThread
+    @NonNull
+    public String enqueue(@NonNull ContentResolver resolver, @NonNull Uri uri,
+                          @NonNull ImagePreprocessor.Target target, @NonNull String owner) {
+        return enqueue(resolver, uri, target, owner, null);
+    }
+
+    /** Igual, apuntando quién la envía (lo recibe el {@link Completion} del owner) */
+    @MainThread
+    @NonNull
+    public String enqueue(@NonNull ContentResolver resolver, @NonNull Uri uri,
+                          @NonNull ImagePreprocessor.Target target, @NonNull String owner,
+                          @Nullable String sender) {
+        String id = UUID.randomUUID().toString();
+        preparing.put(id, owner);
+        background.execute(() -> {
+            try {
+                ImagePreprocessor.Prepared prepared = ImagePreprocessor.getInstance().prepare(resolver, uri, target);
+                lookUp(id, owner, sender, prepared.file, prepared.mimeType);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Failed to prepare image: " + e.getMessage(), e);
+                String error = "Failed to read image: " + e.getMessage();
+                main.execute(() -> addFailed(id, owner, error));
+            }
+        });
+        return id;
+    }
+
+    /** Pone en la cola un archivo ya preparado; la cola lo borra al terminar */
+    @MainThread
+    @NonNull
+    String enqueue(@NonNull File file, @NonNull String mimeType, @NonNull String owner) {
+        return enqueue(file, mimeType, owner, null);
+    }
+
+    @MainThread
+    @NonNull
+    String enqueue(@NonNull File file, @NonNull String mimeType, @NonNull String owner, @Nullable String sender) {
+        String id = UUID.randomUUID().toString();
+        preparing.put(id, owner);
+        background.execute(() -> lookUp(id, owner, sender, file, mimeType));
+        return id;
+    }
+
+    /** En segundo plano: hash de la imagen y si ya estaba subida; luego a la cola */
+    private void lookUp(@NonNull String id, @NonNull String owner, @Nullable String sender,
+                        @NonNull File file, @NonNull String mimeType) {
+        String hash = null;
+        try {
+            hash = UploadCache.sha256(file);
+        } catch (IOException e) {
+            // Se sube sin pasar por la caché
+        }
+        String cachedUrl = hash != null ? cache.get(hash) : null;
+        String finalHash = hash;
+        main.execute(() -> add(id, owner, sender, file, mimeType, finalHash, cachedUrl));
+    }
+
+    /**
+     * La pantalla de {@code owner} está viva: recibe lo que haya terminado mientras no estaba
+     * y el progreso de lo que sigue en marcha. Sustituye al listener anterior del mismo owner.
+     */
+    @MainThread
+    public void observe(@NonNull String owner, @NonNull Listener listener) {
+        listeners.put(owner, listener);
+
+        List<Job> snapshot = new ArrayList<>(jobs);
+        for (Job job : snapshot) {
+            if (!owner.equals(job.owner)) continue;
+            if (job.finished()) {
+                deliver(job);
+            } else if (job.running && job.sent > 0) {
+                listener.onProgress(job.id, job.sent, job.total);
+            }
+        }
+    }
+
+    /** La pantalla se va: lo que termine a partir de ahora se guarda para la siguiente */
+    @MainThread
+    public void removeObserver(@NonNull String owner, @NonNull Listener listener) {
+        if (listeners.get(owner) == listener) listeners.remove(owner);
+    }
+
+    /** Subidas sin terminar de un owner (para enseñar que hay algo en marcha) */
+    @MainThread
+    public int pendingCount(@NonNull String owner) {
+        int count = 0;
+        for (String preparingOwner : preparing.values()) {
+            if (owner.equals(preparingOwner)) count++;
+        }
+        for (Job job : jobs) {
+            if (owner.equals(job.owner) && !job.finished()) count++;
+        }
+        return count;
+    }
+
+    /** Carga lo guardado y retoma lo pendiente */
+    void restore() {
+        background.execute(() -> {
+            List<Job> loaded = store.load();
+            deleteOrphans(loaded);
+            cache.load();
+            main.execute(() -> {
+                long now = scheduler.now();
+                for (Job job : loaded) {
+                    // Terminó justo antes de cerrarse la app: se hace ahora lo que faltaba
+                    if (Job.DONE.equals(job.state)) complete(job);
+                    boolean expired = job.finished() && now - job.createdAt > RESULT_TTL_MS;
+                    boolean lost = !job.finished() && (job.path == null || !new File(job.path).exists());
+                    if (expired) continue;
+                    if (lost) {
+                        job.state = Job.FAILED;
+                        job.error = "Image file lost";
+                    }
+                    job.total = -1;
+                    jobs.add(job);
+                }
+                save();
+                pump();
+            });
+        });
+    }
+
+    /** Imágenes preparadas que no llegaron a la cola (la app se cerró justo entonces) */
+    private void deleteOrphans(@NonNull List<Job> loaded) {
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null) return;
+
+        List<String> paths = new ArrayList<>(loaded.size());
+        for (Job job : loaded) paths.add(job.path);
+        for (File file : files) {
+            if (!paths.contains(file.getAbsolutePath())) file.delete();
+        }
+    }
+
+    private void add(@NonNull String id, @NonNull String owner, @Nullable String sender, @NonNull File file,
+                     @NonNull String mimeType, @Nullable String hash, @Nullable String cachedUrl) {
+        preparing.remove(id);
+        Job job = new Job();
+        job.id = id;
+        job.owner = owner;
+        job.sender = sender;
+        job.path = file.getAbsolutePath();
+        job.mimeType = mimeType;
+        job.hash = hash;
+        job.createdAt = scheduler.now();
+        jobs.add(job);
+
+        if (cachedUrl != null) {
+            // Ya subida: ni cola ni red
+            job.state = Job.DONE;
+            job.url = cachedUrl;
+            deleteFile(job);
+            complete(job);
+            save();
+            deliver(job);
+            return;
+        }
+        save();
+        pump();
+    }
+
+    private void addFailed(@NonNull String id, @NonNull String owner, @NonNull String error) {
+        preparing.remove(id);
+        Job job = new Job();
+        job.id = id;
+        job.owner = owner;
+        job.state = Job.FAILED;
+        job.error = error;
+        job.createdAt = scheduler.now();
+        jobs.add(job);
+        save();
+        deliver(job);
+    }
+
+    /** Arranca lo que toque hasta llenar los huecos */
+    private void pump() {
+        long now = scheduler.now();
+        for (int i = 0; i < jobs.size() && running < maxParallel; i++) {
+            Job job = jobs.get(i);
+            if (!job.finished() && !job.running && job.nextAttemptAt <= now) start(job);
+        }
+    }
+
+    private void start(@NonNull Job job) {
+        job.running = true;
+        job.sent = 0;
+        running++;
+        uploader.upload(new File(job.path), job.mimeType, new ImgurApiClient.UploadCallback() {
+            private long lastPercent = -1;
+
+            @Override
+            public void onProgress(long sent, long total) {
+                // Como mucho un aviso por cada 1 %: no se llena el hilo principal de mensajes
+                long percent = total > 0 ? sent * 100 / total : sent / 65_536;
+                if (percent == lastPercent) return;
+                lastPercent = percent;
+                main.execute(() -> progress(job, sent, total));
+            }
+
+            @Override
+            public void onSuccess(String imageUrl) {
+                main.execute(() -> succeeded(job, imageUrl));
+            }
+
+            @Override
+            public void onFailure(String error, boolean retryable) {
+                main.execute(() -> failed(job, error, retryable));
+            }
+        });
+    }
+
+    private void progress(@NonNull Job job, long sent, long total) {
+        if (!job.running) return;
+        job.sent = sent;
+        job.total = total;
+        Listener listener = listeners.get(job.owner);
+        if (listener != null) listener.onProgress(job.id, sent, total);
+    }
+
+    private void succeeded(@NonNull Job job, @NonNull String imageUrl) {
+        finishRunning(job);
+        job.state = Job.DONE;
+        job.url = imageUrl;
+        if (job.hash != null) cache.put(job.hash, imageUrl);
+        deleteFile(job);
+        complete(job);
+        save();
+        deliver(job);
+        pump();
+    }
+
+    private void failed(@NonNull Job job, @NonNull String error, boolean retryable) {
+        finishRunning(job);
+        job.attempts++;
+        if (retryable && job.attempts < MAX_ATTEMPTS) {
+            long delay = backoff(job.attempts);
+            job.nextAttemptAt = scheduler.now() + delay;
+            save();
+            scheduler.schedule(this::pump, delay);
+        } else {
+            job.state = Job.FAILED;
+            job.error = error;
+            deleteFile(job);
+            save();
+            deliver(job);
+        }
+        pump();
+    }
+
+    private void finishRunning(@NonNull Job job) {
+        job.running = false;
+        running--;
+    }
+
+    /** 2 s, 4 s, 8 s... hasta 5 min */
+    static long backoff(int attempts) {
+        int shift = Math.min(attempts - 1, 20);
+        return Math.min(MAX_DELAY_MS, BASE_DELAY_MS << shift);
+    }
+
+    /** Pasa una subida terminada por el Completion de su owner, si tiene y no lo ha hecho ya */
+    private void complete(@NonNull Job job) {
+        if (job.completed) return;
+        for (Map.Entry<String, Completion> entry : completions.entrySet()) {
+            if (job.owner.startsWith(entry.getKey())) {
+                job.completed = true;
+                entry.getValue().onUploaded(job.owner, job.sender, job.url);
+                return;
+            }
+        }
+    }
+
+    /** Entrega un resultado si su pantalla está viva; si no, se queda guardado */
+    private void deliver(@NonNull Job job) {
+        Listener listener = listeners.get(job.owner);
+        if (listener == null) return;
+
+        jobs.remove(job);
+        save();
+        if (Job.DONE.equals(job.state)) {
+            listener.onUploaded(job.id, job.url);
+        } else {
+            listener.onFailed(job.id, job.error != null ? job.error : "Upload failed");
+        }
+    }
+
+    private void save() {
+        store.save(new ArrayList<>(jobs));
+    }
+
+    private static void deleteFile(@NonNull Job job) {
+        if (job.path != null) new File(job.path).delete();
+    }
+
+    /** La cola en un JSON, escrito entero en cada cambio (son pocas subidas) */
+    static class FileStore implements Store {
+        private final JsonFile<List<Job>> file;
+
+        FileStore(@NonNull File file, @NonNull Executor disk) {
+            this.file = new JsonFile<>(file, new TypeToken<List<Job>>() {}.getType(), disk);
+        }
+
+        @NonNull
+        @Override
+        public List<Job> load() {
+            List<Job> jobs = file.read();
+            // No hay archivo todavía (o está roto): cola vacía
+            if (jobs == null) return new ArrayList<>();
+            for (Iterator<Job> it = jobs.iterator(); it.hasNext(); ) {
+                Job job = it.next();
+                if (job == null || job.id == null || job.owner == null) it.remove();
+            }
+            return jobs;
+        }
+
+        @Override
+        public void save(@NonNull List<Job> jobs) {
+            file.write(jobs);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.example.sendme.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.User;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Acceso único a los perfiles de "users/{uid}" en Firestore.
+ *
+ * Antes cada pantalla (lista de chats, grupo, detalle de grupo, editar perfil, login) pedía
+ * el documento por su cuenta y nadie reutilizaba nada. Aquí:
+ * - Hay una caché LRU en memoria con los últimos {@link #MAX_CACHED_USERS} perfiles.
+ * - Si dos pantallas piden el mismo UID mientras la primera petición sigue en vuelo,
+ *   comparten esa misma lectura (no se lanza otra).
+ * - Varios perfiles a la vez ({@link #getUsers}) se piden en consultas "whereIn" por ID de
+ *   documento, de {@link #MAX_IDS_PER_QUERY} en {@link #MAX_IDS_PER_QUERY} y todas en paralelo.
+ * - Las suscripciones en tiempo real se comparten por UID: un solo snapshot listener
+ *   aunque haya varios observadores (mismo registro con contador que {@link ListenerRegistry}).
+ *
+ * La tasa de aciertos de la caché se puede consultar con {@link #getHitRate()}.
+ *
+ * Todo se usa desde el hilo principal (los callbacks de Firestore llegan ahí), así que
+ * no hace falta sincronizar.
+ */
+public class UserRepository {
+
+    private static final String TAG = "UserRepository";
+
+    /** Perfiles que caben en la caché antes de empezar a tirar los menos usados */
+    public static final int MAX_CACHED_USERS = 500;
+
+    /** Máximo de valores que admite Firestore en un filtro "in" */
+    static final int MAX_IDS_PER_QUERY = 30;
+
+    private static UserRepository instance;
+
+    /** Resultado de una lectura. user es null si el documento no existe. */
+    public interface UserCallback {
+        void onUser(@Nullable User user);
+        void onError(@NonNull String error);
+    }
+
+    /**
+     * Resultado de una lectura de varios perfiles. Solo vienen los que existen
+     * (los UIDs sin documento o que no se pudieron leer no aparecen).
+     */
+    public interface UsersCallback {
+        void onUsers(@NonNull Map<String, User> users);
+    }
+
+    /** Cambios de un perfil observado en tiempo real (null si se borra) */
+    public interface UserListener {
+        void onUserChanged(@Nullable User user);
+    }
+
+    /**
+     * De dónde salen los perfiles. En la app es Firestore; en tests, uno falso.
+     */
+    interface UserSource {
+        void fetch(@NonNull String uid, @NonNull UserCallback callback);
+
+        /** Lee de una vez hasta {@link #MAX_IDS_PER_QUERY} perfiles. Los que no existen no vienen en el mapa. */
+        void fetchBatch(@NonNull List<String> uids, @NonNull BatchCallback callback);
+
+        ListenerRegistry.Registration listen(@NonNull String uid, @NonNull UserListener listener);
+    }
+
+    interface BatchCallback {
+        void onUsers(@NonNull Map<String, User> users);
+        void onError(@NonNull String error);
+    }
+
+    private final UserSource source;
+    private final int maxSize;
+
+    // LinkedHashMap en orden de acceso = LRU
+    private final LinkedHashMap<String, User> cache;
+    private final Map<String, List<UserCallback>> inFlight = new HashMap<>();
+    private final ListenerRegistry subscriptions = new ListenerRegistry();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long coalesced = 0;
+    private long batchQueries = 0;
+    private long batchFallbacks = 0;
+
+    UserRepository(@NonNull UserSource source, int maxSize) {
+        this.source = source;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<String, User>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                return size() > UserRepository.this.maxSize;
+            }
+        };
+    }
+
+    public static synchronized UserRepository getInstance() {
+        if (instance == null) {
+            instance = new UserRepository(firestoreSource(), MAX_CACHED_USERS);
+        }
+        return instance;
+    }
+
+    /**
+     * Devuelve el perfil del UID. Si está en caché se responde en el momento (dentro de
+     * esta misma llamada); si no, se pide a Firestore (una sola vez aunque lo pidan varios).
+     */
+    public void getUser(@NonNull String uid, @NonNull UserCallback callback) {
+        User cached = cache.get(uid);
+        if (cached != null) {
+            hits++;
+            callback.onUser(cached);
+            return;
+        }
+
+        List<UserCallback> waiting = inFlight.get(uid);
+        if (waiting != null) {
+            coalesced++;
+            waiting.add(callback);
+            return;
+        }
+
+        misses++;
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        inFlight.put(uid, waiting);
+
+        source.fetch(uid, resolver(uid));
+    }
+
+    /**
+     * Devuelve de una vez los perfiles de todos los UIDs (por ejemplo, los participantes de
+     * un grupo). Los que están en caché no se piden; los que ya estaban en vuelo se comparten;
+     * el resto se reparte en consultas de {@link #MAX_IDS_PER_QUERY} que se lanzan en paralelo.
+     * Si una consulta falla, sus UIDs se vuelven a pedir uno a uno.
+     *
+     * El callback se llama una sola vez, cuando se ha resuelto el último UID.
+     */
+    public void getUsers(@NonNull Collection<String> uids, @NonNull UsersCallback callback) {
+        Set<String> unique = new LinkedHashSet<>(uids);
+        Map<String, User> result = new HashMap<>();
+        if (unique.isEmpty()) {
+            callback.onUsers(result);
+            return;
+        }
+
+        // Cuenta atrás compartida por todos los UIDs (todo llega en el hilo principal)
+        int[] remaining = {unique.size()};
+        List<String> toFetch = new ArrayList<>();
+
+        for (String uid : unique) {
+            UserCallback collector = new UserCallback() {
+                @Override
+                public void onUser(@Nullable User user) {
+                    if (user != null) result.put(uid, user);
+                    if (--remaining[0] == 0) callback.onUsers(result);
+                }
+
+                @Override
+                public void onError(@NonNull String error) {
+                    Log.e(TAG, "No se pudo leer el usuario " + uid + ": " + error);
+                    if (--remaining[0] == 0) callback.onUsers(result);
+                }
+            };
+
+            User cached = cache.get(uid);
+            if (cached != null) {
+                hits++;
+                collector.onUser(cached);
+                continue;
+            }
+
+            List<UserCallback> waiting = inFlight.get(uid);
+            if (waiting != null) {
+                coalesced++;
+                waiting.add(collector);
+                continue;
+            }
+
+            misses++;
+            waiting = new ArrayList<>();
+            waiting.add(collector);
+            inFlight.put(uid, waiting);
+            toFetch.add(uid);
+        }
+
+        for (int from = 0; from < toFetch.size(); from += MAX_IDS_PER_QUERY) {
+            fetchChunk(new ArrayList<>(toFetch.subList(from, Math.min(from + MAX_IDS_PER_QUERY, toFetch.size()))));
+        }
+    }
+
+    /** Una consulta "whereIn" para un trozo; si falla, se cae a lecturas sueltas */
+    private void fetchChunk(List<String> chunk) {
+        batchQueries++;
+        source.fetchBatch(chunk, new BatchCallback() {
+            @Override
+            public void onUsers(@NonNull Map<String, User> users) {
+                // Los que no vienen en la respuesta no tienen documento
+                for (String uid : chunk) resolver(uid).onUser(users.get(uid));
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                Log.w(TAG, "Falló la consulta de " + chunk.size() + " usuarios, se piden uno a uno: " + error);
+                batchFallbacks++;
+                for (String uid : chunk) source.fetch(uid, resolver(uid));
+            }
+        });
+    }
+
+    /** Guarda el resultado de una lectura y avisa a todos los que esperaban ese UID */
+    private UserCallback resolver(String uid) {
+        return new UserCallback() {
+            @Override
+            public void onUser(@Nullable User user) {
+                if (user != null) cache.put(uid, user);
+                List<UserCallback> waiting = inFlight.remove(uid);
+                if (waiting != null) {
+                    for (UserCallback c : waiting) c.onUser(user);
+                }
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                List<UserCallback> waiting = inFlight.remove(uid);
+                if (waiting != null) {
+                    for (UserCallback c : waiting) c.onError(error);
+                }
+            }
+        };
+    }
+
+    /** Perfil en caché o null, sin pedir nada (no cuenta en las métricas) */
+    @Nullable
+    public User peek(@NonNull String uid) {
+        return cache.get(uid);
+    }
+
+    /**
+     * Observa un perfil en tiempo real. Si ya hay alguien observando el mismo UID se
+     * comparte su listener, y el nuevo recibe al momento lo que haya en caché.
+     */
+    public ListenerRegistry.Registration observeUser(@NonNull String uid, @NonNull UserListener listener) {
+        return subscriptions.subscribe("user:" + uid, () -> new UserChannel(uid), listener);
+    }
+
+    /** Actualiza la caché tras un cambio hecho desde la app (por ejemplo, editar el perfil) */
+    public void put(@NonNull User user) {
+        if (user.getUid() != null) cache.put(user.getUid(), user);
+    }
+
+    /** Olvida un perfil para que la próxima lectura vaya a Firestore */
+    public void invalidate(@NonNull String uid) {
+        cache.remove(uid);
+    }
+
+    // === Métricas ===
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    /** Peticiones que se engancharon a una lectura que ya estaba en vuelo */
+    public long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /** Consultas "whereIn" lanzadas por {@link #getUsers} */
+    public long getBatchQueryCount() {
+        return batchQueries;
+    }
+
+    /** Consultas "whereIn" que fallaron y se repitieron UID a UID */
+    public long getBatchFallbackCount() {
+        return batchFallbacks;
+    }
+
+    /** Aciertos / total de getUser (las coalescidas no cuentan como acierto). 0 si no hubo ninguna. */
+    public double getHitRate() {
+        long total = hits + misses + coalesced;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    /** Snapshot listeners reales abiertos ahora mismo (uno por UID observado) */
+    public int getActiveSubscriptionCount() {
+        return subscriptions.getActiveListenerCount();
+    }
+
+    /** Un snapshot listener por UID repartido entre todos los que lo observan */
+    private class UserChannel extends ListenerRegistry.Channel<UserListener> {
+        private final String uid;
+        private ListenerRegistry.Registration registration;
+
+        UserChannel(String uid) {
+            this.uid = uid;
+        }
+
+        @Override
+        void attach() {
+            registration = source.listen(uid, user -> {
+                if (user != null) {
+                    cache.put(uid, user);
+                } else {
+                    cache.remove(uid);
+                }
+                for (UserListener l : snapshotSubscribers()) l.onUserChanged(user);
+            });
+        }
+
+        @Override
+        void detach() {
+            if (registration != null) registration.remove();
+            registration = null;
+        }
+
+        @Override
+        void replay(UserListener listener) {
+            User cached = cache.get(uid);
+            if (cached != null) listener.onUserChanged(cached);
+        }
+    }
+
+    /** Perfil a partir del documento (el UID se rellena con el ID si el documento no lo trae) */
+    @Nullable
+    static User toUser(@Nullable DocumentSnapshot doc) {
+        if (doc == null || !doc.exists()) return null;
+        User user = doc.toObject(User.class);
+        if (user != null && user.getUid() == null) user.setUid(doc.getId());
+        return user;
+    }
+
+    /** Implementación real sobre la colección "users" de Firestore */
+    private static UserSource firestoreSource() {
+        return new UserSource() {
+            @Override
+            public void fetch(@NonNull String uid, @NonNull UserCallback callback) {
+                FirebaseManager.getInstance().getFirestore()
+                        .collection("users")
+                        .document(uid)
+                        .get()
+                        .addOnSuccessListener(doc -> callback.onUser(toUser(doc)))
+                        .addOnFailureListener(e -> callback.onError(e.getMessage() != null ? e.getMessage() : "Error"));
+            }
+
+            @Override
+            public void fetchBatch(@NonNull List<String> uids, @NonNull BatchCallback callback) {
+                FirebaseManager.getInstance().getFirestore()
+                        .collection("users")
+                        .whereIn(FieldPath.documentId(), uids)
+                        .get()
+                        .addOnSuccessListener(query -> {
+                            Map<String, User> users = new HashMap<>();
+                            for (DocumentSnapshot doc : query.getDocuments()) {
+                                User user = toUser(doc);
+                                if (user != null) users.put(doc.getId(), user);
+                            }
+                            callback.onUsers(users);
+                        })
+                        .addOnFailureListener(e -> callback.onError(e.getMessage() != null ? e.getMessage() : "Error"));
+            }
+
+            @Override
+            public ListenerRegistry.Registration listen(@NonNull String uid, @NonNull UserListener listener) {
+                ListenerRegistration registration = FirebaseManager.getInstance().getFirestore()
+                        .collection("users")
+                        .document(uid)
+                        .addSnapshotListener((doc, error) -> {
+                            if (error != null) {
+                                Log.e(TAG, "Error escuchando usuario " + uid + ": " + error.getMessage());
+                                return;
+                            }
+                            listener.onUserChanged(toUser(doc));
+                        });
+                return registration::remove;
+            }
+        };
+    }
+}
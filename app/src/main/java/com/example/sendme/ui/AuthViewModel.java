@@ -1,10 +1,14 @@
 package com.example.sendme.ui;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.example.sendme.data.model.User;
 import com.example.sendme.repository.FirebaseManager;
+import com.example.sendme.repository.UserRepository;
 
 public class AuthViewModel extends ViewModel {
 
@@ -26,14 +30,18 @@ public class AuthViewModel extends ViewModel {
             return;
         }
 
-        FirebaseManager.getInstance().getFirestore()
-                .collection("users")
-                .document(uid)
-                .get()
-                .addOnSuccessListener(documentSnapshot ->
-                        userExists.setValue(documentSnapshot.exists()))
-                .addOnFailureListener(e ->
-                        error.setValue("Error verificando perfil: " + e.getMessage()));
+        // Pasa por el repositorio: el perfil queda en caché para la lista de chats
+        UserRepository.getInstance().getUser(uid, new UserRepository.UserCallback() {
+            @Override
+            public void onUser(@Nullable User user) {
+                userExists.setValue(user != null);
+            }
+
+            @Override
+            public void onError(@NonNull String message) {
+                error.setValue("Error verificando perfil: " + message);
+            }
+        });
     }
 
     public void setError(String errorMessage) {
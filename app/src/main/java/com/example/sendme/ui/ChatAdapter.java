@@ -1,6 +1,5 @@
 package com.example.sendme.ui;
 
-import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -8,6 +7,7 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
 import androidx.recyclerview.widget.RecyclerView;
@@ -15,63 +15,74 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.example.sendme.R;
 import com.example.sendme.data.model.Chat;
+import com.example.sendme.data.model.ImageThumbnails;
 import com.example.sendme.data.model.User;
 import com.example.sendme.databinding.ItemChatBinding;
-import com.example.sendme.repository.FirebaseManager;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 
-public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder> {
+public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder> implements InboxIndex.Listener {
 
-    private List<Chat> chats = new ArrayList<>();
-    private List<User> users = new ArrayList<>();
+    /** Payload para repintar solo último mensaje, hora y no leídos (sin tocar nombre ni avatar) */
+    static final Object PAYLOAD_PREVIEW = new Object();
+
+    private final InboxIndex chats;
+    private final UserIndex users;
+    private final String currentUserUid;  // No cambia mientras la lista existe: se lee una vez
     private NavController navController;
     private static final String TAG = "ChatAdapter";
 
-    public ChatAdapter(NavController navController) {
+    /**
+     * El adapter pinta lo que haya en el índice y recibe de él los cambios mínimos.
+     * Los perfiles de los 1:1 se buscan por UID en {@code users}.
+     */
+    public ChatAdapter(NavController navController, InboxIndex chats, UserIndex users, String currentUserUid) {
         this.navController = navController;
+        this.chats = chats;
+        this.users = users;
+        this.currentUserUid = currentUserUid;
+        chats.setListener(this);
     }
 
     @NonNull
     @Override
     public ChatViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         ItemChatBinding binding = ItemChatBinding.inflate(LayoutInflater.from(parent.getContext()), parent, false);
-        return new ChatViewHolder(binding);
+        ChatViewHolder holder = new ChatViewHolder(binding);
+
+        // Un listener por ViewHolder (no uno nuevo en cada bind): el chat se saca de la posición actual
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                openChat(v, chats.get(position));
+            }
+        });
+        return holder;
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ChatViewHolder holder, int position) {
-        Chat chat = chats.get(position);
-        Log.d(TAG, "Binding chat ID: " + chat.getId());
-
-        String currentUserUid = FirebaseManager.getInstance().getAuth().getCurrentUser() != null
-                ? FirebaseManager.getInstance().getAuth().getCurrentUser().getUid()
-                : null;
-
-        if (currentUserUid == null) {
-            Log.e(TAG, "currentUserUid es null");
+    public void onBindViewHolder(@NonNull ChatViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_PREVIEW)) {
+            holder.row.bindPreview(chats.get(position), currentUserUid);
+            showPreview(holder);
             return;
         }
+        super.onBindViewHolder(holder, position, payloads);
+    }
 
-        boolean isGroup = chat.isGroup();
+    @Override
+    public void onBindViewHolder(@NonNull ChatViewHolder holder, int position) {
+        Chat chat = chats.get(position);
+        ChatRowText.Row row = holder.row;
+        row.bind(chat, users, currentUserUid);
+        holder.binding.usernameText.setText(row.title);
 
-        if (isGroup) {
+        if (chat.isGroup()) {
             // === CHAT DE GRUPO ===
-            String groupName = chat.getGroupName();
-            if (groupName == null || groupName.trim().isEmpty()) {
-                groupName = "Grupo";
-            }
-            holder.binding.usernameText.setText(groupName);
-
             String groupIcon = chat.getGroupIcon();
             if (groupIcon != null && !groupIcon.isEmpty()) {
                 Glide.with(holder.itemView.getContext())
-                        .load(groupIcon)
+                        .load(ImageThumbnails.avatar(groupIcon))
                         .placeholder(R.drawable.ic_group)
                         .error(R.drawable.ic_group)
                         .circleCrop()
@@ -79,106 +90,67 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
             } else {
                 holder.binding.profileImage.setImageResource(R.drawable.ic_group);
             }
-        } else {
+        } else if (row.other != null) {
             // === CHAT INDIVIDUAL ===
-            String otherParticipantUid = getOtherParticipant(chat.getParticipants(), currentUserUid);
-            User otherUser = users.stream()
-                    .filter(u -> u.getUid() != null && u.getUid().equals(otherParticipantUid))
-                    .findFirst()
-                    .orElse(null);
-
-            if (otherUser != null) {
-                holder.binding.usernameText.setText(otherUser.getUsername());
-                String imageUrl = otherUser.getImageUrl();
-                Glide.with(holder.itemView.getContext())
-                        .load(imageUrl != null && !imageUrl.isEmpty() ? imageUrl : R.drawable.default_profile)
-                        .placeholder(R.drawable.default_profile)
-                        .error(R.drawable.default_profile)
-                        .circleCrop()
-                        .into(holder.binding.profileImage);
-            } else {
-                holder.binding.usernameText.setText("Usuario desconocido");
-                holder.binding.profileImage.setImageResource(R.drawable.default_profile);
-            }
+            String imageUrl = row.other.getThumbnailUrl();
+            Glide.with(holder.itemView.getContext())
+                    .load(imageUrl != null && !imageUrl.isEmpty() ? imageUrl : R.drawable.default_profile)
+                    .placeholder(R.drawable.default_profile)
+                    .error(R.drawable.default_profile)
+                    .circleCrop()
+                    .into(holder.binding.profileImage);
+        } else {
+            holder.binding.profileImage.setImageResource(R.drawable.default_profile);
         }
 
-        // Último mensaje
-        String lastMessage = chat.getLastMessage();
-        holder.binding.lastMessageText.setText(lastMessage != null ? lastMessage : "");
+        showPreview(holder);
+    }
+
+    /** Navega al chat pulsado (grupo o 1:1) */
+    private void openChat(View v, Chat chat) {
+        openChat(Navigation.findNavController(v), chat, users.get(chat.getOtherUid()), null);
+    }
+
+    /**
+     * Abre un chat de la lista. {@code extras} se añade a los argumentos (por ejemplo, el
+     * mensaje al que saltar desde la búsqueda global).
+     */
+    public static void openChat(@NonNull NavController navController, @NonNull Chat chat,
+                                @Nullable User otherUser, @Nullable Bundle extras) {
+        Log.d(TAG, "Chat pulsado: " + chat.getId() + (chat.isGroup() ? " (grupo)" : " (individual)"));
+
+        Bundle bundle = new Bundle();
+        bundle.putString("chatId", chat.getId());
+        if (extras != null) bundle.putAll(extras);
 
-        // Mensajes no leídos (FIX PARA EVITAR CRASH SI UNREAD ES NULL)
-        int unread = 0;
-        if (chat.getUnreadCount() != null) {
-            Integer count = chat.getUnreadCount().get(currentUserUid);
-            if (count != null) {
-                unread = count;
+        if (chat.isGroup()) {
+            String groupName = chat.getGroupName();
+            if (groupName == null || groupName.trim().isEmpty()) {
+                groupName = "Grupo";
             }
-        }
 
-        if (unread > 0) {
-            holder.binding.unreadCount.setText(String.valueOf(unread));
-            holder.binding.unreadCount.setVisibility(View.VISIBLE);
-        } else {
-            holder.binding.unreadCount.setVisibility(View.GONE);
-        }
+            bundle.putString("groupId", chat.getId());
+            bundle.putString("groupName", groupName);
+            bundle.putString("groupIcon", chat.getGroupIcon());
+            bundle.putBoolean("isGroup", true);
 
-        // Timestamp
-        holder.binding.timestampText.setText(formatTimestamp(chat.getLastMessageTimestamp()));
+            try {
+                navController.navigate(R.id.action_chatListFragment_to_groupChatFragment, bundle);
+            } catch (Exception e) {
+                Log.e(TAG, "ERROR navegando a GroupChatFragment: " + e.getMessage(), e);
+            }
+        } else {
+            if (otherUser != null) {
+                bundle.putParcelable("user", otherUser);
+            }
+            bundle.putBoolean("isGroup", false);
 
-        // === CLICK EN EL CHAT CON LOGS DETALLADOS ===
-        holder.itemView.setOnClickListener(v -> {
-            Log.d(TAG, "=== CHAT PULSADO ===");
-            Log.d(TAG, "Chat ID: " + chat.getId());
-            Log.d(TAG, "Tipo: " + (isGroup ? "GRUPO" : "INDIVIDUAL"));
-            Log.d(TAG, "groupName: '" + chat.getGroupName() + "'");
-            Log.d(TAG, "isGroup flag: " + chat.isGroup());
-
-            Bundle bundle = new Bundle();
-            bundle.putString("chatId", chat.getId());
-
-            if (isGroup) {
-                Log.d(TAG, "Preparando navegación a GroupChatFragment");
-
-                String groupName = chat.getGroupName();
-                if (groupName == null || groupName.trim().isEmpty()) {
-                    groupName = "Grupo";
-                }
-
-                bundle.putString("groupId", chat.getId());
-                bundle.putString("groupName", groupName);
-                bundle.putString("groupIcon", chat.getGroupIcon());
-                bundle.putBoolean("isGroup", true);
-
-                try {
-                    Navigation.findNavController(v)
-                            .navigate(R.id.action_chatListFragment_to_groupChatFragment, bundle);
-                    Log.d(TAG, "Navegación a GroupChatFragment ejecutada correctamente");
-                } catch (Exception e) {
-                    Log.e(TAG, "ERROR navegando a GroupChatFragment: " + e.getMessage(), e);
-                }
-            } else {
-                Log.d(TAG, "Preparando navegación a ChatFragment (individual)");
-
-                String otherUid = getOtherParticipant(chat.getParticipants(), currentUserUid);
-                User otherUser = users.stream()
-                        .filter(u -> u.getUid() != null && u.getUid().equals(otherUid))
-                        .findFirst()
-                        .orElse(null);
-
-                if (otherUser != null) {
-                    bundle.putParcelable("user", otherUser);
-                }
-                bundle.putBoolean("isGroup", false);
-
-                try {
-                    Navigation.findNavController(v)
-                            .navigate(R.id.action_chatListFragment_to_chatFragment, bundle);
-                    Log.d(TAG, "Navegación a ChatFragment ejecutada correctamente");
-                } catch (Exception e) {
-                    Log.e(TAG, "ERROR navegando a ChatFragment: " + e.getMessage(), e);
-                }
+            try {
+                navController.navigate(R.id.action_chatListFragment_to_chatFragment, bundle);
+            } catch (Exception e) {
+                Log.e(TAG, "ERROR navegando a ChatFragment: " + e.getMessage(), e);
             }
-        });
+        }
     }
 
     @Override
@@ -186,32 +158,60 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
         return chats.size();
     }
 
-    public void setChats(List<Chat> chats, List<User> users) {
-        this.chats = chats != null ? chats : new ArrayList<>();
-        this.users = users != null ? users : new ArrayList<>();
-        notifyDataSetChanged();
+    /** Repinta entera la fila de un chat (por ejemplo, al llegar el perfil del otro usuario) */
+    public void notifyChatChanged(String chatId) {
+        int position = chats.indexOf(chatId);
+        if (position >= 0) notifyItemChanged(position);
     }
 
-    private String getOtherParticipant(Map<String, Boolean> participants, String currentUserUid) {
-        if (participants == null || participants.isEmpty()) return "";
-        return participants.keySet().stream()
-                .filter(uid -> !uid.equals(currentUserUid))
-                .findFirst()
-                .orElse("");
+    // === Eventos del índice: solo se toca lo que ha cambiado ===
+
+    @Override
+    public void onInserted(int position) {
+        notifyItemInserted(position);
     }
 
-    private String formatTimestamp(long timestamp) {
-        if (timestamp == 0) return "";
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+    @Override
+    public void onRemoved(int position) {
+        notifyItemRemoved(position);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        notifyItemMoved(fromPosition, toPosition);
+    }
+
+    @Override
+    public void onChanged(int position, boolean previewOnly) {
+        if (previewOnly) {
+            notifyItemChanged(position, PAYLOAD_PREVIEW);
+        } else {
+            notifyItemChanged(position);
+        }
+    }
+
+    /** Último mensaje, no leídos y hora: lo que cambia con cada mensaje */
+    private void showPreview(@NonNull ChatViewHolder holder) {
+        ChatRowText.Row row = holder.row;
+        holder.binding.lastMessageText.setText(row.lastMessage);
+
+        if (row.unread != null) {
+            holder.binding.unreadCount.setText(row.unread);
+            holder.binding.unreadCount.setVisibility(View.VISIBLE);
+        } else {
+            holder.binding.unreadCount.setVisibility(View.GONE);
+        }
+
+        holder.binding.timestampText.setText(row.time);
     }
 
     static class ChatViewHolder extends RecyclerView.ViewHolder {
         ItemChatBinding binding;
+        final ChatRowText.Row row = new ChatRowText.Row();
 
         ChatViewHolder(ItemChatBinding binding) {
             super(binding.getRoot());
             this.binding = binding;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,93 @@
+package com.example.sendme.ui;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Chat;
+import com.example.sendme.data.model.User;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Textos de una fila de la lista de chats, calculados una sola vez.
+ *
+ * La hora se formatea la primera vez que se pinta cada Chat y se guarda en él (cada resumen
+ * nuevo trae un Chat nuevo, así que nunca queda desfasada). Los contadores de no leídos
+ * pequeños salen de una tabla fija. Así hacer scroll no crea Strings ni formateadores.
+ *
+ * {@link Row} es la parte del bind que no toca vistas: el adapter la rellena y luego solo
+ * copia sus campos a la fila.
+ */
+final class ChatRowText {
+
+    private static final int CACHED_UNREAD = 100;
+    private static final String[] UNREAD = new String[CACHED_UNREAD];
+
+    static {
+        for (int i = 0; i < CACHED_UNREAD; i++) {
+            UNREAD[i] = String.valueOf(i);
+        }
+    }
+
+    // Solo se usa desde el hilo principal (bind), así que compartirlos no es problema
+    private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    private static final Date DATE = new Date();
+
+    private ChatRowText() {}
+
+    /** Lo que se pinta en una fila. Hay una por ViewHolder y se reutiliza en cada bind. */
+    static final class Row {
+        @Nullable
+        User other;         // Perfil del otro en un 1:1 (null en grupos o si aún no ha llegado)
+        String title;
+        String lastMessage;
+        @Nullable
+        String unread;      // null si no hay nada sin leer
+        String time;
+
+        /** Rellena la fila entera */
+        void bind(@NonNull Chat chat, @NonNull UserIndex users, String currentUserUid) {
+            if (chat.isGroup()) {
+                other = null;
+                String groupName = chat.getGroupName();
+                title = groupName == null || groupName.trim().isEmpty() ? "Grupo" : groupName;
+            } else {
+                // El otro participante ya viene calculado en el Chat
+                other = users.get(chat.getOtherUid());
+                title = other != null ? other.getUsername() : "Usuario desconocido";
+            }
+            bindPreview(chat, currentUserUid);
+        }
+
+        /** Solo último mensaje, no leídos y hora: lo que cambia con cada mensaje */
+        void bindPreview(@NonNull Chat chat, String currentUserUid) {
+            lastMessage = chat.getLastMessage();
+            int count = chat.getUnreadCountForUser(currentUserUid);
+            unread = count > 0 ? unread(count) : null;
+            time = timestamp(chat);
+        }
+    }
+
+    @NonNull
+    static String unread(int count) {
+        return count >= 0 && count < CACHED_UNREAD ? UNREAD[count] : String.valueOf(count);
+    }
+
+    @NonNull
+    static String timestamp(@NonNull Chat chat) {
+        String text = chat.getTimestampText();
+        if (text == null) {
+            long timestamp = chat.getLastMessageTimestamp();
+            if (timestamp == 0) {
+                text = "";
+            } else {
+                DATE.setTime(timestamp);
+                text = TIME_FORMAT.format(DATE);
+            }
+            chat.setTimestampText(text);
+        }
+        return text;
+    }
+}
@@ -7,18 +7,21 @@ import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.navigation.NavController;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.sendme.R;
 import com.example.sendme.data.model.Chat;
+import com.example.sendme.data.model.ChatSummary;
 import com.example.sendme.data.model.User;
 import com.example.sendme.databinding.ItemContactBinding;
+import com.example.sendme.repository.ChatSchemaMigration;
+import com.example.sendme.repository.ChatSummaries;
 import com.example.sendme.repository.FirebaseManager;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
@@ -55,7 +58,7 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactV
 
         holder.binding.usernameText.setText(user.getUsername());
 
-        String imageUrl = user.getImageUrl();
+        String imageUrl = user.getThumbnailUrl();
         Glide.with(holder.itemView.getContext())
                 .load(imageUrl != null && !imageUrl.isEmpty() ? Uri.parse(imageUrl) : R.drawable.default_profile)
                 .error(R.drawable.default_profile)
@@ -111,7 +114,7 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactV
             newChat.setGroup(false);
 
             String chatId = FirebaseManager.getInstance().getDatabase()
-                    .getReference("chats").push().getKey();
+                    .getReference(FirebaseManager.CHAT_META).push().getKey();
 
             newChat.setId(chatId);
 
@@ -122,21 +125,21 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactV
             }
 
             Log.d(TAG, "chatId generado: " + chatId);
-            Log.d(TAG, "Guardando chat en /chats/" + chatId);
+            Log.d(TAG, "Guardando chat en /chat-meta/" + chatId);
 
-            FirebaseManager.getInstance().getDatabase()
-                    .getReference("chats").child(chatId)
+            FirebaseManager.getInstance().getChatMetaRef(chatId)
                     .setValue(newChat)
                     .addOnSuccessListener(aVoid -> {
                         Log.d(TAG, "Chat 1:1 creado correctamente en Firebase");
 
-                        DatabaseReference userChatsRef = FirebaseManager.getInstance().getDatabase().getReference("user-chats");
+                        // Resumen del chat para la lista de cada uno (un solo update para los dos)
+                        Map<String, Object> summaries = new HashMap<>();
+                        ChatSummaries.putNewChat(summaries, newChat, currentUserUid);
+                        ChatSummaries.putNewChat(summaries, newChat, otherUserUid);
 
-                        Log.d(TAG, "Actualizando user-chats para " + currentUserUid);
-                        userChatsRef.child(currentUserUid).child(chatId).setValue(true);
-
-                        Log.d(TAG, "Actualizando user-chats para " + otherUserUid);
-                        userChatsRef.child(otherUserUid).child(chatId).setValue(true)
+                        Log.d(TAG, "Actualizando user-chats para " + currentUserUid + " y " + otherUserUid);
+                        FirebaseManager.getInstance().getDatabase().getReference()
+                                .updateChildren(summaries)
                                 .addOnSuccessListener(aVoid2 -> {
                                     Log.d(TAG, "user-chats actualizados para ambos usuarios");
 
@@ -157,7 +160,7 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactV
                                     }
                                 })
                                 .addOnFailureListener(e -> {
-                                    Log.e(TAG, "ERROR actualizando user-chats del otro usuario: " + e.getMessage());
+                                    Log.e(TAG, "ERROR actualizando user-chats: " + e.getMessage());
                                     isProcessingClick = false;
                                 });
                     })
@@ -186,7 +189,7 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactV
         }
 
         FirebaseManager.getInstance().getDatabase()
-                .getReference("user-chats")
+                .getReference(FirebaseManager.USER_CHATS)
                 .child(currentUserUid)
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
@@ -207,42 +210,53 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactV
                                 continue;
                             }
 
-                            FirebaseManager.getInstance().getDatabase()
-                                    .getReference("chats").child(chatId)
-                                    .addListenerForSingleValueEvent(new ValueEventListener() {
-                                        @Override
-                                        public void onDataChange(@NonNull DataSnapshot chatSnapshot) {
-                                            Chat chat = chatSnapshot.getValue(Chat.class);
-                                            if (chat != null && chat.getParticipants() != null && !chat.isGroup()) {
-                                                long otherCount = chat.getParticipants().keySet().stream()
-                                                        .filter(uid -> !uid.equals(currentUserUid))
-                                                        .count();
-
-                                                if (otherCount == 1) {
-                                                    String otherUid = chat.getParticipants().keySet().stream()
-                                                            .filter(uid -> !uid.equals(currentUserUid))
-                                                            .findFirst()
-                                                            .orElse(null);
-                                                    if (otherUid != null) {
-                                                        uidsWithIndividualChat.add(otherUid);
-                                                    }
-                                                }
-                                            }
+                            // Con el resumen ya sabemos si es 1:1 y con quién, sin leer el chat
+                            if (ChatSummaries.isComplete(chatSnap)) {
+                                ChatSummary summary = chatSnap.getValue(ChatSummary.class);
+                                if (summary != null && !summary.isGroup() && !summary.getOtherUid().isEmpty()) {
+                                    uidsWithIndividualChat.add(summary.getOtherUid());
+                                }
+                                processed[0]++;
+                                if (processed[0] == totalChats) {
+                                    filterAndShowUsers(allUsers, currentUserUid, uidsWithIndividualChat);
+                                }
+                                continue;
+                            }
 
-                                            processed[0]++;
-                                            if (processed[0] == totalChats) {
-                                                filterAndShowUsers(allUsers, currentUserUid, uidsWithIndividualChat);
+                            // Entrada antigua ("true"): toca leer los metadatos
+                            ChatSchemaMigration.loadChat(chatId, new ChatSchemaMigration.ChatCallback() {
+                                @Override
+                                public void onChat(@Nullable Chat chat) {
+                                    if (chat != null && chat.getParticipants() != null && !chat.isGroup()) {
+                                        long otherCount = chat.getParticipants().keySet().stream()
+                                                .filter(uid -> !uid.equals(currentUserUid))
+                                                .count();
+
+                                        if (otherCount == 1) {
+                                            String otherUid = chat.getParticipants().keySet().stream()
+                                                    .filter(uid -> !uid.equals(currentUserUid))
+                                                    .findFirst()
+                                                    .orElse(null);
+                                            if (otherUid != null) {
+                                                uidsWithIndividualChat.add(otherUid);
                                             }
                                         }
+                                    }
 
-                                        @Override
-                                        public void onCancelled(@NonNull DatabaseError error) {
-                                            processed[0]++;
-                                            if (processed[0] == totalChats) {
-                                                filterAndShowUsers(allUsers, currentUserUid, uidsWithIndividualChat);
-                                            }
-                                        }
-                                    });
+                                    processed[0]++;
+                                    if (processed[0] == totalChats) {
+                                        filterAndShowUsers(allUsers, currentUserUid, uidsWithIndividualChat);
+                                    }
+                                }
+
+                                @Override
+                                public void onError(@NonNull String error) {
+                                    processed[0]++;
+                                    if (processed[0] == totalChats) {
+                                        filterAndShowUsers(allUsers, currentUserUid, uidsWithIndividualChat);
+                                    }
+                                }
+                            });
                         }
                     }
 
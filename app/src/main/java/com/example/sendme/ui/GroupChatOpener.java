@@ -0,0 +1,95 @@
+package com.example.sendme.ui;
+
+import androidx.annotation.NonNull;
+
+import com.example.sendme.data.model.Message;
+import com.example.sendme.repository.UserRepository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Lo que hace el chat de grupo al entrar, una vez comprobada la membresía: abrir los mensajes
+ * y pedir los nombres de los participantes a la vez.
+ *
+ * Los mensajes no esperan a los perfiles: se pintan con {@link SenderNames#PLACEHOLDER} y,
+ * cuando llegan los nombres, el {@link Listener} recibe solo los remitentes que han cambiado
+ * para repintar sus filas. Con los miembros que entran después se piden solo los que faltan,
+ * y lo mismo con los remitentes de mensajes que ya no están en el grupo (ver {@link #onMessages}).
+ *
+ * Se usa desde el hilo principal.
+ */
+public class GroupChatOpener {
+
+    /** Arranca la carga de mensajes (en la app, el MessageStream del grupo) */
+    public interface Messages {
+        void open();
+    }
+
+    /** Lectura de perfiles (en la app, {@link UserRepository#getUsers}) */
+    public interface Profiles {
+        void getUsers(@NonNull Collection<String> uids, @NonNull UserRepository.UsersCallback callback);
+    }
+
+    /** Remitentes cuya etiqueta ha cambiado: hay que repintar sus mensajes */
+    public interface Listener {
+        void onNamesChanged(@NonNull Set<String> senders);
+    }
+
+    private final SenderNames names;
+    private final Messages messages;
+    private final Profiles profiles;
+    private final Listener listener;
+    private final Set<String> pending = new HashSet<>(); // Pedidos y aún sin respuesta
+
+    public GroupChatOpener(@NonNull SenderNames names, @NonNull Messages messages,
+                           @NonNull Profiles profiles, @NonNull Listener listener) {
+        this.names = names;
+        this.messages = messages;
+        this.profiles = profiles;
+        this.listener = listener;
+    }
+
+    /** Entrada al grupo: mensajes y nombres salen a la vez */
+    public void open(@NonNull Collection<String> participants) {
+        messages.open();
+        loadNames(participants);
+    }
+
+    /** Ha cambiado la lista de miembros: se piden solo los nombres que aún no se tienen */
+    public void onMembersChanged(@NonNull Collection<String> participants) {
+        Set<String> missing = new HashSet<>();
+        for (String uid : participants) {
+            if (isMissing(uid)) missing.add(uid);
+        }
+        if (!missing.isEmpty()) loadNames(missing);
+    }
+
+    /**
+     * Mensajes que se van a pintar: si alguno es de alguien que ya no es miembro (o aún no ha
+     * llegado la membresía), se pide su nombre. Todos los que falten en un solo lote.
+     */
+    public void onMessages(@NonNull Collection<Message> shown) {
+        Set<String> missing = new HashSet<>();
+        for (Message message : shown) {
+            String sender = message.getSender();
+            if (sender != null && isMissing(sender)) missing.add(sender);
+        }
+        if (!missing.isEmpty()) loadNames(missing);
+    }
+
+    private boolean isMissing(@NonNull String uid) {
+        return !names.isResolved(uid) && !pending.contains(uid);
+    }
+
+    private void loadNames(@NonNull Collection<String> uids) {
+        Set<String> requested = new HashSet<>(uids);
+        pending.addAll(requested);
+        profiles.getUsers(requested, users -> {
+            pending.removeAll(requested);
+            Set<String> changed = names.resolve(requested, users);
+            if (!changed.isEmpty()) listener.onNamesChanged(changed);
+        });
+    }
+}
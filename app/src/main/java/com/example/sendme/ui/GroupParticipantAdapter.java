@@ -56,7 +56,7 @@ public class GroupParticipantAdapter extends RecyclerView.Adapter<GroupParticipa
         boolean isCurrentUser = user.getUid() != null && user.getUid().equals(currentUserUid);
 
         // Foto de perfil
-        String imageUrl = user.getImageUrl();
+        String imageUrl = user.getThumbnailUrl();
         Glide.with(holder.binding.getRoot().getContext())
                 .load(imageUrl != null && !imageUrl.isEmpty() ? imageUrl : R.drawable.default_profile)
                 .circleCrop()
@@ -0,0 +1,139 @@
+package com.example.sendme.ui;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Chat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Lista de chats ordenada (más reciente arriba) que se actualiza de forma incremental.
+ *
+ * Antes cada cambio en un chat hacía removeIf + sort de toda la lista + notifyDataSetChanged,
+ * o sea, se repintaban todas las filas y Glide recargaba todos los avatares por un mensaje.
+ * Aquí hay un mapa id → chat y una lista ordenada; para localizar un chat se busca por
+ * (timestamp, id) con búsqueda binaria y solo se avisa de lo que ha cambiado de verdad:
+ * insertado, quitado, movido y/o cambiado.
+ *
+ * El orden es por lastMessageTimestamp descendente y, a igualdad, por id, para que sea estable.
+ */
+public class InboxIndex {
+
+    /** Eventos mínimos para el adapter (posiciones ya en el estado nuevo) */
+    public interface Listener {
+        void onInserted(int position);
+        void onRemoved(int position);
+        void onMoved(int fromPosition, int toPosition);
+
+        /**
+         * @param previewOnly true si solo cambian último mensaje / hora / no leídos
+         *                    (el nombre y la imagen siguen igual y no hace falta recargarlos)
+         */
+        void onChanged(int position, boolean previewOnly);
+    }
+
+    static final Comparator<Chat> ORDER = (a, b) -> {
+        int byTime = Long.compare(b.getLastMessageTimestamp(), a.getLastMessageTimestamp());
+        return byTime != 0 ? byTime : a.getId().compareTo(b.getId());
+    };
+
+    private final Map<String, Chat> byId = new HashMap<>();
+    private final List<Chat> sorted = new ArrayList<>();
+    private Listener listener;
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    public int size() {
+        return sorted.size();
+    }
+
+    public boolean isEmpty() {
+        return sorted.isEmpty();
+    }
+
+    @NonNull
+    public Chat get(int position) {
+        return sorted.get(position);
+    }
+
+    @Nullable
+    public Chat getById(@NonNull String chatId) {
+        return byId.get(chatId);
+    }
+
+    /** Posición actual del chat o -1 si no está */
+    public int indexOf(@NonNull String chatId) {
+        Chat chat = byId.get(chatId);
+        return chat != null ? Collections.binarySearch(sorted, chat, ORDER) : -1;
+    }
+
+    /**
+     * Inserta o actualiza un chat. Si no cambia nada visible no se avisa al adapter.
+     */
+    public void upsert(@NonNull Chat chat) {
+        Chat old = byId.put(chat.getId(), chat);
+
+        if (old == null) {
+            int pos = insertionPoint(chat);
+            sorted.add(pos, chat);
+            if (listener != null) listener.onInserted(pos);
+            return;
+        }
+
+        int from = Collections.binarySearch(sorted, old, ORDER);
+        if (ORDER.compare(old, chat) == 0) {
+            // Mismo sitio: solo se sustituye
+            sorted.set(from, chat);
+        } else {
+            sorted.remove(from);
+            int to = insertionPoint(chat);
+            sorted.add(to, chat);
+            if (listener != null && from != to) listener.onMoved(from, to);
+            from = to;
+        }
+
+        if (listener != null && !sameContent(old, chat)) {
+            listener.onChanged(from, sameIdentity(old, chat));
+        }
+    }
+
+    /** Quita un chat (si estaba) */
+    public void remove(@NonNull String chatId) {
+        Chat old = byId.remove(chatId);
+        if (old == null) return;
+
+        int pos = Collections.binarySearch(sorted, old, ORDER);
+        sorted.remove(pos);
+        if (listener != null) listener.onRemoved(pos);
+    }
+
+    private int insertionPoint(Chat chat) {
+        int pos = Collections.binarySearch(sorted, chat, ORDER);
+        // No puede estar (cada id una vez), así que binarySearch devuelve -(punto de inserción) - 1
+        return pos < 0 ? -pos - 1 : pos;
+    }
+
+    /** Nombre, icono, tipo y participantes: lo que decide qué se pinta como cabecera de la fila */
+    private static boolean sameIdentity(Chat a, Chat b) {
+        return a.isGroup() == b.isGroup()
+                && Objects.equals(a.getGroupName(), b.getGroupName())
+                && Objects.equals(a.getGroupIcon(), b.getGroupIcon())
+                && Objects.equals(a.getParticipants(), b.getParticipants());
+    }
+
+    private static boolean sameContent(Chat a, Chat b) {
+        return sameIdentity(a, b)
+                && a.getLastMessageTimestamp() == b.getLastMessageTimestamp()
+                && Objects.equals(a.getLastMessage(), b.getLastMessage())
+                && Objects.equals(a.getUnreadCount(), b.getUnreadCount());
+    }
+}
@@ -13,210 +13,443 @@ import android.text.Spanned;
 import android.text.style.BackgroundColorSpan;
 import android.text.style.ForegroundColorSpan;
 import android.util.Log;
-import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.navigation.NavController;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
 import com.example.sendme.R;
 import com.example.sendme.data.model.Message;
-import com.example.sendme.databinding.ItemMessageBinding;
+import com.example.sendme.databinding.ItemMessageGroupReceivedBinding;
+import com.example.sendme.databinding.ItemMessageReceivedImageBinding;
+import com.example.sendme.databinding.ItemMessageReceivedTextBinding;
+import com.example.sendme.databinding.ItemMessageSentImageBinding;
+import com.example.sendme.databinding.ItemMessageSentTextBinding;
+import com.example.sendme.repository.MessageSearchIndex;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Adaptador para mostrar los mensajes (texto o imagen) en un RecyclerView.
  */
 public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageViewHolder> {
 
-    private List<Message> messages = new ArrayList<>();
     private String currentUserUid; // ← UID del usuario actual
     private static final String TAG = "MessageAdapter";
     private NavController navController;
     private final boolean isGroupChat;
-    private final Map<String, String> uidToNameMap; // ← Map UID → Nombre (para grupos)
+    private final SenderNames senderNames; // ← UID → Nombre (para grupos), se va rellenando
+
+    /** Lo que cambia en una fila sin tener que volver a enlazarla entera */
+    enum Payload {
+        /** Solo la etiqueta del remitente (ha llegado su perfil) */
+        SENDER_NAME,
+        /** Solo el texto y su resaltado (búsqueda, coincidencia actual o texto cambiado) */
+        HIGHLIGHT
+    }
 
-    private static String searchQuery = ""; // ← Query de búsqueda actual (para resaltar)
+    private static final String[] NO_WORDS = new String[0];
+    private static final int[] NO_RANGES = new int[0];
+    private static final int HIGHLIGHT_COLOR = 0xFFFFFF88;         // Amarillo claro
+    private static final int CURRENT_HIGHLIGHT_COLOR = 0xFFFFB74D; // Naranja: la actual
+
+    // Un layout por tipo de fila: el bind solo pone contenido (nada de gravity, fondos ni
+    // márgenes) y RecyclerView reutiliza cada fila para otra del mismo tipo.
+    static final int TYPE_SENT_TEXT = 0;
+    static final int TYPE_RECEIVED_TEXT = 1;
+    static final int TYPE_SENT_IMAGE = 2;
+    static final int TYPE_RECEIVED_IMAGE = 3;
+    static final int TYPE_GROUP_RECEIVED_TEXT = 4;   // Con el nombre del remitente
+    static final int TYPE_GROUP_RECEIVED_IMAGE = 5;
+
+    // La lista la aplica el differ: calcula en segundo plano qué filas cambian y solo notifica
+    // esas (nada de notifyDataSetChanged, que recrea todas las filas y recarga cada imagen).
+    private final AsyncListDiffer<Message> differ = new AsyncListDiffer<>(this, new MessageDiffCallback());
+    // Última lista enviada al differ (puede que aún no esté aplicada): las siguientes parten de ella
+    private List<Message> latest = Collections.emptyList();
+    // Callbacks de las listas enviadas que aún no se han aplicado (ver submit)
+    private final List<Runnable> pendingCommits = new ArrayList<>();
+
+    // Palabras de la búsqueda actual, normalizadas como en MessageSearchIndex (para resaltar).
+    // Cada búsqueda crea un array nuevo, así que una fila sabe si está pintada con la búsqueda
+    // vigente comparando la referencia.
+    private String[] searchWords = NO_WORDS;
+    private String currentHitId; // Mensaje de la coincidencia seleccionada
+    private RecyclerView recyclerView;
+    private RequestManager glide; // Uno para todas las filas (atado al ciclo de vida de la lista)
 
     // Constructor para chats individuales
     public MessageAdapter(String currentUserUid, NavController navController) {
         this.currentUserUid = currentUserUid;
         this.navController = navController;
         this.isGroupChat = false;
-        this.uidToNameMap = new HashMap<>();
+        this.senderNames = new SenderNames();
+        setHasStableIds(true);
     }
 
-    // Constructor para grupos
-    public MessageAdapter(String currentUserUid, NavController navController, Map<String, String> uidToNameMap) {
+    // Constructor para grupos: los nombres pueden llegar después (ver onSenderNamesChanged)
+    public MessageAdapter(String currentUserUid, NavController navController, SenderNames senderNames) {
         this.currentUserUid = currentUserUid;
         this.navController = navController;
         this.isGroupChat = true;
-        this.uidToNameMap = uidToNameMap != null ? uidToNameMap : new HashMap<>();
+        this.senderNames = senderNames != null ? senderNames : new SenderNames();
+        setHasStableIds(true);
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return viewTypeOf(getItem(position), currentUserUid, isGroupChat);
+    }
+
+    static int viewTypeOf(Message message, @Nullable String currentUserUid, boolean isGroupChat) {
+        boolean image = message.isImageMessage();
+        if (currentUserUid != null && currentUserUid.equals(message.getSender())) {
+            return image ? TYPE_SENT_IMAGE : TYPE_SENT_TEXT;
+        }
+        if (isGroupChat) {
+            return image ? TYPE_GROUP_RECEIVED_IMAGE : TYPE_GROUP_RECEIVED_TEXT;
+        }
+        return image ? TYPE_RECEIVED_IMAGE : TYPE_RECEIVED_TEXT;
     }
 
     @NonNull
     @Override
     public MessageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        ItemMessageBinding binding = ItemMessageBinding.inflate(LayoutInflater.from(parent.getContext()), parent, false);
-        return new MessageViewHolder(binding, navController, isGroupChat);
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (glide == null) glide = Glide.with(parent);
+        switch (viewType) {
+            case TYPE_SENT_TEXT: {
+                ItemMessageSentTextBinding b = ItemMessageSentTextBinding.inflate(inflater, parent, false);
+                return new MessageViewHolder(b.getRoot(), b.messageText, b.timestampText, null, null,
+                        navController, glide);
+            }
+            case TYPE_SENT_IMAGE: {
+                ItemMessageSentImageBinding b = ItemMessageSentImageBinding.inflate(inflater, parent, false);
+                return new MessageViewHolder(b.getRoot(), b.messageText, b.timestampText, b.messageImage, null,
+                        navController, glide);
+            }
+            case TYPE_RECEIVED_IMAGE: {
+                ItemMessageReceivedImageBinding b = ItemMessageReceivedImageBinding.inflate(inflater, parent, false);
+                return new MessageViewHolder(b.getRoot(), b.messageText, b.timestampText, b.messageImage, null,
+                        navController, glide);
+            }
+            case TYPE_GROUP_RECEIVED_TEXT:
+            case TYPE_GROUP_RECEIVED_IMAGE: {
+                ItemMessageGroupReceivedBinding b = ItemMessageGroupReceivedBinding.inflate(inflater, parent, false);
+                // Mismo layout para los dos: la imagen se oculta una vez, al crear la fila
+                boolean image = viewType == TYPE_GROUP_RECEIVED_IMAGE;
+                b.messageImage.setVisibility(image ? View.VISIBLE : View.GONE);
+                return new MessageViewHolder(b.getRoot(), b.messageText, b.timestampText,
+                        image ? b.messageImage : null, b.senderNameText, navController, glide);
+            }
+            case TYPE_RECEIVED_TEXT:
+            default: {
+                ItemMessageReceivedTextBinding b = ItemMessageReceivedTextBinding.inflate(inflater, parent, false);
+                return new MessageViewHolder(b.getRoot(), b.messageText, b.timestampText, null, null,
+                        navController, glide);
+            }
+        }
     }
 
     @Override
-    public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
-        Message message = messages.get(position);
-        boolean isSentByCurrentUser = currentUserUid != null && currentUserUid.equals(message.getSender());
-
-        String senderName = null;
-        if (isGroupChat && !isSentByCurrentUser) {
-            senderName = uidToNameMap.get(message.getSender());
-            if (senderName == null || senderName.isEmpty()) {
-                senderName = "Usuario";
+    public void onBindViewHolder(@NonNull MessageViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            super.onBindViewHolder(holder, position, payloads);
+            return;
+        }
+
+        Message message = getItem(position);
+        // Bucle con índice: el iterador del for-each ya reservaría memoria en cada bind
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (payload == Payload.SENDER_NAME) {
+                holder.bindSenderName(senderNames.label(message.getSender()));
+            } else if (payload == Payload.HIGHLIGHT) {
+                holder.bindContent(message, searchWords, isCurrentHit(message));
             }
         }
+    }
 
-        holder.bind(message, isSentByCurrentUser, senderName);
+    @Override
+    public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
+        Message message = getItem(position);
+        // Solo las filas de recibidos de grupo tienen etiqueta (el holder ignora el nombre si no)
+        holder.row.bind(message, isGroupChat ? senderNames : null);
+        holder.bind(message, searchWords, isCurrentHit(message));
     }
 
     @Override
-    public int getItemCount() {
-        return messages.size();
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
     }
 
-    public void addMessage(Message message) {
-        messages.add(message);
-        notifyItemInserted(messages.size() - 1);
-        Log.d(TAG, "Mensaje añadido al adapter");
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        this.recyclerView = null;
     }
 
-    public void setMessages(List<Message> messages) {
-        this.messages = messages != null ? messages : new ArrayList<>();
-        notifyDataSetChanged();
-        Log.d(TAG, "Mensajes establecidos en adapter: " + this.messages.size());
+    /**
+     * Las filas que vuelven de la caché del RecyclerView no se vuelven a enlazar: si se
+     * pintaron con otra búsqueda (o eran la coincidencia actual) se corrige aquí el resaltado.
+     */
+    @Override
+    public void onViewAttachedToWindow(@NonNull MessageViewHolder holder) {
+        super.onViewAttachedToWindow(holder);
+        int position = holder.getBindingAdapterPosition();
+        if (position == RecyclerView.NO_POSITION || position >= getItemCount()) return;
+
+        Message message = getItem(position);
+        boolean isCurrent = isCurrentHit(message);
+        if (holder.boundWords != searchWords || holder.boundCurrent != isCurrent) {
+            holder.bindContent(message, searchWords, isCurrent);
+        }
     }
 
-    /** Nuevo método: establece la query de búsqueda y fuerza re-bind para resaltar */
-    public void setSearchQuery(String query) {
-        this.searchQuery = (query == null || query.trim().isEmpty()) ? "" : query.toLowerCase().trim();
-        notifyDataSetChanged();
+    /**
+     * Han llegado los nombres de estos remitentes: se repinta solo la etiqueta de sus
+     * mensajes (sin volver a cargar imágenes ni tocar el resto de filas).
+     */
+    public void onSenderNamesChanged(Set<String> senders) {
+        if (!isGroupChat) return;
+        for (int position : SenderNames.positionsOf(differ.getCurrentList(), senders, currentUserUid)) {
+            notifyItemChanged(position, Payload.SENDER_NAME);
+        }
     }
 
-    static class MessageViewHolder extends RecyclerView.ViewHolder {
+    @Override
+    public int getItemCount() {
+        return differ.getCurrentList().size();
+    }
 
-        private final ItemMessageBinding binding;
-        private final NavController navController;
-        private final boolean isGroupChat;
+    /** Id estable a partir de la clave del mensaje, así RecyclerView reconoce la fila aunque se mueva */
+    @Override
+    public long getItemId(int position) {
+        return stableId(getItem(position).getId());
+    }
 
-        MessageViewHolder(ItemMessageBinding binding, NavController navController, boolean isGroupChat) {
-            super(binding.getRoot());
-            this.binding = binding;
-            this.navController = navController;
-            this.isGroupChat = isGroupChat;
+    private Message getItem(int position) {
+        return differ.getCurrentList().get(position);
+    }
+
+    /**
+     * Las claves de Firebase son cadenas; para el id se usa su hash FNV-1a de 64 bits
+     * (con el hashCode de 32 bits ya habría colisiones en chats largos).
+     */
+    static long stableId(@Nullable String key) {
+        if (key == null) return RecyclerView.NO_ID;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
         }
+        return hash;
+    }
 
-        void bind(Message message, boolean isSentByCurrentUser, String senderName) {
-            // Nombre del remitente (solo en grupos y si no es mío)
-            if (isGroupChat && !isSentByCurrentUser && senderName != null) {
-                binding.senderNameText.setText(senderName);
-                binding.senderNameText.setVisibility(View.VISIBLE);
-            } else {
-                binding.senderNameText.setVisibility(View.GONE);
-            }
+    /**
+     * Los cambios de lista son asíncronos: {@code onCommitted} se llama (en el hilo principal)
+     * cuando el adapter ya tiene la lista nueva, para hacer scroll a posiciones que existan.
+     */
+    public void addMessages(List<Message> messages, @Nullable Runnable onCommitted) {
+        if (messages == null || messages.isEmpty()) return;
+        // Todos de una vez: una sola copia de la lista y un solo diff, no uno por mensaje
+        List<Message> next = new ArrayList<>(latest.size() + messages.size());
+        next.addAll(latest);
+        next.addAll(messages);
+        submit(next, onCommitted);
+        Log.d(TAG, "Mensajes añadidos al adapter: " + messages.size());
+    }
 
-            // Texto del mensaje + resaltado si hay búsqueda activa
-            if (message.getContent() != null && !message.getContent().isEmpty()) {
-                String content = message.getContent();
-
-                if (!searchQuery.isEmpty()) {
-                    SpannableString spannable = new SpannableString(content);
-                    String lowerContent = content.toLowerCase();
-                    int index = lowerContent.indexOf(searchQuery);
-
-                    while (index >= 0) {
-                        // Fondo amarillo claro
-                        spannable.setSpan(new BackgroundColorSpan(Color.parseColor("#FFFF88")),
-                                index, index + searchQuery.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-                        // Texto negro para buena legibilidad
-                        spannable.setSpan(new ForegroundColorSpan(Color.BLACK),
-                                index, index + searchQuery.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-
-                        index = lowerContent.indexOf(searchQuery, index + searchQuery.length());
-                    }
-
-                    binding.messageText.setText(spannable);
-                } else {
-                    binding.messageText.setText(content);
-                }
+    /** Inserta una página de mensajes antiguos al principio de la lista (scroll hacia arriba) */
+    public void prependMessages(List<Message> older, @Nullable Runnable onCommitted) {
+        if (older == null || older.isEmpty()) return;
+        List<Message> next = new ArrayList<>(older.size() + latest.size());
+        next.addAll(older);
+        next.addAll(latest);
+        submit(next, onCommitted);
+        Log.d(TAG, "Página anterior añadida al adapter: " + older.size());
+    }
 
-                binding.messageText.setVisibility(View.VISIBLE);
-            } else {
-                binding.messageText.setVisibility(View.GONE);
+    public void setMessages(List<Message> messages, @Nullable Runnable onCommitted) {
+        submit(messages != null ? new ArrayList<>(messages) : new ArrayList<>(), onCommitted);
+        Log.d(TAG, "Mensajes establecidos en adapter: " + latest.size());
+    }
+
+    private void submit(List<Message> next, @Nullable Runnable onCommitted) {
+        latest = next;
+        // Si llega otra lista antes de aplicar esta, el differ descarta su callback: se guardan
+        // todos y se llaman cuando se aplique la última (así no se pierde el scroll de setMessages)
+        if (onCommitted != null) pendingCommits.add(onCommitted);
+        differ.submitList(next, this::runPendingCommits);
+    }
+
+    private void runPendingCommits() {
+        List<Runnable> commits = new ArrayList<>(pendingCommits);
+        pendingCommits.clear();
+        for (Runnable commit : commits) commit.run();
+    }
+
+    /**
+     * Cambia lo que se resalta. La lista no se toca: solo se repinta el texto de las filas que
+     * están en pantalla (las de la caché se corrigen al volver, ver onViewAttachedToWindow).
+     */
+    public void setSearchQuery(String query) {
+        // Mismas palabras que busca el índice: sin tildes y la última como prefijo
+        String[] words = MessageSearchIndex.queryTerms(query);
+        if (words.length == 0 && searchWords.length == 0) return;
+
+        searchWords = words.length == 0 ? NO_WORDS : words;
+        if (words.length == 0) currentHitId = null;
+        notifyVisibleHighlights(null, null);
+    }
+
+    /** Marca la coincidencia actual (se pinta de otro color); solo se repintan la anterior y esta */
+    public void setCurrentHit(@Nullable String messageId) {
+        if (Objects.equals(messageId, currentHitId)) return;
+        String previousId = currentHitId;
+        currentHitId = messageId;
+        notifyVisibleHighlights(previousId, messageId);
+    }
+
+    private boolean isCurrentHit(Message message) {
+        return currentHitId != null && currentHitId.equals(message.getId());
+    }
+
+    /** Repinta el resaltado de las filas en pantalla: todas, o solo las de estos mensajes */
+    private void notifyVisibleHighlights(@Nullable String firstId, @Nullable String secondId) {
+        if (recyclerView == null) return;
+        boolean all = firstId == null && secondId == null;
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION || position >= getItemCount()) continue;
+
+            String id = getItem(position).getId();
+            if (all || (id != null && (id.equals(firstId) || id.equals(secondId)))) {
+                notifyItemChanged(position, Payload.HIGHLIGHT);
             }
+        }
+    }
 
-            // Imagen
-            if (message.getImageUrl() != null && !message.getImageUrl().isEmpty()) {
-                binding.messageImage.setVisibility(View.VISIBLE);
-                Glide.with(binding.getRoot().getContext())
-                        .load(message.getImageUrl())
-                        .error(R.drawable.ic_close_white_24dp)
-                        .into(binding.messageImage);
+    static class MessageViewHolder extends RecyclerView.ViewHolder {
 
-                binding.messageImage.setOnClickListener(v -> {
+        private final TextView messageText;
+        private final TextView timestampText;
+        @Nullable
+        private final ImageView messageImage;   // Solo en las filas de imagen
+        @Nullable
+        private final TextView senderNameText;  // Solo en las de recibidos de grupo
+        private final NavController navController;
+        private final RequestManager glide;
+        private Message message;                // El que está enlazado ahora
+        final MessageRowText.Row row = new MessageRowText.Row();
+
+        // Con qué se pintó el resaltado por última vez
+        private String[] boundWords = NO_WORDS;
+        private boolean boundCurrent;
+
+        MessageViewHolder(View root, TextView messageText, TextView timestampText, @Nullable ImageView messageImage,
+                          @Nullable TextView senderNameText, NavController navController, RequestManager glide) {
+            super(root);
+            this.messageText = messageText;
+            this.timestampText = timestampText;
+            this.messageImage = messageImage;
+            this.senderNameText = senderNameText;
+            this.navController = navController;
+            this.glide = glide;
+
+            if (messageImage != null) {
+                // Los listeners se ponen una vez y usan el mensaje enlazado en ese momento
+                messageImage.setOnClickListener(v -> {
+                    if (message == null || navController == null) return;
                     Bundle bundle = new Bundle();
                     bundle.putString("imageUrl", message.getImageUrl());
+                    bundle.putString("thumbnailUrl", message.getThumbnailUrl());
                     navController.navigate(R.id.imageViewerFragment, bundle);
                 });
 
-                binding.messageImage.setOnLongClickListener(v -> {
-                    showDownloadDialog(message.getImageUrl());
+                messageImage.setOnLongClickListener(v -> {
+                    if (message != null) showDownloadDialog(message.getImageUrl());
                     return true;
                 });
-            } else {
-                binding.messageImage.setVisibility(View.GONE);
             }
+        }
 
-            // Hora
-            SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            binding.timestampText.setText(sdf.format(new Date(message.getTimestamp())));
+        /** Pinta la fila con lo ya calculado en {@link #row} */
+        void bind(Message message, String[] searchWords, boolean isCurrentHit) {
+            this.message = message;
 
-            // Estilo del bubble según si es enviado o recibido
-            if (isSentByCurrentUser) {
-                binding.messageBubble.setBackgroundResource(R.drawable.message_bubble_sent);
-                binding.getRoot().setGravity(Gravity.END);
+            // Nombre del remitente (solo en grupos y si no es mío)
+            if (row.senderName != null) bindSenderName(row.senderName);
 
-                ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) binding.messageBubble.getLayoutParams();
-                params.leftMargin = dpToPx(64);
-                params.rightMargin = dpToPx(12);
-                binding.messageBubble.setLayoutParams(params);
-            } else {
-                binding.messageBubble.setBackgroundResource(R.drawable.message_bubble_received);
-                binding.getRoot().setGravity(Gravity.START);
+            // Texto del mensaje + resaltado si hay búsqueda activa
+            bindContent(message, searchWords, isCurrentHit);
+
+            // Imagen (la miniatura; la original solo a pantalla completa)
+            if (messageImage != null) {
+                glide.load(row.thumbnailUrl)
+                        .error(R.drawable.ic_close_white_24dp)
+                        .into(messageImage);
+            }
+
+            // Hora (formateada una vez por mensaje, ver MessageRowText)
+            timestampText.setText(row.time);
+        }
+
+        /** Texto del mensaje con las palabras buscadas resaltadas (la coincidencia actual en naranja) */
+        void bindContent(Message message, String[] searchWords, boolean isCurrentHit) {
+            boundWords = searchWords;
+            boundCurrent = isCurrentHit;
+
+            String content = message.getContent();
+            if (content == null || content.isEmpty()) {
+                messageText.setVisibility(View.GONE);
+                return;
+            }
+
+            int[] ranges = searchWords.length > 0
+                    ? MessageSearchIndex.highlightRanges(content, searchWords) : NO_RANGES;
+            if (ranges.length > 0) {
+                SpannableString spannable = new SpannableString(content);
+                int color = isCurrentHit ? CURRENT_HIGHLIGHT_COLOR : HIGHLIGHT_COLOR;
+
+                for (int i = 0; i < ranges.length; i += 2) {
+                    spannable.setSpan(new BackgroundColorSpan(color),
+                            ranges[i], ranges[i + 1], Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    // Texto negro para buena legibilidad
+                    spannable.setSpan(new ForegroundColorSpan(Color.BLACK),
+                            ranges[i], ranges[i + 1], Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                }
 
-                ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) binding.messageBubble.getLayoutParams();
-                params.leftMargin = dpToPx(12);
-                params.rightMargin = dpToPx(64);
-                binding.messageBubble.setLayoutParams(params);
+                messageText.setText(spannable);
+            } else {
+                messageText.setText(content);
             }
+
+            messageText.setVisibility(View.VISIBLE);
         }
 
-        private int dpToPx(int dp) {
-            float density = binding.getRoot().getContext().getResources().getDisplayMetrics().density;
-            return Math.round(dp * density);
+        void bindSenderName(String senderName) {
+            if (senderNameText != null) senderNameText.setText(senderName);
         }
 
         private void showDownloadDialog(String imageUrl) {
-            new AlertDialog.Builder(binding.getRoot().getContext())
+            new AlertDialog.Builder(itemView.getContext())
                     .setTitle("Descargar imagen")
                     .setMessage("¿Deseas descargar esta imagen?")
                     .setPositiveButton("Sí", (d, w) -> downloadImage(imageUrl))
@@ -225,7 +458,7 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         }
 
         private void downloadImage(String imageUrl) {
-            DownloadManager dm = (DownloadManager) binding.getRoot().getContext()
+            DownloadManager dm = (DownloadManager) itemView.getContext()
                     .getSystemService(Context.DOWNLOAD_SERVICE);
             Uri uri = Uri.parse(imageUrl);
             DownloadManager.Request request = new DownloadManager.Request(uri);
@@ -233,7 +466,7 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
             request.setDestinationInExternalPublicDir(Environment.DIRECTORY_PICTURES,
                     "SendMe/" + System.currentTimeMillis() + ".jpg");
             dm.enqueue(request);
-            Toast.makeText(binding.getRoot().getContext(), "Descarga iniciada", Toast.LENGTH_SHORT).show();
+            Toast.makeText(itemView.getContext(), "Descarga iniciada", Toast.LENGTH_SHORT).show();
         }
     }
 }
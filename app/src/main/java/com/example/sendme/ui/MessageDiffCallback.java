@@ -0,0 +1,44 @@
+package com.example.sendme.ui;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.example.sendme.data.model.Message;
+
+import java.util.Objects;
+
+/**
+ * Qué ha cambiado entre dos listas de mensajes, para que el adapter solo toque esas filas.
+ *
+ * Un mensaje es el mismo si tiene la misma clave de Firebase. Si solo ha cambiado el texto se
+ * repinta solo el texto ({@link MessageAdapter.Payload#HIGHLIGHT}), sin volver a cargar la
+ * imagen con Glide ni rehacer el bubble.
+ */
+class MessageDiffCallback extends DiffUtil.ItemCallback<Message> {
+
+    @Override
+    public boolean areItemsTheSame(@NonNull Message oldItem, @NonNull Message newItem) {
+        return oldItem == newItem || (oldItem.getId() != null && oldItem.getId().equals(newItem.getId()));
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull Message oldItem, @NonNull Message newItem) {
+        return oldItem == newItem
+                || (Objects.equals(oldItem.getContent(), newItem.getContent()) && sameFrame(oldItem, newItem));
+    }
+
+    @Nullable
+    @Override
+    public Object getChangePayload(@NonNull Message oldItem, @NonNull Message newItem) {
+        // Mismo remitente, imagen y hora: solo ha cambiado el texto
+        return sameFrame(oldItem, newItem) ? MessageAdapter.Payload.HIGHLIGHT : null;
+    }
+
+    /** Todo lo que no es el texto */
+    private static boolean sameFrame(@NonNull Message oldItem, @NonNull Message newItem) {
+        return Objects.equals(oldItem.getSender(), newItem.getSender())
+                && Objects.equals(oldItem.getImageUrl(), newItem.getImageUrl())
+                && oldItem.getTimestamp() == newItem.getTimestamp();
+    }
+}
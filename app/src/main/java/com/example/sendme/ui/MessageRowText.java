@@ -0,0 +1,56 @@
+package com.example.sendme.ui;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Textos de una fila de mensaje, calculados una sola vez.
+ *
+ * Igual que {@link ChatRowText}: la hora se formatea la primera vez que se pinta cada mensaje
+ * y se guarda en él, así que volver a pasar por la misma fila al hacer scroll no crea
+ * formateadores, fechas ni Strings.
+ *
+ * {@link Row} es la parte del bind que no toca vistas: el adapter la rellena y luego solo
+ * copia sus campos a la fila.
+ */
+final class MessageRowText {
+
+    // Solo se usa desde el hilo principal (bind), así que compartirlos no es problema
+    private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    private static final Date DATE = new Date();
+
+    private MessageRowText() {}
+
+    /** Lo que se pinta en una fila de mensaje. Hay una por ViewHolder y se reutiliza en cada bind. */
+    static final class Row {
+        @Nullable
+        String senderName;      // Solo en grupos (la fila la ignora si no tiene etiqueta)
+        @Nullable
+        String thumbnailUrl;    // Solo en mensajes con imagen
+        String time;
+
+        /** {@code senderNames} es null en los chats 1:1 */
+        void bind(@NonNull Message message, @Nullable SenderNames senderNames) {
+            senderName = senderNames != null ? senderNames.label(message.getSender()) : null;
+            thumbnailUrl = message.getThumbnailUrl();
+            time = timestamp(message);
+        }
+    }
+
+    @NonNull
+    static String timestamp(@NonNull Message message) {
+        String text = message.getTimestampText();
+        if (text == null) {
+            DATE.setTime(message.getTimestamp());
+            text = TIME_FORMAT.format(DATE);
+            message.setTimestampText(text);
+        }
+        return text;
+    }
+}
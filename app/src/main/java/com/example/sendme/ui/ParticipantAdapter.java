@@ -54,7 +54,7 @@ public class ParticipantAdapter extends RecyclerView.Adapter<ParticipantAdapter.
 
         void bind(User user) {
             // Cargar imagen de perfil redondeada con Glide
-            String imageUrl = user.getImageUrl() != null && !user.getImageUrl().isEmpty() ? user.getImageUrl() : null;
+            String imageUrl = user.getThumbnailUrl() != null && !user.getThumbnailUrl().isEmpty() ? user.getThumbnailUrl() : null;
             Glide.with(binding.getRoot().getContext())
                     .load(imageUrl != null ? imageUrl : R.drawable.default_profile)
                     .error(R.drawable.default_profile)
@@ -0,0 +1,144 @@
+package com.example.sendme.ui;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.sendme.data.model.Message;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Coincidencias de la búsqueda dentro de un chat, para ir de una a otra sin tocar la lista.
+ *
+ * La lista de mensajes se queda entera en el adapter; aquí solo se guardan las posiciones de
+ * los mensajes que coinciden (ordenadas, de la más antigua a la más reciente) y cuál es la
+ * actual. Siguiente/anterior es mover un índice sobre ese array.
+ *
+ * Los resultados del índice pueden incluir mensajes guardados en local que todavía no están
+ * cargados en la lista (más antiguos que la primera página): cuentan para el total y, al
+ * pasar de la más antigua cargada, {@link #hasOlderUnloaded()} avisa de que hay que pedir la
+ * página anterior y volver a llamar a {@link #locate}.
+ */
+public class SearchHits {
+
+    private static final int[] NONE = new int[0];
+
+    private Set<String> keys = new HashSet<>();
+    private int[] positions = NONE;
+    private int current = -1;       // Índice en positions
+    private String currentKey;       // Para no perder la actual cuando cambian las posiciones
+
+    /** Resultados nuevos (de {@link com.example.sendme.repository.ChatSearch}); la actual pasa a ser la más reciente */
+    public void setResults(@NonNull List<Message> messages, @NonNull List<Message> newestFirst) {
+        keys = new HashSet<>(newestFirst.size() * 2);
+        for (Message hit : newestFirst) {
+            if (hit.getId() != null) keys.add(hit.getId());
+        }
+        currentKey = null;
+        locate(messages);
+        if (positions.length > 0) select(positions.length - 1, messages);
+    }
+
+    /**
+     * Recalcula las posiciones (una pasada por la lista) después de que se hayan añadido
+     * mensajes por arriba. La actual sigue siendo el mismo mensaje.
+     */
+    public void locate(@NonNull List<Message> messages) {
+        if (keys.isEmpty()) {
+            positions = NONE;
+            current = -1;
+            return;
+        }
+
+        int[] found = new int[Math.min(keys.size(), messages.size())];
+        int count = 0;
+        current = -1;
+        for (int i = 0; i < messages.size() && count < found.length; i++) {
+            String id = messages.get(i).getId();
+            if (id == null || !keys.contains(id)) continue;
+            if (id.equals(currentKey)) current = count;
+            found[count++] = i;
+        }
+        positions = count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    /** Ha llegado un mensaje nuevo al final de la lista que coincide con la búsqueda */
+    public void onAppended(@NonNull Message message, int position) {
+        if (message.getId() == null) return;
+        keys.add(message.getId());
+        if (positions.length > 0 && positions[positions.length - 1] >= position) return;
+        int[] grown = Arrays.copyOf(positions, positions.length + 1);
+        grown[positions.length] = position;
+        positions = grown;
+    }
+
+    /** Pasa a la coincidencia más reciente; devuelve su posición o NO_POSITION si no hay */
+    public int next(@NonNull List<Message> messages) {
+        if (positions.length == 0) return RecyclerView.NO_POSITION;
+        return select(Math.min(current + 1, positions.length - 1), messages);
+    }
+
+    /**
+     * Pasa a la anterior (más antigua); en la primera cargada se queda donde está. Si no había
+     * ninguna seleccionada (todas estaban sin cargar) empieza por la más reciente.
+     */
+    public int previous(@NonNull List<Message> messages) {
+        if (positions.length == 0) return RecyclerView.NO_POSITION;
+        return select(current < 0 ? positions.length - 1 : Math.max(current - 1, 0), messages);
+    }
+
+    /** Posición en la lista de la coincidencia actual, o NO_POSITION */
+    public int currentPosition() {
+        return current >= 0 ? positions[current] : RecyclerView.NO_POSITION;
+    }
+
+    /** Clave del mensaje de la coincidencia actual, o null */
+    @Nullable
+    public String currentKey() {
+        return current >= 0 ? currentKey : null;
+    }
+
+    /** Para ir a la anterior hay que cargar antes otra página (ya estamos en la primera cargada) */
+    public boolean hasOlderUnloaded() {
+        return keys.size() > positions.length && (positions.length == 0 || current == 0);
+    }
+
+    public boolean hasOlder() {
+        return keys.size() > positions.length || current > 0 || (current < 0 && positions.length > 0);
+    }
+
+    public boolean hasNewer() {
+        return current >= 0 && current < positions.length - 1;
+    }
+
+    /** Número de la actual contando desde la más reciente (1 = la última), 0 si no hay */
+    public int currentNumber() {
+        return current >= 0 ? positions.length - current : 0;
+    }
+
+    /** Total de coincidencias, cargadas o no */
+    public int total() {
+        return keys.size();
+    }
+
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    public void clear() {
+        keys = new HashSet<>();
+        positions = NONE;
+        current = -1;
+        currentKey = null;
+    }
+
+    private int select(int index, @NonNull List<Message> messages) {
+        current = index;
+        currentKey = messages.get(positions[index]).getId();
+        return positions[index];
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.sendme.ui;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.sendme.data.model.Message;
+import com.example.sendme.databinding.ItemSearchHeaderBinding;
+import com.example.sendme.databinding.ItemSearchHitBinding;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Resultados de la búsqueda en todos los chats, agrupados: una cabecera con el nombre del chat
+ * y debajo sus mensajes (del más reciente al más antiguo).
+ *
+ * Los grupos se van añadiendo al final según terminan los chats
+ * ({@link com.example.sendme.repository.GlobalSearch}), así que cada llegada es un
+ * notifyItemRangeInserted y lo ya pintado no se toca.
+ */
+public class SearchResultAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    /** Nombre que se muestra para un chat (grupo o el otro usuario) */
+    public interface ChatTitles {
+        @NonNull
+        String titleOf(@NonNull String chatId);
+    }
+
+    public interface OnHitClickListener {
+        void onHitClick(@NonNull String chatId, @NonNull Message message);
+    }
+
+    private static final int TYPE_HEADER = 0;
+    private static final int TYPE_HIT = 1;
+
+    // Solo se usa desde el hilo principal (bind)
+    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd/MM HH:mm", Locale.getDefault());
+    private static final Date DATE = new Date();
+
+    /** Una fila: cabecera (message == null) o mensaje encontrado */
+    private static class Row {
+        final String chatId;
+        @Nullable
+        final Message message;
+
+        Row(String chatId, @Nullable Message message) {
+            this.chatId = chatId;
+            this.message = message;
+        }
+    }
+
+    private final List<Row> rows = new ArrayList<>();
+    private final ChatTitles titles;
+    private final OnHitClickListener listener;
+
+    public SearchResultAdapter(@NonNull ChatTitles titles, @NonNull OnHitClickListener listener) {
+        this.titles = titles;
+        this.listener = listener;
+    }
+
+    /** Añade los resultados de un chat al final */
+    public void addChat(@NonNull String chatId, @NonNull List<Message> hits) {
+        if (hits.isEmpty()) return;
+        int start = rows.size();
+        rows.add(new Row(chatId, null));
+        for (Message message : hits) rows.add(new Row(chatId, message));
+        notifyItemRangeInserted(start, hits.size() + 1);
+    }
+
+    public void clear() {
+        int count = rows.size();
+        if (count == 0) return;
+        rows.clear();
+        notifyItemRangeRemoved(0, count);
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return rows.get(position).message == null ? TYPE_HEADER : TYPE_HIT;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == TYPE_HEADER) {
+            return new HeaderViewHolder(ItemSearchHeaderBinding.inflate(inflater, parent, false));
+        }
+
+        HitViewHolder holder = new HitViewHolder(ItemSearchHitBinding.inflate(inflater, parent, false));
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) return;
+            Row row = rows.get(position);
+            if (row.message != null) listener.onHitClick(row.chatId, row.message);
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        Row row = rows.get(position);
+        if (holder instanceof HeaderViewHolder) {
+            ((HeaderViewHolder) holder).binding.chatTitleText.setText(titles.titleOf(row.chatId));
+        } else if (row.message != null) {
+            ItemSearchHitBinding binding = ((HitViewHolder) holder).binding;
+            binding.hitContentText.setText(row.message.getContent());
+            DATE.setTime(row.message.getTimestamp());
+            binding.hitTimestampText.setText(DATE_FORMAT.format(DATE));
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    static class HeaderViewHolder extends RecyclerView.ViewHolder {
+        final ItemSearchHeaderBinding binding;
+
+        HeaderViewHolder(ItemSearchHeaderBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+        }
+    }
+
+    static class HitViewHolder extends RecyclerView.ViewHolder {
+        final ItemSearchHitBinding binding;
+
+        HitViewHolder(ItemSearchHitBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+        }
+    }
+}
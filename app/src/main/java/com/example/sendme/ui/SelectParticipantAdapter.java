@@ -76,7 +76,7 @@ public class SelectParticipantAdapter extends RecyclerView.Adapter<SelectPartici
             Log.d("SelectParticipantAdapter", "Binding user: " + user.getUsername() + ", UID: " + userUid);
 
             // Imagen de perfil
-            String imageUrl = user.getImageUrl();
+            String imageUrl = user.getThumbnailUrl();
             Glide.with(binding.getRoot().getContext())
                     .load(imageUrl != null && !imageUrl.isEmpty() ? imageUrl : R.drawable.default_profile)
                     .error(R.drawable.default_profile)
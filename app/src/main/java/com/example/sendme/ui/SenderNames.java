@@ -0,0 +1,80 @@
+package com.example.sendme.ui;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+import com.example.sendme.data.model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nombres de los remitentes de un grupo, que se van rellenando mientras ya se ven los mensajes.
+ *
+ * Antes el chat de grupo no cargaba ni un mensaje hasta tener el nombre de todos los
+ * participantes. Ahora los mensajes se pintan enseguida con {@link #PLACEHOLDER} como
+ * remitente y, cuando llegan los perfiles, solo se repintan las filas de esos remitentes.
+ */
+public class SenderNames {
+
+    /** Lo que se muestra mientras no ha llegado el perfil */
+    public static final String PLACEHOLDER = "…";
+
+    /** Para perfiles que no existen o no tienen nombre */
+    static final String UNKNOWN = "Usuario";
+
+    private final Map<String, String> byUid = new HashMap<>();
+
+    /** Nombre del remitente o {@link #PLACEHOLDER} si aún no se sabe */
+    @NonNull
+    public String label(@Nullable String uid) {
+        String name = uid != null ? byUid.get(uid) : null;
+        return name != null ? name : PLACEHOLDER;
+    }
+
+    public boolean isResolved(@Nullable String uid) {
+        return uid != null && byUid.containsKey(uid);
+    }
+
+    /**
+     * Apunta los nombres de los UIDs pedidos (los que no vienen en {@code users} quedan
+     * como {@link #UNKNOWN}) y devuelve los que han cambiado de etiqueta.
+     */
+    @NonNull
+    public Set<String> resolve(@NonNull Collection<String> uids, @NonNull Map<String, User> users) {
+        Set<String> changed = new HashSet<>();
+        for (String uid : uids) {
+            User user = users.get(uid);
+            String name = user != null ? user.getUsername() : null;
+            if (name == null || name.trim().isEmpty()) name = UNKNOWN;
+
+            if (!name.equals(byUid.put(uid, name))) changed.add(uid);
+        }
+        return changed;
+    }
+
+    /**
+     * Posiciones de {@code messages} que hay que repintar porque su remitente está en
+     * {@code senders} (los míos no llevan etiqueta y se saltan).
+     */
+    @NonNull
+    public static List<Integer> positionsOf(@NonNull List<Message> messages, @NonNull Set<String> senders,
+                                            @Nullable String currentUserUid) {
+        List<Integer> positions = new ArrayList<>();
+        if (senders.isEmpty()) return positions;
+
+        for (int i = 0; i < messages.size(); i++) {
+            String sender = messages.get(i).getSender();
+            if (sender != null && !sender.equals(currentUserUid) && senders.contains(sender)) {
+                positions.add(i);
+            }
+        }
+        return positions;
+    }
+}
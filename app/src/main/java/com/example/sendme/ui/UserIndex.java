@@ -0,0 +1,37 @@
+package com.example.sendme.ui;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.User;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Perfiles indexados por UID para las listas.
+ *
+ * Antes el adapter buscaba al otro usuario de cada fila con users.stream().filter(...)
+ * en cada bind (y otra vez en el click), o sea, O(filas × usuarios) y un stream nuevo por fila.
+ * Con el mapa la búsqueda es O(1) y no crea nada.
+ */
+public class UserIndex {
+
+    private final Map<String, User> byUid = new HashMap<>();
+
+    /** Añade o sustituye un perfil (los que no tienen UID se ignoran) */
+    public void put(@NonNull User user) {
+        if (user.getUid() != null) {
+            byUid.put(user.getUid(), user);
+        }
+    }
+
+    @Nullable
+    public User get(@Nullable String uid) {
+        return uid != null ? byUid.get(uid) : null;
+    }
+
+    public int size() {
+        return byUid.size();
+    }
+}
@@ -7,15 +7,15 @@ import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.text.Editable;
-import android.text.InputType;
 import android.text.TextWatcher;
 import android.util.Log;
+import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.Window;
+import android.view.WindowManager;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 import android.widget.Toast;
@@ -33,24 +33,32 @@ import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
 import androidx.navigation.fragment.NavHostFragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.sendme.R;
 import com.example.sendme.data.model.Message;
 import com.example.sendme.data.model.User;
+import com.example.sendme.databinding.DialogMessageSearchBinding;
 import com.example.sendme.databinding.FragmentChatBinding;
+import com.example.sendme.repository.ChatSchemaMigration;
+import com.example.sendme.repository.ChatSearch;
+import com.example.sendme.repository.ChatSummaries;
 import com.example.sendme.repository.FirebaseManager;
-import com.example.sendme.repository.ImgurApiClient;
+import com.example.sendme.repository.ImagePreprocessor;
+import com.example.sendme.repository.MessagePager;
+import com.example.sendme.repository.MessageSearchIndex;
+import com.example.sendme.repository.MessageStream;
+import com.example.sendme.repository.ReadCursor;
+import com.example.sendme.repository.UploadQueue;
 import com.example.sendme.ui.MessageAdapter;
-import com.google.firebase.database.ChildEventListener;
+import com.example.sendme.ui.SearchHits;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.ServerValue;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -68,16 +76,47 @@ public class ChatFragment extends Fragment {
     private boolean isGroup;
     private String currentUserUid;
     private DatabaseReference messagesRef;
-    private ChildEventListener messageListener;
     private static final String TAG = "ChatFragment";
-    private List<String> displayedMessageIds = new ArrayList<>();
     private ActivityResultLauncher<String> requestPermissionLauncher;
     private ActivityResultLauncher<String> pickImageLauncher;
     private NavController navController;
     private List<Message> allMessages = new ArrayList<>(); // Lista completa
     private String currentSearchQuery = "";
+    private MessageStream messageStream;
+    // Mensaje al que saltar al abrir (resultado de la búsqueda global) y lo que se buscó
+    private String targetMessageId;
+    private String targetQuery;
+    private ChatSearch chatSearch; // Búsqueda en el chat (índice compartido con GlobalSearch)
+    private ReadCursor readCursor; // Hasta dónde he leído (sustituye al reset de no leídos por mensaje)
+
+    // Cuántas filas antes del principio empezamos a pedir la página anterior
+    private static final int LOAD_OLDER_THRESHOLD = 5;
 
     private AlertDialog searchDialog; // ← Dialog para búsqueda
+    private DialogMessageSearchBinding searchBinding;
+    private final SearchHits searchHits = new SearchHits(); // Coincidencias de la búsqueda abierta
+    private boolean revealOlderHit; // Se ha pedido la anterior y hay que cargar antes otra página
+
+    // Imágenes de este chat en la cola de subidas: llegan aquí solo mientras la vista existe
+    private final UploadQueue.Listener uploadListener = new UploadQueue.Listener() {
+        @Override
+        public void onProgress(@NonNull String uploadId, long sent, long total) {
+            updateUploadProgress(sent, total);
+        }
+
+        @Override
+        public void onUploaded(@NonNull String uploadId, @NonNull String imageUrl) {
+            // El mensaje ya lo ha enviado la cola (ChatImageSender), aquí solo se avisa
+            Toast.makeText(requireContext(), "Imagen enviada", Toast.LENGTH_SHORT).show();
+            updateUploadProgress(0, -1);
+        }
+
+        @Override
+        public void onFailed(@NonNull String uploadId, @NonNull String error) {
+            Toast.makeText(requireContext(), "Error al subir imagen: " + error, Toast.LENGTH_LONG).show();
+            updateUploadProgress(0, -1);
+        }
+    };
 
     public ChatFragment() {}
 
@@ -95,6 +134,8 @@ public class ChatFragment extends Fragment {
             chatId = getArguments().getString("chatId");
             isGroup = getArguments().getBoolean("isGroup", false);
             groupName = getArguments().getString("groupName");
+            targetMessageId = getArguments().getString("messageId");
+            targetQuery = getArguments().getString("searchQuery");
         }
 
         if (chatId == null) {
@@ -119,8 +160,7 @@ public class ChatFragment extends Fragment {
             return;
         }
 
-        messagesRef = FirebaseManager.getInstance().getDatabase()
-                .getReference("chats").child(chatId).child("messages");
+        messagesRef = FirebaseManager.getInstance().getChatMessagesRef(chatId);
 
         // Launchers de permisos e imágenes
         requestPermissionLauncher = registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> {
@@ -163,7 +203,7 @@ public class ChatFragment extends Fragment {
         // Header para chat 1:1
         if (!isGroup && otherUser != null) {
             binding.contactName.setText(otherUser.getUsername());
-            String imageUrl = otherUser.getImageUrl();
+            String imageUrl = otherUser.getThumbnailUrl();
             Glide.with(this)
                     .load(imageUrl != null && !imageUrl.isEmpty() ? Uri.parse(imageUrl) : R.drawable.default_profile)
                     .error(R.drawable.default_profile)
@@ -186,9 +226,15 @@ public class ChatFragment extends Fragment {
         adapter = new MessageAdapter(currentUserUid, navController);
         binding.messagesRecyclerView.setAdapter(adapter);
 
-        resetUnreadCount();
-        loadAllMessages();
-        listenForMessages();
+        messageStream = new MessageStream(chatId, messagesRef, getResources().getInteger(R.integer.message_page_size));
+        setupPagination(layoutManager);
+
+        readCursor = new ReadCursor(currentUserUid, chatId);
+        chatSearch = new ChatSearch(chatId);
+        // Los chats del formato antiguo se migran antes de leer "chat-messages" y antes de
+        // enviar nada (un envío escribiría un chat-meta a medias que la migración pisaría)
+        setSendEnabled(false);
+        ChatSchemaMigration.ensureMigrated(chatId, this::onChatMigrated);
 
         binding.sendIcon.setOnClickListener(v -> {
             String content = binding.messageInput.getText().toString().trim();
@@ -233,18 +279,21 @@ public class ChatFragment extends Fragment {
         }
 
         AlertDialog.Builder builder = new AlertDialog.Builder(requireContext());
-        final EditText input = new EditText(requireContext());
-        input.setHint("Introduce un texto para buscar mensajes");
-        input.setPadding(48, 48, 48, 32);
-        input.setTextSize(16);
-        input.setInputType(InputType.TYPE_CLASS_TEXT);
-
-        builder.setView(input);
+        searchBinding = DialogMessageSearchBinding.inflate(getLayoutInflater());
+        builder.setView(searchBinding.getRoot());
         builder.setNegativeButton("Cancelar", (dialog, which) -> dialog.dismiss());
 
         searchDialog = builder.create();
 
-        // Filtrado y resaltado en tiempo real
+        // Arriba y sin oscurecer: la lista se tiene que ver mientras se salta entre coincidencias
+        Window window = searchDialog.getWindow();
+        if (window != null) {
+            window.setGravity(Gravity.TOP);
+            window.clearFlags(WindowManager.LayoutParams.FLAG_DIM_BEHIND);
+        }
+
+        // Búsqueda en tiempo real: la lista no se filtra, se resaltan y se recorren las coincidencias
+        final EditText input = searchBinding.searchInput;
         input.addTextChangedListener(new TextWatcher() {
             @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
             @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
@@ -252,20 +301,17 @@ public class ChatFragment extends Fragment {
                 String query = s.toString().trim().toLowerCase();
                 currentSearchQuery = query;
                 performSearch(query);
-                if (adapter != null) {
-                    adapter.setSearchQuery(query);
-                }
             }
         });
+        searchBinding.searchPrevButton.setOnClickListener(v -> showPreviousHit());
+        searchBinding.searchNextButton.setOnClickListener(v -> showHit(searchHits.next(allMessages)));
 
         // Al cerrar el dialog
         searchDialog.setOnDismissListener(dialog -> {
             currentSearchQuery = "";
             performSearch("");
-            if (adapter != null) {
-                adapter.setSearchQuery("");
-            }
             searchDialog = null;
+            searchBinding = null;
         });
 
         searchDialog.show();
@@ -283,122 +329,180 @@ public class ChatFragment extends Fragment {
         String messageId = messagesRef.push().getKey();
         message.setId(messageId);
 
-        if (messageId != null && isAdded()) {
-            allMessages.add(message);
-            adapter.addMessage(message);
-            displayedMessageIds.add(messageId);
-            binding.messagesRecyclerView.scrollToPosition(adapter.getItemCount() - 1);
-        }
+        // No lo pinto aquí: Firebase lanza el evento local al momento y lo recibe
+        // el listener de mensajes nuevos (así no hace falta deduplicar)
+        if (messageId == null) return;
 
-        messagesRef.child(messageId).setValue(message)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Mensaje enviado correctamente");
-                    updateChatMetadata(content != null ? content : "Imagen");
-                })
+        // Mensaje + metadatos + bandejas en un único updateChildren atómico
+        Map<String, Object> updates = ChatSummaries.sendUpdates(chatId, participants(), message);
+        FirebaseManager.getInstance().getDatabase().getReference().updateChildren(updates)
+                .addOnSuccessListener(aVoid -> Log.d(TAG, "Mensaje enviado correctamente"))
                 .addOnFailureListener(e -> {
-                    Toast.makeText(requireContext(), "Error al enviar mensaje", Toast.LENGTH_SHORT).show();
+                    if (isAdded()) {
+                        Toast.makeText(requireContext(), "Error al enviar mensaje", Toast.LENGTH_SHORT).show();
+                    }
                     Log.e(TAG, "Error enviando mensaje: " + e.getMessage());
                 });
     }
 
-    private void resetUnreadCount() {
-        if (currentUserUid != null && chatId != null) {
-            FirebaseManager.getInstance().getDatabase()
-                    .getReference("chats").child(chatId)
-                    .child("unreadCount").child(currentUserUid)
-                    .setValue(0);
-        }
+    /** Yo y, en un 1:1, el otro usuario */
+    private List<String> participants() {
+        List<String> participants = new ArrayList<>();
+        participants.add(currentUserUid);
+        if (!isGroup && otherUser != null) participants.add(otherUser.getUid());
+        return participants;
     }
 
-    private void updateChatMetadata(String lastMessage) {
-        if (chatId == null) return;
+    /** El chat ya está en el formato nuevo: se puede leer y enviar */
+    private void onChatMigrated() {
+        if (!isAdded() || binding == null) return;
 
-        DatabaseReference chatRef = FirebaseManager.getInstance().getDatabase().getReference("chats").child(chatId);
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("lastMessage", lastMessage);
-        updates.put("lastMessageTimestamp", System.currentTimeMillis());
+        setSendEnabled(true);
+        openMessageStream();
 
-        if (!isGroup && otherUser != null) {
-            String otherUid = otherUser.getUid();
-            updates.put("unreadCount/" + otherUid, ServerValue.increment(1));
-            updates.put("unreadCount/" + currentUserUid, 0);
-        }
-        chatRef.updateChildren(updates);
+        // Resultados de subidas de este chat (también las que acabaron con la pantalla cerrada)
+        UploadQueue.getInstance().observe(UploadQueue.chatOwner(chatId), uploadListener);
+        updateUploadProgress(0, -1);
     }
 
-    private void loadAllMessages() {
-        if (messagesRef == null) return;
+    private void setSendEnabled(boolean enabled) {
+        binding.sendIcon.setEnabled(enabled);
+        binding.attachIcon.setEnabled(enabled);
+    }
 
-        messagesRef.orderByChild("timestamp").addListenerForSingleValueEvent(new ValueEventListener() {
+    /**
+     * Abre la suscripción única de mensajes: primero la última página y después
+     * solo los mensajes nuevos (ver {@link MessageStream}).
+     */
+    private void openMessageStream() {
+        if (messageStream == null) return;
+
+        messageStream.start(new MessageStream.Listener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (!isAdded()) return;
+            public void onInitialPage(@NonNull List<Message> messages) {
+                if (!isAdded() || binding == null) return;
 
                 allMessages.clear();
-                displayedMessageIds.clear();
-
-                for (DataSnapshot snap : snapshot.getChildren()) {
-                    Message msg = snap.getValue(Message.class);
-                    if (msg != null) {
-                        String msgId = snap.getKey();
-                        if (msg.getId() == null) msg.setId(msgId);
-                        allMessages.add(msg);
-                        displayedMessageIds.add(msgId);
-                    }
+                allMessages.addAll(messages);
+
+                // Abrir el chat = leído hasta el último mensaje (una escritura al entrar)
+                if (readCursor != null && !messages.isEmpty()) {
+                    readCursor.markRead(messages.get(messages.size() - 1));
+                    readCursor.flush();
                 }
 
-                adapter.setMessages(new ArrayList<>(allMessages));
-                binding.messagesRecyclerView.scrollToPosition(allMessages.size() - 1);
+                if (!searchHits.isEmpty()) searchHits.locate(allMessages);
+                adapter.setMessages(allMessages, () -> {
+                    scrollToBottom();
+                    revealTargetMessage();
+                });
+            }
+
+            @Override
+            public void onNewMessages(@NonNull List<Message> messages) {
+                if (!isAdded() || binding == null) return;
+
+                int first = allMessages.size();
+                allMessages.addAll(messages);
+
+                // Solo se apunta lo visto; el cursor se escribe con debounce (ReadCursor)
+                if (readCursor != null) readCursor.markRead(messages.get(messages.size() - 1));
+
+                if (currentSearchQuery.isEmpty()) {
+                    adapter.addMessages(messages, () -> scrollToBottom());
+                } else {
+                    // Buscando no se mueve la lista: si coinciden solo cuentan como unas más
+                    adapter.addMessages(messages, null);
+                    boolean appended = false;
+                    for (int i = 0; i < messages.size(); i++) {
+                        Message message = messages.get(i);
+                        if (MessageSearchIndex.matches(message.getContent(), currentSearchQuery)) {
+                            searchHits.onAppended(message, first + i);
+                            appended = true;
+                        }
+                    }
+                    if (appended) updateSearchCount();
+                }
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Error cargando mensajes: " + error.getMessage());
+            public void onError(@NonNull String error) {
+                Log.e(TAG, "Error cargando mensajes: " + error);
             }
         });
     }
 
-    private void listenForMessages() {
-        if (messagesRef == null) return;
+    /**
+     * Pide la página anterior cuando el usuario llega cerca del principio de la lista.
+     */
+    private void loadOlderMessages() {
+        if (messageStream == null || adapter == null) return;
 
-        messageListener = new ChildEventListener() {
+        messageStream.loadOlder(new MessagePager.PageCallback() {
             @Override
-            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
-                if (!isAdded()) return;
-
-                Message message = snapshot.getValue(Message.class);
-                if (message == null) return;
-
-                String messageId = snapshot.getKey();
-                if (message.getId() == null) message.setId(messageId);
-
-                if (displayedMessageIds.contains(messageId)) return;
+            public void onPage(@NonNull List<Message> page) {
+                if (!isAdded() || binding == null || adapter == null || page.isEmpty()) return;
+
+                // El cursor garantiza que no se solapa con lo que ya tenemos
+                allMessages.addAll(0, page);
+
+                // Las coincidencias se han desplazado; alguna antes sin cargar puede estar ya
+                if (!searchHits.isEmpty()) searchHits.locate(allMessages);
+
+                adapter.prependMessages(page, () -> {
+                    if (binding == null) return;
+                    if (revealOlderHit) {
+                        revealOlderHit = false;
+                        showPreviousHit();
+                    } else if (!searchHits.isEmpty()) {
+                        updateSearchCount();
+                    }
+                    revealTargetMessage();
+                });
+            }
 
-                allMessages.add(message);
-                displayedMessageIds.add(messageId);
+            @Override
+            public void onError(@NonNull String error) {
+                Log.e(TAG, "Error cargando mensajes anteriores: " + error);
+            }
+        });
+    }
 
-                if (!message.getSender().equals(currentUserUid)) {
-                    resetUnreadCount();
-                }
+    /**
+     * Coloca la lista en el mensaje abierto desde la búsqueda global. Si es más antiguo que lo
+     * cargado se pide la página anterior (sale de la copia local, así que es rápido) y, cuando
+     * llega, se vuelve a intentar.
+     */
+    private void revealTargetMessage() {
+        if (targetMessageId == null || adapter == null || binding == null || allMessages.isEmpty()) return;
+
+        for (int i = allMessages.size() - 1; i >= 0; i--) {
+            if (targetMessageId.equals(allMessages.get(i).getId())) {
+                targetMessageId = null;
+                if (targetQuery != null && !targetQuery.isEmpty()) adapter.setSearchQuery(targetQuery);
+                binding.messagesRecyclerView.scrollToPosition(i);
+                return;
+            }
+        }
 
-                boolean matches = currentSearchQuery.isEmpty() ||
-                        (message.getContent() != null && message.getContent().toLowerCase().contains(currentSearchQuery));
+        String oldestKey = allMessages.get(0).getId();
+        if (oldestKey != null && targetMessageId.compareTo(oldestKey) < 0) {
+            loadOlderMessages();
+        } else {
+            targetMessageId = null; // Ya no está (no debería pasar)
+        }
+    }
 
-                if (matches) {
-                    adapter.addMessage(message);
-                    binding.messagesRecyclerView.scrollToPosition(adapter.getItemCount() - 1);
+    private void setupPagination(LinearLayoutManager layoutManager) {
+        binding.messagesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // dy < 0 → el usuario sube hacia mensajes más antiguos
+                if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= LOAD_OLDER_THRESHOLD) {
+                    loadOlderMessages();
                 }
             }
-
-            @Override public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
-            @Override public void onChildRemoved(@NonNull DataSnapshot snapshot) {}
-            @Override public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
-            @Override public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Error escuchando mensajes: " + error.getMessage());
-            }
-        };
-
-        messagesRef.orderByChild("timestamp").addChildEventListener(messageListener);
+        });
     }
 
     private void openGallery() {
@@ -417,56 +521,114 @@ public class ChatFragment extends Fragment {
     }
 
     private void uploadImageToImgur(Uri imageUri) {
-        ImgurApiClient.getInstance().uploadImage(imageUri, requireContext().getContentResolver(), new ImgurApiClient.UploadCallback() {
-            @Override
-            public void onSuccess(String imageUrl) {
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    Toast.makeText(requireContext(), "Imagen subida", Toast.LENGTH_SHORT).show();
-                    sendMessage(null, imageUrl);
-                });
-            }
+        // La subida sigue aunque se gire la pantalla o se salga del chat: al terminar la cola
+        // envía el mensaje y uploadListener solo se entera (ahora o al volver a este chat)
+        UploadQueue.getInstance().enqueue(requireContext().getContentResolver(), imageUri,
+                ImagePreprocessor.Target.MESSAGE, UploadQueue.chatOwner(chatId), currentUserUid);
+        updateUploadProgress(0, -1);
+    }
 
-            @Override
-            public void onFailure(String error) {
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    Toast.makeText(requireContext(), "Error al subir imagen: " + error, Toast.LENGTH_LONG).show();
-                });
-            }
-        });
+    /** Barra fina encima del input mientras haya imágenes de este chat subiéndose */
+    private void updateUploadProgress(long sent, long total) {
+        if (binding == null) return;
+        boolean uploading = UploadQueue.getInstance().pendingCount(UploadQueue.chatOwner(chatId)) > 0;
+        binding.uploadProgress.setVisibility(uploading ? View.VISIBLE : View.GONE);
+        binding.uploadProgress.setIndeterminate(total <= 0);
+        if (total > 0) binding.uploadProgress.setProgress((int) (sent * 100 / total));
     }
 
+    /**
+     * Busca con el índice del chat (en segundo plano) sin tocar la lista: se resaltan las
+     * coincidencias y se salta a la más reciente. Con la consulta vacía se quita el resaltado.
+     */
     private void performSearch(String query) {
-        List<Message> filtered = new ArrayList<>();
+        if (adapter == null) return;
+
+        if (query.isEmpty() || chatSearch == null) {
+            if (chatSearch != null) chatSearch.cancel();
+            searchHits.clear();
+            revealOlderHit = false;
+            adapter.setSearchQuery("");
+            updateSearchCount();
+            return;
+        }
 
-        if (query.isEmpty()) {
-            filtered.addAll(allMessages);
-        } else {
-            for (Message msg : allMessages) {
-                String content = msg.getContent();
-                if (content != null && content.toLowerCase().contains(query)) {
-                    filtered.add(msg);
-                }
-            }
+        chatSearch.search(query, (searched, newestFirst) -> {
+            if (!isAdded() || binding == null || adapter == null || !searched.equals(currentSearchQuery)) return;
+
+            searchHits.setResults(allMessages, newestFirst);
+            revealOlderHit = false;
+            adapter.setSearchQuery(searched);
+            showHit(searchHits.currentPosition());
+        });
+    }
+
+    /** Baja al último mensaje (cuando el adapter ya tiene la lista nueva) */
+    private void scrollToBottom() {
+        if (binding != null && adapter != null && adapter.getItemCount() > 0) {
+            binding.messagesRecyclerView.scrollToPosition(adapter.getItemCount() - 1);
         }
+    }
 
-        adapter.setMessages(filtered);
-        adapter.setSearchQuery(query);
+    /** Marca la coincidencia y la pone en pantalla; si aún no está cargada se pide la página anterior */
+    private void showHit(int position) {
+        if (adapter == null || binding == null) return;
 
-        if (filtered.isEmpty()) {
-            binding.messagesRecyclerView.scrollToPosition(0);
-        } else {
-            binding.messagesRecyclerView.scrollToPosition(filtered.size() - 1);
+        adapter.setCurrentHit(searchHits.currentKey());
+        if (position != RecyclerView.NO_POSITION) {
+            binding.messagesRecyclerView.scrollToPosition(position);
+        } else if (searchHits.hasOlderUnloaded()) {
+            revealOlderHit = true;
+            loadOlderMessages();
         }
+        updateSearchCount();
+    }
+
+    private void showPreviousHit() {
+        if (searchHits.hasOlderUnloaded()) {
+            revealOlderHit = true;
+            loadOlderMessages();
+            return;
+        }
+        showHit(searchHits.previous(allMessages));
+    }
+
+    /** Contador "actual/total" y flechas del dialog de búsqueda */
+    private void updateSearchCount() {
+        if (searchBinding == null) return;
+
+        boolean searching = !currentSearchQuery.isEmpty();
+        searchBinding.searchCountText.setVisibility(searching ? View.VISIBLE : View.GONE);
+        searchBinding.searchCountText.setText(getString(R.string.search_count,
+                searchHits.currentNumber(), searchHits.total()));
+        searchBinding.searchPrevButton.setEnabled(searching && searchHits.hasOlder());
+        searchBinding.searchNextButton.setEnabled(searching && searchHits.hasNewer());
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        // Al salir (o pasar a segundo plano) el cursor se guarda ya, sin esperar al debounce
+        if (readCursor != null) readCursor.flush();
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (messagesRef != null && messageListener != null) {
-            messagesRef.removeEventListener(messageListener);
+        if (readCursor != null) {
+            readCursor.flush();
+            readCursor = null;
+        }
+        if (messageStream != null) {
+            messageStream.stop();
+        }
+        if (chatSearch != null) {
+            chatSearch.close();
+            chatSearch = null;
         }
+        if (chatId != null) UploadQueue.getInstance().removeObserver(UploadQueue.chatOwner(chatId), uploadListener);
         binding = null;
-        displayedMessageIds.clear();
         allMessages.clear();
+        searchHits.clear();
     }
 }
\ No newline at end of file
@@ -1,13 +1,17 @@
 package com.example.sendme.view;
 
 import android.app.AlertDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.inputmethod.InputMethodManager;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -25,23 +29,27 @@ import com.bumptech.glide.Glide;
 import com.example.sendme.AuthActivity;
 import com.example.sendme.R;
 import com.example.sendme.data.model.Chat;
+import com.example.sendme.data.model.ChatSummary;
+import com.example.sendme.data.model.Message;
 import com.example.sendme.data.model.User;
 import com.example.sendme.databinding.FragmentChatListBinding;
+import com.example.sendme.repository.ChatSummaries;
 import com.example.sendme.repository.FirebaseManager;
+import com.example.sendme.repository.GlobalSearch;
+import com.example.sendme.repository.ListenerRegistry;
+import com.example.sendme.repository.LocalMessageStore;
+import com.example.sendme.repository.UserRepository;
 import com.example.sendme.ui.ChatAdapter;
+import com.example.sendme.ui.InboxIndex;
+import com.example.sendme.ui.SearchResultAdapter;
+import com.example.sendme.ui.UserIndex;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.ValueEventListener;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.ListenerRegistration;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Fragmento que muestra la lista de chats activos del usuario.
@@ -54,27 +62,22 @@ public class ChatListFragment extends Fragment {
     private ChatAdapter adapter;
     private DrawerLayout drawerLayout;
     private NavController navController;
-    private DocumentReference userRef;
-    private ListenerRegistration userListener;
+    private ListenerRegistry.Registration userListener;
 
-    // Listener en tiempo real para user-chats (nuevos chats)
-    private ChildEventListener userChatsListener;
-    private DatabaseReference userChatsRef;
-
-    // Maps para referencias y listeners (para removerlos correctamente al salir de un chat)
-    private Map<String, DatabaseReference> lastMessageRefs = new HashMap<>();
-    private Map<String, ValueEventListener> lastMessageListeners = new HashMap<>();
-    private Map<String, DatabaseReference> timestampRefs = new HashMap<>();
-    private Map<String, ValueEventListener> timestampListeners = new HashMap<>();
-    private Map<String, DatabaseReference> unreadRefs = new HashMap<>();
-    private Map<String, ValueEventListener> unreadListeners = new HashMap<>();
+    // Único listener de la lista: los resúmenes de user-chats/{uid} (ver ChatSummary)
+    private ListenerRegistry.Registration userChatsRegistration;
 
     // UID del usuario actual
     private String currentUserUid;
 
-    // Listas para chats y usuarios (para 1:1)
-    private List<Chat> chats = new ArrayList<>();
-    private List<User> contactUsers = new ArrayList<>();
+    // Chats ordenados (se recrea con la vista: el listener vuelve a mandar todos los resúmenes)
+    private InboxIndex inbox;
+    // Perfiles de los otros usuarios (para 1:1), por UID
+    private final UserIndex knownUsers = new UserIndex();
+
+    // Búsqueda en todos los chats (resultados agrupados por chat)
+    private SearchResultAdapter searchAdapter;
+    private String globalSearchQuery = "";
 
     private static final String TAG = "ChatListFragment";
 
@@ -93,11 +96,18 @@ public class ChatListFragment extends Fragment {
         navController = NavHostFragment.findNavController(this);
         drawerLayout = binding.drawerLayout;
 
-        adapter = new ChatAdapter(navController);
+        currentUserUid = FirebaseManager.getInstance().getAuth().getCurrentUser() != null
+                ? FirebaseManager.getInstance().getAuth().getCurrentUser().getUid()
+                : null;
+
+        inbox = new InboxIndex();
+        adapter = new ChatAdapter(navController, inbox, knownUsers, currentUserUid);
 
         binding.chatRecyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
         binding.chatRecyclerView.setAdapter(adapter);
 
+        setupGlobalSearch();
+
         MaterialToolbar toolbar = binding.toolbar;
         if (toolbar != null) {
             if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
@@ -117,10 +127,6 @@ public class ChatListFragment extends Fragment {
             navController.navigate(R.id.action_chatListFragment_to_createGroupFragment);
         });
 
-        currentUserUid = FirebaseManager.getInstance().getAuth().getCurrentUser() != null
-                ? FirebaseManager.getInstance().getAuth().getCurrentUser().getUid()
-                : null;
-
         if (currentUserUid == null) {
             Log.e(TAG, "Usuario no autenticado");
             return;
@@ -128,28 +134,20 @@ public class ChatListFragment extends Fragment {
 
         // Drawer: foto y nombre
         if (binding.profileImageDrawer != null && binding.usernameDrawer != null) {
-            userRef = FirebaseManager.getInstance().getFirestore()
-                    .collection("users")
-                    .document(currentUserUid);
-
-            userListener = userRef.addSnapshotListener((snapshot, error) -> {
-                if (error != null || binding == null || !isAdded()) return;
-
-                if (snapshot != null && snapshot.exists()) {
-                    User user = snapshot.toObject(User.class);
-                    if (user != null) {
-                        String imageUrl = user.getImageUrl() != null && !user.getImageUrl().isEmpty() ? user.getImageUrl() : null;
-                        Glide.with(requireContext())
-                                .load(imageUrl != null ? imageUrl : R.drawable.default_profile)
-                                .error(R.drawable.default_profile)
-                                .circleCrop()
-                                .into(binding.profileImageDrawer);
-
-                        binding.usernameDrawer.setText(user.getUsername() != null && !user.getUsername().isEmpty()
-                                ? user.getUsername()
-                                : "Usuario");
-                    }
-                }
+            // Perfil propio en tiempo real (compartido con cualquier otra pantalla que lo observe)
+            userListener = UserRepository.getInstance().observeUser(currentUserUid, user -> {
+                if (user == null || binding == null || !isAdded()) return;
+
+                String imageUrl = user.getThumbnailUrl() != null && !user.getThumbnailUrl().isEmpty() ? user.getThumbnailUrl() : null;
+                Glide.with(requireContext())
+                        .load(imageUrl != null ? imageUrl : R.drawable.default_profile)
+                        .error(R.drawable.default_profile)
+                        .circleCrop()
+                        .into(binding.profileImageDrawer);
+
+                binding.usernameDrawer.setText(user.getUsername() != null && !user.getUsername().isEmpty()
+                        ? user.getUsername()
+                        : "Usuario");
             });
         }
 
@@ -165,6 +163,9 @@ public class ChatListFragment extends Fragment {
             binding.logoutButton.setOnClickListener(v -> {
                 if (userListener != null) userListener.remove();
                 FirebaseManager.getInstance().getAuth().signOut();
+                // La copia local de mensajes (y lo indexado de ella) es del usuario que sale
+                LocalMessageStore.getInstance().clear();
+                GlobalSearch.getInstance().clear();
                 Intent intent = new Intent(requireContext(), AuthActivity.class);
                 intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                 startActivity(intent);
@@ -172,25 +173,20 @@ public class ChatListFragment extends Fragment {
             });
         }
 
-        // Listener principal para nuevos chats y remoción
-        userChatsRef = FirebaseManager.getInstance().getDatabase()
-                .getReference("user-chats").child(currentUserUid);
+        // Un solo listener para toda la bandeja: cada hijo es el resumen de un chat
+        // (último mensaje, hora y mis no leídos), así que no hace falta nada por chat
+        // Va por el registro: aunque la vista se recree, nunca hay más de un listener en esta ruta
+        DatabaseReference userChatsRef = FirebaseManager.getInstance().getUserChatsRef(currentUserUid);
 
-        userChatsListener = userChatsRef.addChildEventListener(new ChildEventListener() {
+        userChatsRegistration = ListenerRegistry.getInstance().addChildEventListener(userChatsRef, new ChildEventListener() {
             @Override
             public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
-                String chatId = snapshot.getKey();
-                if (chatId != null && snapshot.getValue(Boolean.class) == true) {
-                    loadChatDetails(chatId);
-                }
+                onSummary(snapshot);
             }
 
             @Override
             public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
-                String chatId = snapshot.getKey();
-                if (chatId != null) {
-                    loadChatDetails(chatId);
-                }
+                onSummary(snapshot);
             }
 
             @Override
@@ -207,8 +203,6 @@ public class ChatListFragment extends Fragment {
             }
         });
 
-        loadInitialChats();
-
         // Landscape drawer fijo
         if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
             if (drawerLayout != null) {
@@ -220,6 +214,10 @@ public class ChatListFragment extends Fragment {
         requireActivity().getOnBackPressedDispatcher().addCallback(getViewLifecycleOwner(), new OnBackPressedCallback(true) {
             @Override
             public void handleOnBackPressed() {
+                if (binding != null && binding.searchBar.getVisibility() == View.VISIBLE) {
+                    closeGlobalSearch();
+                    return;
+                }
                 new AlertDialog.Builder(requireContext())
                         .setTitle("¿Salir de SendMe?")
                         .setMessage("¿Estás seguro de que quieres cerrar la aplicación?")
@@ -230,200 +228,170 @@ public class ChatListFragment extends Fragment {
         });
     }
 
-    private void loadInitialChats() {
-        userChatsRef.get().addOnSuccessListener(snapshot -> {
-            for (DataSnapshot child : snapshot.getChildren()) {
-                String chatId = child.getKey();
-                if (chatId != null && child.getValue(Boolean.class) == true) {
-                    loadChatDetails(chatId);
-                }
+    private void setupGlobalSearch() {
+        searchAdapter = new SearchResultAdapter(this::chatTitle, this::openSearchHit);
+        binding.searchResultsRecyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
+        binding.searchResultsRecyclerView.setAdapter(searchAdapter);
+
+        binding.searchIcon.setOnClickListener(v -> openGlobalSearch());
+        binding.closeSearchIcon.setOnClickListener(v -> closeGlobalSearch());
+
+        binding.globalSearchInput.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override public void afterTextChanged(Editable s) {
+                runGlobalSearch(s.toString().trim());
             }
         });
     }
 
-    private void loadChatDetails(String chatId) {
-        DatabaseReference chatRef = FirebaseManager.getInstance().getDatabase().getReference("chats").child(chatId);
+    private void openGlobalSearch() {
+        binding.searchBar.setVisibility(View.VISIBLE);
+        binding.searchResultsRecyclerView.setVisibility(View.VISIBLE);
+        binding.fabNewChat.setVisibility(View.GONE);
+        binding.fabCreateGroup.setVisibility(View.GONE);
 
-        chatRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (!isAdded() || binding == null) return;
+        binding.globalSearchInput.requestFocus();
+        InputMethodManager imm = (InputMethodManager) requireContext().getSystemService(Context.INPUT_METHOD_SERVICE);
+        imm.showSoftInput(binding.globalSearchInput, InputMethodManager.SHOW_IMPLICIT);
+    }
 
-                Chat chat = snapshot.getValue(Chat.class);
-                if (chat == null) return;
+    private void closeGlobalSearch() {
+        binding.globalSearchInput.setText(""); // Cancela la búsqueda y vacía los resultados
+        binding.searchBar.setVisibility(View.GONE);
+        binding.searchResultsRecyclerView.setVisibility(View.GONE);
+        binding.searchEmptyText.setVisibility(View.GONE);
+        binding.fabNewChat.setVisibility(View.VISIBLE);
+        binding.fabCreateGroup.setVisibility(View.VISIBLE);
 
-                chat.setId(chatId);
-                if (chat.getParticipants() == null ||
-                        !chat.getParticipants().containsKey(currentUserUid)) {
+        InputMethodManager imm = (InputMethodManager) requireContext().getSystemService(Context.INPUT_METHOD_SERVICE);
+        imm.hideSoftInputFromWindow(binding.globalSearchInput.getWindowToken(), 0);
+    }
 
-                    // El usuario ya NO pertenece al grupo
-                    removeChatFromList(chatId);
-                    return;
-                }
-                if (!chat.isGroup()) {
-                    String otherUid = getOtherParticipant(chat.getParticipants(), currentUserUid);
-                    if (otherUid != null) {
-                        loadUserForChat(otherUid, chat);
-                    } else {
-                        addOrUpdateChat(chat, null);
-                    }
-                } else {
-                    addOrUpdateChat(chat, null);
-                }
+    /**
+     * Busca en todos los chats guardados en local. Los resultados llegan chat a chat
+     * (ver {@link GlobalSearch}) y se van añadiendo según llegan.
+     */
+    private void runGlobalSearch(String query) {
+        if (query.equals(globalSearchQuery)) return;
+        globalSearchQuery = query;
+
+        searchAdapter.clear();
+        binding.searchEmptyText.setVisibility(View.GONE);
 
-                // === LISTENERS EN TIEMPO REAL ===
-                DatabaseReference lmRef = chatRef.child("lastMessage");
-                lastMessageRefs.put(chatId, lmRef);
-                ValueEventListener lmListener = new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        String newLast = snapshot.getValue(String.class);
-                        if (newLast != null) updateLastMessage(chatId, newLast);
-                    }
-                    @Override public void onCancelled(@NonNull DatabaseError error) {}
-                };
-                lmRef.addValueEventListener(lmListener);
-                lastMessageListeners.put(chatId, lmListener);
-
-                DatabaseReference tsRef = chatRef.child("lastMessageTimestamp");
-                timestampRefs.put(chatId, tsRef);
-                ValueEventListener tsListener = new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        Long newTs = snapshot.getValue(Long.class);
-                        if (newTs != null) updateTimestamp(chatId, newTs);
-                    }
-                    @Override public void onCancelled(@NonNull DatabaseError error) {}
-                };
-                tsRef.addValueEventListener(tsListener);
-                timestampListeners.put(chatId, tsListener);
-
-                DatabaseReference unreadRef = chatRef.child("unreadCount").child(currentUserUid);
-                unreadRefs.put(chatId, unreadRef);
-                ValueEventListener unreadListener = new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        Integer newUnread = snapshot.getValue(Integer.class);
-                        if (newUnread != null) updateUnread(chatId, newUnread);
-                    }
-                    @Override public void onCancelled(@NonNull DatabaseError error) {}
-                };
-                unreadRef.addValueEventListener(unreadListener);
-                unreadListeners.put(chatId, unreadListener);
+        if (query.isEmpty()) {
+            GlobalSearch.getInstance().cancel();
+            return;
+        }
+
+        GlobalSearch.getInstance().search(query, new GlobalSearch.Listener() {
+            @Override
+            public void onChatResults(@NonNull String chatId, @NonNull List<Message> hits) {
+                if (binding == null || searchAdapter == null) return;
+                searchAdapter.addChat(chatId, hits);
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Error cargando chat " + chatId + ": " + error.getMessage());
+            public void onFinished(int chatsSearched) {
+                if (binding == null || searchAdapter == null) return;
+                binding.searchEmptyText.setVisibility(searchAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
             }
         });
     }
 
-    private void updateLastMessage(String chatId, String newLast) {
-        for (Chat c : chats) {
-            if (c.getId().equals(chatId)) {
-                c.setLastMessage(newLast);
-                addOrUpdateChat(c, null);
-                break;
-            }
+    @NonNull
+    private String chatTitle(@NonNull String chatId) {
+        Chat chat = inbox.getById(chatId);
+        if (chat == null) return "Chat";
+        if (chat.isGroup()) {
+            String groupName = chat.getGroupName();
+            return groupName != null && !groupName.trim().isEmpty() ? groupName : "Grupo";
         }
+        User otherUser = knownUsers.get(chat.getOtherUid());
+        return otherUser != null && otherUser.getUsername() != null ? otherUser.getUsername() : "Usuario";
     }
 
-    private void updateTimestamp(String chatId, long newTs) {
-        for (Chat c : chats) {
-            if (c.getId().equals(chatId)) {
-                c.setLastMessageTimestamp(newTs);
-                addOrUpdateChat(c, null);
-                break;
-            }
-        }
-    }
+    /** Abre el chat del resultado colocado en ese mensaje */
+    private void openSearchHit(@NonNull String chatId, @NonNull Message message) {
+        Chat chat = inbox.getById(chatId);
+        if (chat == null) return; // Ya no estoy en ese chat
 
-    private void updateUnread(String chatId, int newUnread) {
-        for (Chat c : chats) {
-            if (c.getId().equals(chatId)) {
-                if (c.getUnreadCount() == null) c.setUnreadCount(new HashMap<>());
-                c.getUnreadCount().put(currentUserUid, newUnread);
-                addOrUpdateChat(c, null);
-                break;
-            }
-        }
+        Bundle extras = new Bundle();
+        extras.putString("messageId", message.getId());
+        extras.putString("searchQuery", globalSearchQuery);
+        ChatAdapter.openChat(navController, chat, knownUsers.get(chat.getOtherUid()), extras);
     }
 
-    private void loadUserForChat(String otherUid, Chat chat) {
-        FirebaseManager.getInstance().getFirestore()
-                .collection("users")
-                .document(otherUid)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (!isAdded() || binding == null) return;
-
-                    User otherUser = documentSnapshot.toObject(User.class);
-                    addOrUpdateChat(chat, otherUser);
-                })
-                .addOnFailureListener(e -> addOrUpdateChat(chat, null));
-    }
+    /**
+     * Procesa un resumen de user-chats. Las entradas antiguas ("true") o incompletas se
+     * completan desde chat-meta y, al escribirse, vuelven a entrar por onChildChanged.
+     */
+    private void onSummary(DataSnapshot snapshot) {
+        String chatId = snapshot.getKey();
+        if (chatId == null) return;
 
-    private void addOrUpdateChat(Chat chat, User otherUser) {
-        if (!isAdded() || binding == null) return;
+        if (!ChatSummaries.isComplete(snapshot)) {
+            ChatSummaries.complete(currentUserUid, chatId, snapshot);
+            return;
+        }
 
-        chats.removeIf(c -> c.getId().equals(chat.getId()));
-        chats.add(chat);
+        ChatSummary summary = snapshot.getValue(ChatSummary.class);
+        if (summary == null) return;
 
-        if (otherUser != null) {
-            contactUsers.removeIf(u -> u.getUid() != null && u.getUid().equals(otherUser.getUid()));
-            contactUsers.add(otherUser);
+        addOrUpdateChat(summary.toChat(chatId, currentUserUid));
+
+        // El perfil del otro se pide si esta lista aún no lo tiene (UserRepository lo cachea)
+        String otherUid = summary.getOtherUid();
+        if (!summary.isGroup() && !otherUid.isEmpty()
+                && knownUsers.get(otherUid) == null) {
+            loadUserForChat(otherUid, chatId);
         }
+    }
 
-        chats.sort((c1, c2) -> Long.compare(c2.getLastMessageTimestamp(), c1.getLastMessageTimestamp()));
+    private void loadUserForChat(String otherUid, String chatId) {
+        UserRepository.getInstance().getUser(otherUid, new UserRepository.UserCallback() {
+            @Override
+            public void onUser(@Nullable User otherUser) {
+                if (!isAdded() || binding == null || otherUser == null) return;
 
-        adapter.setChats(chats, contactUsers);
+                // Solo se añade el usuario: el chat ya está en la lista con el resumen más reciente
+                knownUsers.put(otherUser);
+                adapter.notifyChatChanged(chatId);
+            }
 
-        if (chats.isEmpty()) {
-            binding.emptyChatView.setVisibility(View.VISIBLE);
-            binding.chatRecyclerView.setVisibility(View.GONE);
-        } else {
-            binding.emptyChatView.setVisibility(View.GONE);
-            binding.chatRecyclerView.setVisibility(View.VISIBLE);
-        }
+            @Override
+            public void onError(@NonNull String error) {
+                Log.e(TAG, "Error cargando usuario " + otherUid + ": " + error);
+            }
+        });
     }
 
-    private void removeChatFromList(String chatId) {
+    private void addOrUpdateChat(Chat chat) {
         if (!isAdded() || binding == null) return;
 
-        // Remover listeners para evitar updates residuales después de salir
-        DatabaseReference lmRef = lastMessageRefs.remove(chatId);
-        ValueEventListener lmListener = lastMessageListeners.remove(chatId);
-        if (lmRef != null && lmListener != null) lmRef.removeEventListener(lmListener);
-
-        DatabaseReference tsRef = timestampRefs.remove(chatId);
-        ValueEventListener tsListener = timestampListeners.remove(chatId);
-        if (tsRef != null && tsListener != null) tsRef.removeEventListener(tsListener);
+        // El índice coloca el chat en su sitio y avisa al adapter solo de lo que cambia
+        inbox.upsert(chat);
+        updateEmptyView();
+    }
 
-        DatabaseReference unreadRef = unreadRefs.remove(chatId);
-        ValueEventListener unreadListener = unreadListeners.remove(chatId);
-        if (unreadRef != null && unreadListener != null) unreadRef.removeEventListener(unreadListener);
+    private void removeChatFromList(String chatId) {
+        if (!isAdded() || binding == null) return;
 
         // Remover de la lista local
-        chats.removeIf(c -> c.getId().equals(chatId));
-        adapter.setChats(chats, contactUsers);
+        inbox.remove(chatId);
+        updateEmptyView();
+    }
 
-        if (chats.isEmpty()) {
+    private void updateEmptyView() {
+        if (inbox.isEmpty()) {
             binding.emptyChatView.setVisibility(View.VISIBLE);
             binding.chatRecyclerView.setVisibility(View.GONE);
+        } else {
+            binding.emptyChatView.setVisibility(View.GONE);
+            binding.chatRecyclerView.setVisibility(View.VISIBLE);
         }
     }
 
-    private String getOtherParticipant(Map<String, Boolean> participants, String currentUid) {
-        if (participants == null) return null;
-        for (String uid : participants.keySet()) {
-            if (!uid.equals(currentUid)) {
-                return uid;
-            }
-        }
-        return null;
-    }
-
     @Override
     public void onDestroyView() {
         super.onDestroyView();
@@ -433,30 +401,16 @@ public class ChatListFragment extends Fragment {
             userListener.remove();
         }
 
-        if (userChatsRef != null && userChatsListener != null) {
-            userChatsRef.removeEventListener(userChatsListener);
+        if (userChatsRegistration != null) {
+            userChatsRegistration.remove();
+            userChatsRegistration = null;
         }
 
-        // Limpieza final de listeners residuales
-        for (Map.Entry<String, ValueEventListener> entry : lastMessageListeners.entrySet()) {
-            DatabaseReference ref = lastMessageRefs.get(entry.getKey());
-            if (ref != null) ref.removeEventListener(entry.getValue());
-        }
-        for (Map.Entry<String, ValueEventListener> entry : timestampListeners.entrySet()) {
-            DatabaseReference ref = timestampRefs.get(entry.getKey());
-            if (ref != null) ref.removeEventListener(entry.getValue());
+        if (!globalSearchQuery.isEmpty()) {
+            GlobalSearch.getInstance().cancel();
+            globalSearchQuery = "";
         }
-        for (Map.Entry<String, ValueEventListener> entry : unreadListeners.entrySet()) {
-            DatabaseReference ref = unreadRefs.get(entry.getKey());
-            if (ref != null) ref.removeEventListener(entry.getValue());
-        }
-
-        lastMessageListeners.clear();
-        timestampListeners.clear();
-        unreadListeners.clear();
-        lastMessageRefs.clear();
-        timestampRefs.clear();
-        unreadRefs.clear();
+        searchAdapter = null;
 
         if (drawerLayout != null) {
             drawerLayout.setDrawerLockMode(DrawerLayout.LOCK_MODE_UNLOCKED);
@@ -1,6 +1,5 @@
 package com.example.sendme.view;
 
-import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -26,20 +25,23 @@ import androidx.navigation.fragment.NavHostFragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
 import com.example.sendme.R;
 import com.example.sendme.data.model.Chat;
 import com.example.sendme.data.model.User;
 import com.example.sendme.databinding.FragmentCreateGroupBinding;
+import com.example.sendme.repository.ChatSummaries;
 import com.example.sendme.repository.FirebaseManager;
-import com.example.sendme.repository.ImgurApiClient;
+import com.example.sendme.repository.ImagePreprocessor;
+import com.example.sendme.repository.UploadQueue;
 import com.example.sendme.ui.ParticipantAdapter;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
-import com.google.firebase.database.DatabaseReference;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Fragmento para crear un grupo de chat.
@@ -52,22 +54,68 @@ public class CreateGroupFragment extends Fragment {
     private List<User> participants = new ArrayList<>();
     private ParticipantAdapter participantAdapter;
     private static final String TAG = "CreateGroupFragment";
-    private Uri groupPhotoUri;
+    private static final String KEY_DRAFT_ID = "draft_id";
+    private static final String KEY_PHOTO_URL = "group_photo_url";
+    private static final String KEY_CREATE_REQUESTED = "create_requested";
+
+    // La foto se sube en cuanto se elige (mientras se escribe el nombre) por la cola de la app,
+    // con un owner provisional que sobrevive a la rotación
+    private String photoOwner;
+    private String groupPhotoUrl;
+    private boolean createRequested; // Se ha pulsado crear y se espera a que acabe la foto
+
     private final ActivityResultLauncher<String> pickImageLauncher = registerForActivityResult(
             new ActivityResultContracts.GetContent(), uri -> {
                 if (uri != null) {
-                    groupPhotoUri = uri;
                     binding.groupImage.setImageURI(uri);
                     Log.d(TAG, "Foto de grupo seleccionada: " + uri);
+                    groupPhotoUrl = null;
+                    UploadQueue.getInstance().enqueue(requireContext().getContentResolver(), uri,
+                            ImagePreprocessor.Target.GROUP_ICON, photoOwner);
                 }
             });
 
+    private final UploadQueue.Listener uploadListener = new UploadQueue.Listener() {
+        @Override
+        public void onProgress(@NonNull String uploadId, long sent, long total) {
+            // Sin barra de progreso en esta pantalla
+        }
+
+        @Override
+        public void onUploaded(@NonNull String uploadId, @NonNull String imageUrl) {
+            groupPhotoUrl = imageUrl;
+            if (createRequested && UploadQueue.getInstance().pendingCount(photoOwner) == 0) {
+                createRequested = false;
+                validateAndCreateGroup();
+            }
+        }
+
+        @Override
+        public void onFailed(@NonNull String uploadId, @NonNull String error) {
+            groupPhotoUrl = null;
+            binding.groupImage.setImageResource(R.drawable.group_image_default);
+            Toast.makeText(requireContext(), "Error subiendo foto: " + error, Toast.LENGTH_LONG).show();
+            createRequested = false;
+            binding.confirmGroupButton.setEnabled(true);
+        }
+    };
+
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @NonNull ViewGroup container,
                              @Nullable Bundle savedInstanceState) {
         binding = FragmentCreateGroupBinding.inflate(inflater, container, false);
         navController = NavHostFragment.findNavController(this);
 
+        String draftId = savedInstanceState != null ? savedInstanceState.getString(KEY_DRAFT_ID) : null;
+        if (draftId == null) draftId = "new-" + UUID.randomUUID();
+        photoOwner = UploadQueue.groupIconOwner(draftId);
+        if (savedInstanceState != null) {
+            groupPhotoUrl = savedInstanceState.getString(KEY_PHOTO_URL);
+            createRequested = savedInstanceState.getBoolean(KEY_CREATE_REQUESTED);
+            if (groupPhotoUrl != null) Glide.with(this).load(groupPhotoUrl).into(binding.groupImage);
+            binding.confirmGroupButton.setEnabled(!createRequested);
+        }
+
         // RecyclerView horizontal para participantes
         participantAdapter = new ParticipantAdapter();
         binding.participantsRecycler.setLayoutManager(new LinearLayoutManager(requireContext(), LinearLayoutManager.HORIZONTAL, false));
@@ -150,25 +198,15 @@ public class CreateGroupFragment extends Fragment {
             return;
         }
 
-        // Subir foto si existe
-        if (groupPhotoUri != null) {
+        // Si la foto aún se está subiendo, el grupo se crea cuando termine (uploadListener)
+        if (UploadQueue.getInstance().pendingCount(photoOwner) > 0) {
+            createRequested = true;
             binding.confirmGroupButton.setEnabled(false);
-            ImgurApiClient.getInstance().uploadImage(groupPhotoUri, requireContext().getContentResolver(),
-                    new ImgurApiClient.UploadCallback() {
-                        @Override
-                        public void onSuccess(String imageUrl) {
-                            createGroupInFirebase(groupName, imageUrl, currentUserUid);
-                        }
-
-                        @Override
-                        public void onFailure(String error) {
-                            Toast.makeText(requireContext(), "Error subiendo foto: " + error, Toast.LENGTH_LONG).show();
-                            binding.confirmGroupButton.setEnabled(true);
-                        }
-                    });
-        } else {
-            createGroupInFirebase(groupName, null, currentUserUid);
+            return;
         }
+
+        binding.confirmGroupButton.setEnabled(false);
+        createGroupInFirebase(groupName, groupPhotoUrl, currentUserUid);
     }
 
     private void createGroupInFirebase(String groupName, String groupPhotoUrl, String currentUserUid) {
@@ -187,7 +225,7 @@ public class CreateGroupFragment extends Fragment {
         }
 
         String chatId = FirebaseManager.getInstance().getDatabase()
-                .getReference("chats").push().getKey();
+                .getReference(FirebaseManager.CHAT_META).push().getKey();
 
         if (chatId == null) {
             Toast.makeText(requireContext(), "Error al generar ID del grupo", Toast.LENGTH_SHORT).show();
@@ -205,20 +243,20 @@ public class CreateGroupFragment extends Fragment {
         groupChat.setGroupIcon(groupPhotoUrl != null ? groupPhotoUrl : "");
         groupChat.setGroup(true);
 
-        FirebaseManager.getInstance().getDatabase()
-                .getReference("chats").child(chatId)
+        FirebaseManager.getInstance().getChatMetaRef(chatId)
                 .setValue(groupChat)
                 .addOnSuccessListener(aVoid -> {
-                    // Asociar chat a todos los participantes (incluido admin)
-                    DatabaseReference userChatsRef = FirebaseManager.getInstance().getDatabase().getReference("user-chats");
+                    // Resumen del grupo en la lista de cada participante (incluido admin), en un solo update
+                    Map<String, Object> summaries = new HashMap<>();
                     for (String uid : participantsMap.keySet()) {
-                        userChatsRef.child(uid).child(chatId).setValue(true);
+                        ChatSummaries.putNewChat(summaries, groupChat, uid);
                     }
+                    FirebaseManager.getInstance().getDatabase().getReference().updateChildren(summaries);
 
                     Toast.makeText(requireContext(), "Grupo '" + groupName + "' creado", Toast.LENGTH_SHORT).show();
 
                     // Limpiar y volver
-                    groupPhotoUri = null;
+                    groupPhotoUrl = null;
                     navController.navigate(R.id.action_createGroupFragment_to_chatListFragment);
                 })
                 .addOnFailureListener(e -> {
@@ -241,6 +279,28 @@ public class CreateGroupFragment extends Fragment {
                 .show();
     }
 
+    // Los resultados de la foto se reciben solo con la pantalla en primer plano: así el nombre
+    // y los participantes ya están restaurados si hay que crear el grupo al llegar
+    @Override
+    public void onResume() {
+        super.onResume();
+        UploadQueue.getInstance().observe(photoOwner, uploadListener);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        UploadQueue.getInstance().removeObserver(photoOwner, uploadListener);
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (photoOwner != null) outState.putString(KEY_DRAFT_ID, photoOwner.substring(photoOwner.indexOf('/') + 1));
+        outState.putString(KEY_PHOTO_URL, groupPhotoUrl);
+        outState.putBoolean(KEY_CREATE_REQUESTED, createRequested);
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
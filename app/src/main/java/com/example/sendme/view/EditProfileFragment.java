@@ -16,8 +16,6 @@ import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.navigation.fragment.NavHostFragment;
 
-import android.os.Handler;
-import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -31,7 +29,9 @@ import com.example.sendme.R;
 import com.example.sendme.data.model.User;
 import com.example.sendme.databinding.FragmentEditProfileBinding;
 import com.example.sendme.repository.FirebaseManager;
-import com.example.sendme.repository.ImgurApiClient;
+import com.example.sendme.repository.ImagePreprocessor;
+import com.example.sendme.repository.UploadQueue;
+import com.example.sendme.repository.UserRepository;
 import com.google.firebase.firestore.DocumentReference;
 
 import java.util.HashMap;
@@ -52,6 +52,35 @@ public class EditProfileFragment extends Fragment {
     private ActivityResultLauncher<String> requestPermissionLauncher;
     private ActivityResultLauncher<String> pickImageLauncher;
 
+    // Owner de la foto de perfil en la cola de subidas (null sin sesión)
+    private String avatarOwner;
+
+    // Resultado de la subida de la foto, solo mientras la vista existe
+    private final UploadQueue.Listener uploadListener = new UploadQueue.Listener() {
+        @Override
+        public void onProgress(@NonNull String uploadId, long sent, long total) {
+            // Sin barra de progreso en esta pantalla
+        }
+
+        @Override
+        public void onUploaded(@NonNull String uploadId, @NonNull String imageUrl) {
+            newImageUrl = imageUrl;
+            Glide.with(requireContext()).load(imageUrl).circleCrop().into(binding.profileImage);
+            Toast.makeText(requireContext(), "Foto actualizada", Toast.LENGTH_SHORT).show();
+        }
+
+        @Override
+        public void onFailed(@NonNull String uploadId, @NonNull String error) {
+            newImageUrl = null;
+            if (currentUser != null && currentUser.getImageUrl() != null) {
+                Glide.with(requireContext()).load(currentUser.getImageUrl()).into(binding.profileImage);
+            } else {
+                binding.profileImage.setImageResource(R.drawable.default_profile);
+            }
+            Toast.makeText(requireContext(), "Error al subir foto: " + error, Toast.LENGTH_LONG).show();
+        }
+    };
+
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -84,6 +113,12 @@ public class EditProfileFragment extends Fragment {
 
         binding.changeProfileImageButton.setOnClickListener(v -> openGallery());
 
+        // Foto subiéndose o ya subida mientras no estaba esta pantalla (rotación)
+        if (FirebaseManager.getInstance().getAuth().getCurrentUser() != null) {
+            avatarOwner = UploadQueue.avatarOwner(FirebaseManager.getInstance().getAuth().getCurrentUser().getUid());
+            UploadQueue.getInstance().observe(avatarOwner, uploadListener);
+        }
+
         // Botón de retroceso visible
         binding.backButton.setOnClickListener(v -> NavHostFragment.findNavController(this).popBackStack());
 
@@ -135,6 +170,8 @@ public class EditProfileFragment extends Fragment {
                     .document(currentUserUid)
                     .update(updates)
                     .addOnSuccessListener(aVoid -> {
+                        // La próxima lectura del perfil tiene que ver los cambios
+                        UserRepository.getInstance().invalidate(currentUserUid);
                         Toast.makeText(requireContext(), "Perfil actualizado", Toast.LENGTH_SHORT).show();
                         NavHostFragment.findNavController(this).navigate(R.id.action_editProfileFragment_to_chatListFragment);
                     })
@@ -157,43 +194,44 @@ public class EditProfileFragment extends Fragment {
             return;
         }
 
-        FirebaseManager.getInstance().getFirestore()
-                .collection("users")
-                .document(currentUserUid)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        currentUser = documentSnapshot.toObject(User.class);
-                        if (currentUser != null) {
-                            binding.editUsername.setText(currentUser.getUsername());
-
-                            // Teléfono (no editable)
-                            String phone = currentUser.getPhone();
-                            binding.editPhone.setText(phone != null && !phone.isEmpty() ? phone : "No disponible");
-
-                            // Email (no editable)
-                            String email = currentUser.getEmail();
-                            binding.editEmail.setText(email != null && !email.isEmpty() ? email : "No disponible");
-
-                            // Status
-                            binding.editStatus.setText(currentUser.getStatus() != null ? currentUser.getStatus() : "");
-
-                            // Foto
-                            String imageUrlToLoad = (newImageUrl != null && !newImageUrl.isEmpty())
-                                    ? newImageUrl
-                                    : currentUser.getImageUrl();
-
-                            Glide.with(this)
-                                    .load(imageUrlToLoad != null && !imageUrlToLoad.isEmpty() ? imageUrlToLoad : R.drawable.default_profile)
-                                    .error(R.drawable.default_profile)
-                                    .circleCrop()
-                                    .into(binding.profileImage);
-                        }
-                    }
-                })
-                .addOnFailureListener(e -> {
+        UserRepository.getInstance().getUser(currentUserUid, new UserRepository.UserCallback() {
+            @Override
+            public void onUser(@Nullable User user) {
+                if (binding == null || user == null) return;
+
+                currentUser = user;
+                binding.editUsername.setText(currentUser.getUsername());
+
+                // Teléfono (no editable)
+                String phone = currentUser.getPhone();
+                binding.editPhone.setText(phone != null && !phone.isEmpty() ? phone : "No disponible");
+
+                // Email (no editable)
+                String email = currentUser.getEmail();
+                binding.editEmail.setText(email != null && !email.isEmpty() ? email : "No disponible");
+
+                // Status
+                binding.editStatus.setText(currentUser.getStatus() != null ? currentUser.getStatus() : "");
+
+                // Foto
+                String imageUrlToLoad = (newImageUrl != null && !newImageUrl.isEmpty())
+                        ? newImageUrl
+                        : currentUser.getImageUrl();
+
+                Glide.with(EditProfileFragment.this)
+                        .load(imageUrlToLoad != null && !imageUrlToLoad.isEmpty() ? imageUrlToLoad : R.drawable.default_profile)
+                        .error(R.drawable.default_profile)
+                        .circleCrop()
+                        .into(binding.profileImage);
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                if (isAdded()) {
                     Toast.makeText(requireContext(), "Error al cargar perfil", Toast.LENGTH_SHORT).show();
-                });
+                }
+            }
+        });
     }
 
     private void openGallery() {
@@ -213,30 +251,10 @@ public class EditProfileFragment extends Fragment {
     }
 
     private void uploadImageToImgur(Uri imageUri) {
-        ImgurApiClient.getInstance().uploadImage(imageUri, requireContext().getContentResolver(),
-                new ImgurApiClient.UploadCallback() {
-                    @Override
-                    public void onSuccess(String imageUrl) {
-                        new Handler(Looper.getMainLooper()).post(() -> {
-                            newImageUrl = imageUrl;
-                            Glide.with(requireContext()).load(imageUrl).circleCrop().into(binding.profileImage);
-                            Toast.makeText(requireContext(), "Foto actualizada", Toast.LENGTH_SHORT).show();
-                        });
-                    }
-
-                    @Override
-                    public void onFailure(String error) {
-                        new Handler(Looper.getMainLooper()).post(() -> {
-                            newImageUrl = null;
-                            if (currentUser != null && currentUser.getImageUrl() != null) {
-                                Glide.with(requireContext()).load(currentUser.getImageUrl()).into(binding.profileImage);
-                            } else {
-                                binding.profileImage.setImageResource(R.drawable.default_profile);
-                            }
-                            Toast.makeText(requireContext(), "Error al subir foto: " + error, Toast.LENGTH_LONG).show();
-                        });
-                    }
-                });
+        if (avatarOwner == null) return;
+        // Por la cola de la app: si se gira la pantalla el resultado llega al fragment nuevo
+        UploadQueue.getInstance().enqueue(requireContext().getContentResolver(), imageUri,
+                ImagePreprocessor.Target.AVATAR, avatarOwner);
     }
 
     @Override
@@ -248,6 +266,7 @@ public class EditProfileFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        if (avatarOwner != null) UploadQueue.getInstance().removeObserver(avatarOwner, uploadListener);
         binding = null;
     }
 }
\ No newline at end of file
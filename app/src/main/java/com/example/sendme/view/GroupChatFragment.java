@@ -7,15 +7,15 @@ import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.text.Editable;
-import android.text.InputType;
 import android.text.TextWatcher;
 import android.util.Log;
+import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.Window;
+import android.view.WindowManager;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 import android.widget.Toast;
@@ -33,30 +33,41 @@ import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
 import androidx.navigation.fragment.NavHostFragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.sendme.R;
+import com.example.sendme.data.model.ImageThumbnails;
 import com.example.sendme.data.model.Message;
+import com.example.sendme.databinding.DialogMessageSearchBinding;
 import com.example.sendme.databinding.FragmentChatBinding;
+import com.example.sendme.repository.ChatSchemaMigration;
+import com.example.sendme.repository.ChatSearch;
+import com.example.sendme.repository.ChatSummaries;
 import com.example.sendme.repository.FirebaseManager;
-import com.example.sendme.repository.ImgurApiClient;
+import com.example.sendme.repository.ImagePreprocessor;
+import com.example.sendme.repository.ListenerRegistry;
+import com.example.sendme.repository.MessagePager;
+import com.example.sendme.repository.MessageSearchIndex;
+import com.example.sendme.repository.MessageStream;
+import com.example.sendme.repository.ReadCursor;
+import com.example.sendme.repository.UploadQueue;
+import com.example.sendme.repository.UserRepository;
+import com.example.sendme.ui.GroupChatOpener;
 import com.example.sendme.ui.MessageAdapter;
-import com.google.firebase.database.ChildEventListener;
+import com.example.sendme.ui.SearchHits;
+import com.example.sendme.ui.SenderNames;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.GenericTypeIndicator;
-import com.google.firebase.database.MutableData;
-import com.google.firebase.database.Transaction;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class GroupChatFragment extends Fragment {
 
@@ -66,16 +77,52 @@ public class GroupChatFragment extends Fragment {
     private String groupIcon;
     private String currentUserUid;
     private MessageAdapter adapter;
+    private final SenderNames senderNames = new SenderNames(); // Nombres de remitentes según llegan
+    private final GroupChatOpener opener = new GroupChatOpener(senderNames, this::openMessageStream,
+            (uids, callback) -> UserRepository.getInstance().getUsers(uids, callback), this::onSenderNamesChanged);
+    private final Set<String> participantUids = new HashSet<>(); // Miembros actuales (caché para enviar)
     private DatabaseReference messagesRef;
-    private ChildEventListener messageListener;
-    private Set<String> displayedMessageIds = new HashSet<>();
     private static final String TAG = "GroupChatFragment";
     private NavController navController;
 
     private List<Message> allMessages = new ArrayList<>(); // Lista completa para búsqueda
     private String currentSearchQuery = "";
+    private MessageStream messageStream;
+    // Mensaje al que saltar al abrir (resultado de la búsqueda global) y lo que se buscó
+    private String targetMessageId;
+    private String targetQuery;
+    private ChatSearch chatSearch; // Búsqueda en el chat (índice compartido con GlobalSearch)
+    private ReadCursor readCursor; // Hasta dónde he leído (sustituye al reset de no leídos por mensaje)
+    private ListenerRegistry.Registration membershipRegistration;
+
+    // Cuántas filas antes del principio empezamos a pedir la página anterior
+    private static final int LOAD_OLDER_THRESHOLD = 5;
 
     private AlertDialog searchDialog; // ← Dialog para búsqueda
+    private DialogMessageSearchBinding searchBinding;
+    private final SearchHits searchHits = new SearchHits(); // Coincidencias de la búsqueda abierta
+    private boolean revealOlderHit; // Se ha pedido la anterior y hay que cargar antes otra página
+
+    // Imágenes de este chat en la cola de subidas: llegan aquí solo mientras la vista existe
+    private final UploadQueue.Listener uploadListener = new UploadQueue.Listener() {
+        @Override
+        public void onProgress(@NonNull String uploadId, long sent, long total) {
+            updateUploadProgress(sent, total);
+        }
+
+        @Override
+        public void onUploaded(@NonNull String uploadId, @NonNull String imageUrl) {
+            // El mensaje ya lo ha enviado la cola (ChatImageSender), aquí solo se avisa
+            Toast.makeText(requireContext(), "Imagen enviada", Toast.LENGTH_SHORT).show();
+            updateUploadProgress(0, -1);
+        }
+
+        @Override
+        public void onFailed(@NonNull String uploadId, @NonNull String error) {
+            Toast.makeText(requireContext(), "Error al subir imagen: " + error, Toast.LENGTH_LONG).show();
+            updateUploadProgress(0, -1);
+        }
+    };
 
     private final ActivityResultLauncher<String> pickImageLauncher = registerForActivityResult(
             new ActivityResultContracts.GetContent(), uri -> {
@@ -118,6 +165,8 @@ public class GroupChatFragment extends Fragment {
             groupId = getArguments().getString("groupId");
             groupName = getArguments().getString("groupName");
             groupIcon = getArguments().getString("groupIcon");
+            targetMessageId = getArguments().getString("messageId");
+            targetQuery = getArguments().getString("searchQuery");
         }
 
         if (groupId == null) {
@@ -130,8 +179,8 @@ public class GroupChatFragment extends Fragment {
             groupName = "Grupo";
         }
 
-        // Verificar membresía antes de cargar nada
-        checkMembershipAndLoad();
+        // Verificar membresía antes de cargar nada (migrando antes el chat si sigue en "chats/")
+        ChatSchemaMigration.ensureMigrated(groupId, this::checkMembershipAndLoad);
 
         // Manejo del botón atrás del sistema (cierra dialog de búsqueda si está abierto)
         requireActivity().getOnBackPressedDispatcher().addCallback(getViewLifecycleOwner(), new OnBackPressedCallback(true) {
@@ -178,18 +227,21 @@ public class GroupChatFragment extends Fragment {
         }
 
         AlertDialog.Builder builder = new AlertDialog.Builder(requireContext());
-        final EditText input = new EditText(requireContext());
-        input.setHint("Introduce un texto para buscar mensajes");
-        input.setPadding(48, 48, 48, 32);
-        input.setTextSize(16);
-        input.setInputType(InputType.TYPE_CLASS_TEXT);
-
-        builder.setView(input);
+        searchBinding = DialogMessageSearchBinding.inflate(getLayoutInflater());
+        builder.setView(searchBinding.getRoot());
         builder.setNegativeButton("Cancelar", (dialog, which) -> dialog.dismiss());
 
         searchDialog = builder.create();
 
-        // Filtrado y resaltado en tiempo real
+        // Arriba y sin oscurecer: la lista se tiene que ver mientras se salta entre coincidencias
+        Window window = searchDialog.getWindow();
+        if (window != null) {
+            window.setGravity(Gravity.TOP);
+            window.clearFlags(WindowManager.LayoutParams.FLAG_DIM_BEHIND);
+        }
+
+        // Búsqueda en tiempo real: la lista no se filtra, se resaltan y se recorren las coincidencias
+        final EditText input = searchBinding.searchInput;
         input.addTextChangedListener(new TextWatcher() {
             @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
             @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
@@ -197,20 +249,17 @@ public class GroupChatFragment extends Fragment {
                 String query = s.toString().trim().toLowerCase();
                 currentSearchQuery = query;
                 performSearch(query);
-                if (adapter != null) {
-                    adapter.setSearchQuery(query);
-                }
             }
         });
+        searchBinding.searchPrevButton.setOnClickListener(v -> showPreviousHit());
+        searchBinding.searchNextButton.setOnClickListener(v -> showHit(searchHits.next(allMessages)));
 
         // Al cerrar el dialog
         searchDialog.setOnDismissListener(dialog -> {
             currentSearchQuery = "";
             performSearch("");
-            if (adapter != null) {
-                adapter.setSearchQuery("");
-            }
             searchDialog = null;
+            searchBinding = null;
         });
 
         searchDialog.show();
@@ -223,13 +272,12 @@ public class GroupChatFragment extends Fragment {
 
     /** Verifica si el usuario sigue siendo miembro del grupo... */
     private void checkMembershipAndLoad() {
-        DatabaseReference participantsRef = FirebaseManager.getInstance().getDatabase()
-                .getReference("chats").child(groupId).child("participants");
+        DatabaseReference participantsRef = FirebaseManager.getInstance().getChatMetaRef(groupId).child("participants");
 
         participantsRef.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (!isAdded()) return;
+                if (!isAdded() || binding == null) return;
 
                 Map<String, Boolean> participants = snapshot.getValue(new GenericTypeIndicator<Map<String, Boolean>>() {});
 
@@ -244,17 +292,25 @@ public class GroupChatFragment extends Fragment {
                 setupRecyclerView();
                 setupEvents();
 
-                // Cargar participantes y adapter
-                loadParticipantsAndSetupAdapter();
+                updateParticipants(participants.keySet());
 
-                // Mensajes (se cargan dentro de loadParticipantsAndSetupAdapter)
-                messagesRef = FirebaseManager.getInstance().getDatabase()
-                        .getReference("chats").child(groupId).child("messages");
+                // Mensajes y nombres a la vez (GroupChatOpener): los mensajes se pintan ya con
+                // el remitente pendiente y las etiquetas se rellenan cuando llegan los perfiles
+                adapter = new MessageAdapter(currentUserUid, navController, senderNames);
+                binding.messagesRecyclerView.setAdapter(adapter);
 
-                resetUnreadCount();
+                messagesRef = FirebaseManager.getInstance().getChatMessagesRef(groupId);
+                messageStream = new MessageStream(groupId, messagesRef, getResources().getInteger(R.integer.message_page_size));
+                readCursor = new ReadCursor(currentUserUid, groupId);
+                chatSearch = new ChatSearch(groupId);
+                opener.open(participants.keySet());
+
+                // Resultados de subidas del grupo (también las que acabaron con la pantalla cerrada)
+                UploadQueue.getInstance().observe(UploadQueue.chatOwner(groupId), uploadListener);
+                updateUploadProgress(0, -1);
 
                 // Listener continuo para detectar si te eliminan mientras estás dentro
-                participantsRef.addValueEventListener(membershipListener);
+                membershipRegistration = ListenerRegistry.getInstance().addValueEventListener(participantsRef, membershipListener);
             }
 
             @Override
@@ -275,7 +331,13 @@ public class GroupChatFragment extends Fragment {
             if (participants == null || !participants.containsKey(currentUserUid)) {
                 Toast.makeText(requireContext(), "Has sido eliminado del grupo", Toast.LENGTH_LONG).show();
                 navController.popBackStack(R.id.chatListFragment, false);
+                return;
             }
+
+            updateParticipants(participants.keySet());
+
+            // Miembros nuevos: se piden solo los nombres que faltan
+            if (adapter != null) opener.onMembersChanged(participants.keySet());
         }
 
         @Override
@@ -287,21 +349,20 @@ public class GroupChatFragment extends Fragment {
 
         if (groupIcon != null && !groupIcon.isEmpty()) {
             Glide.with(requireContext())
-                    .load(groupIcon)
+                    .load(ImageThumbnails.avatar(groupIcon))
                     .placeholder(R.drawable.ic_group)
                     .error(R.drawable.ic_group)
                     .circleCrop()
                     .into(binding.profileImage);
         } else {
-            DatabaseReference chatRef = FirebaseManager.getInstance().getDatabase()
-                    .getReference("chats").child(groupId);
+            DatabaseReference chatRef = FirebaseManager.getInstance().getChatMetaRef(groupId);
             chatRef.child("groupIcon").addListenerForSingleValueEvent(new ValueEventListener() {
                 @Override
                 public void onDataChange(@NonNull DataSnapshot snapshot) {
                     if (!isAdded()) return;
                     String url = snapshot.getValue(String.class);
                     if (url != null && !url.isEmpty()) {
-                        Glide.with(requireContext()).load(url).circleCrop().into(binding.profileImage);
+                        Glide.with(requireContext()).load(ImageThumbnails.avatar(url)).circleCrop().into(binding.profileImage);
                     } else {
                         binding.profileImage.setImageResource(R.drawable.ic_group);
                     }
@@ -327,6 +388,7 @@ public class GroupChatFragment extends Fragment {
         LinearLayoutManager layoutManager = new LinearLayoutManager(requireContext());
         layoutManager.setStackFromEnd(true);
         binding.messagesRecyclerView.setLayoutManager(layoutManager);
+        setupPagination(layoutManager);
     }
 
     private void setupEvents() {
@@ -341,61 +403,13 @@ public class GroupChatFragment extends Fragment {
         });
     }
 
-    private void loadParticipantsAndSetupAdapter() {
-        DatabaseReference participantsRef = FirebaseManager.getInstance().getDatabase()
-                .getReference("chats").child(groupId).child("participants");
-
-        participantsRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                GenericTypeIndicator<Map<String, Boolean>> t = new GenericTypeIndicator<Map<String, Boolean>>() {};
-                Map<String, Boolean> participants = snapshot.getValue(t);
-
-                if (participants == null || participants.isEmpty()) {
-                    Toast.makeText(requireContext(), "Error: grupo sin participantes", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-
-                Map<String, String> uidToNameMap = new HashMap<>();
-                AtomicInteger loadedCount = new AtomicInteger(0);
-                int total = participants.size();
-
-                for (String participantUid : participants.keySet()) {
-                    FirebaseManager.getInstance().getFirestore()
-                            .collection("users")
-                            .document(participantUid)
-                            .get()
-                            .addOnSuccessListener(documentSnapshot -> {
-                                String name = documentSnapshot.getString("username");
-                                if (name == null || name.trim().isEmpty()) name = "Usuario";
-                                uidToNameMap.put(participantUid, name);
-
-                                if (loadedCount.incrementAndGet() == total) {
-                                    finalizeAdapterAndLoadMessages(uidToNameMap);
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                uidToNameMap.put(participantUid, "Usuario");
-                                if (loadedCount.incrementAndGet() == total) {
-                                    finalizeAdapterAndLoadMessages(uidToNameMap);
-                                }
-                            });
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Toast.makeText(requireContext(), "Error cargando participantes", Toast.LENGTH_SHORT).show();
-            }
-        });
-    }
-
-    private void finalizeAdapterAndLoadMessages(Map<String, String> uidToNameMap) {
-        adapter = new MessageAdapter(currentUserUid, navController, uidToNameMap);
-        binding.messagesRecyclerView.setAdapter(adapter);
-
-        loadAllMessages();
-        listenForMessages();
+    /**
+     * Han llegado nombres de remitentes (ver {@link GroupChatOpener}): el adapter repinta
+     * solo las etiquetas de los mensajes de esos remitentes.
+     */
+    private void onSenderNamesChanged(Set<String> senders) {
+        if (!isAdded() || binding == null || adapter == null) return;
+        adapter.onSenderNamesChanged(senders);
     }
 
     private void openGallery() {
@@ -416,216 +430,310 @@ public class GroupChatFragment extends Fragment {
         String messageId = messagesRef.push().getKey();
         message.setId(messageId);
 
-        if (messageId != null && isAdded()) {
-            allMessages.add(message);
-            if (adapter != null) {
-                adapter.addMessage(message);
-                displayedMessageIds.add(messageId);
-                binding.messagesRecyclerView.scrollToPosition(adapter.getItemCount() - 1);
-            }
+        // No lo pinto aquí: Firebase lanza el evento local al momento y lo recibe
+        // el listener de mensajes nuevos (así no hace falta deduplicar)
+        if (messageId == null) return;
+
+        if (!participantUids.isEmpty()) {
+            writeMessage(message);
+            return;
         }
 
-        messagesRef.child(messageId).setValue(message)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Mensaje enviado en grupo");
-                    updateChatMetadata(content != null ? content : "Imagen");
-                })
+        // Solo si aún no ha llegado la membresía: una lectura y se queda en caché
+        FirebaseManager.getInstance().getChatMetaRef(groupId).child("participants")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Map<String, Boolean> participants = snapshot.getValue(new GenericTypeIndicator<Map<String, Boolean>>() {});
+                        if (participants != null) updateParticipants(participants.keySet());
+                        writeMessage(message);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error leyendo participantes: " + error.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Mensaje, último mensaje y no leídos de todos los miembros en un solo updateChildren
+     * atómico (incremento en servidor, sin transacciones ni lecturas previas).
+     */
+    private void writeMessage(Message message) {
+        Map<String, Object> updates = ChatSummaries.sendUpdates(groupId, participantUids, message);
+        FirebaseManager.getInstance().getDatabase().getReference().updateChildren(updates)
+                .addOnSuccessListener(aVoid -> Log.d(TAG, "Mensaje enviado en grupo"))
                 .addOnFailureListener(e -> {
-                    Toast.makeText(requireContext(), "Error al enviar mensaje", Toast.LENGTH_SHORT).show();
+                    if (isAdded()) {
+                        Toast.makeText(requireContext(), "Error al enviar mensaje", Toast.LENGTH_SHORT).show();
+                    }
                     Log.e(TAG, "Error enviando mensaje: " + e.getMessage());
                 });
     }
 
-    private void updateChatMetadata(String lastMessage) {
-        DatabaseReference chatRef = FirebaseManager.getInstance().getDatabase().getReference("chats").child(groupId);
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("lastMessage", lastMessage);
-        updates.put("lastMessageTimestamp", System.currentTimeMillis());
+    /** Participantes en caché para el fan-out de cada envío (los mantiene al día el listener de membresía) */
+    private void updateParticipants(Set<String> uids) {
+        participantUids.clear();
+        participantUids.addAll(uids);
+    }
+
+    /**
+     * Abre la suscripción única de mensajes: primero la última página y después
+     * solo los mensajes nuevos (ver {@link MessageStream}).
+     */
+    private void openMessageStream() {
+        if (messageStream == null) return;
 
-        chatRef.child("participants").addListenerForSingleValueEvent(new ValueEventListener() {
+        messageStream.start(new MessageStream.Listener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                GenericTypeIndicator<Map<String, Boolean>> t = new GenericTypeIndicator<Map<String, Boolean>>() {};
-                Map<String, Boolean> participants = snapshot.getValue(t);
-                if (participants != null) {
-                    for (String uid : participants.keySet()) {
-                        if (!uid.equals(currentUserUid)) {
-                            chatRef.child("unreadCount").child(uid).runTransaction(new Transaction.Handler() {
-                                @NonNull
-                                @Override
-                                public Transaction.Result doTransaction(@NonNull MutableData currentData) {
-                                    Integer count = currentData.getValue(Integer.class);
-                                    if (count == null) count = 0;
-                                    currentData.setValue(count + 1);
-                                    return Transaction.success(currentData);
-                                }
-
-                                @Override
-                                public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot currentData) {}
-                            });
-                        } else {
-                            updates.put("unreadCount/" + currentUserUid, 0);
-                        }
-                    }
+            public void onInitialPage(@NonNull List<Message> messages) {
+                if (!isAdded() || binding == null || adapter == null) return;
+
+                allMessages.clear();
+                allMessages.addAll(messages);
+                opener.onMessages(messages);   // Nombres de remitentes que ya no son miembros
+
+                // Abrir el chat = leído hasta el último mensaje (una escritura al entrar)
+                if (readCursor != null && !messages.isEmpty()) {
+                    readCursor.markRead(messages.get(messages.size() - 1));
+                    readCursor.flush();
                 }
-                chatRef.updateChildren(updates);
+
+                if (!searchHits.isEmpty()) searchHits.locate(allMessages);
+                adapter.setMessages(allMessages, () -> {
+                    scrollToBottom();
+                    revealTargetMessage();
+                });
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Error actualizando unread: " + error.getMessage());
-            }
-        });
-    }
+            public void onNewMessages(@NonNull List<Message> messages) {
+                if (!isAdded() || binding == null || adapter == null) return;
 
-    private void resetUnreadCount() {
-        if (currentUserUid != null && groupId != null) {
-            FirebaseManager.getInstance().getDatabase()
-                    .getReference("chats").child(groupId)
-                    .child("unreadCount").child(currentUserUid)
-                    .setValue(0);
-        }
-    }
+                int first = allMessages.size();
+                allMessages.addAll(messages);
+                opener.onMessages(messages);
 
-    private void loadAllMessages() {
-        if (messagesRef == null) return;
+                // Solo se apunta lo visto; el cursor se escribe con debounce (ReadCursor)
+                if (readCursor != null) readCursor.markRead(messages.get(messages.size() - 1));
 
-        messagesRef.orderByChild("timestamp").addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (!isAdded()) return;
-
-                allMessages.clear();
-                displayedMessageIds.clear();
-
-                for (DataSnapshot snap : snapshot.getChildren()) {
-                    Message msg = snap.getValue(Message.class);
-                    if (msg != null) {
-                        String msgId = snap.getKey();
-                        if (msg.getId() == null) msg.setId(msgId);
-                        allMessages.add(msg);
-                        displayedMessageIds.add(msgId);
+                if (currentSearchQuery.isEmpty()) {
+                    adapter.addMessages(messages, () -> scrollToBottom());
+                } else {
+                    // Buscando no se mueve la lista: si coinciden solo cuentan como unas más
+                    adapter.addMessages(messages, null);
+                    boolean appended = false;
+                    for (int i = 0; i < messages.size(); i++) {
+                        Message message = messages.get(i);
+                        if (MessageSearchIndex.matches(message.getContent(), currentSearchQuery)) {
+                            searchHits.onAppended(message, first + i);
+                            appended = true;
+                        }
                     }
-                }
-
-                if (adapter != null) {
-                    adapter.setMessages(new ArrayList<>(allMessages));
-                    binding.messagesRecyclerView.scrollToPosition(allMessages.size() - 1);
+                    if (appended) updateSearchCount();
                 }
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Error cargando mensajes: " + error.getMessage());
+            public void onError(@NonNull String error) {
+                Log.e(TAG, "Error cargando mensajes: " + error);
             }
         });
     }
 
-    private void listenForMessages() {
-        if (messagesRef == null) return;
+    /**
+     * Pide la página anterior cuando el usuario llega cerca del principio de la lista.
+     */
+    private void loadOlderMessages() {
+        if (messageStream == null || adapter == null) return;
 
-        messageListener = new ChildEventListener() {
+        messageStream.loadOlder(new MessagePager.PageCallback() {
             @Override
-            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
-                if (!isAdded()) return;
-
-                Message message = snapshot.getValue(Message.class);
-                if (message == null) return;
-
-                String messageId = snapshot.getKey();
-                if (message.getId() == null) message.setId(messageId);
-
-                if (displayedMessageIds.contains(messageId)) return;
-
-                allMessages.add(message);
-                displayedMessageIds.add(messageId);
-
-                if (!message.getSender().equals(currentUserUid)) {
-                    resetUnreadCount();
-                }
-
-                boolean matches = currentSearchQuery.isEmpty() ||
-                        (message.getContent() != null && message.getContent().toLowerCase().contains(currentSearchQuery));
-
-                if (matches && adapter != null) {
-                    adapter.addMessage(message);
-                    binding.messagesRecyclerView.scrollToPosition(adapter.getItemCount() - 1);
-                }
+            public void onPage(@NonNull List<Message> page) {
+                if (!isAdded() || binding == null || adapter == null || page.isEmpty()) return;
+
+                // El cursor garantiza que no se solapa con lo que ya tenemos
+                allMessages.addAll(0, page);
+                opener.onMessages(page);
+
+                // Las coincidencias se han desplazado; alguna antes sin cargar puede estar ya
+                if (!searchHits.isEmpty()) searchHits.locate(allMessages);
+
+                adapter.prependMessages(page, () -> {
+                    if (binding == null) return;
+                    if (revealOlderHit) {
+                        revealOlderHit = false;
+                        showPreviousHit();
+                    } else if (!searchHits.isEmpty()) {
+                        updateSearchCount();
+                    }
+                    revealTargetMessage();
+                });
             }
 
-            @Override public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
-            @Override public void onChildRemoved(@NonNull DataSnapshot snapshot) {}
-            @Override public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
-            @Override public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Error escuchando mensajes: " + error.getMessage());
+            @Override
+            public void onError(@NonNull String error) {
+                Log.e(TAG, "Error cargando mensajes anteriores: " + error);
             }
-        };
-
-        messagesRef.orderByChild("timestamp").addChildEventListener(messageListener);
+        });
     }
 
-    private void uploadImageToImgur(Uri imageUri) {
-        ImgurApiClient.getInstance().uploadImage(imageUri, requireContext().getContentResolver(), new ImgurApiClient.UploadCallback() {
-            @Override
-            public void onSuccess(String imageUrl) {
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    Toast.makeText(requireContext(), "Imagen subida", Toast.LENGTH_SHORT).show();
-                    sendMessage(null, imageUrl);
-                });
+    /**
+     * Coloca la lista en el mensaje abierto desde la búsqueda global. Si es más antiguo que lo
+     * cargado se pide la página anterior (sale de la copia local, así que es rápido) y, cuando
+     * llega, se vuelve a intentar.
+     */
+    private void revealTargetMessage() {
+        if (targetMessageId == null || adapter == null || binding == null || allMessages.isEmpty()) return;
+
+        for (int i = allMessages.size() - 1; i >= 0; i--) {
+            if (targetMessageId.equals(allMessages.get(i).getId())) {
+                targetMessageId = null;
+                if (targetQuery != null && !targetQuery.isEmpty()) adapter.setSearchQuery(targetQuery);
+                binding.messagesRecyclerView.scrollToPosition(i);
+                return;
             }
+        }
+
+        String oldestKey = allMessages.get(0).getId();
+        if (oldestKey != null && targetMessageId.compareTo(oldestKey) < 0) {
+            loadOlderMessages();
+        } else {
+            targetMessageId = null; // Ya no está (no debería pasar)
+        }
+    }
 
+    private void setupPagination(LinearLayoutManager layoutManager) {
+        binding.messagesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            public void onFailure(String error) {
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    Toast.makeText(requireContext(), "Error al subir imagen: " + error, Toast.LENGTH_LONG).show();
-                });
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // dy < 0 → el usuario sube hacia mensajes más antiguos
+                if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= LOAD_OLDER_THRESHOLD) {
+                    loadOlderMessages();
+                }
             }
         });
     }
 
+    private void uploadImageToImgur(Uri imageUri) {
+        // La subida sigue aunque se gire la pantalla o se salga del chat: al terminar la cola
+        // envía el mensaje y uploadListener solo se entera (ahora o al volver a este chat)
+        UploadQueue.getInstance().enqueue(requireContext().getContentResolver(), imageUri,
+                ImagePreprocessor.Target.MESSAGE, UploadQueue.chatOwner(groupId), currentUserUid);
+        updateUploadProgress(0, -1);
+    }
+
+    /** Barra fina encima del input mientras haya imágenes de este chat subiéndose */
+    private void updateUploadProgress(long sent, long total) {
+        if (binding == null) return;
+        boolean uploading = UploadQueue.getInstance().pendingCount(UploadQueue.chatOwner(groupId)) > 0;
+        binding.uploadProgress.setVisibility(uploading ? View.VISIBLE : View.GONE);
+        binding.uploadProgress.setIndeterminate(total <= 0);
+        if (total > 0) binding.uploadProgress.setProgress((int) (sent * 100 / total));
+    }
+
+    /**
+     * Busca con el índice del chat (en segundo plano) sin tocar la lista: se resaltan las
+     * coincidencias y se salta a la más reciente. Con la consulta vacía se quita el resaltado.
+     */
     private void performSearch(String query) {
         if (adapter == null) return;
 
-        List<Message> filtered = new ArrayList<>();
+        if (query.isEmpty() || chatSearch == null) {
+            if (chatSearch != null) chatSearch.cancel();
+            searchHits.clear();
+            revealOlderHit = false;
+            adapter.setSearchQuery("");
+            updateSearchCount();
+            return;
+        }
+
+        chatSearch.search(query, (searched, newestFirst) -> {
+            if (!isAdded() || binding == null || adapter == null || !searched.equals(currentSearchQuery)) return;
 
-        if (query.isEmpty()) {
-            filtered.addAll(allMessages);
-        } else {
-            for (Message msg : allMessages) {
-                String content = msg.getContent();
-                if (content != null && content.toLowerCase().contains(query)) {
-                    filtered.add(msg);
-                }
-            }
+            searchHits.setResults(allMessages, newestFirst);
+            revealOlderHit = false;
+            adapter.setSearchQuery(searched);
+            showHit(searchHits.currentPosition());
+        });
+    }
+
+    /** Baja al último mensaje (cuando el adapter ya tiene la lista nueva) */
+    private void scrollToBottom() {
+        if (binding != null && adapter != null && adapter.getItemCount() > 0) {
+            binding.messagesRecyclerView.scrollToPosition(adapter.getItemCount() - 1);
         }
+    }
 
-        adapter.setMessages(filtered);
-        adapter.setSearchQuery(query);
+    /** Marca la coincidencia y la pone en pantalla; si aún no está cargada se pide la página anterior */
+    private void showHit(int position) {
+        if (adapter == null || binding == null) return;
 
-        if (filtered.isEmpty()) {
-            binding.messagesRecyclerView.scrollToPosition(0);
-        } else {
-            binding.messagesRecyclerView.scrollToPosition(filtered.size() - 1);
+        adapter.setCurrentHit(searchHits.currentKey());
+        if (position != RecyclerView.NO_POSITION) {
+            binding.messagesRecyclerView.scrollToPosition(position);
+        } else if (searchHits.hasOlderUnloaded()) {
+            revealOlderHit = true;
+            loadOlderMessages();
+        }
+        updateSearchCount();
+    }
+
+    private void showPreviousHit() {
+        if (searchHits.hasOlderUnloaded()) {
+            revealOlderHit = true;
+            loadOlderMessages();
+            return;
         }
+        showHit(searchHits.previous(allMessages));
+    }
+
+    /** Contador "actual/total" y flechas del dialog de búsqueda */
+    private void updateSearchCount() {
+        if (searchBinding == null) return;
+
+        boolean searching = !currentSearchQuery.isEmpty();
+        searchBinding.searchCountText.setVisibility(searching ? View.VISIBLE : View.GONE);
+        searchBinding.searchCountText.setText(getString(R.string.search_count,
+                searchHits.currentNumber(), searchHits.total()));
+        searchBinding.searchPrevButton.setEnabled(searching && searchHits.hasOlder());
+        searchBinding.searchNextButton.setEnabled(searching && searchHits.hasNewer());
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        // Al salir (o pasar a segundo plano) el cursor se guarda ya, sin esperar al debounce
+        if (readCursor != null) readCursor.flush();
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        if (readCursor != null) {
+            readCursor.flush();
+            readCursor = null;
+        }
 
-        if (messagesRef != null && messageListener != null) {
-            messagesRef.removeEventListener(messageListener);
+        if (messageStream != null) {
+            messageStream.stop();
+        }
+        if (chatSearch != null) {
+            chatSearch.close();
+            chatSearch = null;
         }
 
         // Remover listener de membresía
-        if (groupId != null) {
-            DatabaseReference participantsRef = FirebaseManager.getInstance().getDatabase()
-                    .getReference("chats").child(groupId).child("participants");
-            participantsRef.removeEventListener(membershipListener);
+        if (membershipRegistration != null) {
+            membershipRegistration.remove();
+            membershipRegistration = null;
         }
 
+        if (groupId != null) UploadQueue.getInstance().removeObserver(UploadQueue.chatOwner(groupId), uploadListener);
+
         allMessages.clear();
-        displayedMessageIds.clear();
+        searchHits.clear();
         binding = null;
     }
 }
\ No newline at end of file
@@ -26,8 +26,13 @@ import com.example.sendme.R;
 import com.example.sendme.data.model.Chat;
 import com.example.sendme.data.model.User;
 import com.example.sendme.databinding.FragmentGroupDetailBinding;
+import com.example.sendme.repository.ChatSchemaMigration;
+import com.example.sendme.repository.ChatSummaries;
 import com.example.sendme.repository.FirebaseManager;
-import com.example.sendme.repository.ImgurApiClient;
+import com.example.sendme.repository.ImagePreprocessor;
+import com.example.sendme.repository.ListenerRegistry;
+import com.example.sendme.repository.UploadQueue;
+import com.example.sendme.repository.UserRepository;
 import com.example.sendme.ui.GroupParticipantAdapter;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
@@ -42,7 +47,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class GroupDetailFragment extends Fragment {
 
@@ -53,8 +57,33 @@ public class GroupDetailFragment extends Fragment {
     private boolean isAdmin;
     private GroupParticipantAdapter adapter;
     private List<User> participantsList = new ArrayList<>();
+    private List<String> participantUids = new ArrayList<>(); // Para repartir nombre/icono a los resúmenes
     private NavController navController;
     private ValueEventListener groupDataListener;
+    private ListenerRegistry.Registration groupDataRegistration;
+    private boolean observingUploads; // Ya apuntado a la cola (cuando se conocen los participantes)
+
+    // Icono nuevo subido: chat-meta y el resumen de cada participante a la vez
+    private final UploadQueue.Listener uploadListener = new UploadQueue.Listener() {
+        @Override
+        public void onProgress(@NonNull String uploadId, long sent, long total) {
+            // Sin barra de progreso en esta pantalla
+        }
+
+        @Override
+        public void onUploaded(@NonNull String uploadId, @NonNull String imageUrl) {
+            FirebaseManager.getInstance().getDatabase().getReference()
+                    .updateChildren(ChatSummaries.groupInfoUpdates(groupId, participantUids, "groupIcon", imageUrl))
+                    .addOnSuccessListener(aVoid -> {
+                        if (isAdded()) Toast.makeText(requireContext(), "Foto actualizada", Toast.LENGTH_SHORT).show();
+                    });
+        }
+
+        @Override
+        public void onFailed(@NonNull String uploadId, @NonNull String error) {
+            Toast.makeText(requireContext(), "Error subiendo foto: " + error, Toast.LENGTH_LONG).show();
+        }
+    };
 
     private final ActivityResultLauncher<String> pickImageLauncher = registerForActivityResult(
             new ActivityResultContracts.GetContent(), uri -> {
@@ -135,12 +164,19 @@ public class GroupDetailFragment extends Fragment {
     }
 
     private void loadGroupData() {
-        DatabaseReference chatRef = FirebaseManager.getInstance().getDatabase().getReference("chats").child(groupId);
+        // Solo metadatos: el tamaño no depende de cuántos mensajes tenga el grupo
+        DatabaseReference chatRef = FirebaseManager.getInstance().getChatMetaRef(groupId);
 
         groupDataListener = new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (!isAdded()) return;
+                if (!isAdded() || binding == null) return;
+
+                if (!snapshot.exists()) {
+                    // Grupo aún en formato antiguo: al migrarlo este listener vuelve a saltar
+                    ChatSchemaMigration.ensureMigrated(groupId, () -> {});
+                    return;
+                }
 
                 Chat chat = snapshot.getValue(Chat.class);
                 if (chat == null) return;
@@ -168,7 +204,14 @@ public class GroupDetailFragment extends Fragment {
                 binding.participantsCountText.setText("Grupo · " + count + " participantes");
 
                 if (chat.getParticipants() != null) {
-                    loadParticipantsList(new ArrayList<>(chat.getParticipants().keySet()));
+                    participantUids = new ArrayList<>(chat.getParticipants().keySet());
+                    loadParticipantsList(new ArrayList<>(participantUids));
+
+                    // Con los participantes ya se puede repartir un icono que haya terminado de subirse
+                    if (!observingUploads) {
+                        observingUploads = true;
+                        UploadQueue.getInstance().observe(UploadQueue.groupIconOwner(groupId), uploadListener);
+                    }
                 }
             }
 
@@ -180,7 +223,7 @@ public class GroupDetailFragment extends Fragment {
             }
         };
 
-        chatRef.addValueEventListener(groupDataListener);
+        groupDataRegistration = ListenerRegistry.getInstance().addValueEventListener(chatRef, groupDataListener);
     }
 
     /**
@@ -195,60 +238,34 @@ public class GroupDetailFragment extends Fragment {
         binding.participantsRecycler.setLayoutManager(new LinearLayoutManager(requireContext()));
         binding.participantsRecycler.setAdapter(adapter);
 
-        AtomicInteger loaded = new AtomicInteger(0);
-        int total = participantUids.size();
-
-        if (total == 0) {
+        if (participantUids.isEmpty()) {
             adapter.setParticipants(participantsList);
             return;
         }
 
-        for (String uid : participantUids) {
-            FirebaseManager.getInstance().getFirestore()
-                    .collection("users")
-                    .document(uid)
-                    .get()
-                    .addOnSuccessListener(doc -> {
-                        User user = doc.toObject(User.class);
-                        if (user == null) {
-                            user = new User();
-                            user.setUsername("Usuario");
-                            user.setUid(uid);
-                        }
-
-                        userMap.put(uid, user);
+        UserRepository.getInstance().getUsers(participantUids, users -> {
+            if (binding == null || adapter == null) return;
 
-                        if (loaded.incrementAndGet() == total) {
-                            participantsList = new ArrayList<>(userMap.values());
+            for (String uid : participantUids) {
+                User user = users.get(uid);
+                if (user == null) {
+                    user = new User();
+                    user.setUsername("Usuario");
+                    user.setUid(uid);
+                }
+                userMap.put(uid, user);
+            }
 
-                            // Admin primero
-                            participantsList.sort((u1, u2) -> {
-                                if (u1.getUid().equals(adminUid)) return -1;
-                                if (u2.getUid().equals(adminUid)) return 1;
-                                return 0;
-                            });
+            participantsList = new ArrayList<>(userMap.values());
 
-                            adapter.setParticipants(participantsList);
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        User fallback = new User();
-                        fallback.setUsername("Usuario");
-                        fallback.setUid(uid);
-                        userMap.put(uid, fallback);
-
-                        if (loaded.incrementAndGet() == total) {
-                            participantsList = new ArrayList<>(userMap.values());
-                            participantsList.sort((u1, u2) -> {
-                                if (u1.getUid().equals(adminUid)) return -1;
-                                if (u2.getUid().equals(adminUid)) return 1;
-                                return 0;
-                            });
-
-                            adapter.setParticipants(participantsList);
-                        }
-                    });
-        }
+            // Admin primero
+            participantsList.sort((u1, u2) -> {
+                if (u1.getUid().equals(adminUid)) return -1;
+                if (u2.getUid().equals(adminUid)) return 1;
+                return 0;
+            });
+            adapter.setParticipants(participantsList);
+        });
     }
 
     private void showRemoveParticipantDialog(User userToRemove) {
@@ -264,8 +281,8 @@ public class GroupDetailFragment extends Fragment {
         String uidToRemove = userToRemove.getUid();
         if (uidToRemove == null) return;
 
-        DatabaseReference chatRef = FirebaseManager.getInstance().getDatabase().getReference("chats").child(groupId);
-        DatabaseReference userChatsRef = FirebaseManager.getInstance().getDatabase().getReference("user-chats").child(uidToRemove);
+        DatabaseReference chatRef = FirebaseManager.getInstance().getChatMetaRef(groupId);
+        DatabaseReference userChatsRef = FirebaseManager.getInstance().getUserChatsRef(uidToRemove);
 
         Map<String, Object> updates = new HashMap<>();
         updates.put("participants/" + uidToRemove, null);
@@ -290,17 +307,16 @@ public class GroupDetailFragment extends Fragment {
     }
 
     private void applyGroupUpdates(Map<String, Object> updates, DatabaseReference userChatsRef) {
-        DatabaseReference chatRef = FirebaseManager.getInstance().getDatabase().getReference("chats").child(groupId);
+        DatabaseReference chatRef = FirebaseManager.getInstance().getChatMetaRef(groupId);
 
         chatRef.updateChildren(updates).addOnCompleteListener(task -> {
             if (task.isSuccessful()) {
                 userChatsRef.child(groupId).removeValue();
 
-                // Check si el grupo quedó vacío (en background)
-                chatRef.get().addOnSuccessListener(snapshot -> {
-                    Chat chat = snapshot.getValue(Chat.class);
-                    if (chat == null || chat.getParticipants() == null || chat.getParticipants().isEmpty()) {
-                        chatRef.removeValue();
+                // Check si el grupo quedó vacío (en background). Solo se leen los participantes.
+                chatRef.child("participants").get().addOnSuccessListener(snapshot -> {
+                    if (!snapshot.hasChildren()) {
+                        deleteGroup();
                     }
                 });
 
@@ -311,23 +327,18 @@ public class GroupDetailFragment extends Fragment {
         });
     }
 
-    private void uploadAndUpdateGroupPhoto(Uri uri) {
-        ImgurApiClient.getInstance().uploadImage(uri, requireContext().getContentResolver(),
-                new ImgurApiClient.UploadCallback() {
-                    @Override
-                    public void onSuccess(String imageUrl) {
-                        FirebaseManager.getInstance().getDatabase()
-                                .getReference("chats").child(groupId)
-                                .child("groupIcon")
-                                .setValue(imageUrl)
-                                .addOnSuccessListener(aVoid -> Toast.makeText(requireContext(), "Foto actualizada", Toast.LENGTH_SHORT).show());
-                    }
+    /** Borra metadatos y mensajes del grupo en un solo update */
+    private void deleteGroup() {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(FirebaseManager.CHAT_META + "/" + groupId, null);
+        updates.put(FirebaseManager.CHAT_MESSAGES + "/" + groupId, null);
+        FirebaseManager.getInstance().getDatabase().getReference().updateChildren(updates);
+    }
 
-                    @Override
-                    public void onFailure(String error) {
-                        Toast.makeText(requireContext(), "Error subiendo foto: " + error, Toast.LENGTH_LONG).show();
-                    }
-                });
+    private void uploadAndUpdateGroupPhoto(Uri uri) {
+        // Por la cola de la app: si se sale de la pantalla el icono se actualiza al volver
+        UploadQueue.getInstance().enqueue(requireContext().getContentResolver(), uri,
+                ImagePreprocessor.Target.GROUP_ICON, UploadQueue.groupIconOwner(groupId));
     }
 
     private void showEditGroupNameDialog() {
@@ -351,10 +362,8 @@ public class GroupDetailFragment extends Fragment {
                 return;
             }
 
-            FirebaseManager.getInstance().getDatabase()
-                    .getReference("chats").child(groupId)
-                    .child("groupName")
-                    .setValue(newName)
+            FirebaseManager.getInstance().getDatabase().getReference()
+                    .updateChildren(ChatSummaries.groupInfoUpdates(groupId, participantUids, "groupName", newName))
                     .addOnSuccessListener(aVoid -> {
                         Toast.makeText(requireContext(), "Nombre actualizado", Toast.LENGTH_SHORT).show();
                         dialog.dismiss();
@@ -372,8 +381,8 @@ public class GroupDetailFragment extends Fragment {
     }
 
     private void leaveGroup() {
-        DatabaseReference chatRef = FirebaseManager.getInstance().getDatabase().getReference("chats").child(groupId);
-        DatabaseReference userChatsRef = FirebaseManager.getInstance().getDatabase().getReference("user-chats").child(currentUserUid);
+        DatabaseReference chatRef = FirebaseManager.getInstance().getChatMetaRef(groupId);
+        DatabaseReference userChatsRef = FirebaseManager.getInstance().getUserChatsRef(currentUserUid);
 
         Map<String, Object> updates = new HashMap<>();
         updates.put("participants/" + currentUserUid, null);
@@ -398,17 +407,16 @@ public class GroupDetailFragment extends Fragment {
     }
 
     private void applyLeaveUpdates(Map<String, Object> updates, DatabaseReference userChatsRef) {
-        DatabaseReference chatRef = FirebaseManager.getInstance().getDatabase().getReference("chats").child(groupId);
+        DatabaseReference chatRef = FirebaseManager.getInstance().getChatMetaRef(groupId);
 
         chatRef.updateChildren(updates).addOnCompleteListener(task -> {
             if (task.isSuccessful()) {
                 userChatsRef.child(groupId).removeValue();
 
-                // Check si quedó vacío y borrarlo (en background)
-                chatRef.get().addOnSuccessListener(snapshot -> {
-                    Chat chat = snapshot.getValue(Chat.class);
-                    if (chat == null || chat.getParticipants() == null || chat.getParticipants().isEmpty()) {
-                        chatRef.removeValue();
+                // Check si quedó vacío y borrarlo (en background). Solo se leen los participantes.
+                chatRef.child("participants").get().addOnSuccessListener(snapshot -> {
+                    if (!snapshot.hasChildren()) {
+                        deleteGroup();
                         if (isAdded()) {
                             Toast.makeText(requireContext(), "Has salido y el grupo se ha eliminado", Toast.LENGTH_LONG).show();
                         }
@@ -430,10 +438,13 @@ public class GroupDetailFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (groupDataListener != null && groupId != null) {
-            FirebaseManager.getInstance().getDatabase()
-                    .getReference("chats").child(groupId)
-                    .removeEventListener(groupDataListener);
+        if (groupDataRegistration != null) {
+            groupDataRegistration.remove();
+            groupDataRegistration = null;
+        }
+        if (observingUploads) {
+            UploadQueue.getInstance().removeObserver(UploadQueue.groupIconOwner(groupId), uploadListener);
+            observingUploads = false;
         }
         binding = null;
     }
@@ -21,6 +21,10 @@ import com.example.sendme.databinding.FragmentImageViewBinding;
 /**
  * Fragmento para mostrar una imagen en pantalla completa.
  * Recibe la URL de la imagen como argumento.
+ *
+ * Es la única pantalla que descarga la imagen original; las listas usan la miniatura
+ * ({@link com.example.sendme.data.model.ImageThumbnails}). Si llega la miniatura del bubble se
+ * enseña mientras tanto (ya está en la caché de Glide).
  */
 public class ImageViewFragment extends Fragment {
 
@@ -28,6 +32,8 @@ public class ImageViewFragment extends Fragment {
     private FragmentImageViewBinding binding;
     // URL de la imagen a mostrar.
     private String imageUrl;
+    // Miniatura que ya se estaba viendo en el chat (opcional).
+    private String thumbnailUrl;
 
     /**
      * Constructor vacío requerido para la instanciación de fragmentos por el sistema Android.
@@ -56,6 +62,7 @@ public class ImageViewFragment extends Fragment {
         // Recupera la URL de la imagen de los argumentos pasados al fragmento.
         if (getArguments() != null) {
             imageUrl = getArguments().getString("imageUrl");
+            thumbnailUrl = getArguments().getString("thumbnailUrl");
         }
     }
 
@@ -75,6 +82,7 @@ public class ImageViewFragment extends Fragment {
         if (imageUrl != null && !imageUrl.isEmpty()) {
             Glide.with(requireContext()) // Utiliza Glide para una carga eficiente de imágenes.
                     .load(Uri.parse(imageUrl)) // Convierte la URL String a Uri.
+                    .thumbnail(thumbnailUrl != null ? Glide.with(requireContext()).load(thumbnailUrl) : null)
                     .into(binding.fullScreenImageView); // Carga la imagen en el ImageView.
         }
 
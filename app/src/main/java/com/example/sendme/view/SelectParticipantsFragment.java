@@ -20,6 +20,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import com.example.sendme.data.model.Chat;
 import com.example.sendme.data.model.User;
 import com.example.sendme.databinding.FragmentSelectParticipantsBinding;
+import com.example.sendme.repository.ChatSummaries;
 import com.example.sendme.repository.FirebaseManager;
 import com.example.sendme.ui.SelectParticipantAdapter;
 import com.google.firebase.database.DataSnapshot;
@@ -114,11 +115,11 @@ public class SelectParticipantsFragment extends Fragment {
 
                 for (String uid : selectedUserUids) {
                     // Añadir al chat
-                    childUpdates.put("/chats/" + groupId + "/participants/" + uid, true);
-                    childUpdates.put("/chats/" + groupId + "/unreadCount/" + uid, 0);
+                    childUpdates.put("/" + FirebaseManager.CHAT_META + "/" + groupId + "/participants/" + uid, true);
+                    childUpdates.put("/" + FirebaseManager.CHAT_META + "/" + groupId + "/unreadCount/" + uid, 0);
 
-                    // Añadir al user-chats del nuevo participante
-                    childUpdates.put("/user-chats/" + uid + "/" + groupId, true);
+                    // Entrada pendiente en user-chats: su lista la completa desde chat-meta (ver ChatSummaries)
+                    childUpdates.put("/" + ChatSummaries.path(uid, groupId), true);
                 }
 
                 database.updateChildren(childUpdates)
@@ -156,8 +157,7 @@ public class SelectParticipantsFragment extends Fragment {
         }
 
         if (!isCreatingNewGroup && groupId != null) {
-            FirebaseManager.getInstance().getDatabase()
-                    .getReference("chats").child(groupId).child("participants")
+            FirebaseManager.getInstance().getChatMetaRef(groupId).child("participants")
                     .addListenerForSingleValueEvent(new ValueEventListener() {
                         @Override
                         public void onDataChange(@NonNull DataSnapshot snapshot) {
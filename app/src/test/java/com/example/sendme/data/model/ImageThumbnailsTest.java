@@ -0,0 +1,55 @@
+package com.example.sendme.data.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Miniaturas de Imgur: la letra de tamaño va antes de la extensión y todo lo que no tiene la
+ * forma de una imagen de Imgur se deja igual.
+ */
+public class ImageThumbnailsTest {
+
+    @Test
+    public void imgurImage_getsSizeSuffix() {
+        assertEquals("https://i.imgur.com/aB3dE9fb.jpg", ImageThumbnails.avatar("https://i.imgur.com/aB3dE9f.jpg"));
+        assertEquals("https://i.imgur.com/aB3dE9fl.png", ImageThumbnails.bubble("https://i.imgur.com/aB3dE9f.png"));
+        assertEquals("http://i.imgur.com/abcdeb.jpeg", ImageThumbnails.avatar("http://i.imgur.com/abcde.jpeg"));
+    }
+
+    @Test
+    public void gifBubble_keepsTheAnimatedOriginal() {
+        assertEquals("https://i.imgur.com/aB3dE9f.gif", ImageThumbnails.bubble("https://i.imgur.com/aB3dE9f.gif"));
+        assertEquals("https://i.imgur.com/aB3dE9fb.gif", ImageThumbnails.avatar("https://i.imgur.com/aB3dE9f.gif"));
+    }
+
+    @Test
+    public void otherUrls_areLeftAlone() {
+        assertNull(ImageThumbnails.avatar(null));
+        assertEquals("", ImageThumbnails.avatar(""));
+        assertEquals("https://example.com/a.jpg", ImageThumbnails.avatar("https://example.com/a.jpg"));
+        // Ya lleva sufijo, es un álbum o tiene parámetros
+        assertEquals("https://i.imgur.com/aB3dE9fm.jpg", ImageThumbnails.avatar("https://i.imgur.com/aB3dE9fm.jpg"));
+        assertEquals("https://i.imgur.com/a/aB3dE9f", ImageThumbnails.avatar("https://i.imgur.com/a/aB3dE9f"));
+        assertEquals("https://i.imgur.com/aB3dE9f.jpg?1", ImageThumbnails.avatar("https://i.imgur.com/aB3dE9f.jpg?1"));
+        assertEquals("https://i.imgur.com/aB3dE9f", ImageThumbnails.avatar("https://i.imgur.com/aB3dE9f"));
+    }
+
+    @Test
+    public void models_cacheAndResetTheThumbnail() {
+        Message message = new Message("uid", null, "https://i.imgur.com/aB3dE9f.jpg", 0);
+        String thumbnail = message.getThumbnailUrl();
+        assertEquals("https://i.imgur.com/aB3dE9fl.jpg", thumbnail);
+        assertEquals(thumbnail, message.getThumbnailUrl());
+
+        message.setImageUrl("https://i.imgur.com/zzzzzzz.jpg");
+        assertEquals("https://i.imgur.com/zzzzzzzl.jpg", message.getThumbnailUrl());
+        assertNull(new Message("uid", "hola", null, 0).getThumbnailUrl());
+
+        User user = new User();
+        assertNull(user.getThumbnailUrl());
+        user.setImageUrl("https://i.imgur.com/aB3dE9f.jpg");
+        assertEquals("https://i.imgur.com/aB3dE9fb.jpg", user.getThumbnailUrl());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.example.sendme.data.model.Message;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fan-out del envío de un mensaje: qué rutas se escriben y cuántas según el tamaño del grupo.
+ */
+public class ChatSummariesTest {
+
+    private static final String GROUP = "g1";
+    private static final String ME = "u0";
+
+    private static List<String> members(int n) {
+        List<String> uids = new ArrayList<>();
+        for (int i = 0; i < n; i++) uids.add("u" + i);
+        return uids;
+    }
+
+    @Test
+    public void messageUpdates_incrementsOthersAndResetsSender() {
+        Map<String, Object> updates = ChatSummaries.messageUpdates(GROUP, members(3), ME, "hola", 1000L, "m1");
+
+        assertEquals("hola", updates.get("chat-meta/g1/lastMessage"));
+        assertEquals(1000L, updates.get("chat-meta/g1/lastMessageTimestamp"));
+        assertEquals(0, updates.get(ChatSummaries.path(ME, GROUP) + "/unreadCount"));
+        for (String uid : List.of("u1", "u2")) {
+            // Incremento en servidor, no un valor leído antes
+            assertTrue(updates.get(ChatSummaries.path(uid, GROUP) + "/unreadCount") instanceof Map);
+            assertEquals("hola", updates.get(ChatSummaries.path(uid, GROUP) + "/lastMessage"));
+            assertEquals("m1", updates.get(ChatSummaries.path(uid, GROUP) + "/lastMessageKey"));
+        }
+    }
+
+    @Test
+    public void messageUpdates_senderNotInCachedSetStillGetsSummary() {
+        Map<String, Object> updates = ChatSummaries.messageUpdates(GROUP, List.of("u1"), ME, "hola", 1L, "m1");
+
+        assertEquals(0, updates.get(ChatSummaries.path(ME, GROUP) + "/unreadCount"));
+        assertFalse(updates.get(ChatSummaries.path("u1", GROUP) + "/unreadCount") instanceof Integer);
+    }
+
+    @Test
+    public void sendUpdates_writesMessageAndInboxTogether() {
+        Message message = new Message(ME, null, "https://i.imgur.com/x.jpg", 2000L);
+        message.setId("m1");
+
+        Map<String, Object> updates = ChatSummaries.sendUpdates(GROUP, members(2), message);
+
+        assertSame(message, updates.get("chat-messages/g1/m1"));
+        assertEquals("Imagen", updates.get("chat-meta/g1/lastMessage"));
+        assertEquals(2000L, updates.get(ChatSummaries.path("u1", GROUP) + "/lastMessageTimestamp"));
+        // Mensaje + metadatos + 4 rutas por participante + cursor del que envía
+        assertEquals(1 + 2 + 4 * 2 + 2, updates.size());
+        assertEquals("m1", updates.get(ChatSummaries.path(ME, GROUP) + "/lastReadKey"));
+    }
+
+    /** Un envío es una sola escritura: 2 rutas de chat-meta y 4 por miembro, crezca lo que crezca el grupo */
+    @Test
+    public void messageUpdates_pathsGrowLinearlyWithGroupSize() {
+        for (int size : new int[]{10, 100, 500}) {
+            List<String> uids = members(size);
+
+            Map<String, Object> updates = ChatSummaries.messageUpdates(GROUP, uids, ME, "hola", 1L, "m1");
+
+            assertEquals(2 + 4 * size, updates.size());
+            for (String uid : uids) {
+                String base = ChatSummaries.path(uid, GROUP);
+                assertEquals("m1", updates.get(base + "/lastMessageKey"));
+                Object unread = updates.get(base + "/unreadCount");
+                assertTrue(uid.equals(ME) ? unread instanceof Integer : unread instanceof Map);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import okhttp3.MediaType;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Subida de imágenes en streaming: el cuerpo se lee del stream mientras se escribe, con la
+ * misma memoria para una imagen pequeña que para una enorme.
+ */
+public class FileRequestBodyTest {
+
+    private static final MediaType IMAGE = MediaType.parse("image/*");
+    private static final int BIG = 64 * 1024 * 1024;
+
+    /** Bytes generados al vuelo (sin array detrás), como una foto que está en disco */
+    private static class GeneratedStream extends InputStream {
+        private final long size;
+        private long position = 0;
+
+        GeneratedStream(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            return position < size ? (int) (position++ & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) {
+            if (position >= size) return -1;
+            int n = (int) Math.min(len, size - position);
+            for (int i = 0; i < n; i++) b[off + i] = (byte) (position + i);
+            position += n;
+            return n;
+        }
+    }
+
+    /** Cuenta cuántas veces se abre y cuántas se pregunta el tamaño */
+    private static class CountingOpener implements FileRequestBody.Opener {
+        final long size;
+        final long reportedLength;
+        int opens = 0;
+        int lengthQueries = 0;
+
+        CountingOpener(long size, long reportedLength) {
+            this.size = size;
+            this.reportedLength = reportedLength;
+        }
+
+        @NonNull
+        @Override
+        public InputStream open() {
+            opens++;
+            return new GeneratedStream(size);
+        }
+
+        @Override
+        public long length() {
+            lengthQueries++;
+            return reportedLength;
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    public void writesSameBytesAsTheStream() throws IOException {
+        int size = 100_000;
+        FileRequestBody body = new FileRequestBody(IMAGE, new CountingOpener(size, size));
+
+        Buffer written = new Buffer();
+        body.writeTo(written);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        InputStream in = new GeneratedStream(size);
+        int b;
+        while ((b = in.read()) != -1) expected.write(b);
+        assertArrayEquals(expected.toByteArray(), written.readByteArray());
+        assertEquals(IMAGE, body.contentType());
+    }
+
+    @Test
+    public void fromFile_sendsTheFile() throws IOException {
+        File file = File.createTempFile("upload", ".jpg");
+        try {
+            byte[] content = new byte[20_000];
+            for (int i = 0; i < content.length; i++) content[i] = (byte) i;
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(content);
+            }
+
+            FileRequestBody body = FileRequestBody.from(file, IMAGE);
+            Buffer written = new Buffer();
+            body.writeTo(written);
+
+            assertEquals(content.length, body.contentLength());
+            assertArrayEquals(content, written.readByteArray());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void contentLength_askedOnceAndUnknownIsMinusOne() {
+        CountingOpener known = new CountingOpener(5_000, 5_000);
+        FileRequestBody body = new FileRequestBody(IMAGE, known);
+        assertEquals(0, known.lengthQueries); // Nada al crearlo (en el hilo principal)
+        assertEquals(5_000, body.contentLength());
+        assertEquals(5_000, body.contentLength());
+        assertEquals(1, known.lengthQueries);
+
+        assertEquals(-1, new FileRequestBody(IMAGE, new CountingOpener(5_000, -1)).contentLength());
+    }
+
+    @Test
+    public void canBeWrittenAgain_forRetries() throws IOException {
+        CountingOpener opener = new CountingOpener(20_000, 20_000);
+        FileRequestBody body = new FileRequestBody(IMAGE, opener);
+
+        Buffer first = new Buffer();
+        Buffer second = new Buffer();
+        body.writeTo(first);
+        body.writeTo(second);
+
+        assertEquals(2, opener.opens);
+        assertEquals(20_000, first.size());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void progress_reachesTheTotal() throws IOException {
+        long[] last = {0, 0};
+        int[] calls = {0};
+        FileRequestBody body = new FileRequestBody(IMAGE, new CountingOpener(100_000, 100_000))
+                .setProgress((sent, total) -> {
+                    assertTrue(sent > last[0]);
+                    last[0] = sent;
+                    last[1] = total;
+                    calls[0]++;
+                });
+
+        Buffer written = new Buffer();
+        body.writeTo(written);
+
+        assertEquals(100_000, written.size());
+        assertEquals(100_000, last[0]);
+        assertEquals(100_000, last[1]);
+        assertTrue(calls[0] > 1);
+    }
+
+    @Test
+    public void missingContent_failsTheWrite() {
+        FileRequestBody body = new FileRequestBody(IMAGE, new FileRequestBody.Opener() {
+            @NonNull
+            @Override
+            public InputStream open() throws IOException {
+                throw new FileNotFoundException("gone");
+            }
+
+            @Override
+            public long length() {
+                return -1;
+            }
+        });
+
+        try {
+            body.writeTo(new Buffer());
+            fail();
+        } catch (IOException expected) {
+            // OkHttp lo entrega en onFailure
+        }
+    }
+
+    /** 64 MB al "socket" (un sink que lo descarta): lo que se reserva no depende del tamaño */
+    @Test
+    public void heapStaysFlat_regardlessOfSize() throws IOException {
+        // Calienta Okio (pool de segmentos) y el JIT
+        for (int i = 0; i < 3; i++) writeToBlackhole(1024 * 1024);
+
+        long before = allocatedBytes();
+        writeToBlackhole(BIG);
+        long streaming = allocatedBytes() - before;
+
+        assertTrue("El streaming no debería depender del tamaño (" + streaming + " bytes)",
+                streaming < 1024 * 1024);
+    }
+
+    private static void writeToBlackhole(int size) throws IOException {
+        FileRequestBody body = new FileRequestBody(IMAGE, new CountingOpener(size, size));
+        BufferedSink socket = Okio.buffer(Okio.blackhole());
+        body.writeTo(socket);
+        socket.flush();
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Búsqueda en todos los chats: resultados agrupados que llegan chat a chat, lecturas solo en
+ * el hilo de disco y cuántos índices se quedan en memoria.
+ */
+public class GlobalSearchTest {
+
+    private static final int CHATS = 300;
+    private static final int MESSAGES_PER_CHAT = 200;
+
+    /** Copia local en memoria: chats en orden de actividad, cuenta las lecturas completas */
+    private static class MemorySource implements GlobalSearch.Source {
+        final Map<String, NavigableMap<String, Message>> chats = new LinkedHashMap<>();
+        int fullReads = 0;
+        int deltaReads = 0;
+        ManualExecutor disk;    // Todas las lecturas tienen que ir por aquí
+
+        private void checkDisk() {
+            assertTrue("Lectura fuera del hilo de disco", disk.running);
+        }
+
+        @NonNull
+        @Override
+        public List<String> chatIds() {
+            checkDisk();
+            return new ArrayList<>(chats.keySet());
+        }
+
+        @Nullable
+        @Override
+        public String newestKey(@NonNull String chatId) {
+            checkDisk();
+            NavigableMap<String, Message> messages = chats.get(chatId);
+            return messages == null || messages.isEmpty() ? null : messages.lastKey();
+        }
+
+        @Override
+        public int count(@NonNull String chatId) {
+            checkDisk();
+            return chats.get(chatId).size();
+        }
+
+        @NonNull
+        @Override
+        public List<Message> all(@NonNull String chatId) {
+            checkDisk();
+            fullReads++;
+            return new ArrayList<>(chats.get(chatId).values());
+        }
+
+        @NonNull
+        @Override
+        public List<Message> after(@NonNull String chatId, @NonNull String afterKey) {
+            checkDisk();
+            deltaReads++;
+            return new ArrayList<>(chats.get(chatId).tailMap(afterKey, false).values());
+        }
+
+        void put(String chatId, Message message) {
+            chats.computeIfAbsent(chatId, k -> new TreeMap<>()).put(message.getId(), message);
+        }
+    }
+
+    /** Ejecutor manual: las tareas se ejecutan cuando el test quiere */
+    private static class ManualExecutor implements java.util.concurrent.Executor {
+        final Deque<Runnable> tasks = new ArrayDeque<>();
+        boolean running;
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            tasks.add(command);
+        }
+
+        boolean runOne() {
+            Runnable task = tasks.poll();
+            if (task == null) return false;
+            running = true;
+            try {
+                task.run();
+            } finally {
+                running = false;
+            }
+            return true;
+        }
+
+    }
+
+    private static class Collected implements GlobalSearch.Listener {
+        final Map<String, List<Message>> byChat = new LinkedHashMap<>();
+        int finished = -1;
+
+        @Override
+        public void onChatResults(@NonNull String chatId, @NonNull List<Message> hits) {
+            byChat.put(chatId, hits);
+        }
+
+        @Override
+        public void onFinished(int chatsSearched) {
+            finished = chatsSearched;
+        }
+    }
+
+    private static Message message(int chat, int i, String content) {
+        Message m = new Message("u" + (i % 3), content, null, 1_000L + i);
+        m.setId(String.format("-M%05d-%06d", chat, i));
+        return m;
+    }
+
+    private MemorySource source;
+    private ManualExecutor disk;
+    private ManualExecutor workers;
+    private GlobalSearch search;
+
+    @Before
+    public void setUp() {
+        source = new MemorySource();
+        disk = new ManualExecutor();
+        workers = new ManualExecutor();
+        source.disk = disk;
+        search = new GlobalSearch(source, disk, workers, Runnable::run, CHATS);
+
+        for (int c = 0; c < CHATS; c++) {
+            for (int i = 0; i < MESSAGES_PER_CHAT; i++) {
+                // "cumpleaños" en uno de cada 10 chats, el resto ruido
+                String content = c % 10 == 0 && i % 50 == 0 ? "feliz cumpleaños " + i : "mensaje normal " + i;
+                source.put("chat" + c, message(c, i, content));
+            }
+        }
+    }
+
+    /** Hasta que no quede nada en ningún ejecutor */
+    private void runAll() {
+        while (disk.runOne() | workers.runOne()) { /* nada */ }
+    }
+
+    @Test
+    public void resultsStreamPerChat_groupedAndNewestFirst() {
+        Collected collected = new Collected();
+        search.search("cumple", collected);
+
+        // Lista de chats + leer e indexar el primero: ya hay resultados sin haber mirado los otros 299
+        disk.runOne();
+        disk.runOne();
+        workers.runOne();
+        assertEquals(1, collected.byChat.size());
+        assertEquals(-1, collected.finished);
+
+        runAll();
+        assertEquals(CHATS / 10, collected.byChat.size());
+        assertEquals(CHATS, collected.finished);
+
+        List<Message> hits = collected.byChat.get("chat0");
+        assertEquals(MESSAGES_PER_CHAT / 50, hits.size());
+        assertTrue(hits.get(0).getId().compareTo(hits.get(1).getId()) > 0);
+    }
+
+    @Test
+    public void newerQuery_dropsOlderOne() {
+        Collected first = new Collected();
+        Collected second = new Collected();
+        search.search("cumple", first);
+        search.search("feliz", second);
+        runAll();
+
+        assertTrue(first.byChat.isEmpty());
+        assertEquals(-1, first.finished);
+        assertEquals(CHATS / 10, second.byChat.size());
+    }
+
+    @Test
+    public void secondSearch_onlyReadsNewMessages() {
+        search.search("cumple", new Collected());
+        runAll();
+        assertEquals(CHATS, source.fullReads);
+
+        source.put("chat7", message(7, MESSAGES_PER_CHAT, "cumpleaños sorpresa"));
+
+        Collected collected = new Collected();
+        search.search("sorpresa", collected);
+        runAll();
+
+        assertEquals(CHATS, source.fullReads);   // Nada se vuelve a leer entero
+        assertEquals(1, source.deltaReads);      // Solo el chat que cambió
+        assertEquals(1, collected.byChat.get("chat7").size());
+    }
+
+    @Test
+    public void manyChats_onlyTheMostRecentlySearchedStayIndexed() {
+        search = new GlobalSearch(source, disk, workers, Runnable::run, 10);
+        search.search("cumple", new Collected());
+        runAll();
+        assertEquals(CHATS, source.fullReads);
+
+        // Se quedan los 10 últimos buscados (chat290..chat299)
+        Map<String, NavigableMap<String, Message>> oldest = new LinkedHashMap<>();
+        for (int c = 0; c < CHATS - 10; c++) oldest.put("chat" + c, source.chats.remove("chat" + c));
+        search.search("cumple", new Collected());
+        runAll();
+        assertEquals(CHATS, source.fullReads);
+
+        // Uno de los olvidados se vuelve a leer entero
+        source.chats.put("chat0", oldest.get("chat0"));
+        Collected collected = new Collected();
+        search.search("cumple", collected);
+        runAll();
+        assertEquals(CHATS + 1, source.fullReads);
+        assertEquals(MESSAGES_PER_CHAT / 50, collected.byChat.get("chat0").size());
+    }
+
+    @Test
+    public void warmIndexes_firstResultNeedsOneChat() {
+        search.search("cumple", new Collected());
+        runAll();
+
+        Collected collected = new Collected();
+        search.search("cumple", collected);
+        disk.runOne();
+        disk.runOne();
+        workers.runOne();
+
+        // Al día: una consulta a disco sin lecturas de mensajes y ya hay resultados
+        assertEquals(CHATS, source.fullReads);
+        assertEquals(0, source.deltaReads);
+        assertEquals(1, collected.byChat.size());
+
+        runAll();
+        assertEquals(CHATS, collected.finished);
+    }
+
+    @Test
+    public void chatSearch_opening_readsNothing_firstSearchBuildsTheShard() {
+        ChatSearch chat = new ChatSearch("chat0", search);
+        assertTrue("Abrir el chat no encola nada en disco", disk.tasks.isEmpty());
+
+        List<Integer> results = new ArrayList<>();
+        chat.search("cumple", (query, newestFirst) -> results.add(newestFirst.size()));
+        runAll();
+
+        assertEquals(Collections.singletonList(MESSAGES_PER_CHAT / 50), results);
+        assertEquals(1, source.fullReads);
+    }
+
+    @Test
+    public void chatSearch_sharesTheShardWithGlobalSearch_andReopeningOnlyReadsNew() {
+        search.search("cumple", new Collected());
+        runAll();
+        assertEquals(CHATS, source.fullReads);
+
+        // Se cierra y se vuelve a abrir el chat con un mensaje nuevo guardado
+        new ChatSearch("chat7", search).close();
+        source.put("chat7", message(7, MESSAGES_PER_CHAT, "cumpleaños sorpresa"));
+        List<Integer> results = new ArrayList<>();
+        new ChatSearch("chat7", search).search("sorpresa", (query, newestFirst) -> results.add(newestFirst.size()));
+        runAll();
+
+        assertEquals(Collections.singletonList(1), results);
+        assertEquals(CHATS, source.fullReads);
+        assertEquals(1, source.deltaReads);
+    }
+
+    @Test
+    public void chatSearch_dropsSupersededQueries() {
+        ChatSearch chat = new ChatSearch("chat0", search);
+        List<String> delivered = new ArrayList<>();
+        ChatSearch.Callback callback = (query, newestFirst) -> delivered.add(query + "=" + newestFirst.size());
+
+        chat.search("c", callback);
+        chat.search("cu", callback);
+        chat.search("cumple", callback);   // Solo esta tiene que llegar
+        runAll();
+
+        assertEquals(Collections.singletonList("cumple=" + MESSAGES_PER_CHAT / 50), delivered);
+    }
+
+    @Test
+    public void chatSearch_afterClose_ignoresLateWork() {
+        ChatSearch chat = new ChatSearch("chat0", search);
+        chat.search("cumple", (query, newestFirst) -> fail("No debería llegar nada"));
+        disk.runOne();   // Leído, pendiente de buscar
+        chat.close();
+        runAll();
+
+        assertTrue(workers.tasks.isEmpty());
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+/**
+ * Tamaño al que se decodifican las imágenes antes de subirlas: el lado largo limitado, la
+ * proporción intacta y nunca más grande que el original.
+ */
+public class ImageScalingTest {
+
+    @Test
+    public void landscapePhoto_longestEdgeCapped() {
+        assertArrayEquals(new int[]{1600, 1200}, ImagePreprocessor.scaledSize(4032, 3024, 1600));
+    }
+
+    @Test
+    public void portraitPhoto_longestEdgeCapped() {
+        assertArrayEquals(new int[]{480, 640}, ImagePreprocessor.scaledSize(3024, 4032, 640));
+    }
+
+    @Test
+    public void smallImage_isNotUpscaled() {
+        assertArrayEquals(new int[]{480, 360}, ImagePreprocessor.scaledSize(480, 360, 1600));
+        assertArrayEquals(new int[]{1600, 900}, ImagePreprocessor.scaledSize(1600, 900, 1600));
+    }
+
+    @Test
+    public void veryThinImage_neverZero() {
+        assertArrayEquals(new int[]{640, 1}, ImagePreprocessor.scaledSize(20_000, 3, 640));
+    }
+}
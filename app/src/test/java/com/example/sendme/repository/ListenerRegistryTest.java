@@ -0,0 +1,118 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests del registro de listeners con canales falsos (sin Firebase):
+ * se cuenta cuántas veces se engancha/desengancha el listener real de cada ruta.
+ */
+public class ListenerRegistryTest {
+
+    private static final String INBOX = "child:user-chats/uid1";
+
+    private ListenerRegistry registry;
+    private int attaches;
+    private int detaches;
+
+    /** Canal falso: cuenta enganches y guarda el último valor para repetírselo a los nuevos */
+    private class FakeChannel extends ListenerRegistry.Channel<List<String>> {
+        String lastValue;
+
+        @Override
+        void attach() {
+            attaches++;
+        }
+
+        @Override
+        void detach() {
+            detaches++;
+        }
+
+        @Override
+        void replay(List<String> listener) {
+            if (lastValue != null) listener.add(lastValue);
+        }
+
+        void emit(String value) {
+            lastValue = value;
+            for (List<String> l : snapshotSubscribers()) l.add(value);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        registry = new ListenerRegistry();
+        attaches = 0;
+        detaches = 0;
+    }
+
+    @Test
+    public void openingInboxManyTimes_neverGrowsListenerSet() {
+        for (int i = 0; i < 100; i++) {
+            ListenerRegistry.Registration r = registry.subscribe(INBOX, FakeChannel::new, new ArrayList<String>());
+            assertEquals(1, registry.getActiveListenerCount());
+            r.remove();
+        }
+
+        assertEquals(0, registry.getActiveListenerCount());
+        assertEquals(0, registry.getSubscriberCount());
+        assertEquals(attaches, detaches);
+    }
+
+    @Test
+    public void sameRoute_sharesOneRealListener() {
+        ListenerRegistry.Registration a = registry.subscribe(INBOX, FakeChannel::new, new ArrayList<String>());
+        ListenerRegistry.Registration b = registry.subscribe(INBOX, FakeChannel::new, new ArrayList<String>());
+
+        assertEquals(1, attaches);
+        assertEquals(1, registry.getActiveListenerCount());
+        assertEquals(2, registry.getSubscriberCount());
+
+        a.remove();
+        assertEquals(0, detaches);   // Aún queda un suscriptor
+        b.remove();
+        assertEquals(1, detaches);
+        assertEquals(0, registry.getActiveListenerCount());
+    }
+
+    @Test
+    public void removeTwice_doesNotReleaseOtherSubscribers() {
+        ListenerRegistry.Registration a = registry.subscribe(INBOX, FakeChannel::new, new ArrayList<String>());
+        registry.subscribe(INBOX, FakeChannel::new, new ArrayList<String>());
+
+        a.remove();
+        a.remove();
+
+        assertEquals(1, registry.getSubscriberCount());
+        assertEquals(0, detaches);
+    }
+
+    @Test
+    public void lateSubscriber_receivesCurrentState() {
+        FakeChannel[] created = new FakeChannel[1];
+        registry.subscribe(INBOX, () -> created[0] = new FakeChannel(), new ArrayList<String>());
+        created[0].emit("v1");
+
+        List<String> late = new ArrayList<>();
+        registry.subscribe(INBOX, FakeChannel::new, late);
+
+        assertEquals(1, attaches);
+        assertTrue(late.contains("v1"));
+    }
+
+    @Test
+    public void differentRoutes_getTheirOwnListener() {
+        registry.subscribe(INBOX, FakeChannel::new, new ArrayList<String>());
+        registry.subscribe("value:chat-meta/c1/participants", FakeChannel::new, new ArrayList<String>());
+
+        assertEquals(2, registry.getActiveListenerCount());
+        assertEquals(2, attaches);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.sendme.repository;
+
+import com.example.sendme.data.model.Message;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Comprueba que el paginador nunca lee más nodos de los que pide la página,
+ * aunque el chat tenga un historial enorme.
+ */
+public class MessagePagerTest {
+
+    private static final int HISTORY_SIZE = 20_000;
+    private static final int PAGE_SIZE = 30;
+
+    private FakeSource source;
+
+    @Before
+    public void setUp() {
+        source = new FakeSource(HISTORY_SIZE);
+    }
+
+    @Test
+    public void firstRender_readsOnlyOnePage() {
+        MessagePager pager = new MessagePager(source, PAGE_SIZE);
+        List<Message> rendered = new ArrayList<>();
+
+        pager.loadInitial(new Collector(rendered));
+
+        assertEquals(PAGE_SIZE, source.nodesRead);
+        assertEquals(PAGE_SIZE, rendered.size());
+        // Son los últimos mensajes, en orden cronológico
+        assertEquals(key(HISTORY_SIZE - PAGE_SIZE), rendered.get(0).getId());
+        assertEquals(key(HISTORY_SIZE - 1), rendered.get(PAGE_SIZE - 1).getId());
+        assertTrue(pager.hasMore());
+    }
+
+    @Test
+    public void loadOlder_continuesFromCursorWithoutOverlap() {
+        MessagePager pager = new MessagePager(source, PAGE_SIZE);
+        List<Message> first = new ArrayList<>();
+        List<Message> older = new ArrayList<>();
+
+        pager.loadInitial(new Collector(first));
+        assertTrue(pager.loadOlder(new Collector(older)));
+
+        assertEquals(2 * PAGE_SIZE, source.nodesRead);
+        assertEquals(key(HISTORY_SIZE - 2 * PAGE_SIZE), older.get(0).getId());
+        assertEquals(key(HISTORY_SIZE - PAGE_SIZE - 1), older.get(PAGE_SIZE - 1).getId());
+    }
+
+    @Test
+    public void loadOlder_stopsAtBeginningOfHistory() {
+        source = new FakeSource(PAGE_SIZE + 10);
+        MessagePager pager = new MessagePager(source, PAGE_SIZE);
+        List<Message> all = new ArrayList<>();
+
+        pager.loadInitial(new Collector(all));
+        assertTrue(pager.loadOlder(new Collector(all)));
+
+        assertEquals(PAGE_SIZE + 10, all.size());
+        assertFalse(pager.hasMore());
+        assertFalse(pager.loadOlder(new Collector(all)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositivePageSize() {
+        new MessagePager(source, 0);
+    }
+
+    private static String key(int index) {
+        // Claves ordenables como las push keys
+        return String.format("m%08d", index);
+    }
+
+    /** Simula orderByKey().endBefore(cursor).limitToLast(limit) y cuenta los nodos devueltos */
+    private static class FakeSource implements MessagePager.PageSource {
+        private final List<Message> history = new ArrayList<>();
+        int nodesRead = 0;
+
+        FakeSource(int size) {
+            for (int i = 0; i < size; i++) {
+                Message m = new Message("uid", "mensaje " + i, null, i);
+                m.setId(key(i));
+                history.add(m);
+            }
+        }
+
+        @Override
+        public void fetchPage(String endBeforeKey, int limit, MessagePager.PageCallback callback) {
+            int end = history.size();
+            if (endBeforeKey != null) {
+                end = 0;
+                while (end < history.size() && history.get(end).getId().compareTo(endBeforeKey) < 0) end++;
+            }
+            int start = Math.max(0, end - limit);
+            List<Message> page = new ArrayList<>(history.subList(start, end));
+            nodesRead += page.size();
+            callback.onPage(page);
+        }
+    }
+
+    private static class Collector implements MessagePager.PageCallback {
+        private final List<Message> target;
+
+        Collector(List<Message> target) {
+            this.target = target;
+        }
+
+        @Override
+        public void onPage(List<Message> messages) {
+            target.addAll(0, messages);
+        }
+
+        @Override
+        public void onError(String error) {
+            fail(error);
+        }
+    }
+}
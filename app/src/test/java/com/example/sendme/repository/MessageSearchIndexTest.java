@@ -0,0 +1,162 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+import com.example.sendme.data.model.Message;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Índice de búsqueda de un chat: qué encuentra, en qué orden y cuánto tarda con 50k mensajes.
+ */
+public class MessageSearchIndexTest {
+
+    private static final String[] WORDS = {
+            "hola", "adiós", "mañana", "quedamos", "cine", "cena", "canción", "partido", "fútbol", "playa",
+            "trabajo", "reunión", "viernes", "sábado", "casa", "coche", "perro", "gato", "foto", "vídeo",
+            "llamada", "ahora", "luego", "tarde", "noche", "café", "cerveza", "pizza", "examen", "clase"
+    };
+
+    private static Message message(int i, String content) {
+        Message m = new Message(i % 2 == 0 ? "ana" : "bea", content, null, 1_000L + i);
+        m.setId(String.format("-M%08d", i));
+        return m;
+    }
+
+    private static MessageSearchIndex indexOf(String... contents) {
+        MessageSearchIndex index = new MessageSearchIndex();
+        for (int i = 0; i < contents.length; i++) index.add(message(i, contents[i]));
+        return index;
+    }
+
+    @Test
+    public void findsAllWordsWithLastAsPrefix_newestFirst() {
+        MessageSearchIndex index = indexOf("Hola, ¿quedamos mañana?", "hola a todos", "¿Mañana en el cine?", "HOLA mañanero");
+
+        assertEquals(Arrays.asList("-M00000003", "-M00000001", "-M00000000"), index.search("hol", 10));
+        assertEquals(Arrays.asList("-M00000003", "-M00000000"), index.search("hola mañ", 10));
+        assertEquals(Arrays.asList("-M00000000"), index.search("hola mañana", 10));
+        assertTrue(index.search("cine hola", 10).isEmpty());
+    }
+
+    @Test
+    public void ignoresCaseAndAccents() {
+        MessageSearchIndex index = indexOf("Me encanta esta CANCIÓN", "pingüino");
+
+        assertEquals(1, index.search("cancion", 10).size());
+        assertEquals(1, index.search("Canción", 10).size());
+        assertEquals(1, index.search("pinguino", 10).size());
+    }
+
+    @Test
+    public void readdingMessageReplacesOldTerms() {
+        MessageSearchIndex index = indexOf("perro");
+        index.add(message(0, "gato"));
+
+        assertTrue(index.search("perro", 10).isEmpty());
+        assertEquals(1, index.search("gato", 10).size());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void olderPageIndexedLater_stillRankedByRecency() {
+        MessageSearchIndex index = new MessageSearchIndex();
+        index.add(message(10, "hola nuevo"));
+        index.add(message(11, "hola más nuevo"));
+        // Página anterior que llega después (scroll hacia arriba)
+        index.addAll(Arrays.asList(message(1, "hola viejo"), message(2, "hola menos viejo")));
+
+        assertEquals(Arrays.asList("-M00000011", "-M00000010", "-M00000002", "-M00000001"), index.search("hola", 10));
+        assertEquals(Arrays.asList("-M00000002"), index.search("hola menos", 10));
+    }
+
+    @Test
+    public void prefixMatchingSeveralTerms_returnsEachMessageOnce() {
+        MessageSearchIndex index = indexOf("holi hola", "holaaa", "adiós");
+
+        assertEquals(Arrays.asList("-M00000001", "-M00000000"), index.search("hol", 10));
+        assertEquals(1, index.search("hol", 1).size());
+    }
+
+    @Test
+    public void highlight_sameWordsAsTheSearch() {
+        String text = "Canción del verano: ¡CANCIÓN! y el girasol";
+
+        // Sin tildes ni mayúsculas, sobre las posiciones del texto original
+        int[] ranges = MessageSearchIndex.highlightRanges(text, MessageSearchIndex.queryTerms("cancion"));
+        assertArrayEquals(new int[]{0, 7, 21, 28}, ranges);
+        assertEquals("CANCIÓN", text.substring(ranges[2], ranges[3]));
+
+        // La última palabra como prefijo; las demás enteras ("el" no resalta "del")
+        assertArrayEquals(new int[]{32, 34, 35, 42},
+                MessageSearchIndex.highlightRanges(text, MessageSearchIndex.queryTerms("el gira")));
+
+        // Nada a medio de palabra
+        assertArrayEquals(new int[0], MessageSearchIndex.highlightRanges(text, MessageSearchIndex.queryTerms("sol")));
+        assertArrayEquals(new int[0], MessageSearchIndex.highlightRanges(null, MessageSearchIndex.queryTerms("hola")));
+    }
+
+    @Test
+    public void highlight_decomposedAccentsStayInTheWord() {
+        String text = "cafe\u0301 con leche"; // "café" con la tilde aparte
+        assertArrayEquals(new int[]{0, 5}, MessageSearchIndex.highlightRanges(text, MessageSearchIndex.queryTerms("CAFÉ")));
+    }
+
+    @Test
+    public void matches_agreesWithIndex() {
+        assertTrue(MessageSearchIndex.matches("Hola, ¿quedamos mañana?", "hola maña"));
+        assertFalse(MessageSearchIndex.matches("Hola, ¿quedamos mañana?", "hola cine"));
+        assertFalse(MessageSearchIndex.matches(null, "hola"));
+        assertTrue(MessageSearchIndex.matches(null, ""));
+    }
+
+    /**
+     * 50k mensajes: consultas al índice para una palabra rara, una muy común, un prefijo corto
+     * y dos palabras.
+     */
+    @Test
+    public void benchmark_queryLatencyOn50kMessages() {
+        int count = 50_000;
+        Random random = new Random(42);
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            int words = 3 + random.nextInt(10);
+            for (int w = 0; w < words; w++) {
+                // Distribución sesgada: unas pocas palabras salen muchísimo
+                int index = (int) (WORDS.length * Math.pow(random.nextDouble(), 2));
+                text.append(WORDS[index]).append(random.nextInt(5) == 0 ? ", " : " ");
+            }
+            if (i % 997 == 0) text.append("cumpleaños");
+            messages.add(message(i, text.toString()));
+        }
+
+        MessageSearchIndex index = new MessageSearchIndex();
+        index.addAll(messages);
+
+        String[] queries = {"cumpleaños", "hola", "c", "quedamos cin", "fútbol sábado noche"};
+        for (String query : queries) {
+            // Calentamiento del JIT y después la mediana de varias pasadas
+            for (int i = 0; i < 20; i++) index.search(query, ChatSearch.MAX_RESULTS);
+            long[] samples = new long[31];
+            for (int i = 0; i < samples.length; i++) {
+                long start = System.nanoTime();
+                index.search(query, ChatSearch.MAX_RESULTS);
+                samples[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(samples);
+            long medianMicros = samples[samples.length / 2] / 1_000;
+            assertTrue("\"" + query + "\" tardó " + medianMicros + " us", medianMicros < 10_000);
+        }
+        assertEquals(count / 997 + 1, index.search("cumpleaños", count).size());
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.Message;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Apertura de un chat de 10k mensajes con y sin copia local: qué se pinta antes de que
+ * conteste Firebase y cuántos mensajes/bytes se descargan.
+ *
+ * La red se simula con respuestas pendientes que el test entrega cuando quiere, y los
+ * tiempos con un reloj virtual ({@link #RTT_MS} por petición más el coste por byte).
+ */
+public class MessageSyncTest {
+
+    private static final String CHAT = "c1";
+    private static final int PAGE = 50;
+    private static final int HISTORY = 10_000;
+    private static final long RTT_MS = 150;
+    private static final double MS_PER_KB = 0.8;   // ~10 Mbit/s
+    private static final long DISK_MS = 4;         // Una consulta por índice en SQLite
+
+    /** Como LocalMessageStore pero en memoria, ordenado por clave */
+    private static class MemoryStore implements MessageSync.Store {
+        final Map<String, NavigableMap<String, Message>> chats = new TreeMap<>();
+
+        private NavigableMap<String, Message> chat(String chatId) {
+            return chats.computeIfAbsent(chatId, k -> new TreeMap<>());
+        }
+
+        @NonNull
+        @Override
+        public List<Message> latest(@NonNull String chatId, int limit) {
+            return tail(chat(chatId), limit);
+        }
+
+        @NonNull
+        @Override
+        public List<Message> before(@NonNull String chatId, @NonNull String beforeKey, int limit) {
+            return tail(chat(chatId).headMap(beforeKey, false), limit);
+        }
+
+        @Nullable
+        @Override
+        public String newestKey(@NonNull String chatId) {
+            NavigableMap<String, Message> messages = chat(chatId);
+            return messages.isEmpty() ? null : messages.lastKey();
+        }
+
+        @Override
+        public void putAll(@NonNull String chatId, @NonNull List<Message> messages) {
+            for (Message m : messages) chat(chatId).put(m.getId(), m);
+        }
+
+        private static List<Message> tail(NavigableMap<String, Message> messages, int limit) {
+            List<Message> result = new ArrayList<>();
+            for (Message m : messages.descendingMap().values()) {
+                if (result.size() == limit) break;
+                result.add(m);
+            }
+            Collections.reverse(result);
+            return result;
+        }
+    }
+
+    /** Firebase simulado: cuenta lo descargado y deja las respuestas pendientes */
+    private static class FakeRemote implements MessageSync.RemoteSource {
+        final NavigableMap<String, Message> server = new TreeMap<>();
+        final List<Runnable> pending = new ArrayList<>();
+        int requests = 0;
+        boolean offline = false;
+        long messagesTransferred = 0;
+        long bytesTransferred = 0;
+
+        @Override
+        public void fetchPage(@Nullable String endBeforeKey, int limit, @NonNull MessagePager.PageCallback callback) {
+            NavigableMap<String, Message> range = endBeforeKey == null ? server : server.headMap(endBeforeKey, false);
+            List<Message> page = new ArrayList<>();
+            for (Message m : range.descendingMap().values()) {
+                if (page.size() == limit) break;
+                page.add(m);
+            }
+            Collections.reverse(page);
+            respond(page, callback);
+        }
+
+        @Override
+        public void fetchAfter(@NonNull String startAfterKey, @NonNull MessagePager.PageCallback callback) {
+            respond(new ArrayList<>(server.tailMap(startAfterKey, false).values()), callback);
+        }
+
+        private void respond(List<Message> messages, MessagePager.PageCallback callback) {
+            requests++;
+            if (offline) {
+                pending.add(() -> callback.onError("Sin conexión"));
+                return;
+            }
+            messagesTransferred += messages.size();
+            for (Message m : messages) bytesTransferred += sizeOf(m);
+            pending.add(() -> callback.onPage(messages));
+        }
+
+        void deliverAll() {
+            while (!pending.isEmpty()) pending.remove(0).run();
+        }
+    }
+
+    /** Tamaño aproximado del JSON de un mensaje tal como viaja desde Firebase */
+    private static long sizeOf(Message m) {
+        return m.getId().length() + m.getSender().length() + (m.getContent() != null ? m.getContent().length() : 0)
+                + 13 /* timestamp */ + 60 /* nombres de campo y llaves */;
+    }
+
+    private static String key(int i) {
+        return String.format("-M%08d", i);
+    }
+
+    private static Message message(int i) {
+        Message m = new Message(i % 2 == 0 ? "ana" : "bea", "mensaje número " + i, null, 1_000L + i);
+        m.setId(key(i));
+        return m;
+    }
+
+    /** Lo que le llega a la pantalla */
+    private static class Screen implements MessageSync.Listener {
+        List<Message> local;
+        List<Message> initial;
+        final List<Message> delta = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        boolean expectErrors = false;
+        boolean synced = false;
+
+        @Override
+        public void onLocal(@NonNull List<Message> messages) {
+            local = messages;
+        }
+
+        @Override
+        public void onInitialRemote(@NonNull List<Message> messages) {
+            initial = messages;
+        }
+
+        @Override
+        public void onDelta(@NonNull List<Message> messages) {
+            delta.addAll(messages);
+        }
+
+        @Override
+        public void onError(@NonNull String error) {
+            if (!expectErrors) throw new AssertionError(error);
+            errors.add(error);
+        }
+    }
+
+    private final Executor direct = Runnable::run;
+    private MemoryStore store;
+    private FakeRemote remote;
+
+    @Before
+    public void setUp() {
+        store = new MemoryStore();
+        remote = new FakeRemote();
+        for (int i = 0; i < HISTORY; i++) remote.server.put(key(i), message(i));
+    }
+
+    private MessageSync open(Screen screen) {
+        MessageSync sync = new MessageSync(CHAT, store, remote, direct, direct, PAGE);
+        sync.open(screen, () -> screen.synced = true);
+        return sync;
+    }
+
+    @Test
+    public void firstOpen_downloadsOnlyLastPageAndStoresIt() {
+        Screen screen = new Screen();
+        MessageSync sync = open(screen);
+
+        assertTrue(screen.local.isEmpty());
+        remote.deliverAll();
+
+        assertEquals(PAGE, screen.initial.size());
+        assertEquals(key(HISTORY - 1), sync.getNewestKey());
+        assertEquals(PAGE, remote.messagesTransferred);
+        assertEquals(key(HISTORY - 1), store.newestKey(CHAT));
+        assertTrue(screen.synced);
+    }
+
+    @Test
+    public void firstPageFails_stillHandsOverToRealtime() {
+        remote.offline = true;
+        Screen screen = new Screen();
+        screen.expectErrors = true;
+        MessageSync sync = open(screen);
+        remote.deliverAll();
+
+        assertEquals(1, screen.errors.size());
+        assertNull(screen.initial);
+        assertNull(sync.getNewestKey());   // El listener en tiempo real empieza sin cursor
+        assertTrue(screen.synced);
+    }
+
+    @Test
+    public void reopen_rendersFromDiskBeforeNetworkAndFetchesOnlyDelta() {
+        open(new Screen());
+        remote.deliverAll();
+
+        // Mientras el chat estaba cerrado llegan 7 mensajes
+        for (int i = HISTORY; i < HISTORY + 7; i++) remote.server.put(key(i), message(i));
+        remote.messagesTransferred = 0;
+
+        Screen screen = new Screen();
+        MessageSync sync = open(screen);
+
+        // Pintado antes de que Firebase conteste
+        assertEquals(PAGE, screen.local.size());
+        assertFalse(screen.synced);
+
+        remote.deliverAll();
+
+        assertNull(screen.initial);
+        assertEquals(7, screen.delta.size());
+        assertEquals(7, remote.messagesTransferred);
+        assertEquals(key(HISTORY + 6), sync.getNewestKey());
+        assertTrue(screen.synced);
+    }
+
+    @Test
+    public void loadOlder_readsDiskFirstThenNetwork() {
+        // Ya hay 2 páginas guardadas de una sesión anterior
+        for (int i = HISTORY - 2 * PAGE; i < HISTORY; i++) store.putAll(CHAT, Collections.singletonList(message(i)));
+
+        MessageSync sync = open(new Screen());
+        remote.deliverAll();
+        int requestsAfterOpen = remote.requests;
+
+        List<List<Message>> pages = new ArrayList<>();
+        MessagePager.PageCallback collect = new MessagePager.PageCallback() {
+            @Override
+            public void onPage(@NonNull List<Message> page) {
+                pages.add(page);
+            }
+
+            @Override
+            public void onError(@NonNull String error) {
+                throw new AssertionError(error);
+            }
+        };
+
+        assertTrue(sync.loadOlder(collect));
+        assertEquals(requestsAfterOpen, remote.requests);   // Salió del disco
+        assertEquals(key(HISTORY - 2 * PAGE), pages.get(0).get(0).getId());
+
+        assertTrue(sync.loadOlder(collect));
+        assertEquals(requestsAfterOpen + 1, remote.requests);  // Ya no hay más en local
+        remote.deliverAll();
+        assertEquals(key(HISTORY - 3 * PAGE), pages.get(1).get(0).getId());
+        assertEquals(3 * PAGE, store.chats.get(CHAT).size());
+    }
+
+    @Test
+    public void liveMessage_isStoredAndMovesCursor() {
+        MessageSync sync = open(new Screen());
+        remote.deliverAll();
+
+        Message live = message(HISTORY);
+        sync.onLiveMessage(live);
+
+        assertEquals(live.getId(), sync.getNewestKey());
+        assertEquals(live.getId(), store.newestKey(CHAT));
+    }
+
+    /**
+     * Antes (solo MessagePager: cada apertura espera y descarga la última página, aunque
+     * ya se hubiera visto) frente a ahora (disco al abrir + delta) en un chat de 10k mensajes.
+     */
+    @Test
+    public void benchmark_coldOpenAndBytesFor10kChat() {
+        // Primera apertura (sin nada guardado): una página
+        open(new Screen());
+        remote.deliverAll();
+        long firstOpenBytes = remote.bytesTransferred;
+        long oldPaintMs = RTT_MS + Math.round(firstOpenBytes / 1024.0 * MS_PER_KB);
+        long oldBytes = firstOpenBytes;   // Y otra vez en cada apertura
+
+        // Reapertura con 20 mensajes nuevos
+        for (int i = HISTORY; i < HISTORY + 20; i++) remote.server.put(key(i), message(i));
+        remote.bytesTransferred = 0;
+        Screen screen = new Screen();
+        open(screen);
+        long reopenPaintMs = DISK_MS;   // Se pinta con lo del disco, sin esperar a la red
+        assertEquals(PAGE, screen.local.size());
+        remote.deliverAll();
+        long reopenBytes = remote.bytesTransferred;
+
+        assertTrue("Reapertura: " + reopenBytes + " bytes, antes " + oldBytes, reopenBytes < oldBytes);
+        assertTrue("Reapertura: ~" + reopenPaintMs + " ms, antes ~" + oldPaintMs, reopenPaintMs < oldPaintMs);
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import com.example.sendme.data.model.ChatSummary;
+import com.example.sendme.data.model.Message;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cursor de lectura con un reloj falso: cuántas escrituras hace con el chat abierto
+ * en un grupo activo, comparado con el reset de no leídos por cada mensaje.
+ */
+public class ReadCursorTest {
+
+    private static final String ME = "me";
+    private static final String CHAT = "g1";
+
+    /** Reloj manual: las tareas se ejecutan al avanzar el tiempo */
+    private static class FakeScheduler implements ReadCursor.Scheduler {
+        long now = 0;
+        Runnable task;
+        long dueAt;
+
+        @Override
+        public void schedule(@NonNull Runnable task, long delayMs) {
+            this.task = task;
+            this.dueAt = now + delayMs;
+        }
+
+        @Override
+        public void cancel(@NonNull Runnable task) {
+            if (this.task == task) this.task = null;
+        }
+
+        void advanceTo(long time) {
+            now = time;
+            if (task != null && dueAt <= now) {
+                Runnable run = task;
+                task = null;
+                run.run();
+            }
+        }
+    }
+
+    private final List<Map<String, Object>> writes = new ArrayList<>();
+    private FakeScheduler scheduler;
+    private ReadCursor cursor;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        cursor = new ReadCursor(ME, CHAT, writes::add, scheduler, ReadCursor.DEBOUNCE_MS);
+    }
+
+    private static Message message(int i, String sender, long timestamp) {
+        Message message = new Message(sender, "m" + i, null, timestamp);
+        message.setId(String.format("-K%08d", i));   // Como las push keys: ordenan cronológicamente
+        return message;
+    }
+
+    @Test
+    public void burstOfMessages_writesOncePerInterval() {
+        for (int i = 0; i < 10; i++) {
+            scheduler.advanceTo(i * 100L);
+            cursor.markRead(message(i, "other", i * 100L));
+        }
+        assertTrue(writes.isEmpty());
+
+        scheduler.advanceTo(ReadCursor.DEBOUNCE_MS);
+
+        assertEquals(1, writes.size());
+        Map<String, Object> update = writes.get(0);
+        assertEquals("-K00000009", update.get(ChatSummaries.path(ME, CHAT) + "/lastReadKey"));
+        assertEquals(900L, update.get(ChatSummaries.path(ME, CHAT) + "/lastReadTimestamp"));
+        assertEquals(0, update.get(ChatSummaries.path(ME, CHAT) + "/unreadCount"));
+    }
+
+    @Test
+    public void flushOnLeave_writesPendingCursorOnlyOnce() {
+        cursor.markRead(message(1, "other", 1));
+        cursor.flush();
+        cursor.flush();
+
+        assertEquals(1, writes.size());
+        // La tarea programada se canceló: al pasar el tiempo no escribe otra vez
+        scheduler.advanceTo(ReadCursor.DEBOUNCE_MS * 2);
+        assertEquals(1, writes.size());
+    }
+
+    @Test
+    public void ownMessages_doNotWrite() {
+        cursor.markRead(message(1, ME, 1));
+        cursor.markRead(message(2, ME, 2));
+        cursor.flush();
+
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    public void olderMessage_doesNotMoveCursorBack() {
+        cursor.markRead(message(5, "other", 5));
+        cursor.flush();
+        cursor.markRead(message(3, "other", 3));
+        cursor.flush();
+
+        assertEquals(1, writes.size());
+    }
+
+    @Test
+    public void unreadIsDerivedFromCursor() {
+        ChatSummary summary = new ChatSummary();
+        summary.setLastMessageTimestamp(100);
+        summary.setLastMessageKey("-K1");
+        summary.setUnreadCount(4);
+        // Sin cursor (entradas antiguas): el contador tal cual
+        assertEquals(4, summary.getEffectiveUnreadCount());
+
+        summary.setLastReadKey("-K1");
+        summary.setLastReadTimestamp(100);
+        assertEquals(0, summary.getEffectiveUnreadCount());
+
+        // Llega algo después del cursor aunque el contador se haya puesto a 0
+        summary.setUnreadCount(0);
+        summary.setLastMessageTimestamp(200);
+        summary.setLastMessageKey("-K2");
+        assertEquals(1, summary.getEffectiveUnreadCount());
+    }
+
+    @Test
+    public void senderClockBehind_stillCountsAsUnread() {
+        ChatSummary summary = new ChatSummary();
+        summary.setLastReadKey("-K1");
+        summary.setLastReadTimestamp(10_000);
+
+        // El reloj del que envía va atrasado: su mensaje nuevo lleva una hora anterior al cursor
+        summary.setLastMessageKey("-K2");
+        summary.setLastMessageTimestamp(5_000);
+        summary.setUnreadCount(1);
+
+        assertEquals(1, summary.getEffectiveUnreadCount());
+    }
+
+    @Test
+    public void withoutLastMessageKey_usesTheServerCounter() {
+        ChatSummary summary = new ChatSummary();
+        summary.setLastReadKey("-K1");
+        summary.setLastReadTimestamp(10_000);
+        summary.setLastMessageTimestamp(5_000);
+        summary.setUnreadCount(2);
+
+        assertEquals(2, summary.getEffectiveUnreadCount());
+    }
+
+    /**
+     * Grupo activo: 10 minutos a 5 mensajes por segundo con el chat abierto.
+     * Antes era un setValue(0) por mensaje recibido; ahora una escritura por intervalo.
+     */
+    @Test
+    public void benchmark_writesInActiveGroup() {
+        final int perSecond = 5;
+        final int seconds = 600;
+        int received = 0;
+
+        for (int i = 0; i < perSecond * seconds; i++) {
+            long t = i * 1000L / perSecond;
+            scheduler.advanceTo(t);
+            cursor.markRead(message(i, i % 7 == 0 ? ME : "other" + (i % 3), t));
+            if (i % 7 != 0) received++;
+        }
+        cursor.flush();
+
+        long oldWrites = received;
+        long newWrites = cursor.getWriteCount();
+        assertTrue(newWrites + " escrituras", newWrites <= seconds * 1000L / ReadCursor.DEBOUNCE_MS + 1);
+        assertTrue("Antes " + oldWrites + ", ahora " + newWrites, oldWrites / newWrites >= 20);
+    }
+}
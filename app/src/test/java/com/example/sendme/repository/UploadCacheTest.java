@@ -0,0 +1,127 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+
+/**
+ * Caché de imágenes ya subidas: aciertos y fallos, expulsión de la menos usada y lo que se
+ * conserva al reiniciar.
+ */
+public class UploadCacheTest {
+
+    /** Lo guardado en "disco": una copia, como haría el JSON */
+    static class MemoryStore implements UploadCache.Store {
+        UploadCache.Snapshot saved = new UploadCache.Snapshot();
+        int loads = 0;
+        int saves = 0;
+
+        @NonNull
+        @Override
+        public UploadCache.Snapshot load() {
+            loads++;
+            return copy(saved);
+        }
+
+        @Override
+        public void save(@NonNull UploadCache.Snapshot snapshot) {
+            saves++;
+            saved = copy(snapshot);
+        }
+
+        private static UploadCache.Snapshot copy(UploadCache.Snapshot snapshot) {
+            UploadCache.Snapshot copy = new UploadCache.Snapshot();
+            copy.urls = new LinkedHashMap<>(snapshot.urls);
+            copy.hits = snapshot.hits;
+            copy.misses = snapshot.misses;
+            return copy;
+        }
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        UploadCache cache = new UploadCache(new MemoryStore(), 10);
+
+        assertNull(cache.get("a"));
+        cache.put("a", "https://i.imgur.com/a.jpg");
+        assertEquals("https://i.imgur.com/a.jpg", cache.get("a"));
+        assertEquals("https://i.imgur.com/a.jpg", cache.get("a"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void full_forgetsTheLeastRecentlyUsed() {
+        UploadCache cache = new UploadCache(new MemoryStore(), 3);
+        cache.put("a", "https://i.imgur.com/a.jpg");
+        cache.put("b", "https://i.imgur.com/b.jpg");
+        cache.put("c", "https://i.imgur.com/c.jpg");
+        cache.get("a"); // "b" pasa a ser la menos usada
+
+        cache.put("d", "https://i.imgur.com/d.jpg");
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("https://i.imgur.com/a.jpg", cache.get("a"));
+    }
+
+    @Test
+    public void restart_keepsEntriesOrderAndCounters() {
+        MemoryStore store = new MemoryStore();
+        UploadCache before = new UploadCache(store, 3);
+        before.put("a", "https://i.imgur.com/a.jpg");
+        before.put("b", "https://i.imgur.com/b.jpg");
+        before.get("a");
+        before.get("x");
+        before.put("c", "https://i.imgur.com/c.jpg"); // Guarda también las consultas de antes
+
+        UploadCache after = new UploadCache(store, 3);
+        after.put("d", "https://i.imgur.com/d.jpg"); // Sale "b", la menos usada antes de reiniciar
+
+        assertEquals(2, store.loads); // Una vez por arranque
+        assertEquals(1, after.getHits());
+        assertEquals(1, after.getMisses());
+        assertNull(after.get("b"));
+        assertEquals("https://i.imgur.com/a.jpg", after.get("a"));
+    }
+
+    @Test
+    public void lookups_areSavedInBatches_notOnEveryGet() {
+        MemoryStore store = new MemoryStore();
+        UploadCache cache = new UploadCache(store, 10);
+        cache.put("a", "https://i.imgur.com/a.jpg");
+        assertEquals(1, store.saves);
+
+        for (int i = 0; i < UploadCache.LOOKUPS_PER_SAVE - 1; i++) cache.get("a");
+        assertEquals(1, store.saves);
+
+        cache.get("a");
+        assertEquals(2, store.saves);
+        assertEquals(UploadCache.LOOKUPS_PER_SAVE, store.saved.hits);
+    }
+
+    @Test
+    public void sha256_ofFileContent() throws IOException {
+        File file = File.createTempFile("hash", ".bin");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write("abc".getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                    UploadCache.sha256(file));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cola de subidas: límite de subidas a la vez, reintentos con espera exponencial, progreso,
+ * resultados que esperan a que haya una pantalla, imágenes de chat que se envían sin ella y
+ * subidas que sobreviven a un reinicio.
+ */
+public class UploadQueueTest {
+
+    private static final String CHAT = UploadQueue.chatOwner("chat1");
+
+    /** Lo guardado en "disco": solo los campos persistentes, como haría el JSON */
+    private static class MemoryStore implements UploadQueue.Store {
+        List<UploadQueue.Job> saved = new ArrayList<>();
+        int saves = 0;
+
+        @NonNull
+        @Override
+        public List<UploadQueue.Job> load() {
+            List<UploadQueue.Job> copy = new ArrayList<>();
+            for (UploadQueue.Job job : saved) copy.add(persisted(job));
+            return copy;
+        }
+
+        @Override
+        public void save(@NonNull List<UploadQueue.Job> jobs) {
+            saves++;
+            saved = new ArrayList<>();
+            for (UploadQueue.Job job : jobs) saved.add(persisted(job));
+        }
+
+        private static UploadQueue.Job persisted(UploadQueue.Job job) {
+            UploadQueue.Job copy = new UploadQueue.Job();
+            copy.id = job.id;
+            copy.owner = job.owner;
+            copy.path = job.path;
+            copy.mimeType = job.mimeType;
+            copy.state = job.state;
+            copy.attempts = job.attempts;
+            copy.createdAt = job.createdAt;
+            copy.url = job.url;
+            copy.error = job.error;
+            copy.hash = job.hash;
+            copy.sender = job.sender;
+            copy.completed = job.completed;
+            return copy;
+        }
+    }
+
+    /** Subidas en curso; el test decide cuándo y cómo acaba cada una */
+    private static class FakeUploader implements UploadQueue.Uploader {
+        final List<File> started = new ArrayList<>();
+        final List<ImgurApiClient.UploadCallback> inFlight = new ArrayList<>();
+
+        @Override
+        public void upload(@NonNull File file, @NonNull String mimeType, @NonNull ImgurApiClient.UploadCallback callback) {
+            started.add(file);
+            inFlight.add(callback);
+        }
+
+        void succeed(int index, String url) {
+            inFlight.remove(index).onSuccess(url);
+        }
+
+        void fail(int index, boolean retryable) {
+            inFlight.remove(index).onFailure("HTTP 503", retryable);
+        }
+    }
+
+    /** Reloj virtual: las tareas programadas se ejecutan al avanzar el tiempo */
+    private static class ManualScheduler implements UploadQueue.Scheduler {
+        long now = 1_000_000L;
+        final List<Long> delays = new ArrayList<>();
+        final List<long[]> dueAt = new ArrayList<>();
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public void schedule(@NonNull Runnable task, long delayMs) {
+            delays.add(delayMs);
+            dueAt.add(new long[]{now + delayMs});
+            tasks.add(task);
+        }
+
+        void advance(long ms) {
+            now += ms;
+            for (int i = 0; i < tasks.size(); ) {
+                if (dueAt.get(i)[0] <= now) {
+                    dueAt.remove(i);
+                    tasks.remove(i).run();
+                } else {
+                    i++;
+                }
+            }
+        }
+    }
+
+    private static class Recorder implements UploadQueue.Listener {
+        final List<String> uploaded = new ArrayList<>();
+        final List<String> failed = new ArrayList<>();
+        int progressCalls = 0;
+        long lastSent = -1;
+
+        @Override
+        public void onProgress(@NonNull String uploadId, long sent, long total) {
+            progressCalls++;
+            lastSent = sent;
+        }
+
+        @Override
+        public void onUploaded(@NonNull String uploadId, @NonNull String imageUrl) {
+            uploaded.add(imageUrl);
+        }
+
+        @Override
+        public void onFailed(@NonNull String uploadId, @NonNull String error) {
+            failed.add(error);
+        }
+    }
+
+    /** Lo que haría ChatImageSender: apunta cada envío */
+    private static class Sent implements UploadQueue.Completion {
+        final List<String> messages = new ArrayList<>();
+
+        @Override
+        public void onUploaded(@NonNull String owner, @Nullable String sender, @NonNull String imageUrl) {
+            messages.add(owner + " " + sender + " " + imageUrl);
+        }
+    }
+
+    private final List<File> files = new ArrayList<>();
+    private MemoryStore store;
+    private FakeUploader uploader;
+    private ManualScheduler scheduler;
+    private UploadCache cache;
+    private UploadQueue queue;
+
+    @Before
+    public void setUp() {
+        store = new MemoryStore();
+        uploader = new FakeUploader();
+        scheduler = new ManualScheduler();
+        cache = new UploadCache(new UploadCacheTest.MemoryStore(), UploadCache.MAX_ENTRIES);
+        queue = newQueue();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : files) file.delete();
+    }
+
+    private UploadQueue newQueue() {
+        return newQueue(null);
+    }
+
+    /** Como al arrancar la app: el Completion se registra antes de retomar la cola */
+    private UploadQueue newQueue(@Nullable UploadQueue.Completion completion) {
+        UploadQueue q = new UploadQueue(store, uploader, cache, scheduler, Runnable::run, Runnable::run, null);
+        if (completion != null) q.setCompletion(UploadQueue.CHAT_PREFIX, completion);
+        q.restore();
+        return q;
+    }
+
+    private File image() throws IOException {
+        return image(new byte[]{(byte) files.size()});
+    }
+
+    private File image(byte[] content) throws IOException {
+        File file = File.createTempFile("upload", ".jpg");
+        files.add(file);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    @Test
+    public void neverMoreThanMaxParallelAtOnce() throws IOException {
+        queue.setMaxParallel(2);
+        for (int i = 0; i < 5; i++) queue.enqueue(image(), "image/jpeg", CHAT);
+
+        assertEquals(2, uploader.inFlight.size());
+        assertEquals(5, queue.pendingCount(CHAT));
+
+        uploader.succeed(0, "https://i.imgur.com/a.jpg");
+        assertEquals(2, uploader.inFlight.size());
+        assertEquals(3, uploader.started.size());
+
+        queue.setMaxParallel(4);
+        assertEquals(4, uploader.inFlight.size());
+    }
+
+    @Test
+    public void retryableFailures_backOffExponentially() throws IOException {
+        Recorder recorder = new Recorder();
+        queue.observe(CHAT, recorder);
+        File file = image();
+        queue.enqueue(file, "image/jpeg", CHAT);
+
+        for (int attempt = 1; attempt < UploadQueue.MAX_ATTEMPTS; attempt++) {
+            uploader.fail(0, true);
+            long delay = UploadQueue.backoff(attempt);
+
+            scheduler.advance(delay - 1);
+            assertTrue("No se reintenta antes de tiempo", uploader.inFlight.isEmpty());
+            scheduler.advance(1);
+            assertEquals(1, uploader.inFlight.size());
+        }
+        assertEquals(2_000L, (long) scheduler.delays.get(0));
+        assertEquals(4_000L, (long) scheduler.delays.get(1));
+        assertEquals(8_000L, (long) scheduler.delays.get(2));
+
+        // El último intento también falla: se entrega el error y se borra la imagen
+        uploader.fail(0, true);
+        assertEquals(1, recorder.failed.size());
+        assertFalse(file.exists());
+        assertEquals(0, queue.pendingCount(CHAT));
+    }
+
+    @Test
+    public void backoff_isCapped() {
+        assertEquals(UploadQueue.MAX_DELAY_MS, UploadQueue.backoff(30));
+    }
+
+    @Test
+    public void nonRetryableFailure_isDeliveredAtOnce() throws IOException {
+        Recorder recorder = new Recorder();
+        queue.observe(CHAT, recorder);
+        queue.enqueue(image(), "image/jpeg", CHAT);
+
+        uploader.fail(0, false);
+
+        assertEquals(1, recorder.failed.size());
+        assertTrue(scheduler.delays.isEmpty());
+    }
+
+    @Test
+    public void progress_isForwardedAndThrottled() throws IOException {
+        Recorder recorder = new Recorder();
+        queue.observe(CHAT, recorder);
+        queue.enqueue(image(), "image/jpeg", CHAT);
+
+        ImgurApiClient.UploadCallback callback = uploader.inFlight.get(0);
+        for (int sent = 1; sent <= 100_000; sent++) callback.onProgress(sent, 100_000);
+
+        assertEquals(100_000, recorder.lastSent);
+        assertTrue("Como mucho un aviso por 1 % (" + recorder.progressCalls + ")", recorder.progressCalls <= 101);
+    }
+
+    @Test
+    public void chatImage_isSentWhenTheUploadEnds_withoutAnyScreen() throws IOException {
+        Sent sent = new Sent();
+        queue = newQueue(sent);
+        queue.enqueue(image(), "image/jpeg", CHAT, "me");
+
+        uploader.succeed(0, "https://i.imgur.com/c.jpg");
+        assertEquals(Collections.singletonList(CHAT + " me https://i.imgur.com/c.jpg"), sent.messages);
+
+        // La pantalla vuelve: solo se entera, no se envía otra vez
+        Recorder recorder = new Recorder();
+        queue.observe(CHAT, recorder);
+        assertEquals(1, recorder.uploaded.size());
+        assertEquals(1, sent.messages.size());
+    }
+
+    @Test
+    public void chatImage_finishedBeforeRestart_isSentOnRestoreOnlyOnce() throws IOException {
+        queue.enqueue(image(), "image/jpeg", CHAT, "me");
+        uploader.succeed(0, "https://i.imgur.com/d.jpg");   // Sin Completion: la app se cierra ahí
+
+        Sent sent = new Sent();
+        newQueue(sent);
+        assertEquals(Collections.singletonList(CHAT + " me https://i.imgur.com/d.jpg"), sent.messages);
+
+        // Ni aunque pasen los días y se vuelva a arrancar
+        scheduler.advance(UploadQueue.RESULT_TTL_MS + 1);
+        newQueue(sent);
+        assertEquals(1, sent.messages.size());
+    }
+
+    @Test
+    public void otherOwners_doNotGoThroughTheChatCompletion() throws IOException {
+        Sent sent = new Sent();
+        queue = newQueue(sent);
+        queue.enqueue(image(), "image/jpeg", UploadQueue.avatarOwner("me"));
+        uploader.succeed(0, "https://i.imgur.com/e.jpg");
+
+        assertTrue(sent.messages.isEmpty());
+    }
+
+    @Test
+    public void resultWithoutScreen_waitsForTheNextOne() throws IOException {
+        // La pantalla se va (rotación) antes de que acabe la subida
+        Recorder first = new Recorder();
+        queue.observe(CHAT, first);
+        queue.enqueue(image(), "image/jpeg", CHAT);
+        queue.removeObserver(CHAT, first);
+
+        uploader.succeed(0, "https://i.imgur.com/b.jpg");
+        assertTrue(first.uploaded.isEmpty());
+
+        Recorder second = new Recorder();
+        queue.observe(CHAT, second);
+        assertEquals(1, second.uploaded.size());
+        assertEquals("https://i.imgur.com/b.jpg", second.uploaded.get(0));
+
+        // Entregado una sola vez
+        queue.observe(CHAT, new Recorder());
+        assertTrue(store.saved.isEmpty());
+    }
+
+    @Test
+    public void otherOwners_doNotReceiveIt() throws IOException {
+        Recorder other = new Recorder();
+        queue.observe(UploadQueue.chatOwner("chat2"), other);
+        queue.enqueue(image(), "image/jpeg", CHAT);
+
+        uploader.succeed(0, "https://i.imgur.com/c.jpg");
+
+        assertTrue(other.uploaded.isEmpty());
+        assertEquals(1, store.saved.size());
+    }
+
+    @Test
+    public void staleRemoveObserver_keepsNewScreen() throws IOException {
+        Recorder old = new Recorder();
+        Recorder current = new Recorder();
+        queue.observe(CHAT, old);
+        queue.observe(CHAT, current);  // La pantalla nueva se apunta antes de que la vieja se vaya
+        queue.removeObserver(CHAT, old);
+        queue.enqueue(image(), "image/jpeg", CHAT);
+
+        uploader.succeed(0, "https://i.imgur.com/d.jpg");
+
+        assertEquals(1, current.uploaded.size());
+        assertTrue(old.uploaded.isEmpty());
+    }
+
+    @Test
+    public void restart_resumesPendingAndKeepsResults() throws IOException {
+        for (int i = 0; i < 3; i++) queue.enqueue(image(), "image/jpeg", CHAT);
+        uploader.succeed(0, "https://i.imgur.com/e.jpg");   // Nadie escucha
+        uploader.fail(0, true);                              // Esperando reintento
+
+        // Se mata el proceso: las subidas en curso no terminan nunca
+        uploader.inFlight.clear();
+        uploader.started.clear();
+        queue = newQueue();
+
+        // Las dos sin terminar arrancan otra vez sin esperar al backoff anterior
+        assertEquals(2, uploader.started.size());
+        assertEquals(2, queue.pendingCount(CHAT));
+
+        Recorder recorder = new Recorder();
+        queue.observe(CHAT, recorder);
+        assertEquals(1, recorder.uploaded.size());
+    }
+
+    @Test
+    public void restart_withMissingFile_reportsFailure() throws IOException {
+        File file = image();
+        queue.enqueue(file, "image/jpeg", CHAT);
+        uploader.inFlight.clear();
+        file.delete();
+
+        queue = newQueue();
+        Recorder recorder = new Recorder();
+        queue.observe(CHAT, recorder);
+
+        assertEquals(1, recorder.failed.size());
+        assertEquals(0, queue.pendingCount(CHAT));
+    }
+
+    @Test
+    public void restart_dropsOldUnclaimedResults() throws IOException {
+        queue.enqueue(image(), "image/jpeg", CHAT);
+        uploader.succeed(0, "https://i.imgur.com/f.jpg");
+
+        scheduler.now += UploadQueue.RESULT_TTL_MS + 1;
+        queue = newQueue();
+        Recorder recorder = new Recorder();
+        queue.observe(CHAT, recorder);
+
+        assertTrue(recorder.uploaded.isEmpty());
+        assertTrue(store.saved.isEmpty());
+    }
+
+    @Test
+    public void sameImageAgain_skipsTheNetwork() throws IOException {
+        Recorder recorder = new Recorder();
+        queue.observe(CHAT, recorder);
+        queue.enqueue(image(new byte[]{1, 2, 3}), "image/jpeg", CHAT);
+        uploader.succeed(0, "https://i.imgur.com/g.jpg");
+
+        // La misma foto a otro chat: sale al momento sin subir nada
+        String otherChat = UploadQueue.chatOwner("chat2");
+        Recorder other = new Recorder();
+        queue.observe(otherChat, other);
+        File again = image(new byte[]{1, 2, 3});
+        queue.enqueue(again, "image/jpeg", otherChat);
+
+        assertEquals(1, uploader.started.size());
+        assertEquals("https://i.imgur.com/g.jpg", other.uploaded.get(0));
+        assertFalse(again.exists());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void differentImage_isUploaded() throws IOException {
+        queue.enqueue(image(new byte[]{1, 2, 3}), "image/jpeg", CHAT);
+        uploader.succeed(0, "https://i.imgur.com/h.jpg");
+        queue.enqueue(image(new byte[]{1, 2, 4}), "image/jpeg", CHAT);
+
+        assertEquals(2, uploader.started.size());
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void failedUpload_isNotCached() throws IOException {
+        queue.enqueue(image(new byte[]{5}), "image/jpeg", CHAT);
+        uploader.fail(0, false);
+        queue.enqueue(image(new byte[]{5}), "image/jpeg", CHAT);
+
+        assertEquals(2, uploader.started.size());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.sendme.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.sendme.data.model.User;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests de la caché de perfiles con una fuente falsa que cuenta las lecturas y deja
+ * las respuestas pendientes hasta que el test las suelta.
+ */
+public class UserRepositoryTest {
+
+    /** Fuente falsa: guarda los callbacks para responder cuando quiera el test */
+    private static class FakeSource implements UserRepository.UserSource {
+        final Map<String, List<UserRepository.UserCallback>> pending = new HashMap<>();
+        final Map<String, UserRepository.UserListener> listening = new HashMap<>();
+        final List<List<String>> batches = new ArrayList<>();
+        final List<UserRepository.BatchCallback> batchCallbacks = new ArrayList<>();
+        int fetches = 0;
+        int listens = 0;
+
+        @Override
+        public void fetch(@NonNull String uid, @NonNull UserRepository.UserCallback callback) {
+            fetches++;
+            pending.computeIfAbsent(uid, k -> new ArrayList<>()).add(callback);
+        }
+
+        @Override
+        public void fetchBatch(@NonNull List<String> uids, @NonNull UserRepository.BatchCallback callback) {
+            batches.add(uids);
+            batchCallbacks.add(callback);
+        }
+
+        @Override
+        public ListenerRegistry.Registration listen(@NonNull String uid, @NonNull UserRepository.UserListener listener) {
+            listens++;
+            listening.put(uid, listener);
+            return () -> listening.remove(uid);
+        }
+
+        void answer(String uid) {
+            for (UserRepository.UserCallback c : pending.remove(uid)) c.onUser(user(uid));
+        }
+
+        /** Responde el lote i con todos sus UIDs menos los indicados (como si no existieran) */
+        void answerBatch(int i, String... missing) {
+            Map<String, User> found = new HashMap<>();
+            for (String uid : batches.get(i)) {
+                if (!List.of(missing).contains(uid)) found.put(uid, user(uid));
+            }
+            batchCallbacks.get(i).onUsers(found);
+        }
+    }
+
+    private FakeSource source;
+    private UserRepository repository;
+
+    @Before
+    public void setUp() {
+        source = new FakeSource();
+        repository = new UserRepository(source, 3);
+    }
+
+    private static User user(String uid) {
+        User user = new User();
+        user.setUid(uid);
+        user.setUsername("name-" + uid);
+        return user;
+    }
+
+    /** Callback que apunta lo que recibe */
+    private static class Recorder implements UserRepository.UserCallback {
+        final List<User> users = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+
+        @Override
+        public void onUser(@Nullable User user) {
+            users.add(user);
+        }
+
+        @Override
+        public void onError(@NonNull String error) {
+            errors.add(error);
+        }
+    }
+
+    @Test
+    public void concurrentRequests_shareOneFetch() {
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+
+        repository.getUser("a", first);
+        repository.getUser("a", second);
+        assertEquals(1, source.fetches);
+
+        source.answer("a");
+
+        assertEquals("name-a", first.users.get(0).getUsername());
+        assertSame(first.users.get(0), second.users.get(0));
+        assertEquals(1, repository.getMissCount());
+        assertEquals(1, repository.getCoalescedCount());
+    }
+
+    @Test
+    public void cachedUser_isAnsweredWithoutFetching() {
+        repository.getUser("a", new Recorder());
+        source.answer("a");
+
+        Recorder again = new Recorder();
+        repository.getUser("a", again);
+
+        assertEquals(1, source.fetches);
+        assertEquals(1, again.users.size());
+        assertEquals(0.5, repository.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void error_reachesEveryWaiterAndIsNotCached() {
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        repository.getUser("a", first);
+        repository.getUser("a", second);
+
+        for (UserRepository.UserCallback c : source.pending.remove("a")) c.onError("sin red");
+
+        assertEquals(List.of("sin red"), first.errors);
+        assertEquals(List.of("sin red"), second.errors);
+        assertNull(repository.peek("a"));
+
+        repository.getUser("a", new Recorder());
+        assertEquals(2, source.fetches);
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvictedFirst() {
+        for (String uid : new String[]{"a", "b", "c"}) {
+            repository.getUser(uid, new Recorder());
+            source.answer(uid);
+        }
+        // "a" se vuelve a usar: el menos reciente pasa a ser "b"
+        repository.getUser("a", new Recorder());
+
+        repository.getUser("d", new Recorder());
+        source.answer("d");
+
+        assertEquals(3, repository.getCachedCount());
+        assertNull(repository.peek("b"));
+        assertEquals("name-a", repository.peek("a").getUsername());
+    }
+
+    @Test
+    public void getUsers_splitsIntoParallelChunksAndMergesOnce() {
+        repository = new UserRepository(source, 1000);
+        List<String> uids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) uids.add("u" + i);
+
+        List<Map<String, User>> results = new ArrayList<>();
+        repository.getUsers(uids, results::add);
+
+        // 200 UIDs = 7 consultas de como mucho 30, todas lanzadas antes de que responda ninguna
+        assertEquals(7, source.batches.size());
+        for (List<String> batch : source.batches) {
+            assertTrue(batch.size() <= UserRepository.MAX_IDS_PER_QUERY);
+        }
+        assertEquals(0, source.fetches);
+
+        for (int i = 0; i < source.batches.size() - 1; i++) source.answerBatch(i);
+        assertTrue("Aún falta un lote", results.isEmpty());
+
+        source.answerBatch(source.batches.size() - 1, "u199");
+
+        assertEquals(1, results.size());
+        assertEquals(199, results.get(0).size());
+        assertNull(results.get(0).get("u199"));
+        assertEquals(199, repository.getCachedCount());
+    }
+
+    @Test
+    public void getUsers_skipsCachedAndSharesInFlight() {
+        repository.getUser("a", new Recorder());
+        source.answer("a");
+        Recorder single = new Recorder();
+        repository.getUser("b", single);
+
+        List<Map<String, User>> results = new ArrayList<>();
+        repository.getUsers(List.of("a", "b", "c", "c"), results::add);
+
+        // "a" sale de caché, "b" espera a su lectura suelta: solo "c" va en la consulta
+        assertEquals(List.of(List.of("c")), source.batches);
+
+        source.answerBatch(0);
+        assertTrue(results.isEmpty());
+        source.answer("b");
+
+        assertEquals(Set.of("a", "b", "c"), results.get(0).keySet());
+        assertEquals(1, single.users.size());
+    }
+
+    @Test
+    public void failedChunk_fallsBackToSingleReads() {
+        List<Map<String, User>> results = new ArrayList<>();
+        repository = new UserRepository(source, 100);
+        repository.getUsers(List.of("a", "b"), results::add);
+
+        source.batchCallbacks.get(0).onError("consulta rechazada");
+        assertEquals(2, source.fetches);
+        assertEquals(1, repository.getBatchFallbackCount());
+
+        source.answer("a");
+        for (UserRepository.UserCallback c : source.pending.remove("b")) c.onError("sin red");
+
+        assertEquals(1, results.size());
+        assertEquals(Set.of("a"), results.get(0).keySet());
+    }
+
+    @Test
+    public void observers_shareOneSnapshotListener() {
+        List<User> first = new ArrayList<>();
+        List<User> second = new ArrayList<>();
+
+        ListenerRegistry.Registration r1 = repository.observeUser("a", first::add);
+        source.listening.get("a").onUserChanged(user("a"));
+        ListenerRegistry.Registration r2 = repository.observeUser("a", second::add);
+
+        assertEquals(1, source.listens);
+        assertEquals(1, repository.getActiveSubscriptionCount());
+        // El segundo recibe al momento lo que ya había
+        assertEquals(1, second.size());
+        // Y el cambio también deja el perfil en caché para getUser
+        assertEquals("name-a", repository.peek("a").getUsername());
+
+        r1.remove();
+        assertEquals(1, repository.getActiveSubscriptionCount());
+        r2.remove();
+        assertEquals(0, repository.getActiveSubscriptionCount());
+        assertEquals(0, source.listening.size());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.sendme.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.sendme.data.model.Chat;
+import com.example.sendme.data.model.ChatSummary;
+import com.example.sendme.data.model.User;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuenta los bytes que reserva la parte de datos del bind de {@link ChatAdapter}
+ * ({@link ChatRowText.Row}, todo lo que no es tocar vistas): buscar al otro usuario, no leídos,
+ * hora y textos.
+ * Con el índice por UID y los textos cacheados no reserva nada por fila.
+ */
+public class ChatRowBindAllocationTest {
+
+    private static final String ME = "me";
+    private static final int USERS = 500;
+    private static final int ROWS = 200;
+    private static final int PASSES = 50;
+
+    private final List<Chat> rows = new ArrayList<>();
+    private final UserIndex users = new UserIndex();
+
+    // Evita que el JIT se salte el trabajo
+    private int sink;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUid("uid" + i);
+            user.setUsername("user" + i);
+            users.put(user);
+        }
+        for (int i = 0; i < ROWS; i++) {
+            ChatSummary summary = new ChatSummary();
+            summary.setOtherUid("uid" + (i * 7 % USERS));
+            summary.setLastMessage("hola " + i);
+            summary.setLastMessageTimestamp(1_700_000_000_000L + i * 60_000L);
+            summary.setUnreadCount(i % 5);
+            rows.add(summary.toChat("chat" + i, ME));
+        }
+    }
+
+    /** La parte de datos de ChatAdapter.onBindViewHolder: la misma Row que usa cada ViewHolder */
+    private void bindData(ChatRowText.Row row, Chat chat) {
+        row.bind(chat, users, ME);
+        sink += row.title.length() + row.lastMessage.length() + row.time.length()
+                + (row.unread != null ? row.unread.length() : 0);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Lo que reserva la propia medición (la llamada al MXBean), para descontarlo */
+    private static long measurementOverhead() {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long before = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - before);
+        }
+        return overhead;
+    }
+
+    @Test
+    public void row_titleUnreadAndPreview() {
+        ChatRowText.Row row = new ChatRowText.Row();
+
+        row.bind(rows.get(1), users, ME);
+        assertEquals("user7", row.title);
+        assertEquals("hola 1", row.lastMessage);
+        assertEquals("1", row.unread);
+
+        row.bind(rows.get(0), users, ME);
+        assertNull(row.unread);
+
+        ChatSummary unknown = new ChatSummary();
+        unknown.setOtherUid("nadie");
+        row.bind(unknown.toChat("chatX", ME), users, ME);
+        assertNull(row.other);
+        assertEquals("Usuario desconocido", row.title);
+    }
+
+    @Test
+    public void scrollingBind_allocatesNothing() {
+        ChatRowText.Row row = new ChatRowText.Row();
+        // Primera pasada: se formatea la hora de cada Chat una vez (y calienta el JIT)
+        // (bucles con índice: el iterador del for-each ya reservaría memoria por sí solo)
+        for (int p = 0; p < PASSES; p++) {
+            for (int i = 0; i < ROWS; i++) bindData(row, rows.get(i));
+        }
+        long overhead = measurementOverhead();
+
+        long before = allocatedBytes();
+        for (int p = 0; p < PASSES; p++) {
+            for (int i = 0; i < ROWS; i++) bindData(row, rows.get(i));
+        }
+        long allocated = allocatedBytes() - before - overhead;
+
+        // Cualquier objeto cuesta al menos 16 bytes: si el bind reservara algo saldrían >= 160 KB.
+        // Lo poco que queda es ruido de la propia JVM (compilación, OSR), no del bind.
+        assertTrue("El bind no debería reservar memoria (" + allocated + " bytes)", allocated < PASSES * ROWS);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.sendme.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.sendme.data.model.Message;
+import com.example.sendme.data.model.User;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Tiempo hasta el primer mensaje al abrir un grupo con perfiles lentos, a través de
+ * {@link GroupChatOpener} (lo que hace GroupChatFragment al entrar).
+ *
+ * Se simula con un reloj virtual: la página de mensajes tarda {@link #MESSAGES_MS} y los
+ * perfiles {@link #PROFILES_MS}. Los mensajes no esperan a los nombres: salen con la
+ * etiqueta pendiente y luego se repintan solo las filas afectadas.
+ */
+public class GroupOpenLatencyTest {
+
+    private static final long MESSAGES_MS = 80;
+    private static final long PROFILES_MS = 1_500;   // Un perfil lento bloqueaba todo
+    private static final String ME = "me";
+
+    /** Cola de eventos con reloj virtual (nada de sleeps) */
+    private static class Clock {
+        private static class Event {
+            final long at;
+            final int seq;
+            final Runnable action;
+
+            Event(long at, int seq, Runnable action) {
+                this.at = at;
+                this.seq = seq;
+                this.action = action;
+            }
+        }
+
+        private final PriorityQueue<Event> queue = new PriorityQueue<>(
+                (a, b) -> a.at != b.at ? Long.compare(a.at, b.at) : Integer.compare(a.seq, b.seq));
+        long now = 0;
+        private int seq = 0;
+
+        void after(long delayMs, Runnable action) {
+            queue.add(new Event(now + delayMs, seq++, action));
+        }
+
+        void run() {
+            while (!queue.isEmpty()) {
+                Event event = queue.poll();
+                now = event.at;
+                event.action.run();
+            }
+        }
+    }
+
+    private final List<String> participants = List.of(ME, "ana", "bea", "carlos");
+    private final List<Message> page = new ArrayList<>();
+    private final Map<String, User> profiles = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 40; i++) {
+            Message message = new Message(participants.get(i % participants.size()), "m" + i, null, i);
+            message.setId("k" + i);
+            page.add(message);
+        }
+        for (String uid : participants) {
+            User user = new User();
+            user.setUid(uid);
+            user.setUsername("nombre-" + uid);
+            profiles.put(uid, user);
+        }
+    }
+
+    /** Lo que pintaría el adapter en cada fila: etiqueta del remitente (null en las mías) */
+    private static List<String> render(List<Message> messages, SenderNames names) {
+        List<String> labels = new ArrayList<>();
+        for (Message m : messages) labels.add(ME.equals(m.getSender()) ? null : names.label(m.getSender()));
+        return labels;
+    }
+
+    /** GroupChatOpener con la página y los perfiles servidos por el reloj virtual */
+    private GroupChatOpener opener(Clock clock, SenderNames names, long[] firstMessageAt, List<String> firstRender,
+                                   List<Integer> rebound, List<Set<String>> requested) {
+        return new GroupChatOpener(names,
+                () -> clock.after(MESSAGES_MS, () -> {
+                    firstMessageAt[0] = clock.now;
+                    firstRender.addAll(render(page, names));
+                }),
+                (uids, callback) -> {
+                    requested.add(new HashSet<>(uids));
+                    clock.after(PROFILES_MS, () -> callback.onUsers(profiles));
+                },
+                senders -> rebound.addAll(SenderNames.positionsOf(page, senders, ME)));
+    }
+
+    @Test
+    public void messagesRenderBeforeNamesResolve() {
+        Clock clock = new Clock();
+        SenderNames names = new SenderNames();
+        long[] firstMessageAt = {-1};
+        List<String> firstRender = new ArrayList<>();
+        List<Integer> rebound = new ArrayList<>();
+        List<Set<String>> requested = new ArrayList<>();
+
+        opener(clock, names, firstMessageAt, firstRender, rebound, requested).open(participants);
+        clock.run();
+
+        // El primer mensaje sale cuando llega la página, sin esperar a los perfiles lentos
+        assertEquals(MESSAGES_MS, firstMessageAt[0]);
+        assertTrue(firstRender.contains(SenderNames.PLACEHOLDER));
+        assertEquals(1, requested.size());
+
+        // Solo se repintan los mensajes de los demás (3 de cada 4)
+        assertEquals(30, rebound.size());
+        for (int position : rebound) {
+            assertEquals("nombre-" + page.get(position).getSender(), names.label(page.get(position).getSender()));
+        }
+    }
+
+    @Test
+    public void newMembers_onlyMissingNamesAreRequested() {
+        Clock clock = new Clock();
+        SenderNames names = new SenderNames();
+        List<Set<String>> requested = new ArrayList<>();
+        GroupChatOpener opener = opener(clock, names, new long[]{-1}, new ArrayList<>(), new ArrayList<>(), requested);
+        opener.open(participants);
+        clock.run();
+
+        User dani = new User();
+        dani.setUid("dani");
+        dani.setUsername("nombre-dani");
+        profiles.put("dani", dani);
+        List<String> withDani = new ArrayList<>(participants);
+        withDani.add("dani");
+        opener.onMembersChanged(withDani);
+        clock.run();
+
+        assertEquals(Set.of("dani"), requested.get(1));
+        assertEquals("nombre-dani", names.label("dani"));
+
+        // Sin miembros nuevos no se pide nada
+        opener.onMembersChanged(withDani);
+        assertEquals(2, requested.size());
+    }
+
+    @Test
+    public void resolvingAgain_onlyReportsChangedNames() {
+        SenderNames names = new SenderNames();
+        names.resolve(participants, profiles);
+
+        profiles.get("bea").setUsername("Beatriz");
+        Set<String> changed = names.resolve(participants, profiles);
+
+        assertEquals(Set.of("bea"), changed);
+        assertEquals(10, SenderNames.positionsOf(page, changed, ME).size());
+    }
+
+    @Test
+    public void missingProfile_showsUnknownInsteadOfPlaceholder() {
+        SenderNames names = new SenderNames();
+        assertEquals(SenderNames.PLACEHOLDER, names.label("ghost"));
+
+        names.resolve(List.of("ghost"), profiles);
+
+        assertEquals(SenderNames.UNKNOWN, names.label("ghost"));
+    }
+
+    @Test
+    public void formerMembers_namesAreRequestedFromTheMessages() {
+        Clock clock = new Clock();
+        SenderNames names = new SenderNames();
+        List<Set<String>> requested = new ArrayList<>();
+        GroupChatOpener opener = opener(clock, names, new long[]{-1}, new ArrayList<>(), new ArrayList<>(), requested);
+
+        // "eva" salió del grupo pero sus mensajes siguen en la página
+        User eva = new User();
+        eva.setUid("eva");
+        eva.setUsername("nombre-eva");
+        profiles.put("eva", eva);
+        Message old = new Message("eva", "me voy", null, 100);
+        old.setId("k100");
+        List<Message> shown = new ArrayList<>(page);
+        shown.add(old);
+
+        opener.open(participants);
+        opener.onMessages(shown);   // Los participantes ya están pedidos: solo falta eva
+        clock.run();
+
+        assertEquals(Set.of("eva"), requested.get(1));
+        assertEquals("nombre-eva", names.label("eva"));
+
+        // Ya resuelto: otra página con sus mensajes no vuelve a pedir nada
+        opener.onMessages(shown);
+        assertEquals(2, requested.size());
+    }
+}
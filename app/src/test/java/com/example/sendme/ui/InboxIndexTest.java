@@ -0,0 +1,140 @@
+package com.example.sendme.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.sendme.data.model.Chat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests del índice de la bandeja y benchmark con 1000 chats recibiendo una ráfaga de mensajes.
+ */
+public class InboxIndexTest {
+
+    private InboxIndex index;
+    private final List<String> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        index = new InboxIndex();
+        events.clear();
+        index.setListener(new InboxIndex.Listener() {
+            @Override public void onInserted(int position) { events.add("insert " + position); }
+            @Override public void onRemoved(int position) { events.add("remove " + position); }
+            @Override public void onMoved(int from, int to) { events.add("move " + from + "->" + to); }
+            @Override public void onChanged(int position, boolean previewOnly) {
+                events.add((previewOnly ? "preview " : "change ") + position);
+            }
+        });
+    }
+
+    private static Chat chat(String id, long timestamp, String lastMessage) {
+        Chat chat = new Chat();
+        chat.setId(id);
+        chat.setLastMessageTimestamp(timestamp);
+        chat.setLastMessage(lastMessage);
+        return chat;
+    }
+
+    @Test
+    public void newMessage_movesChatToTopWithOneMoveAndOnePreviewChange() {
+        index.upsert(chat("a", 300, "hola"));
+        index.upsert(chat("b", 200, "qué tal"));
+        index.upsert(chat("c", 100, "adiós"));
+        events.clear();
+
+        index.upsert(chat("c", 400, "nuevo"));
+
+        assertEquals(List.of("move 2->0", "preview 0"), events);
+        assertEquals("c", index.get(0).getId());
+        assertEquals("a", index.get(1).getId());
+    }
+
+    @Test
+    public void unchangedSummary_emitsNothing() {
+        index.upsert(chat("a", 100, "hola"));
+        events.clear();
+
+        index.upsert(chat("a", 100, "hola"));
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void groupRename_isFullChangeInPlace() {
+        Chat group = chat("g", 100, "hola");
+        group.setGroup(true);
+        group.setGroupName("Antes");
+        index.upsert(group);
+        events.clear();
+
+        Chat renamed = chat("g", 100, "hola");
+        renamed.setGroup(true);
+        renamed.setGroupName("Después");
+        index.upsert(renamed);
+
+        assertEquals(List.of("change 0"), events);
+    }
+
+    @Test
+    public void remove_reportsOldPosition() {
+        index.upsert(chat("a", 300, ""));
+        index.upsert(chat("b", 200, ""));
+        events.clear();
+
+        index.remove("a");
+        index.remove("missing");
+
+        assertEquals(List.of("remove 0"), events);
+        assertEquals(0, index.indexOf("b"));
+        assertEquals(-1, index.indexOf("a"));
+    }
+
+    @Test
+    public void sameTimestamp_orderIsStableById() {
+        index.upsert(chat("b", 100, ""));
+        index.upsert(chat("a", 100, ""));
+
+        assertEquals("a", index.get(0).getId());
+        assertEquals("b", index.get(1).getId());
+    }
+
+    /**
+     * 1000 chats y una ráfaga de 20.000 mensajes repartidos al azar. Comprueba que cada
+     * actualización genera como mucho dos eventos y que el orden final es correcto.
+     */
+    @Test
+    public void benchmark_thousandChatsBurstOfUpdates() {
+        final int chats = 1000;
+        final int updates = 20_000;
+        Random random = new Random(42);
+
+        for (int i = 0; i < chats; i++) {
+            index.upsert(chat("chat" + i, random.nextInt(1_000_000), "m"));
+        }
+
+        long[] stamps = new long[updates];
+        int[] targets = new int[updates];
+        for (int i = 0; i < updates; i++) {
+            targets[i] = random.nextInt(chats);
+            stamps[i] = 1_000_000L + i;
+        }
+
+        events.clear();
+        for (int i = 0; i < updates; i++) {
+            index.upsert(chat("chat" + targets[i], stamps[i], "msg " + i));
+        }
+
+        assertTrue("Como mucho move + change por actualización", events.size() <= 2 * updates);
+        for (int i = 1; i < index.size(); i++) {
+            assertTrue(InboxIndex.ORDER.compare(index.get(i - 1), index.get(i)) < 0);
+        }
+        assertEquals("chat" + targets[updates - 1], index.get(0).getId());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.sendme.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.example.sendme.data.model.Message;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lo que el differ del adapter manda a RecyclerView al cambiar la lista: cada inserción o
+ * cambio es un bind, así que aquí se cuentan y tienen que ser O(filas cambiadas), no O(lista).
+ */
+public class MessageDiffCallbackTest {
+
+    private static final int CHAT_SIZE = 5_000;
+
+    /** Cuenta lo que recibiría el adapter (filas que se enlazan y con qué payload) */
+    private static class CountingUpdates implements ListUpdateCallback {
+        int inserted = 0;
+        int removed = 0;
+        int moved = 0;
+        int changed = 0;
+        final List<Object> payloads = new ArrayList<>();
+
+        @Override
+        public void onInserted(int position, int count) {
+            inserted += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            removed += count;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            moved++;
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            changed += count;
+            payloads.add(payload);
+        }
+
+        int binds() {
+            return inserted + changed;
+        }
+    }
+
+    private static Message message(int i, String content) {
+        Message m = new Message(i % 2 == 0 ? "ana" : "bea", content, null, 1_000L + i);
+        m.setId(String.format("-M%08d", i));
+        return m;
+    }
+
+    private static List<Message> chat(int from, int to) {
+        List<Message> list = new ArrayList<>();
+        for (int i = from; i < to; i++) list.add(message(i, "mensaje " + i));
+        return list;
+    }
+
+    /** Lo mismo que hace AsyncListDiffer por debajo, pero en este hilo */
+    private static CountingUpdates diff(List<Message> oldList, List<Message> newList) {
+        DiffUtil.ItemCallback<Message> items = new MessageDiffCallback();
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return items.areItemsTheSame(oldList.get(oldPosition), newList.get(newPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return items.areContentsTheSame(oldList.get(oldPosition), newList.get(newPosition));
+            }
+
+            @Override
+            public Object getChangePayload(int oldPosition, int newPosition) {
+                return items.getChangePayload(oldList.get(oldPosition), newList.get(newPosition));
+            }
+        });
+        CountingUpdates updates = new CountingUpdates();
+        result.dispatchUpdatesTo(updates);
+        return updates;
+    }
+
+    @Test
+    public void newMessage_bindsOneRow() {
+        List<Message> before = chat(0, CHAT_SIZE);
+        List<Message> after = new ArrayList<>(before);
+        after.add(message(CHAT_SIZE, "hola"));
+
+        CountingUpdates updates = diff(before, after);
+        assertEquals(1, updates.inserted);
+        assertEquals(1, updates.binds());
+    }
+
+    @Test
+    public void olderPage_bindsOnlyThePage() {
+        List<Message> before = chat(50, CHAT_SIZE);
+        List<Message> after = chat(0, 50);
+        after.addAll(before);
+
+        CountingUpdates updates = diff(before, after);
+        assertEquals(50, updates.inserted);
+        assertEquals(50, updates.binds());
+        assertEquals(0, updates.removed);
+    }
+
+    @Test
+    public void sameMessagesReloaded_bindNothing() {
+        // La lista que llega de la red son objetos nuevos con los mismos datos que la local
+        CountingUpdates updates = diff(chat(0, CHAT_SIZE), chat(0, CHAT_SIZE));
+        assertEquals(0, updates.binds());
+        assertEquals(0, updates.removed);
+    }
+
+    @Test
+    public void textOnlyChange_usesHighlightPayload() {
+        List<Message> before = chat(0, CHAT_SIZE);
+        List<Message> after = new ArrayList<>(before);
+        after.set(10, message(10, "texto corregido"));
+        after.set(20, message(20, "otro"));
+
+        CountingUpdates updates = diff(before, after);
+        assertEquals(2, updates.changed);
+        assertEquals(2, updates.binds());
+        for (Object payload : updates.payloads) assertEquals(MessageAdapter.Payload.HIGHLIGHT, payload);
+    }
+
+    @Test
+    public void imageChange_needsFullBind() {
+        Message before = message(1, "foto");
+        Message after = message(1, "foto");
+        after.setImageUrl("https://i.imgur.com/abc.jpg");
+
+        assertNull(new MessageDiffCallback().getChangePayload(before, after));
+    }
+
+    @Test
+    public void stableIds_noCollisionsOnLongChat() {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            ids.add(MessageAdapter.stableId(String.format("-N%07dxYz%04d", i, i % 9973)));
+        }
+        assertEquals(200_000, ids.size());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.sendme.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.sendme.data.model.Message;
+import com.example.sendme.data.model.User;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cuenta los bytes que reserva la parte de datos del bind de {@link MessageAdapter}
+ * ({@link MessageRowText.Row} y el tipo de fila, todo lo que no es tocar vistas): remitente,
+ * hora y miniatura. Con la hora y la
+ * miniatura cacheadas en el mensaje no reserva nada por fila.
+ */
+public class MessageRowBindAllocationTest {
+
+    private static final String ME = "me";
+    private static final int SENDERS = 20;
+    private static final int ROWS = 500;
+    private static final int PASSES = 50;
+
+    private final List<Message> rows = new ArrayList<>();
+    private final SenderNames senderNames = new SenderNames();
+
+    // Evita que el JIT se salte el trabajo
+    private int sink;
+
+    @Before
+    public void setUp() {
+        Map<String, User> users = new HashMap<>();
+        List<String> uids = new ArrayList<>();
+        for (int i = 0; i < SENDERS; i++) {
+            User user = new User();
+            user.setUid("uid" + i);
+            user.setUsername("user" + i);
+            users.put(user.getUid(), user);
+            uids.add(user.getUid());
+        }
+        senderNames.resolve(uids, users);
+
+        for (int i = 0; i < ROWS; i++) {
+            String sender = i % 3 == 0 ? ME : "uid" + (i % SENDERS);
+            boolean image = i % 10 == 0;
+            Message m = new Message(sender, image ? null : "mensaje " + i,
+                    image ? "https://i.imgur.com/" + String.format("i%06d", i) + ".jpg" : null, 1_700_000_000_000L + i * 60_000L);
+            m.setId(String.format("-M%08d", i));
+            rows.add(m);
+        }
+    }
+
+    /**
+     * La parte de datos de MessageAdapter (getItemViewType + onBindViewHolder): la misma Row
+     * que usa cada ViewHolder
+     */
+    private void bindData(MessageRowText.Row row, Message message) {
+        int type = MessageAdapter.viewTypeOf(message, ME, true);
+        row.bind(message, senderNames);
+        String content = message.getContent();
+        sink += type + row.senderName.length() + row.time.length() + (content != null ? content.length() : 0)
+                + (row.thumbnailUrl != null ? row.thumbnailUrl.length() : 0);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Lo que reserva la propia medición (la llamada al MXBean), para descontarlo */
+    private static long measurementOverhead() {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long before = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - before);
+        }
+        return overhead;
+    }
+
+    @Test
+    public void scrollingBind_allocatesNothing() {
+        MessageRowText.Row row = new MessageRowText.Row();
+        // Primera pasada: se formatea la hora y la miniatura de cada mensaje una vez (y calienta el JIT)
+        // (bucles con índice: el iterador del for-each ya reservaría memoria por sí solo)
+        for (int p = 0; p < PASSES; p++) {
+            for (int i = 0; i < ROWS; i++) bindData(row, rows.get(i));
+        }
+        long overhead = measurementOverhead();
+
+        long before = allocatedBytes();
+        for (int p = 0; p < PASSES; p++) {
+            for (int i = 0; i < ROWS; i++) bindData(row, rows.get(i));
+        }
+        long allocated = allocatedBytes() - before - overhead;
+
+        // Cualquier objeto cuesta al menos 16 bytes: si el bind reservara algo saldrían >= 400 KB.
+        // Lo poco que queda es ruido de la propia JVM (compilación, OSR), no del bind.
+        assertTrue("El bind no debería reservar memoria (" + allocated + " bytes)", allocated < PASSES * ROWS);
+    }
+
+    @Test
+    public void row_senderOnlyInGroups() {
+        MessageRowText.Row row = new MessageRowText.Row();
+
+        row.bind(rows.get(1), senderNames);
+        assertEquals("user1", row.senderName);
+        assertNull(row.thumbnailUrl);
+        assertEquals(MessageRowText.timestamp(rows.get(1)), row.time);
+
+        row.bind(rows.get(10), null);
+        assertNull(row.senderName);
+        assertEquals(rows.get(10).getThumbnailUrl(), row.thumbnailUrl);
+    }
+
+    @Test
+    public void cachedTime_resetWhenTimestampChanges() {
+        Message message = rows.get(1);
+        String first = MessageRowText.timestamp(message);
+        assertEquals(first, MessageRowText.timestamp(message));
+
+        message.setTimestamp(message.getTimestamp() + 3_600_000L);
+        assertNull(message.getTimestampText());
+        assertNotEquals(first, MessageRowText.timestamp(message));
+    }
+}
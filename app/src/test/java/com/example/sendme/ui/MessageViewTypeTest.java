@@ -0,0 +1,46 @@
+package com.example.sendme.ui;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.sendme.data.model.Message;
+
+import org.junit.Test;
+
+/**
+ * Cada mensaje va a su propio tipo de fila (y layout): enviado/recibido, texto/imagen y los
+ * recibidos de grupo, que llevan el nombre del remitente.
+ */
+public class MessageViewTypeTest {
+
+    private static final String ME = "yo";
+
+    private static Message text(String sender) {
+        return new Message(sender, "hola", null, 1_000L);
+    }
+
+    private static Message image(String sender) {
+        return new Message(sender, null, "https://i.imgur.com/abc.jpg", 1_000L);
+    }
+
+    @Test
+    public void oneToOne() {
+        assertEquals(MessageAdapter.TYPE_SENT_TEXT, MessageAdapter.viewTypeOf(text(ME), ME, false));
+        assertEquals(MessageAdapter.TYPE_SENT_IMAGE, MessageAdapter.viewTypeOf(image(ME), ME, false));
+        assertEquals(MessageAdapter.TYPE_RECEIVED_TEXT, MessageAdapter.viewTypeOf(text("otro"), ME, false));
+        assertEquals(MessageAdapter.TYPE_RECEIVED_IMAGE, MessageAdapter.viewTypeOf(image("otro"), ME, false));
+    }
+
+    @Test
+    public void group_onlyReceivedCarrySenderLabel() {
+        assertEquals(MessageAdapter.TYPE_SENT_TEXT, MessageAdapter.viewTypeOf(text(ME), ME, true));
+        assertEquals(MessageAdapter.TYPE_SENT_IMAGE, MessageAdapter.viewTypeOf(image(ME), ME, true));
+        assertEquals(MessageAdapter.TYPE_GROUP_RECEIVED_TEXT, MessageAdapter.viewTypeOf(text("otro"), ME, true));
+        assertEquals(MessageAdapter.TYPE_GROUP_RECEIVED_IMAGE, MessageAdapter.viewTypeOf(image("otro"), ME, true));
+    }
+
+    @Test
+    public void emptyImageUrl_isText() {
+        Message message = new Message("otro", "hola", "", 1_000L);
+        assertEquals(MessageAdapter.TYPE_RECEIVED_TEXT, MessageAdapter.viewTypeOf(message, ME, false));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.sendme.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.sendme.data.model.Message;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Navegación entre coincidencias sobre la lista completa: posiciones, siguiente/anterior y
+ * qué pasa cuando se cargan páginas anteriores o llegan mensajes nuevos.
+ */
+public class SearchHitsTest {
+
+    private static Message message(int i) {
+        Message m = new Message("ana", "mensaje " + i, null, 1_000L + i);
+        m.setId(String.format("-M%05d", i));
+        return m;
+    }
+
+    /** Mensajes [from, to) en orden cronológico, como los tiene el fragment */
+    private static List<Message> messages(int from, int to) {
+        List<Message> list = new ArrayList<>();
+        for (int i = from; i < to; i++) list.add(message(i));
+        return list;
+    }
+
+    private static List<Message> newestFirst(int... ids) {
+        List<Message> hits = new ArrayList<>();
+        for (int id : ids) hits.add(message(id));
+        return hits;
+    }
+
+    @Test
+    public void startsAtNewestHit_andMovesBothWays() {
+        List<Message> list = messages(0, 100);
+        SearchHits hits = new SearchHits();
+        hits.setResults(list, newestFirst(90, 40, 7));
+
+        assertEquals(90, hits.currentPosition());
+        assertEquals(1, hits.currentNumber());
+        assertEquals(3, hits.total());
+        assertFalse(hits.hasNewer());
+        assertTrue(hits.hasOlder());
+
+        assertEquals(40, hits.previous(list));
+        assertEquals(7, hits.previous(list));
+        assertEquals(7, hits.previous(list)); // En la más antigua se queda
+        assertEquals(3, hits.currentNumber());
+        assertFalse(hits.hasOlder());
+
+        assertEquals(40, hits.next(list));
+        assertEquals(90, hits.next(list));
+        assertEquals(90, hits.next(list));
+    }
+
+    @Test
+    public void noHits_noPosition() {
+        List<Message> list = messages(0, 10);
+        SearchHits hits = new SearchHits();
+        hits.setResults(list, new ArrayList<>());
+
+        assertTrue(hits.isEmpty());
+        assertEquals(RecyclerView.NO_POSITION, hits.currentPosition());
+        assertEquals(RecyclerView.NO_POSITION, hits.next(list));
+        assertEquals(0, hits.currentNumber());
+        assertFalse(hits.hasOlderUnloaded());
+    }
+
+    @Test
+    public void olderHitNotLoaded_askedForAndFoundAfterPrepend() {
+        List<Message> list = messages(50, 100);
+        SearchHits hits = new SearchHits();
+        hits.setResults(list, newestFirst(80, 20)); // El 20 solo está en la copia local
+
+        assertEquals(30, hits.currentPosition());
+        assertTrue(hits.hasOlder());
+        // Es la única cargada: para ir a la anterior hay que pedir la página
+        assertTrue(hits.hasOlderUnloaded());
+
+        list.addAll(0, messages(0, 50));
+        hits.locate(list);
+        assertEquals(80, hits.currentPosition()); // La actual sigue siendo el mismo mensaje
+        assertFalse(hits.hasOlderUnloaded());
+        assertEquals(20, hits.previous(list));
+        assertEquals(2, hits.currentNumber());
+    }
+
+    @Test
+    public void allHitsUnloaded_previousStartsFromNewestLoaded() {
+        List<Message> list = messages(50, 100);
+        SearchHits hits = new SearchHits();
+        hits.setResults(list, newestFirst(30, 10));
+
+        assertEquals(RecyclerView.NO_POSITION, hits.currentPosition());
+        assertTrue(hits.hasOlderUnloaded());
+
+        list.addAll(0, messages(20, 50));
+        hits.locate(list);
+        assertTrue(hits.hasOlder());
+        assertEquals(10, hits.previous(list)); // El 30 está en la posición 10
+        assertTrue(hits.hasOlderUnloaded());  // El 10 sigue sin cargar
+    }
+
+    @Test
+    public void appendedMatch_countsWithoutMovingCurrent() {
+        List<Message> list = messages(0, 10);
+        SearchHits hits = new SearchHits();
+        hits.setResults(list, newestFirst(5));
+
+        list.add(message(10));
+        hits.onAppended(message(10), 10);
+
+        assertEquals(5, hits.currentPosition());
+        assertEquals(2, hits.total());
+        assertEquals(2, hits.currentNumber());
+        assertTrue(hits.hasNewer());
+        assertEquals(10, hits.next(list));
+        assertEquals(Arrays.asList(5, 10), Arrays.asList(hits.previous(list), hits.next(list)));
+    }
+}